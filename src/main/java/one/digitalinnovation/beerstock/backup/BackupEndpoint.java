@@ -0,0 +1,46 @@
+package one.digitalinnovation.beerstock.backup;
+
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * {@code GET /actuator/backup} lists the backup files; {@code POST /actuator/backup/{action}}
+ * takes a {@code full} or {@code delta} backup. Restoring replaces both tables under running
+ * writers, so it is not offered here: it runs at startup with
+ * {@code beerstock.backup.restore-on-startup=true}, before requests are accepted.
+ */
+@Component
+@Endpoint(id = "backup")
+@ConditionalOnExpression("'${beerstock.storage.type:jpa}' == 'jpa' or '${beerstock.storage.type:jpa}' == 'write-behind'")
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class BackupEndpoint {
+
+    private final BackupService backupService;
+
+    @ReadOperation
+    public List<BackupSummary> backups() throws IOException {
+        return backupService.list();
+    }
+
+    @WriteOperation
+    public Object run(@Selector String action) throws IOException {
+        switch (action) {
+            case "full":
+                return backupService.fullBackup();
+            case "delta":
+                return backupService.deltaBackup();
+            default:
+                throw new InvalidEndpointRequestException("Unknown backup action " + action, "Unknown backup action");
+        }
+    }
+}
@@ -0,0 +1,578 @@
+package one.digitalinnovation.beerstock.backup;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.BeerStock;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.entity.StockLocationStripe;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.feed.BeerChangeEvent;
+import one.digitalinnovation.beerstock.reservation.ReservationRegistry;
+import one.digitalinnovation.beerstock.storage.WriteBehindBeerStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Online backups of the {@code beer} table and of the beers' stock per location: a full snapshot
+ * followed by deltas of the beers that changed since the previous backup.
+ *
+ * <p>Each backup reads the rows inside one read-only serializable transaction, so beers and stock
+ * rows come from a single point in time while writers carry on under MVCC. Repeatable read is
+ * not enough: H2 fixes a table's snapshot only when the transaction first reads that table, so
+ * stock rows read after the beers could include later commits. A backup whose beer quantities
+ * differ from the sum of their stock rows is rejected instead of written. Rows are read in pages and
+ * paced to {@code max-rows-per-second}, so a backup does not compete with stock updates for the
+ * database. The pacing stretches the transaction instead: a backup holds one connection and one
+ * MVCC snapshot, whose old row versions the database must keep, for about its row count divided
+ * by {@code max-rows-per-second}. At the default 20000 rows/s, a million beers and their stock
+ * rows keep them for roughly 100 seconds; raise the rate to shorten that at the cost of a heavier
+ * read burst.
+ *
+ * <p>Changed rows are known from the {@link BeerChangeEvent}s the services publish after commit:
+ * every change stamps the beer id with a new change number. A backup copies the stamps before
+ * its snapshot starts and, once its file is written, clears only the stamps that did not change
+ * meanwhile. A row changed during a backup therefore always lands in the next delta. The stamps
+ * only live in memory, so changes made before a restart are unknown to this process: the first
+ * backup after startup is always a full one. Changes made to the table without going through the
+ * services are not seen by deltas.
+ *
+ * <p>Restoring replays the latest full backup and every later delta into the tables in one
+ * transaction, recomputes the location totals from the restored stock, then publishes the
+ * resulting changes so in-memory views catch up. Beers backed up without stock rows are restored
+ * with their whole quantity at the default location.
+ *
+ * <p>With stock written behind, a backup flushes the {@link WriteBehindBeerStore} once its change
+ * stamps are copied, so the snapshot holds every change stamped by then, and a restore rewrites
+ * the tables through {@link WriteBehindBeerStore#reloadAfter} so the store picks them up.
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("'${beerstock.storage.type:jpa}' == 'jpa' or '${beerstock.storage.type:jpa}' == 'write-behind'")
+public class BackupService implements SmartInitializingSingleton {
+
+    private static final String COLUMNS = "id, name, brand, max, quantity, type";
+    private static final String STOCK_COLUMNS = "id, beer_id, location, quantity";
+    private static final Pattern FILE_NAME = Pattern.compile("beerstock-(\\d{10})-(full|delta)\\.json");
+    private static final RowMapper<Beer> ROW_MAPPER = (resultSet, rowNumber) -> new Beer(resultSet.getLong("id"),
+            resultSet.getString("name"),
+            resultSet.getString("brand"),
+            resultSet.getInt("max"),
+            resultSet.getInt("quantity"),
+            BeerType.valueOf(resultSet.getString("type")));
+    private static final RowMapper<BeerStock> STOCK_ROW_MAPPER = (resultSet, rowNumber) -> new BeerStock(resultSet.getLong("id"),
+            resultSet.getLong("beer_id"),
+            resultSet.getString("location"),
+            resultSet.getInt("quantity"));
+
+    private final ConcurrentMap<Long, Long> changedIds = new ConcurrentHashMap<>();
+    private final AtomicLong changeNumber = new AtomicLong();
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate snapshotTransaction;
+    private final TransactionTemplate restoreTransaction;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ReservationRegistry reservationRegistry;
+    // Only present when stock is written behind.
+    private final WriteBehindBeerStore writeBehindStore;
+    private final Path directory;
+    private final int pageSize;
+    private final long maxRowsPerSecond;
+    private final Duration interval;
+    private final int fullEvery;
+    private final boolean restoreOnStartup;
+    private ScheduledExecutorService scheduler;
+    private int deltasSinceFull;
+    private boolean fullSinceStartup;
+
+    @Autowired
+    public BackupService(DataSource dataSource,
+                         ObjectMapper objectMapper,
+                         ApplicationEventPublisher eventPublisher,
+                         ReservationRegistry reservationRegistry,
+                         ObjectProvider<WriteBehindBeerStore> writeBehindStore,
+                         @Value("${beerstock.backup.directory:backup}") String directory,
+                         @Value("${beerstock.backup.page-size:500}") int pageSize,
+                         @Value("${beerstock.backup.max-rows-per-second:20000}") long maxRowsPerSecond,
+                         @Value("${beerstock.backup.interval-seconds:300}") long intervalSeconds,
+                         @Value("${beerstock.backup.full-every:12}") int fullEvery,
+                         @Value("${beerstock.backup.restore-on-startup:false}") boolean restoreOnStartup) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Backup page size must be positive: " + pageSize);
+        }
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        this.snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        this.snapshotTransaction.setReadOnly(true);
+        this.restoreTransaction = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.reservationRegistry = reservationRegistry;
+        this.writeBehindStore = writeBehindStore.getIfAvailable();
+        this.directory = Paths.get(directory);
+        this.pageSize = pageSize;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+        this.interval = Duration.ofSeconds(intervalSeconds);
+        this.fullEvery = Math.max(1, fullEvery);
+        this.restoreOnStartup = restoreOnStartup;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (restoreOnStartup) {
+            try {
+                RestoreSummary summary = restore();
+                log.info("Restored {} beers from backup {}", summary.getBeers(), summary.getRestoredSequence());
+            } catch (IOException | IllegalStateException restoreFailure) {
+                log.warn("Could not restore beers from {}: {}", directory.toAbsolutePath(), restoreFailure.getMessage());
+            }
+        }
+        if (!interval.isZero() && !interval.isNegative()) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "beer-backup");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::scheduledBackup, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @EventListener
+    public void onBeerChange(BeerChangeEvent event) {
+        changedIds.put(event.getBeerId(), changeNumber.incrementAndGet());
+    }
+
+    /**
+     * Takes a full backup, or a delta when this process already took a full backup and fewer than
+     * {@code full-every - 1} deltas were taken since.
+     */
+    public synchronized BackupSummary backup() throws IOException {
+        boolean full = !fullSinceStartup || deltasSinceFull + 1 >= fullEvery || latestFullSequence() < 0;
+        return full ? fullBackup() : deltaBackup();
+    }
+
+    public synchronized BackupSummary fullBackup() throws IOException {
+        Map<Long, Long> captured = new HashMap<>(changedIds);
+        flushWriteBehind();
+        BackupSummary summary = write(BeerBackup.Kind.FULL, (json, balance) -> {
+            long start = System.nanoTime();
+            long rows = 0;
+            long lastId = 0;
+            while (true) {
+                List<Beer> page = jdbcTemplate.query("select " + COLUMNS + " from beer where id > :lastId order by id limit :pageSize",
+                        new MapSqlParameterSource("lastId", lastId).addValue("pageSize", pageSize), ROW_MAPPER);
+                writeBeers(json, page, balance);
+                if (page.size() < pageSize) {
+                    break;
+                }
+                lastId = page.get(page.size() - 1).getId();
+                rows += page.size();
+                throttle(start, rows);
+            }
+            return new ArrayList<>();
+        }, (json, balance) -> {
+            long start = System.nanoTime();
+            long rows = 0;
+            long lastId = 0;
+            while (true) {
+                List<BeerStock> page = jdbcTemplate.query("select " + STOCK_COLUMNS + " from beer_stock where id > :lastId order by id limit :pageSize",
+                        new MapSqlParameterSource("lastId", lastId).addValue("pageSize", pageSize), STOCK_ROW_MAPPER);
+                writeStock(json, page, balance);
+                if (page.size() < pageSize) {
+                    break;
+                }
+                lastId = page.get(page.size() - 1).getId();
+                rows += page.size();
+                throttle(start, rows);
+            }
+        });
+        captured.forEach(changedIds::remove);
+        deltasSinceFull = 0;
+        fullSinceStartup = true;
+        return summary;
+    }
+
+    public synchronized BackupSummary deltaBackup() throws IOException {
+        if (!fullSinceStartup || latestFullSequence() < 0) {
+            return fullBackup();
+        }
+        Map<Long, Long> captured = new HashMap<>(changedIds);
+        flushWriteBehind();
+        List<Long> ids = captured.keySet().stream().sorted().collect(Collectors.toList());
+        BackupSummary summary = write(BeerBackup.Kind.DELTA, (json, balance) -> {
+            long start = System.nanoTime();
+            List<Long> deletedIds = new ArrayList<>();
+            for (int from = 0; from < ids.size(); from += pageSize) {
+                List<Long> chunk = ids.subList(from, Math.min(from + pageSize, ids.size()));
+                List<Beer> page = jdbcTemplate.query("select " + COLUMNS + " from beer where id in (:ids)",
+                        new MapSqlParameterSource("ids", chunk), ROW_MAPPER);
+                writeBeers(json, page, balance);
+                Map<Long, Beer> found = page.stream().collect(Collectors.toMap(Beer::getId, beer -> beer));
+                chunk.stream().filter(id -> !found.containsKey(id)).forEach(deletedIds::add);
+                throttle(start, from + chunk.size());
+            }
+            return deletedIds;
+        }, (json, balance) -> {
+            long start = System.nanoTime();
+            for (int from = 0; from < ids.size(); from += pageSize) {
+                List<Long> chunk = ids.subList(from, Math.min(from + pageSize, ids.size()));
+                List<BeerStock> rows = jdbcTemplate.query("select " + STOCK_COLUMNS + " from beer_stock where beer_id in (:ids)",
+                        new MapSqlParameterSource("ids", chunk), STOCK_ROW_MAPPER);
+                writeStock(json, rows, balance);
+                throttle(start, from + chunk.size());
+            }
+        });
+        captured.forEach(changedIds::remove);
+        deltasSinceFull++;
+        return summary;
+    }
+
+    /**
+     * Replaces the content of the {@code beer} table with the state of the latest full backup
+     * plus every later delta. Meant for recovery, with writes stopped: the application calls it
+     * only at startup, before it accepts requests.
+     */
+    public synchronized RestoreSummary restore() throws IOException {
+        long fullSequence = latestFullSequence();
+        if (fullSequence < 0) {
+            throw new IllegalStateException("No full backup in " + directory.toAbsolutePath());
+        }
+        List<Path> chain = backupFiles().entrySet().stream()
+                .filter(file -> file.getKey() >= fullSequence)
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+        TreeMap<Long, Beer> restoredBeers = new TreeMap<>();
+        Map<Long, List<BeerStock>> restoredStock = new HashMap<>();
+        long restoredSequence = fullSequence;
+        for (Path file : chain) {
+            BeerBackup backup = objectMapper.readValue(file.toFile(), BeerBackup.class);
+            backup.getBeers().forEach(beer -> {
+                restoredBeers.put(beer.getId(), beer);
+                restoredStock.remove(beer.getId());
+            });
+            backup.getDeletedIds().forEach(id -> {
+                restoredBeers.remove(id);
+                restoredStock.remove(id);
+            });
+            backup.getStock().forEach(row -> restoredStock.computeIfAbsent(row.getBeerId(), id -> new ArrayList<>()).add(row));
+            restoredSequence = backup.getSequence();
+        }
+
+        // The locks of every beer the restore touches order its change events after earlier ones.
+        Set<Long> touchedIds = new HashSet<>(restoredBeers.keySet());
+        touchedIds.addAll(jdbcTemplate.getJdbcTemplate().queryForList("select id from beer", Long.class));
+        List<Lock> beerLocks = reservationRegistry.lockAllFor(touchedIds);
+        List<BeerChangeEvent> events;
+        try {
+            events = writeBehindStore == null
+                    ? restoreTables(restoredBeers, restoredStock)
+                    : writeBehindStore.reloadAfter(() -> restoreTables(restoredBeers, restoredStock));
+            events.forEach(eventPublisher::publishEvent);
+        } finally {
+            beerLocks.forEach(Lock::unlock);
+        }
+        Map<BeerChangeEvent.Kind, Long> counts = events.stream()
+                .collect(Collectors.groupingBy(BeerChangeEvent::getKind, Collectors.counting()));
+        return new RestoreSummary(restoredSequence, chain.size(), restoredBeers.size(),
+                counts.getOrDefault(BeerChangeEvent.Kind.CREATED, 0L).intValue(),
+                counts.getOrDefault(BeerChangeEvent.Kind.UPDATED, 0L).intValue(),
+                counts.getOrDefault(BeerChangeEvent.Kind.DELETED, 0L).intValue());
+    }
+
+    public List<BackupSummary> list() throws IOException {
+        List<BackupSummary> summaries = new ArrayList<>();
+        for (Map.Entry<Long, Path> file : backupFiles().entrySet()) {
+            summaries.add(summaryOf(file.getValue()));
+        }
+        return summaries;
+    }
+
+    private List<BeerChangeEvent> restoreTables(TreeMap<Long, Beer> restoredBeers, Map<Long, List<BeerStock>> restoredStock) {
+        List<BeerChangeEvent> events = restoreTransaction.execute(status -> replaceTables(restoredBeers, restoredStock));
+        // H2 commits DDL implicitly, so the identity is moved past the restored ids after the transaction.
+        long nextId = restoredBeers.isEmpty() ? 1 : restoredBeers.lastKey() + 1;
+        jdbcTemplate.getJdbcTemplate().execute("alter table beer alter column id restart with " + nextId);
+        return events;
+    }
+
+    private List<BeerChangeEvent> replaceTables(Map<Long, Beer> restoredBeers, Map<Long, List<BeerStock>> restoredStock) {
+        Map<Long, Beer> currentBeers = jdbcTemplate.query("select " + COLUMNS + " from beer", ROW_MAPPER).stream()
+                .collect(Collectors.toMap(Beer::getId, beer -> beer));
+        jdbcTemplate.getJdbcTemplate().update("delete from beer_stock");
+        jdbcTemplate.getJdbcTemplate().update("delete from beer");
+        SqlParameterSource[] rows = restoredBeers.values().stream()
+                .map(beer -> new MapSqlParameterSource("id", beer.getId())
+                        .addValue("name", beer.getName())
+                        .addValue("brand", beer.getBrand())
+                        .addValue("max", beer.getMax())
+                        .addValue("quantity", beer.getQuantity())
+                        .addValue("type", beer.getType().name()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("insert into beer (" + COLUMNS + ") values (:id, :name, :brand, :max, :quantity, :type)", rows);
+        List<SqlParameterSource> stockRows = new ArrayList<>();
+        for (Beer beer : restoredBeers.values()) {
+            List<BeerStock> beerStock = restoredStock.getOrDefault(beer.getId(),
+                    List.of(new BeerStock(null, beer.getId(), StockLocation.DEFAULT, beer.getQuantity())));
+            beerStock.forEach(row -> stockRows.add(new MapSqlParameterSource("beerId", row.getBeerId())
+                    .addValue("location", row.getLocation())
+                    .addValue("quantity", row.getQuantity())));
+        }
+        jdbcTemplate.batchUpdate("insert into beer_stock (beer_id, location, quantity) values (:beerId, :location, :quantity)",
+                stockRows.toArray(new SqlParameterSource[0]));
+        jdbcTemplate.getJdbcTemplate().update("insert into stock_location (name, quantity) "
+                + "select distinct location, 0 from beer_stock where location not in (select name from stock_location)");
+        jdbcTemplate.getJdbcTemplate().update("delete from stock_location_stripe");
+        List<SqlParameterSource> stripeRows = new ArrayList<>();
+        for (String location : jdbcTemplate.getJdbcTemplate().queryForList("select name from stock_location", String.class)) {
+            for (int stripe = 0; stripe < StockLocationStripe.STRIPES; stripe++) {
+                stripeRows.add(new MapSqlParameterSource("location", location).addValue("stripe", stripe));
+            }
+        }
+        jdbcTemplate.batchUpdate("insert into stock_location_stripe (location, stripe, quantity) values (:location, :stripe, 0)",
+                stripeRows.toArray(new SqlParameterSource[0]));
+        jdbcTemplate.getJdbcTemplate().update("update stock_location set quantity = "
+                + "coalesce((select sum(s.quantity) from beer_stock s where s.location = stock_location.name), 0)");
+
+        List<BeerChangeEvent> events = new ArrayList<>();
+        for (Beer beer : currentBeers.values()) {
+            if (!restoredBeers.containsKey(beer.getId())) {
+                events.add(BeerChangeEvent.deleted(beer, reservationRegistry.nextVersion(beer.getId())));
+            }
+        }
+        for (Beer beer : restoredBeers.values()) {
+            Beer currentBeer = currentBeers.get(beer.getId());
+            if (currentBeer == null) {
+                events.add(BeerChangeEvent.created(beer, reservationRegistry.nextVersion(beer.getId())));
+            } else if (!currentBeer.equals(beer)) {
+                events.add(BeerChangeEvent.updated(beer, currentBeer.getQuantity(), reservationRegistry.nextVersion(beer.getId())));
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Must run after the change stamps are copied: every change stamped by then is already in
+     * memory, so it reaches the tables before the snapshot reads them.
+     */
+    private void flushWriteBehind() {
+        if (writeBehindStore != null) {
+            writeBehindStore.flush();
+        }
+    }
+
+    private void scheduledBackup() {
+        try {
+            BackupSummary summary = backup();
+            log.info("Backed up beers to {}", summary.getFile());
+        } catch (IOException | RuntimeException backupFailure) {
+            log.warn("Scheduled beer backup failed", backupFailure);
+        }
+    }
+
+    /**
+     * Streams the rows returned by {@code reader}, which runs inside the snapshot transaction,
+     * into a temporary file that is moved into place once complete.
+     */
+    private BackupSummary write(BeerBackup.Kind kind, SnapshotReader reader, StockReader stockReader) throws IOException {
+        Files.createDirectories(directory);
+        long sequence = backupFiles().keySet().stream().mapToLong(Long::longValue).max().orElse(0) + 1;
+        Path file = directory.resolve(String.format("beerstock-%010d-%s.json", sequence, kind.name().toLowerCase()));
+        Path temporaryFile = directory.resolve(file.getFileName() + ".tmp");
+        try {
+            writeFile(temporaryFile, kind, sequence, reader, stockReader);
+        } catch (IOException | RuntimeException writeFailure) {
+            Files.deleteIfExists(temporaryFile);
+            throw writeFailure;
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+        return summaryOf(file);
+    }
+
+    private void writeFile(Path temporaryFile, BeerBackup.Kind kind, long sequence, SnapshotReader reader, StockReader stockReader) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(temporaryFile.toFile(), JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeStringField("kind", kind.name());
+            json.writeNumberField("sequence", sequence);
+            json.writeFieldName("takenAt");
+            json.writeObject(Instant.now());
+            StockBalance balance = new StockBalance();
+            snapshotTransaction.execute(status -> {
+                try {
+                    json.writeArrayFieldStart("beers");
+                    List<Long> deletedIds = reader.read(json, balance);
+                    json.writeEndArray();
+                    json.writeFieldName("deletedIds");
+                    json.writeObject(deletedIds);
+                    json.writeArrayFieldStart("stock");
+                    stockReader.read(json, balance);
+                    json.writeEndArray();
+                    return null;
+                } catch (IOException writeFailure) {
+                    throw new UncheckedIOException(writeFailure);
+                }
+            });
+            balance.verify();
+            json.writeEndObject();
+        } catch (UncheckedIOException writeFailure) {
+            throw writeFailure.getCause();
+        }
+    }
+
+    private static void writeBeers(JsonGenerator json, List<Beer> beers, StockBalance balance) throws IOException {
+        for (Beer beer : beers) {
+            json.writeObject(beer);
+            balance.add(beer.getId(), beer.getQuantity());
+        }
+    }
+
+    private static void writeStock(JsonGenerator json, List<BeerStock> rows, StockBalance balance) throws IOException {
+        for (BeerStock row : rows) {
+            json.writeObject(row);
+            balance.add(row.getBeerId(), -row.getQuantity());
+        }
+    }
+
+    private void throttle(long startNanos, long rows) {
+        if (maxRowsPerSecond <= 0) {
+            return;
+        }
+        long waitNanos = startNanos + TimeUnit.SECONDS.toNanos(rows) / maxRowsPerSecond - System.nanoTime();
+        if (waitNanos > 0) {
+            LockSupport.parkNanos(waitNanos);
+        }
+    }
+
+    private long latestFullSequence() throws IOException {
+        return backupFiles().entrySet().stream()
+                .filter(file -> file.getValue().getFileName().toString().endsWith("-full.json"))
+                .mapToLong(Map.Entry::getKey)
+                .max()
+                .orElse(-1);
+    }
+
+    private Map<Long, Path> backupFiles() throws IOException {
+        Map<Long, Path> files = new TreeMap<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (Stream<Path> entries = Files.list(directory)) {
+            entries.forEach(file -> {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Long.parseLong(matcher.group(1)), file);
+                }
+            });
+        }
+        return files;
+    }
+
+    private static BackupSummary summaryOf(Path file) throws IOException {
+        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a backup file: " + file);
+        }
+        return new BackupSummary(file.getFileName().toString(),
+                BeerBackup.Kind.valueOf(matcher.group(2).toUpperCase()),
+                Long.parseLong(matcher.group(1)),
+                Files.getLastModifiedTime(file).toInstant(),
+                Files.size(file));
+    }
+
+    @FunctionalInterface
+    private interface SnapshotReader {
+
+        /**
+         * Writes the beers of the backup and returns the ids of deleted beers.
+         */
+        List<Long> read(JsonGenerator json, StockBalance balance) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface StockReader {
+
+        /**
+         * Writes the stock rows of the beers of the backup.
+         */
+        void read(JsonGenerator json, StockBalance balance) throws IOException;
+    }
+
+    /**
+     * Quantity of each backed-up beer minus the units in its backed-up stock rows; every beer
+     * of a consistent backup ends at zero.
+     */
+    private static final class StockBalance {
+
+        private final Map<Long, Long> unbalanced = new HashMap<>();
+
+        private void add(long beerId, long quantity) {
+            unbalanced.merge(beerId, quantity, Long::sum);
+        }
+
+        private void verify() {
+            List<Long> unbalancedIds = unbalanced.entrySet().stream()
+                    .filter(beer -> beer.getValue() != 0)
+                    .map(Map.Entry::getKey)
+                    .sorted()
+                    .limit(10)
+                    .collect(Collectors.toList());
+            if (!unbalancedIds.isEmpty()) {
+                throw new IllegalStateException("Backup snapshot is inconsistent: quantity of beers "
+                        + unbalancedIds + " differs from the sum of their stock rows");
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package one.digitalinnovation.beerstock.backup;
+
+import lombok.Value;
+
+import java.time.Instant;
+
+@Value
+public class BackupSummary {
+
+    String file;
+
+    BeerBackup.Kind kind;
+
+    long sequence;
+
+    Instant takenAt;
+
+    long sizeBytes;
+}
@@ -0,0 +1,39 @@
+package one.digitalinnovation.beerstock.backup;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.BeerStock;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Content of one backup file. A full backup holds every beer; a delta holds the beers changed
+ * since the previous backup and the ids of the ones deleted since then. {@code stock} holds the
+ * stock rows per location of the backed up beers.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerBackup {
+
+    public enum Kind {
+        FULL,
+        DELTA
+    }
+
+    private Kind kind;
+
+    private long sequence;
+
+    private Instant takenAt;
+
+    private List<Beer> beers = new ArrayList<>();
+
+    private List<Long> deletedIds = new ArrayList<>();
+
+    private List<BeerStock> stock = new ArrayList<>();
+}
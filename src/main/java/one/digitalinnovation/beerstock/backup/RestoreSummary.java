@@ -0,0 +1,19 @@
+package one.digitalinnovation.beerstock.backup;
+
+import lombok.Value;
+
+@Value
+public class RestoreSummary {
+
+    long restoredSequence;
+
+    int backupsApplied;
+
+    int beers;
+
+    int created;
+
+    int updated;
+
+    int deleted;
+}
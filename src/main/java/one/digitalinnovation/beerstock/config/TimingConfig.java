@@ -0,0 +1,28 @@
+package one.digitalinnovation.beerstock.config;
+
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.timing.StageTimingFilter;
+import one.digitalinnovation.beerstock.timing.TimedBeerMapper;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wraps the beans whose time is reported per stage by the {@link StageTimingFilter}. Without
+ * {@code beerstock.timing.enabled} they are injected as they are.
+ */
+@Configuration
+@ConditionalOnProperty(name = "beerstock.timing.enabled", havingValue = "true", matchIfMissing = true)
+public class TimingConfig {
+
+    @Bean
+    public static BeanPostProcessor timedBeerMapperPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof BeerMapper ? new TimedBeerMapper((BeerMapper) bean) : bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package one.digitalinnovation.beerstock.config;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.ratelimit.RateLimitInterceptor;
+import one.digitalinnovation.beerstock.timing.TimedValidator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class WebConfig implements WebMvcConfigurer {
+
+    private static final String API_PATH_PATTERN = "/api/**";
+
+    private final RateLimitInterceptor rateLimitInterceptor;
+
+    private final javax.validation.Validator beanValidator;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(rateLimitInterceptor).addPathPatterns(API_PATH_PATTERN);
+    }
+
+    @Override
+    public Validator getValidator() {
+        return new TimedValidator(new SpringValidatorAdapter(beanValidator));
+    }
+}
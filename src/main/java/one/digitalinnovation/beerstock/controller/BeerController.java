@@ -1,40 +1,136 @@
 package one.digitalinnovation.beerstock.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AllArgsConstructor;
 import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerForecastDTO;
+import one.digitalinnovation.beerstock.dto.BeerLookupDTO;
+import one.digitalinnovation.beerstock.dto.BeerLookupRequestDTO;
+import one.digitalinnovation.beerstock.dto.BeerStockDTO;
+import one.digitalinnovation.beerstock.dto.BeerSuggestionDTO;
+import one.digitalinnovation.beerstock.dto.ImportReportDTO;
 import one.digitalinnovation.beerstock.dto.QuantityDTO;
+import one.digitalinnovation.beerstock.dto.ReservationDTO;
+import one.digitalinnovation.beerstock.dto.ReservationRequestDTO;
+import one.digitalinnovation.beerstock.dto.StockTransferDTO;
+import one.digitalinnovation.beerstock.enums.BeerType;
 import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
 import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
 import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.ReservationNotFoundException;
+import one.digitalinnovation.beerstock.exception.StockLocationNotFoundException;
+import one.digitalinnovation.beerstock.feed.BeerChangeFeed;
+import one.digitalinnovation.beerstock.forecast.ConsumptionTracker;
+import one.digitalinnovation.beerstock.service.BeerImportService;
 import one.digitalinnovation.beerstock.service.BeerService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequestMapping("/api/v1/beers")
 @AllArgsConstructor(onConstructor = @__(@Autowired))
 public class BeerController implements BeerControllerDocs {
 
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     private final BeerService beerService;
 
+    private final BeerImportService beerImportService;
+
+    private final BeerChangeFeed beerChangeFeed;
+
+    private final ConsumptionTracker consumptionTracker;
+
+    private final ObjectMapper objectMapper;
+
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
     public BeerDTO createBeer(@RequestBody @Valid BeerDTO beerDTO) throws BeerAlreadyRegisteredException {
         return beerService.createBeer(beerDTO);
     }
 
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ImportReportDTO importBeers(@RequestParam("file") MultipartFile file) throws IOException {
+        try (InputStream input = file.getInputStream()) {
+            return beerImportService.importCsv(input);
+        }
+    }
+
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> importBeersWithProgress(@RequestParam("file") MultipartFile file) {
+        StreamingResponseBody progressLines = output -> {
+            AtomicBoolean clientGone = new AtomicBoolean();
+            ImportReportDTO report;
+            try (InputStream input = file.getInputStream()) {
+                // Like the plain upload, the import carries on if the client goes away.
+                report = beerImportService.importCsv(input, progress -> {
+                    if (!clientGone.get()) {
+                        try {
+                            writeLine(output, progress);
+                        } catch (IOException writeFailure) {
+                            clientGone.set(true);
+                        }
+                    }
+                });
+            }
+            writeLine(output, report);
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(progressLines);
+    }
+
+    @PostMapping("/lookup")
+    public List<BeerLookupDTO> lookup(@RequestBody @Valid BeerLookupRequestDTO lookupRequestDTO) {
+        return lookupRequestDTO.getIds() != null && !lookupRequestDTO.getIds().isEmpty()
+                ? beerService.lookupByIds(lookupRequestDTO.getIds())
+                : beerService.lookupByNames(lookupRequestDTO.getNames());
+    }
+
+    // Reads over all beers live under /-/ so that they never shadow GET /{name} for a beer of that name.
+    @GetMapping(value = "/-/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) List<Long> beerId,
+                                    @RequestParam(required = false) List<BeerType> type,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return beerChangeFeed.subscribe(beerId, type, lastEventId);
+    }
+
+    @GetMapping("/-/autocomplete")
+    public List<BeerSuggestionDTO> autocomplete(@RequestParam String prefix, @RequestParam(defaultValue = "10") int limit) {
+        return beerService.autocomplete(prefix, limit);
+    }
+
+    @GetMapping("/-/forecasts")
+    public List<BeerForecastDTO> forecasts() {
+        return consumptionTracker.forecastAll();
+    }
+
+    @GetMapping("/{id}/forecast")
+    public BeerForecastDTO forecast(@PathVariable Long id) throws BeerNotFoundException {
+        return consumptionTracker.forecast(id);
+    }
+
     @GetMapping("/{name}")
     public BeerDTO findByName(@PathVariable String name) throws BeerNotFoundException {
         return beerService.findByName(name);
@@ -52,12 +148,46 @@ public class BeerController implements BeerControllerDocs {
     }
 
     @PatchMapping("/{id}/increment")
-    public BeerDTO increment(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws BeerNotFoundException, BeerStockExceededException {
-        return beerService.increment(id, quantityDTO.getQuantity());
+    public BeerDTO increment(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        return beerService.increment(id, quantityDTO.getQuantity(), quantityDTO.getLocation());
     }
 
     @PatchMapping("/{id}/decrement")
-    public BeerDTO decrement(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws BeerNotFoundException, BeerStockExceededException {
-        return beerService.decrement(id, quantityDTO.getQuantity());
+    public BeerDTO decrement(@PathVariable Long id, @RequestBody @Valid QuantityDTO quantityDTO) throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        return beerService.decrement(id, quantityDTO.getQuantity(), quantityDTO.getLocation());
+    }
+
+    @GetMapping("/{id}/stock")
+    public BeerStockDTO findStock(@PathVariable Long id) throws BeerNotFoundException {
+        return beerService.findStock(id);
+    }
+
+    @PostMapping("/{id}/transfers")
+    public BeerStockDTO transfer(@PathVariable Long id, @RequestBody @Valid StockTransferDTO stockTransferDTO) throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        return beerService.transfer(id, stockTransferDTO);
+    }
+
+    @PostMapping("/{id}/reservations")
+    @ResponseStatus(HttpStatus.CREATED)
+    public ReservationDTO reserve(@PathVariable Long id, @RequestBody @Valid ReservationRequestDTO reservationRequestDTO) throws BeerNotFoundException, BeerStockExceededException {
+        return beerService.reserve(id, reservationRequestDTO);
+    }
+
+    @PostMapping("/reservations/{reservationId}/commit")
+    public BeerDTO commitReservation(@PathVariable Long reservationId,
+                                     @RequestParam(required = false) String location) throws ReservationNotFoundException, BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        return beerService.commitReservation(reservationId, location);
+    }
+
+    @DeleteMapping("/reservations/{reservationId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void releaseReservation(@PathVariable Long reservationId) throws ReservationNotFoundException {
+        beerService.releaseReservation(reservationId);
+    }
+
+    private void writeLine(OutputStream output, Object value) throws IOException {
+        output.write(objectMapper.writeValueAsBytes(value));
+        output.write('\n');
+        output.flush();
     }
 }
@@ -5,14 +5,31 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerForecastDTO;
+import one.digitalinnovation.beerstock.dto.BeerLookupDTO;
+import one.digitalinnovation.beerstock.dto.BeerLookupRequestDTO;
+import one.digitalinnovation.beerstock.dto.BeerStockDTO;
+import one.digitalinnovation.beerstock.dto.BeerSuggestionDTO;
+import one.digitalinnovation.beerstock.dto.ImportReportDTO;
 import one.digitalinnovation.beerstock.dto.QuantityDTO;
+import one.digitalinnovation.beerstock.dto.ReservationDTO;
+import one.digitalinnovation.beerstock.dto.ReservationRequestDTO;
+import one.digitalinnovation.beerstock.dto.StockTransferDTO;
+import one.digitalinnovation.beerstock.enums.BeerType;
 import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
 import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
 import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.ReservationNotFoundException;
+import one.digitalinnovation.beerstock.exception.StockLocationNotFoundException;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
 import java.util.List;
 
 @Api("Manages beer stock")
@@ -25,6 +42,50 @@ public interface BeerControllerDocs {
     })
     BeerDTO createBeer(BeerDTO beerDTO) throws BeerAlreadyRegisteredException;
 
+    @ApiOperation(value = "Imports a CSV catalog (name, brand, max, quantity, type), upserting beers by name")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Import report with per-row errors")
+    })
+    ImportReportDTO importBeers(MultipartFile file) throws IOException;
+
+    @ApiOperation(value = "Imports a CSV catalog like importBeers, streaming progress as newline-delimited JSON")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "One line of counts per stored batch, then the import report as the last line")
+    })
+    ResponseEntity<StreamingResponseBody> importBeersWithProgress(MultipartFile file);
+
+    @ApiOperation(value = "Fetches up to 1000 beers by id or by name in one call")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "One entry per requested key, in request order, with found = false for unknown keys"),
+            @ApiResponse(code = 400, message = "Neither or both of ids and names given, or too many keys")
+    })
+    List<BeerLookupDTO> lookup(BeerLookupRequestDTO lookupRequestDTO);
+
+    @ApiOperation(value = "Streams beer changes as server-sent events, optionally filtered by beer id and type")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Event stream; a resync event means changes were skipped and the list should be reloaded")
+    })
+    SseEmitter streamChanges(List<Long> beerId, List<BeerType> type, Long lastEventId);
+
+    @ApiOperation(value = "Returns the best stocked beers whose name starts with a given prefix, ignoring case and accents")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Up to limit suggestions, highest quantity first")
+    })
+    List<BeerSuggestionDTO> autocomplete(String prefix, int limit);
+
+    @ApiOperation(value = "Forecasts stockout time and reorder quantity of every beer from its recent consumption rate")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Forecasts, beers running out soonest first")
+    })
+    List<BeerForecastDTO> forecasts();
+
+    @ApiOperation(value = "Forecasts stockout time and reorder quantity of a beer from its recent consumption rate")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Forecast of the beer"),
+            @ApiResponse(code = 404, message = "Beer with given id not found.")
+    })
+    BeerForecastDTO forecast(Long id) throws BeerNotFoundException;
+
     @ApiOperation(value = "Returns beer found by a given name")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Success beer found in the system"),
@@ -44,4 +105,42 @@ public interface BeerControllerDocs {
             @ApiResponse(code = 404, message = "Beer with given id not found.")
     })
     void deleteById(@PathVariable Long id) throws BeerNotFoundException;
+
+    @ApiOperation(value = "Returns the stock of a beer per location")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Quantity of the beer and the units held at each location"),
+            @ApiResponse(code = 404, message = "Beer with given id not found.")
+    })
+    BeerStockDTO findStock(@PathVariable Long id) throws BeerNotFoundException;
+
+    @ApiOperation(value = "Moves stock of a beer from one location to another in one step")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Stock of the beer per location after the transfer"),
+            @ApiResponse(code = 400, message = "Not enough stock at the source location or invalid transfer."),
+            @ApiResponse(code = 404, message = "Beer or location not found.")
+    })
+    BeerStockDTO transfer(@PathVariable Long id, StockTransferDTO stockTransferDTO) throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException;
+
+    @ApiOperation(value = "Holds stock of a beer for a limited time")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Success reservation created"),
+            @ApiResponse(code = 400, message = "Not enough available stock or invalid quantity."),
+            @ApiResponse(code = 404, message = "Beer with given id not found.")
+    })
+    ReservationDTO reserve(@PathVariable Long id, ReservationRequestDTO reservationRequestDTO) throws BeerNotFoundException, BeerStockExceededException;
+
+    @ApiOperation(value = "Takes the reserved stock out of the beer stock, at the given location or the default one")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Success reservation committed"),
+            @ApiResponse(code = 400, message = "Not enough stock at the location."),
+            @ApiResponse(code = 404, message = "Reservation not found, already closed or expired, or location not found.")
+    })
+    BeerDTO commitReservation(@PathVariable Long reservationId, String location) throws ReservationNotFoundException, BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException;
+
+    @ApiOperation(value = "Gives the reserved stock back")
+    @ApiResponses(value = {
+            @ApiResponse(code = 204, message = "Success reservation released"),
+            @ApiResponse(code = 404, message = "Reservation not found, already closed or expired.")
+    })
+    void releaseReservation(@PathVariable Long reservationId) throws ReservationNotFoundException;
 }
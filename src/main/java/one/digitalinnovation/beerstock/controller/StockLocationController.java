@@ -0,0 +1,36 @@
+package one.digitalinnovation.beerstock.controller;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.dto.StockLocationDTO;
+import one.digitalinnovation.beerstock.exception.StockLocationAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.service.StockLocationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.validation.Valid;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/locations")
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class StockLocationController implements StockLocationControllerDocs {
+
+    private final StockLocationService stockLocationService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public StockLocationDTO createLocation(@RequestBody @Valid StockLocationDTO stockLocationDTO) throws StockLocationAlreadyRegisteredException {
+        return stockLocationService.createLocation(stockLocationDTO);
+    }
+
+    @GetMapping
+    public List<StockLocationDTO> listLocations() {
+        return stockLocationService.listAll();
+    }
+}
@@ -0,0 +1,27 @@
+package one.digitalinnovation.beerstock.controller;
+
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import one.digitalinnovation.beerstock.dto.StockLocationDTO;
+import one.digitalinnovation.beerstock.exception.StockLocationAlreadyRegisteredException;
+
+import java.util.List;
+
+@Api("Manages the locations holding beer stock")
+public interface StockLocationControllerDocs {
+
+    @ApiOperation(value = "Registers a warehouse or bar that can hold stock")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Success location creation"),
+            @ApiResponse(code = 400, message = "Invalid name or location already registered.")
+    })
+    StockLocationDTO createLocation(StockLocationDTO stockLocationDTO) throws StockLocationAlreadyRegisteredException;
+
+    @ApiOperation(value = "Returns every location with the units of all beers held there")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Locations by name")
+    })
+    List<StockLocationDTO> listLocations();
+}
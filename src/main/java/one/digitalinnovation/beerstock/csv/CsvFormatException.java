@@ -0,0 +1,14 @@
+package one.digitalinnovation.beerstock.csv;
+
+import lombok.Getter;
+
+@Getter
+public class CsvFormatException extends RuntimeException {
+
+    private final long lineNumber;
+
+    public CsvFormatException(String message, long lineNumber) {
+        super(String.format("Malformed CSV at line %s: %s", lineNumber, message));
+        this.lineNumber = lineNumber;
+    }
+}
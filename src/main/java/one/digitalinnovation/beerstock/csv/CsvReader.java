@@ -0,0 +1,152 @@
+package one.digitalinnovation.beerstock.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental RFC 4180 reader: records are parsed one at a time straight from the underlying
+ * {@link Reader}. A record may hold at most {@value #MAX_FIELDS} fields and
+ * {@value #MAX_RECORD_LENGTH} characters, and a larger one is refused with a
+ * {@link CsvFormatException}, so memory use is bounded whatever the input. Quoted fields may
+ * contain separators, line breaks and doubled quotes.
+ */
+public class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_FIELD_LENGTH = 64 * 1024;
+    private static final int MAX_FIELDS = 256;
+    private static final int MAX_RECORD_LENGTH = 256 * 1024;
+
+    private final Reader reader;
+    private final char separator;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private int limit;
+    private long lineNumber = 1;
+    private long recordLineNumber;
+
+    public CsvReader(Reader reader, char separator) {
+        this.reader = reader;
+        this.separator = separator;
+    }
+
+    /**
+     * Returns the next record, or {@code null} at the end of the input. Blank lines are skipped.
+     */
+    public List<String> readRecord() throws IOException {
+        List<String> record = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean fieldStarted = false;
+        int recordLength = 0;
+        recordLineNumber = lineNumber;
+        while (true) {
+            int next = read();
+            if (next != -1 && ++recordLength > MAX_RECORD_LENGTH) {
+                throw new CsvFormatException("Record longer than " + MAX_RECORD_LENGTH + " characters", recordLineNumber);
+            }
+            if (next == -1) {
+                if (quoted) {
+                    throw new CsvFormatException("Unterminated quoted field", recordLineNumber);
+                }
+                if (!fieldStarted && record.isEmpty()) {
+                    return null;
+                }
+                addField(record);
+                return record;
+            }
+            char character = (char) next;
+            if (quoted) {
+                if (character == '"') {
+                    if (peek() == '"') {
+                        read();
+                        append(character);
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (character == '\n') {
+                        lineNumber++;
+                    }
+                    append(character);
+                }
+            } else if (character == '"' && field.length() == 0) {
+                quoted = true;
+                fieldStarted = true;
+            } else if (character == separator) {
+                addField(record);
+                field.setLength(0);
+                fieldStarted = true;
+            } else if (character == '\r' || character == '\n') {
+                if (character == '\r' && peek() == '\n') {
+                    read();
+                }
+                lineNumber++;
+                if (!fieldStarted && record.isEmpty()) {
+                    recordLineNumber = lineNumber;
+                    recordLength = 0;
+                    continue;
+                }
+                addField(record);
+                return record;
+            } else {
+                append(character);
+                fieldStarted = true;
+            }
+        }
+    }
+
+    /**
+     * Line on which the last record returned by {@link #readRecord()} started.
+     */
+    public long getRecordLineNumber() {
+        return recordLineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void addField(List<String> record) {
+        if (record.size() >= MAX_FIELDS) {
+            throw new CsvFormatException("Record with more than " + MAX_FIELDS + " fields", recordLineNumber);
+        }
+        record.add(field.toString());
+    }
+
+    private void append(char character) {
+        if (field.length() >= MAX_FIELD_LENGTH) {
+            throw new CsvFormatException("Field longer than " + MAX_FIELD_LENGTH + " characters", recordLineNumber);
+        }
+        field.append(character);
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
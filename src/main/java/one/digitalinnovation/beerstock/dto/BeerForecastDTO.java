@@ -0,0 +1,31 @@
+package one.digitalinnovation.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerForecastDTO {
+
+    private Long id;
+
+    private String name;
+
+    private int quantity;
+
+    private int max;
+
+    private double consumptionPerDay;
+
+    private Double hoursToStockout;
+
+    private Instant stockoutAt;
+
+    private int suggestedReorderQuantity;
+}
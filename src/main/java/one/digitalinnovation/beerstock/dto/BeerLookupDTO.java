@@ -0,0 +1,27 @@
+package one.digitalinnovation.beerstock.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry of a multi-get answer: the key that was asked for, whether it was found and,
+ * if so, the beer.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BeerLookupDTO {
+
+    private Long id;
+
+    private String name;
+
+    private boolean found;
+
+    private BeerDTO beer;
+}
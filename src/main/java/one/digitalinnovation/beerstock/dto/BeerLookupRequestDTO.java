@@ -0,0 +1,36 @@
+package one.digitalinnovation.beerstock.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerLookupRequestDTO {
+
+    @Size(max = 1000)
+    private List<@NotNull Long> ids;
+
+    @Size(max = 1000)
+    private List<@NotBlank String> names;
+
+    @JsonIgnore
+    @AssertTrue(message = "exactly one of ids or names must be given")
+    public boolean isSingleKeyKind() {
+        return isEmpty(ids) != isEmpty(names);
+    }
+
+    private static boolean isEmpty(List<?> keys) {
+        return keys == null || keys.isEmpty();
+    }
+}
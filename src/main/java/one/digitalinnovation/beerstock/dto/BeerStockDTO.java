@@ -0,0 +1,27 @@
+package one.digitalinnovation.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerStockDTO {
+
+    private Long id;
+
+    private String name;
+
+    private int max;
+
+    // Total over all locations.
+    private int quantity;
+
+    // Units held at each location, by location name.
+    private Map<String, Integer> locations;
+}
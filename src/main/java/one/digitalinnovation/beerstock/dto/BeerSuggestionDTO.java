@@ -0,0 +1,22 @@
+package one.digitalinnovation.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import one.digitalinnovation.beerstock.enums.BeerType;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BeerSuggestionDTO {
+
+    private Long id;
+
+    private String name;
+
+    private BeerType type;
+
+    private int quantity;
+}
@@ -0,0 +1,21 @@
+package one.digitalinnovation.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportProgressDTO {
+
+    private long rowsRead;
+
+    private long created;
+
+    private long updated;
+
+    private long rejected;
+}
@@ -0,0 +1,29 @@
+package one.digitalinnovation.beerstock.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportReportDTO {
+
+    private long rowsRead;
+
+    private long created;
+
+    private long updated;
+
+    private long rejected;
+
+    private boolean errorsTruncated;
+
+    @Builder.Default
+    private List<ImportRowErrorDTO> errors = new ArrayList<>();
+}
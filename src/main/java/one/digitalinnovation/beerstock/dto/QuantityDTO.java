@@ -7,6 +7,7 @@ import lombok.NoArgsConstructor;
 
 import javax.validation.constraints.Max;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
 
 @Data
 @Builder
@@ -17,4 +18,8 @@ public class QuantityDTO {
     @NotNull
     @Max(100)
     private Integer quantity;
+
+    // Stock location to change; the default location when absent.
+    @Pattern(regexp = StockLocationDTO.NAME_PATTERN)
+    private String location;
 }
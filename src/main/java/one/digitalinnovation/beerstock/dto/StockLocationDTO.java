@@ -0,0 +1,27 @@
+package one.digitalinnovation.beerstock.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLocationDTO {
+
+    public static final String NAME_PATTERN = "[A-Za-z0-9][A-Za-z0-9._-]{0,63}";
+
+    @NotNull
+    @Pattern(regexp = NAME_PATTERN)
+    private String name;
+
+    // Units of all beers held at the location.
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long quantity;
+}
@@ -0,0 +1,39 @@
+package one.digitalinnovation.beerstock.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockTransferDTO {
+
+    @NotNull
+    @Pattern(regexp = StockLocationDTO.NAME_PATTERN)
+    private String from;
+
+    @NotNull
+    @Pattern(regexp = StockLocationDTO.NAME_PATTERN)
+    private String to;
+
+    @NotNull
+    @Min(1)
+    @Max(100)
+    private Integer quantity;
+
+    @JsonIgnore
+    @AssertTrue(message = "from and to must be different locations")
+    public boolean isBetweenDistinctLocations() {
+        return from == null || !from.equals(to);
+    }
+}
@@ -0,0 +1,38 @@
+package one.digitalinnovation.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * Units of one beer held at one {@link StockLocation}. The quantities of a beer's rows add up to
+ * {@link Beer#getQuantity()}.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"beer_id", "location"}))
+public class BeerStock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "beer_id", nullable = false)
+    private Long beerId;
+
+    @Column(nullable = false)
+    private String location;
+
+    @Column(nullable = false)
+    private int quantity;
+}
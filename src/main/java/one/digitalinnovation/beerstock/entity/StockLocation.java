@@ -0,0 +1,33 @@
+package one.digitalinnovation.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+/**
+ * A warehouse or bar holding stock. {@code quantity} is the number of units of all beers held
+ * there, kept up to date by every stock change instead of being summed from the stock on read.
+ * In the database the total is spread over the location row and its {@link StockLocationStripe}
+ * rows.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLocation {
+
+    /**
+     * Location of the stock created with a beer and of every stock change that names no location.
+     */
+    public static final String DEFAULT = "default";
+
+    @Id
+    private String name;
+
+    @Column(nullable = false)
+    private long quantity;
+}
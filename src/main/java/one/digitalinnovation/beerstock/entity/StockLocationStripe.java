@@ -0,0 +1,49 @@
+package one.digitalinnovation.beerstock.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+/**
+ * One of the {@link #STRIPES} rows the total of a {@link StockLocation} is spread over. A stock
+ * change adds to the stripe of its beer rather than to the location row, so changes of different
+ * beers at one location do not queue on a single row. The total of a location is its own
+ * quantity plus that of its stripes.
+ */
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"location", "stripe"}))
+public class StockLocationStripe {
+
+    public static final int STRIPES = 16;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String location;
+
+    @Column(nullable = false)
+    private int stripe;
+
+    @Column(nullable = false)
+    private long quantity;
+
+    /**
+     * Returns the stripe that stock changes of the given beer add to.
+     */
+    public static int of(long beerId) {
+        return Math.floorMod(beerId, STRIPES);
+    }
+}
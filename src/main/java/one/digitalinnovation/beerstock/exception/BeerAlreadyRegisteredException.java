@@ -4,9 +4,17 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.BAD_REQUEST)
-public class BeerAlreadyRegisteredException extends Exception{
+public class BeerAlreadyRegisteredException extends BeerStockException {
+
+    private static final String TITLE = "Beer already registered";
+    private static final MessageTemplate MESSAGE_TEMPLATE = MessageTemplate.of("Beer with name %s already registered in the system.");
 
     public BeerAlreadyRegisteredException(String beerName) {
-        super(String.format("Beer with name %s already registered in the system.", beerName));
+        super(MESSAGE_TEMPLATE, beerName);
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE;
     }
 }
@@ -4,13 +4,22 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.NOT_FOUND)
-public class BeerNotFoundException extends Exception {
+public class BeerNotFoundException extends BeerStockException {
+
+    private static final String TITLE = "Beer not found";
+    private static final MessageTemplate NAME_MESSAGE_TEMPLATE = MessageTemplate.of("Beer with name %s not found in the system.");
+    private static final MessageTemplate ID_MESSAGE_TEMPLATE = MessageTemplate.of("Beer with id %s not found in the system.");
 
     public BeerNotFoundException(String beerName) {
-        super(String.format("Beer with name %s not found in the system.", beerName));
+        super(NAME_MESSAGE_TEMPLATE, beerName);
     }
 
     public BeerNotFoundException(Long id) {
-        super(String.format("Beer with id %s not found in the system.", id));
+        super(ID_MESSAGE_TEMPLATE, id);
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE;
     }
 }
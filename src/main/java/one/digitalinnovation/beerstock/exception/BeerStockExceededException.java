@@ -4,9 +4,22 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
 @ResponseStatus(HttpStatus.BAD_REQUEST)
-public class BeerStockExceededException extends Exception {
+public class BeerStockExceededException extends BeerStockException {
+
+    private static final String TITLE = "Beer stock exceeded";
+    private static final MessageTemplate MESSAGE_TEMPLATE = MessageTemplate.of("%s Beers informed with ID %s to increment, exceeds the max stock capacity: %s. Current Amount: %s");
+    private static final MessageTemplate LOCATION_MESSAGE_TEMPLATE = MessageTemplate.of("%s Beers informed with ID %s to take from location %s, exceeds the stock held there. Current Amount: %s");
 
     public BeerStockExceededException(Long id, int quantityToIncrement, int maxQuantity, int currentQuantity) {
-        super(String.format("%s Beers informed with ID %s to increment, exceeds the max stock capacity: %s. Current Amount: %s", quantityToIncrement, id, maxQuantity, currentQuantity));
+        super(MESSAGE_TEMPLATE, quantityToIncrement, id, maxQuantity, currentQuantity);
+    }
+
+    public BeerStockExceededException(Long id, String location, int quantityToTake, int locationQuantity) {
+        super(LOCATION_MESSAGE_TEMPLATE, quantityToTake, id, location, locationQuantity);
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE;
     }
 }
@@ -0,0 +1,32 @@
+package one.digitalinnovation.beerstock.exception;
+
+/**
+ * Base class for the expected business outcomes of the stock API (not found, already registered,
+ * stock exceeded). These are rejections, not bugs, so no stack trace is captured and the message
+ * is only rendered from its precompiled {@link MessageTemplate} when somebody actually reads it.
+ */
+public abstract class BeerStockException extends Exception {
+
+    private final MessageTemplate messageTemplate;
+    private final Object[] messageArgs;
+
+    BeerStockException(MessageTemplate messageTemplate, Object... messageArgs) {
+        super(null, null, false, false);
+        if (messageArgs.length != messageTemplate.argumentCount()) {
+            throw new IllegalArgumentException("Message template expects " + messageTemplate.argumentCount()
+                    + " arguments, got " + messageArgs.length);
+        }
+        this.messageTemplate = messageTemplate;
+        this.messageArgs = messageArgs;
+    }
+
+    public abstract String getTitle();
+
+    @Override
+    public String getMessage() {
+        if (messageTemplate == null) {
+            return null;
+        }
+        return messageTemplate.render(messageArgs);
+    }
+}
@@ -0,0 +1,30 @@
+package one.digitalinnovation.beerstock.exception;
+
+import one.digitalinnovation.beerstock.dto.ProblemDTO;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Answers business rejections directly with a small problem body instead of going through
+ * {@code sendError} and the container's error page forward.
+ */
+@RestControllerAdvice
+public class BeerStockExceptionHandler {
+
+    @ExceptionHandler({BeerNotFoundException.class, ReservationNotFoundException.class, StockLocationNotFoundException.class})
+    public ResponseEntity<ProblemDTO> handleNotFound(BeerStockException exception) {
+        return problem(HttpStatus.NOT_FOUND, exception);
+    }
+
+    @ExceptionHandler({BeerAlreadyRegisteredException.class, BeerStockExceededException.class, StockLocationAlreadyRegisteredException.class})
+    public ResponseEntity<ProblemDTO> handleBadRequest(BeerStockException exception) {
+        return problem(HttpStatus.BAD_REQUEST, exception);
+    }
+
+    private ResponseEntity<ProblemDTO> problem(HttpStatus status, BeerStockException exception) {
+        ProblemDTO problemDTO = new ProblemDTO(status.value(), exception.getTitle(), exception.getMessage());
+        return ResponseEntity.status(status).body(problemDTO);
+    }
+}
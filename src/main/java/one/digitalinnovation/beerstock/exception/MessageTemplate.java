@@ -0,0 +1,63 @@
+package one.digitalinnovation.beerstock.exception;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message with {@code %s} placeholders, split into its literal parts once, when the exception
+ * class is loaded. Rendering only concatenates the parts and the arguments into one builder
+ * sized up front, so building a problem detail never goes through {@link String#format}.
+ */
+final class MessageTemplate {
+
+    private static final String PLACEHOLDER = "%s";
+    // Room reserved per argument; ids, quantities and names usually fit.
+    private static final int ARGUMENT_CAPACITY = 16;
+
+    private final String[] parts;
+    private final int capacity;
+
+    private MessageTemplate(String[] parts) {
+        this.parts = parts;
+        int literalLength = 0;
+        for (String part : parts) {
+            literalLength += part.length();
+        }
+        this.capacity = literalLength + (parts.length - 1) * ARGUMENT_CAPACITY;
+    }
+
+    static MessageTemplate of(String template) {
+        List<String> parts = new ArrayList<>();
+        int from = 0;
+        for (int placeholder = template.indexOf(PLACEHOLDER); placeholder >= 0; placeholder = template.indexOf(PLACEHOLDER, from)) {
+            parts.add(template.substring(from, placeholder));
+            from = placeholder + PLACEHOLDER.length();
+        }
+        parts.add(template.substring(from));
+        return new MessageTemplate(parts.toArray(new String[0]));
+    }
+
+    int argumentCount() {
+        return parts.length - 1;
+    }
+
+    String render(Object[] arguments) {
+        StringBuilder message = new StringBuilder(capacity);
+        message.append(parts[0]);
+        for (int i = 1; i < parts.length; i++) {
+            append(message, arguments[i - 1]);
+            message.append(parts[i]);
+        }
+        return message.toString();
+    }
+
+    private static void append(StringBuilder message, Object argument) {
+        if (argument instanceof Integer) {
+            message.append(((Integer) argument).intValue());
+        } else if (argument instanceof Long) {
+            message.append(((Long) argument).longValue());
+        } else {
+            message.append(argument);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package one.digitalinnovation.beerstock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class ReservationNotFoundException extends BeerStockException {
+
+    private static final String TITLE = "Reservation not found";
+    private static final MessageTemplate MESSAGE_TEMPLATE = MessageTemplate.of("Reservation with id %s not found, already closed or expired.");
+
+    public ReservationNotFoundException(Long reservationId) {
+        super(MESSAGE_TEMPLATE, reservationId);
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE;
+    }
+}
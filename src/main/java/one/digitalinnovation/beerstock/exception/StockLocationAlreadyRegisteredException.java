@@ -0,0 +1,20 @@
+package one.digitalinnovation.beerstock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class StockLocationAlreadyRegisteredException extends BeerStockException {
+
+    private static final String TITLE = "Stock location already registered";
+    private static final MessageTemplate MESSAGE_TEMPLATE = MessageTemplate.of("Stock location %s already registered in the system.");
+
+    public StockLocationAlreadyRegisteredException(String name) {
+        super(MESSAGE_TEMPLATE, name);
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE;
+    }
+}
@@ -0,0 +1,20 @@
+package one.digitalinnovation.beerstock.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class StockLocationNotFoundException extends BeerStockException {
+
+    private static final String TITLE = "Stock location not found";
+    private static final MessageTemplate MESSAGE_TEMPLATE = MessageTemplate.of("Stock location %s not found in the system.");
+
+    public StockLocationNotFoundException(String name) {
+        super(MESSAGE_TEMPLATE, name);
+    }
+
+    @Override
+    public String getTitle() {
+        return TITLE;
+    }
+}
@@ -0,0 +1,86 @@
+package one.digitalinnovation.beerstock.feed;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Value;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.enums.BeerType;
+
+/**
+ * A committed change to a beer, published by the services after every successful mutation.
+ * {@code delta} is the change of the beer's quantity, except for transfers where it is the
+ * number of units moved between locations.
+ *
+ * <p>Events of concurrent changes may be delivered in any order. {@code version} grows with
+ * every change of the same beer, so listeners that keep the latest state of a beer ignore
+ * events older than the last one they applied. The creation of a beer carries
+ * {@link #INITIAL_VERSION}, since nothing can change a beer before it exists.
+ */
+@Value
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BeerChangeEvent {
+
+    @Getter
+    @AllArgsConstructor
+    public enum Kind {
+
+        CREATED("created"),
+        UPDATED("updated"),
+        QUANTITY_CHANGED("quantity-changed"),
+        STOCK_TRANSFERRED("stock-transferred"),
+        DELETED("deleted");
+
+        private final String eventName;
+    }
+
+    public static final long INITIAL_VERSION = 0;
+
+    Kind kind;
+    Long beerId;
+    String name;
+    BeerType type;
+    int max;
+    int quantity;
+    int delta;
+    // Where the stock changed, or where it was moved to; absent when the change is not tied to one location.
+    String location;
+    // Where a transfer took the stock from.
+    String fromLocation;
+    long version;
+
+    public static BeerChangeEvent created(Beer beer) {
+        return created(beer, INITIAL_VERSION);
+    }
+
+    public static BeerChangeEvent created(Beer beer, long version) {
+        return of(Kind.CREATED, beer, beer.getQuantity(), StockLocation.DEFAULT, null, version);
+    }
+
+    public static BeerChangeEvent updated(Beer beer, int previousQuantity, long version) {
+        return of(Kind.UPDATED, beer, beer.getQuantity() - previousQuantity, null, null, version);
+    }
+
+    public static BeerChangeEvent quantityChanged(Beer beer, int delta, long version) {
+        return quantityChanged(beer, StockLocation.DEFAULT, delta, version);
+    }
+
+    public static BeerChangeEvent quantityChanged(Beer beer, String location, int delta, long version) {
+        return of(Kind.QUANTITY_CHANGED, beer, delta, location, null, version);
+    }
+
+    public static BeerChangeEvent stockTransferred(Beer beer, String fromLocation, String toLocation, int quantity, long version) {
+        return of(Kind.STOCK_TRANSFERRED, beer, quantity, toLocation, fromLocation, version);
+    }
+
+    public static BeerChangeEvent deleted(Beer beer, long version) {
+        return new BeerChangeEvent(Kind.DELETED, beer.getId(), beer.getName(), beer.getType(), beer.getMax(), 0, -beer.getQuantity(),
+                null, null, version);
+    }
+
+    private static BeerChangeEvent of(Kind kind, Beer beer, int delta, String location, String fromLocation, long version) {
+        return new BeerChangeEvent(kind, beer.getId(), beer.getName(), beer.getType(), beer.getMax(), beer.getQuantity(), delta,
+                location, fromLocation, version);
+    }
+}
@@ -0,0 +1,379 @@
+package one.digitalinnovation.beerstock.feed;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fans {@link BeerChangeEvent}s out to server-sent event subscribers.
+ *
+ * <p>Publishing only claims a sequence number and stores the event in a bounded ring buffer,
+ * so writers never wait for subscribers. A dispatcher thread wakes up on every publish and hands
+ * subscribers that are behind to a small pool of sender threads; each subscriber has at most one
+ * drain in flight and reads the ring from its own cursor. A subscriber that falls more than a
+ * ring's worth of events behind is skipped to the head and sent a {@code resync} event, after
+ * which it is expected to reload the beer list. Events are serialized once, on first send.
+ *
+ * <p>Sends block, so a slow client would keep a sender thread from every other subscriber. A drain
+ * that runs past the send timeout therefore drops its subscriber: the sender checks the deadline
+ * after every send, and the dispatcher closes subscribers whose send is stuck and interrupts their
+ * sender. A dropped client reconnects with its {@code Last-Event-ID} and resumes or is resynced.
+ */
+@Slf4j
+@Component
+public class BeerChangeFeed {
+
+    static final String RESYNC_EVENT = "resync";
+
+    private static final int DRAIN_BATCH = 256;
+
+    private final AtomicReferenceArray<FeedEntry> ring;
+    private final int mask;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong lastSubscriberId = new AtomicLong();
+    private final ObjectMapper objectMapper;
+    private final Executor senders;
+    private final long heartbeatNanos;
+    private final Duration emitterTimeout;
+    private final long sendTimeoutNanos;
+    private final Counter publishedEvents;
+    private final Counter resyncs;
+    private final Counter slowSubscribers;
+    private volatile Thread dispatcher;
+
+    @Autowired
+    public BeerChangeFeed(ObjectMapper objectMapper,
+                          MeterRegistry meterRegistry,
+                          @Value("${beerstock.feed.buffer-size:4096}") int bufferSize,
+                          @Value("${beerstock.feed.sender-threads:4}") int senderThreads,
+                          @Value("${beerstock.feed.heartbeat-seconds:15}") long heartbeatSeconds,
+                          @Value("${beerstock.feed.emitter-timeout-minutes:30}") long emitterTimeoutMinutes,
+                          @Value("${beerstock.feed.send-timeout-millis:5000}") long sendTimeoutMillis) {
+        this(objectMapper, meterRegistry, bufferSize, newSenderPool(senderThreads),
+                Duration.ofSeconds(heartbeatSeconds), Duration.ofMinutes(emitterTimeoutMinutes), Duration.ofMillis(sendTimeoutMillis));
+    }
+
+    BeerChangeFeed(ObjectMapper objectMapper, MeterRegistry meterRegistry, int bufferSize, Executor senders,
+                   Duration heartbeat, Duration emitterTimeout, Duration sendTimeout) {
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Feed buffer size must be a power of two: " + bufferSize);
+        }
+        this.ring = new AtomicReferenceArray<>(bufferSize);
+        this.mask = bufferSize - 1;
+        this.objectMapper = objectMapper;
+        this.senders = senders;
+        this.heartbeatNanos = heartbeat.toNanos();
+        this.emitterTimeout = emitterTimeout;
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        this.publishedEvents = meterRegistry.counter("beerstock.feed.events");
+        this.resyncs = meterRegistry.counter("beerstock.feed.resyncs");
+        this.slowSubscribers = meterRegistry.counter("beerstock.feed.slow-subscribers");
+        Gauge.builder("beerstock.feed.subscribers", subscribers, Set::size).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        Thread thread = new Thread(this::runDispatcher, "beer-change-dispatcher");
+        thread.setDaemon(true);
+        dispatcher = thread;
+        thread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread = dispatcher;
+        dispatcher = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+        for (Subscriber subscriber : subscribers) {
+            try {
+                subscriber.sink.close(null);
+            } catch (RuntimeException alreadyClosed) {
+                // the web server may have recycled the response before this bean is destroyed
+                log.debug("Beer change subscriber {} was already closed", subscriber.id);
+            }
+        }
+        subscribers.clear();
+        if (senders instanceof ExecutorService) {
+            ((ExecutorService) senders).shutdownNow();
+        }
+    }
+
+    @EventListener
+    public void publish(BeerChangeEvent event) {
+        long sequence = nextSequence.getAndIncrement();
+        ring.set(indexOf(sequence), new FeedEntry(sequence, event));
+        publishedEvents.increment();
+        Thread thread = dispatcher;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Opens a stream of changes to the given beers and types (empty means all). With a
+     * {@code lastEventId} the stream resumes after that event if it is still buffered and
+     * starts with a {@code resync} event otherwise. An id at or past the head was issued before
+     * a restart, when sequences started again from 0, so it is resynced too.
+     */
+    public SseEmitter subscribe(Collection<Long> beerIds, Collection<BeerType> types, Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeout.toMillis());
+        Subscriber subscriber = subscribe(beerIds, types, lastEventId, new SseEventSink(emitter));
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(failure -> unsubscribe(subscriber));
+        return emitter;
+    }
+
+    Subscriber subscribe(Collection<Long> beerIds, Collection<BeerType> types, Long lastEventId, EventSink sink) {
+        long head = nextSequence.get();
+        // -1 is the id of a resync sent before the first event: the stream resumes at sequence 0.
+        boolean unknownId = lastEventId != null && (lastEventId < -1 || lastEventId >= head);
+        long cursor = lastEventId == null || unknownId ? head : lastEventId + 1;
+        Subscriber subscriber = new Subscriber(lastSubscriberId.incrementAndGet(), beerIds, types, sink, cursor, System.nanoTime());
+        subscriber.resyncPending = unknownId;
+        subscribers.add(subscriber);
+        schedule(subscriber);
+        return subscriber;
+    }
+
+    void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Drops every subscriber whose send is stuck past the send timeout, and hands every other
+     * subscriber that is behind the head, or due a heartbeat, to a sender thread.
+     */
+    void dispatch() {
+        long head = nextSequence.get();
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.isSendingSince(now - sendTimeoutNanos)) {
+                slowSubscribers.increment();
+                drop(subscriber, new TimeoutException("Beer change subscriber " + subscriber.id + " is too slow"));
+                subscriber.interruptSender();
+            } else if (subscriber.cursor < head || now - subscriber.lastWriteNanos >= heartbeatNanos) {
+                schedule(subscriber);
+            }
+        }
+    }
+
+    private void runDispatcher() {
+        while (dispatcher == Thread.currentThread()) {
+            LockSupport.parkNanos(this, Math.min(heartbeatNanos, sendTimeoutNanos));
+            try {
+                dispatch();
+            } catch (RuntimeException dispatchFailure) {
+                log.warn("Beer change dispatch failed", dispatchFailure);
+            }
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (!subscriber.draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            senders.execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException shuttingDown) {
+            subscriber.draining.set(false);
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        boolean open = true;
+        long deadline = subscriber.startSending() + sendTimeoutNanos;
+        try {
+            int written = 0;
+            if (subscriber.resyncPending) {
+                subscriber.resyncPending = false;
+                resync(subscriber);
+                written++;
+            }
+            for (int i = 0; i < DRAIN_BATCH && !subscriber.closed.get(); i++) {
+                long cursor = subscriber.cursor;
+                FeedEntry entry = ring.get(indexOf(cursor));
+                if (entry == null || entry.sequence < cursor) {
+                    break;
+                }
+                if (entry.sequence > cursor) {
+                    resync(subscriber);
+                    written++;
+                    continue;
+                }
+                subscriber.cursor = cursor + 1;
+                if (subscriber.matches(entry.event)) {
+                    subscriber.sink.send(cursor, entry.event.getKind().getEventName(), entry.json(objectMapper));
+                    written++;
+                    if (System.nanoTime() - deadline > 0) {
+                        slowSubscribers.increment();
+                        throw new TimeoutException("Beer change subscriber " + subscriber.id + " is too slow");
+                    }
+                }
+            }
+            long now = System.nanoTime();
+            if (written > 0) {
+                subscriber.lastWriteNanos = now;
+            } else if (now - subscriber.lastWriteNanos >= heartbeatNanos) {
+                subscriber.sink.heartbeat();
+                subscriber.lastWriteNanos = now;
+            }
+        } catch (IOException | TimeoutException | RuntimeException sendFailure) {
+            open = false;
+            drop(subscriber, sendFailure);
+        } finally {
+            subscriber.stopSending();
+            subscriber.draining.set(false);
+        }
+        if (open && !subscriber.closed.get() && subscriber.cursor < nextSequence.get()) {
+            schedule(subscriber);
+        }
+    }
+
+    private void drop(Subscriber subscriber, Exception failure) {
+        unsubscribe(subscriber);
+        if (subscriber.closed.compareAndSet(false, true)) {
+            log.debug("Dropping beer change subscriber {}: {}", subscriber.id, failure.toString());
+            subscriber.sink.close(failure);
+        }
+    }
+
+    /**
+     * Skips the subscriber to the head and tells it to reload the beer list.
+     */
+    private void resync(Subscriber subscriber) throws IOException {
+        long head = nextSequence.get();
+        subscriber.cursor = head;
+        resyncs.increment();
+        subscriber.sink.send(head - 1, RESYNC_EVENT, "{\"sequence\":" + (head - 1) + "}");
+    }
+
+    private int indexOf(long sequence) {
+        return (int) (sequence & mask);
+    }
+
+    private static ExecutorService newSenderPool(int senderThreads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "beer-change-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static final class FeedEntry {
+
+        private final long sequence;
+        private final BeerChangeEvent event;
+        private volatile String json;
+
+        private FeedEntry(long sequence, BeerChangeEvent event) {
+            this.sequence = sequence;
+            this.event = event;
+        }
+
+        private String json(ObjectMapper objectMapper) {
+            String serialized = json;
+            if (serialized == null) {
+                try {
+                    serialized = objectMapper.writeValueAsString(event);
+                } catch (JsonProcessingException serializationFailure) {
+                    throw new UncheckedIOException(serializationFailure);
+                }
+                json = serialized;
+            }
+            return serialized;
+        }
+    }
+
+    static final class Subscriber {
+
+        private final long id;
+        private final Set<Long> beerIds;
+        private final Set<BeerType> types;
+        private final EventSink sink;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // Guarded by this subscriber, so a sender is only interrupted while it drains this subscriber.
+        private Thread sender;
+        private long sendingSinceNanos;
+        private volatile long cursor;
+        private volatile boolean resyncPending;
+        private volatile long lastWriteNanos;
+
+        private Subscriber(long id, Collection<Long> beerIds, Collection<BeerType> types, EventSink sink, long cursor, long lastWriteNanos) {
+            this.id = id;
+            this.beerIds = beerIds == null ? Collections.emptySet() : new HashSet<>(beerIds);
+            this.types = types == null ? Collections.emptySet() : new HashSet<>(types);
+            this.sink = sink;
+            this.cursor = cursor;
+            this.lastWriteNanos = lastWriteNanos;
+        }
+
+        private synchronized long startSending() {
+            sender = Thread.currentThread();
+            sendingSinceNanos = System.nanoTime();
+            return sendingSinceNanos;
+        }
+
+        private void stopSending() {
+            synchronized (this) {
+                sender = null;
+            }
+            // an interrupt meant for this drain must not reach the next task of the sender thread
+            Thread.interrupted();
+        }
+
+        private synchronized boolean isSendingSince(long nanos) {
+            return sender != null && sendingSinceNanos - nanos < 0;
+        }
+
+        private synchronized void interruptSender() {
+            if (sender != null) {
+                sender.interrupt();
+            }
+        }
+
+        private boolean matches(BeerChangeEvent event) {
+            return (beerIds.isEmpty() || beerIds.contains(event.getBeerId()))
+                    && (types.isEmpty() || types.contains(event.getType()));
+        }
+    }
+}
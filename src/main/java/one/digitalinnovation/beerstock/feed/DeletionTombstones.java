@@ -0,0 +1,94 @@
+package one.digitalinnovation.beerstock.feed;
+
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Versions of recent beer deletions, for listeners that must ignore a change event delivered
+ * after the deletion of its beer. Such an event was issued before the deletion and is only late
+ * by the time its publisher takes between issuing the version and publishing, so a deletion is
+ * forgotten once it is older than the retention, and the oldest ones are forgotten first when
+ * there are more than {@code maxEntries}. Safe for concurrent use.
+ */
+public class DeletionTombstones {
+
+    public static final Duration DEFAULT_RETENTION = Duration.ofMinutes(10);
+    public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+    private final ConcurrentMap<Long, Tombstone> tombstones = new ConcurrentHashMap<>();
+    // In deletion order, so expired tombstones are found at the head.
+    private final Queue<Tombstone> byAge = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final long retentionNanos;
+    private final int maxEntries;
+    private final LongSupplier nanoClock;
+
+    public DeletionTombstones() {
+        this(DEFAULT_RETENTION, DEFAULT_MAX_ENTRIES, System::nanoTime);
+    }
+
+    public DeletionTombstones(Duration retention, int maxEntries, LongSupplier nanoClock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Deletion tombstones max entries must be positive: " + maxEntries);
+        }
+        this.retentionNanos = retention.toNanos();
+        this.maxEntries = maxEntries;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Tells whether the event was issued before, or is, a deletion of its beer still remembered.
+     */
+    public boolean isDeletedBy(BeerChangeEvent event) {
+        Tombstone tombstone = tombstones.get(event.getBeerId());
+        return tombstone != null && event.getVersion() <= tombstone.version;
+    }
+
+    public void recordDeletion(long beerId, long version) {
+        long now = nanoClock.getAsLong();
+        Tombstone tombstone = new Tombstone(beerId, version, now);
+        tombstones.put(beerId, tombstone);
+        byAge.add(tombstone);
+        queued.incrementAndGet();
+        prune(now);
+    }
+
+    public int size() {
+        return tombstones.size();
+    }
+
+    public void clear() {
+        tombstones.clear();
+        byAge.clear();
+        queued.set(0);
+    }
+
+    private void prune(long now) {
+        Tombstone oldest;
+        while ((oldest = byAge.peek()) != null
+                && (now - oldest.deletedAtNanos > retentionNanos || queued.get() > maxEntries)) {
+            if (byAge.remove(oldest)) {
+                queued.decrementAndGet();
+                tombstones.remove(oldest.beerId, oldest);
+            }
+        }
+    }
+
+    private static final class Tombstone {
+
+        private final long beerId;
+        private final long version;
+        private final long deletedAtNanos;
+
+        private Tombstone(long beerId, long version, long deletedAtNanos) {
+            this.beerId = beerId;
+            this.version = version;
+            this.deletedAtNanos = deletedAtNanos;
+        }
+    }
+}
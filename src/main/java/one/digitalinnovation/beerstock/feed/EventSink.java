@@ -0,0 +1,15 @@
+package one.digitalinnovation.beerstock.feed;
+
+import java.io.IOException;
+
+/**
+ * Where a subscriber's events are written to; {@link SseEventSink} in production.
+ */
+interface EventSink {
+
+    void send(long sequence, String eventName, String json) throws IOException;
+
+    void heartbeat() throws IOException;
+
+    void close(Throwable failure);
+}
@@ -0,0 +1,37 @@
+package one.digitalinnovation.beerstock.feed;
+
+import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+@AllArgsConstructor
+class SseEventSink implements EventSink {
+
+    private static final String HEARTBEAT = "heartbeat";
+
+    private final SseEmitter emitter;
+
+    @Override
+    public void send(long sequence, String eventName, String json) throws IOException {
+        emitter.send(SseEmitter.event()
+                .id(Long.toString(sequence))
+                .name(eventName)
+                .data(json, MediaType.APPLICATION_JSON));
+    }
+
+    @Override
+    public void heartbeat() throws IOException {
+        emitter.send(SseEmitter.event().comment(HEARTBEAT));
+    }
+
+    @Override
+    public void close(Throwable failure) {
+        if (failure == null) {
+            emitter.complete();
+        } else {
+            emitter.completeWithError(failure);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package one.digitalinnovation.beerstock.forecast;
+
+/**
+ * Streaming consumption estimate of one beer. Consumed units go into an exponentially decayed
+ * sum {@code S} with time constant {@code tau}; {@code S / tau} is then the recent consumption
+ * rate, weighting a unit consumed {@code tau} ago {@code 1/e} as much as one consumed now.
+ * Until the beer has been tracked for a few {@code tau}, the sum has not filled up yet and the
+ * rate is divided by {@code 1 - e^(-age/tau)} to correct for that. Every update is O(1).
+ */
+class BeerConsumption {
+
+    // Keeps a sale right after tracking starts from projecting an absurd rate.
+    private static final long MIN_AGE_MILLIS = 60_000;
+
+    private final long id;
+    private final long trackedSinceMillis;
+    private String name;
+    private int max;
+    private int quantity;
+    private double decayedSum;
+    private long lastUpdateMillis;
+    private long version;
+
+    BeerConsumption(long id, long nowMillis) {
+        this.id = id;
+        this.trackedSinceMillis = nowMillis;
+        this.lastUpdateMillis = nowMillis;
+    }
+
+    /**
+     * Takes the stock of the change with the given version, unless a later change was already
+     * taken.
+     */
+    synchronized void updateStock(String name, int max, int quantity, long version) {
+        if (version < this.version) {
+            return;
+        }
+        this.name = name;
+        this.max = max;
+        this.quantity = quantity;
+        this.version = version;
+    }
+
+    synchronized void consume(int units, long nowMillis, double tauMillis) {
+        if (nowMillis > lastUpdateMillis) {
+            decayedSum *= Math.exp(-(nowMillis - lastUpdateMillis) / tauMillis);
+            lastUpdateMillis = nowMillis;
+        }
+        decayedSum += units;
+    }
+
+    synchronized Snapshot snapshot(long nowMillis, double tauMillis) {
+        double decayed = decayedSum * Math.exp(-Math.max(0, nowMillis - lastUpdateMillis) / tauMillis);
+        long age = Math.max(MIN_AGE_MILLIS, nowMillis - trackedSinceMillis);
+        double ratePerMilli = decayed / (tauMillis * (1 - Math.exp(-age / tauMillis)));
+        return new Snapshot(id, name, max, quantity, ratePerMilli);
+    }
+
+    static final class Snapshot {
+
+        final long id;
+        final String name;
+        final int max;
+        final int quantity;
+        final double ratePerMilli;
+
+        private Snapshot(long id, String name, int max, int quantity, double ratePerMilli) {
+            this.id = id;
+            this.name = name;
+            this.max = max;
+            this.quantity = quantity;
+            this.ratePerMilli = ratePerMilli;
+        }
+    }
+}
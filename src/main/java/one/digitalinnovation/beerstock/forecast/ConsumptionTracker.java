@@ -0,0 +1,144 @@
+package one.digitalinnovation.beerstock.forecast;
+
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.dto.BeerForecastDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.feed.BeerChangeEvent;
+import one.digitalinnovation.beerstock.feed.DeletionTombstones;
+import one.digitalinnovation.beerstock.storage.BeerStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks how fast each beer is consumed and forecasts when it runs out. Every stock decrease
+ * published as a {@link BeerChangeEvent} (decrements and committed reservations) updates the
+ * beer's {@link BeerConsumption} in O(1), and the latest quantity travels with the event, so a
+ * forecast of the whole catalog reads only this in-memory state. Events may arrive out of order:
+ * consumed units are counted whatever the order, but the stock of an event older than the last
+ * one taken is ignored, and so is any event older than the beer's recent deletion (see
+ * {@link DeletionTombstones}).
+ *
+ * <p>A beer whose projected stockout falls within the reorder lead time gets a suggested
+ * reorder quantity that fills it back up to {@code max}. Estimates start over on restart.
+ */
+@Slf4j
+@Component
+public class ConsumptionTracker {
+
+    private static final double MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final double MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final ConcurrentMap<Long, BeerConsumption> consumptions = new ConcurrentHashMap<>();
+    // Recent deletions; only recorded inside compute on consumptions.
+    private final DeletionTombstones deletions = new DeletionTombstones();
+    private final BeerStore beerStore;
+    private final Clock clock;
+    private final double tauMillis;
+    private final long leadTimeMillis;
+
+    @Autowired
+    public ConsumptionTracker(BeerStore beerStore,
+                              @Value("${beerstock.forecast.half-life-hours:24}") long halfLifeHours,
+                              @Value("${beerstock.forecast.reorder-lead-time-hours:48}") long leadTimeHours) {
+        this(beerStore, Clock.systemUTC(), Duration.ofHours(halfLifeHours), Duration.ofHours(leadTimeHours));
+    }
+
+    ConsumptionTracker(BeerStore beerStore, Clock clock, Duration halfLife, Duration leadTime) {
+        if (halfLife.isZero() || halfLife.isNegative()) {
+            throw new IllegalArgumentException("Consumption half-life must be positive: " + halfLife);
+        }
+        this.beerStore = beerStore;
+        this.clock = clock;
+        this.tauMillis = halfLife.toMillis() / Math.log(2);
+        this.leadTimeMillis = leadTime.toMillis();
+    }
+
+    @PostConstruct
+    public void load() {
+        long now = clock.millis();
+        for (Beer beer : beerStore.findAll()) {
+            consumptionOf(beer.getId(), now).updateStock(beer.getName(), beer.getMax(), beer.getQuantity(), BeerChangeEvent.INITIAL_VERSION);
+        }
+        log.info("Tracking consumption of {} beers", consumptions.size());
+    }
+
+    @EventListener
+    public void onBeerChange(BeerChangeEvent event) {
+        long now = clock.millis();
+        // Runs under the beer's entry, so a deletion and a late event of the same beer cannot interleave.
+        consumptions.compute(event.getBeerId(), (id, consumption) -> {
+            if (deletions.isDeletedBy(event)) {
+                return consumption;
+            }
+            if (event.getKind() == BeerChangeEvent.Kind.DELETED) {
+                deletions.recordDeletion(id, event.getVersion());
+                return null;
+            }
+            BeerConsumption tracked = consumption != null ? consumption : new BeerConsumption(id, now);
+            tracked.updateStock(event.getName(), event.getMax(), event.getQuantity(), event.getVersion());
+            if (event.getKind() == BeerChangeEvent.Kind.QUANTITY_CHANGED && event.getDelta() < 0) {
+                tracked.consume(-event.getDelta(), now, tauMillis);
+            }
+            return tracked;
+        });
+    }
+
+    public BeerForecastDTO forecast(Long id) throws BeerNotFoundException {
+        BeerConsumption consumption = consumptions.get(id);
+        if (consumption == null) {
+            throw new BeerNotFoundException(id);
+        }
+        long now = clock.millis();
+        return toForecast(consumption.snapshot(now, tauMillis), now);
+    }
+
+    /**
+     * Forecasts every tracked beer, the ones running out soonest first.
+     */
+    public List<BeerForecastDTO> forecastAll() {
+        long now = clock.millis();
+        return consumptions.values().stream()
+                .map(consumption -> toForecast(consumption.snapshot(now, tauMillis), now))
+                .sorted(Comparator.comparing(BeerForecastDTO::getHoursToStockout, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(BeerForecastDTO::getId))
+                .collect(Collectors.toList());
+    }
+
+    private BeerConsumption consumptionOf(Long id, long now) {
+        return consumptions.computeIfAbsent(id, beerId -> new BeerConsumption(beerId, now));
+    }
+
+    private BeerForecastDTO toForecast(BeerConsumption.Snapshot snapshot, long now) {
+        Double millisToStockout = null;
+        if (snapshot.quantity <= 0) {
+            millisToStockout = 0.0;
+        } else if (snapshot.ratePerMilli > 0) {
+            millisToStockout = snapshot.quantity / snapshot.ratePerMilli;
+        }
+        boolean reorder = millisToStockout != null && millisToStockout <= leadTimeMillis;
+        return BeerForecastDTO.builder()
+                .id(snapshot.id)
+                .name(snapshot.name)
+                .quantity(snapshot.quantity)
+                .max(snapshot.max)
+                .consumptionPerDay(snapshot.ratePerMilli * MILLIS_PER_DAY)
+                .hoursToStockout(millisToStockout == null ? null : millisToStockout / MILLIS_PER_HOUR)
+                .stockoutAt(millisToStockout == null ? null : Instant.ofEpochMilli(now + millisToStockout.longValue()))
+                .suggestedReorderQuantity(reorder ? Math.max(0, snapshot.max - snapshot.quantity) : 0)
+                .build();
+    }
+}
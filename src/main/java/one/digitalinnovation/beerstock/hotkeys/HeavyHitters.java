@@ -0,0 +1,278 @@
+package one.digitalinnovation.beerstock.hotkeys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Finds the most frequent beer ids in an unbounded stream within fixed memory. A Count-Min
+ * sketch of {@code depth} rows of {@code width} counters estimates how often each id was seen,
+ * never below the true count and above it only by collisions. The ids worth reporting are kept
+ * in a small open-addressed candidate table, where an id replaces the weakest candidate among
+ * its probe slots once its estimate overtakes it.
+ *
+ * <p>The sketch is striped: every stripe is a full copy of the counters, a thread only
+ * increments the copy of its stripe, and an estimate sums the copies row by row, so concurrent
+ * writers do not bounce the same cache lines between cores. {@link #record} is lock-free and
+ * allocation-free: {@code depth} atomic increments on its own stripe, plus a full estimate and a
+ * few probe reads once the stripe's own count suggests the id may reach the admission floor.
+ * {@link #decay} halves every counter, so old traffic fades with a half-life of one decay
+ * interval.
+ *
+ * <p>The admission floor is the estimate of the k-th hottest candidate. Besides every decay and
+ * report, it is refreshed from the candidate table after every {@code candidates.length()}
+ * admission attempts of a stripe, so it rises as soon as the table fills up. While the table
+ * holds fewer than top-k candidates the floor is 0 and any id may be admitted; an id then only
+ * attempts admission when its stripe count reaches a power of two, so a cold sketch, or one
+ * that only ever sees a few ids, does not estimate on every event.
+ */
+public class HeavyHitters {
+
+    private static final int PROBES = 8;
+    private static final int MAX_STRIPES = 16;
+    // Beer ids start at 1, so 0 marks a free candidate slot.
+    private static final long EMPTY = 0;
+    // Spaces the per-stripe attempt counters a cache line apart.
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray counters;
+    private final int width;
+    private final int depth;
+    private final int stripes;
+    private final long[] seeds;
+    private final AtomicLongArray candidates;
+    private final int topK;
+    private final AtomicLongArray admissionAttempts;
+    private final AtomicBoolean refreshingFloor = new AtomicBoolean();
+    // Estimates of the candidates, reused by every floor refresh; only touched by the refreshing thread.
+    private final long[] candidateEstimates;
+    // Estimate of the k-th hottest id at the last refresh; colder ids skip the candidate table.
+    private volatile long admissionFloor;
+
+    public HeavyHitters(int width, int depth, int topK) {
+        this(width, depth, topK, Math.min(MAX_STRIPES, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1)));
+    }
+
+    HeavyHitters(int width, int depth, int topK, int stripes) {
+        if (width <= 0 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Sketch width must be a power of two: " + width);
+        }
+        if (depth <= 0 || topK <= 0) {
+            throw new IllegalArgumentException("Sketch depth and top-k must be positive: " + depth + ", " + topK);
+        }
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Sketch stripes must be a power of two: " + stripes);
+        }
+        this.counters = new AtomicLongArray(width * depth * stripes);
+        this.width = width;
+        this.depth = depth;
+        this.stripes = stripes;
+        this.seeds = new long[depth];
+        for (int row = 0; row < depth; row++) {
+            seeds[row] = mix(0x9E3779B97F4A7C15L * (row + 1));
+        }
+        this.candidates = new AtomicLongArray(Integer.highestOneBit(topK * 4 - 1) << 1);
+        this.topK = topK;
+        this.admissionAttempts = new AtomicLongArray(stripes * PADDING);
+        this.candidateEstimates = new long[candidates.length()];
+    }
+
+    public void record(long id) {
+        if (id == EMPTY) {
+            return;
+        }
+        int stripe = stripeOfCurrentThread();
+        long stripeEstimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            stripeEstimate = Math.min(stripeEstimate, counters.incrementAndGet(counterIndex(stripe, row, id)));
+        }
+        // An id at the floor has about floor / stripes of its events in each stripe the traffic spreads over.
+        long floor = admissionFloor;
+        boolean mayReachFloor = floor > 0
+                ? stripeEstimate * stripes >= floor
+                : (stripeEstimate & (stripeEstimate - 1)) == 0;
+        if (mayReachFloor) {
+            long estimate = estimate(id);
+            if (estimate >= floor) {
+                admit(id, estimate);
+            }
+            if (admissionAttempts.incrementAndGet(stripe * PADDING) % candidates.length() == 0) {
+                refreshFloor();
+            }
+        }
+    }
+
+    public long estimate(long id) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            long rowCount = 0;
+            for (int stripe = 0; stripe < stripes; stripe++) {
+                rowCount += counters.get(counterIndex(stripe, row, id));
+            }
+            estimate = Math.min(estimate, rowCount);
+        }
+        return estimate;
+    }
+
+    /**
+     * The hottest candidates, hottest first. Estimates read while ids are recorded may be off by
+     * the events recorded meanwhile.
+     */
+    public List<HotKey> top() {
+        Set<Long> ids = new HashSet<>();
+        for (int slot = 0; slot < candidates.length(); slot++) {
+            long id = candidates.get(slot);
+            if (id != EMPTY) {
+                ids.add(id);
+            }
+        }
+        List<HotKey> hotKeys = new ArrayList<>(ids.size());
+        for (long id : ids) {
+            long estimate = estimate(id);
+            if (estimate > 0) {
+                hotKeys.add(new HotKey(id, estimate));
+            }
+        }
+        hotKeys.sort(Comparator.comparingLong(HotKey::getEstimate).reversed().thenComparingLong(HotKey::getId));
+        List<HotKey> top = hotKeys.size() > topK ? new ArrayList<>(hotKeys.subList(0, topK)) : hotKeys;
+        admissionFloor = top.size() < topK ? 0 : top.get(topK - 1).getEstimate();
+        return top;
+    }
+
+    /**
+     * Halves every counter and drops candidates that faded to zero. Events recorded while it runs
+     * are kept, halved or not.
+     */
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, count -> count >>> 1);
+        }
+        for (int slot = 0; slot < candidates.length(); slot++) {
+            long id = candidates.get(slot);
+            if (id != EMPTY && estimate(id) == 0) {
+                candidates.compareAndSet(slot, id, EMPTY);
+            }
+        }
+        top();
+    }
+
+    public boolean isHot(long id) {
+        long floor = admissionFloor;
+        return floor > 0 && estimate(id) >= floor;
+    }
+
+    /**
+     * Puts the id in the first free slot of its probe sequence, or in place of the weakest
+     * candidate there if the id is hotter, unless the id already holds one of those slots.
+     * Should racing admissions still leave the id in two slots, the later copies are freed.
+     */
+    private void admit(long id, long estimate) {
+        int start = (int) mix(id) & (candidates.length() - 1);
+        while (true) {
+            int freeSlot = -1;
+            for (int probe = 0; probe < PROBES; probe++) {
+                int slot = (start + probe) & (candidates.length() - 1);
+                long candidate = candidates.get(slot);
+                if (candidate == id) {
+                    return;
+                }
+                if (candidate == EMPTY && freeSlot < 0) {
+                    freeSlot = slot;
+                }
+            }
+            int victimSlot = -1;
+            long victimId = EMPTY;
+            long victimEstimate = Long.MAX_VALUE;
+            for (int probe = 0; freeSlot < 0 && probe < PROBES; probe++) {
+                int slot = (start + probe) & (candidates.length() - 1);
+                long candidate = candidates.get(slot);
+                if (candidate != EMPTY) {
+                    long candidateEstimate = estimate(candidate);
+                    if (candidateEstimate < victimEstimate) {
+                        victimSlot = slot;
+                        victimId = candidate;
+                        victimEstimate = candidateEstimate;
+                    }
+                }
+            }
+            int claimedSlot;
+            if (freeSlot >= 0) {
+                if (!candidates.compareAndSet(freeSlot, EMPTY, id)) {
+                    continue;
+                }
+                claimedSlot = freeSlot;
+            } else if (victimEstimate < estimate && candidates.compareAndSet(victimSlot, victimId, id)) {
+                claimedSlot = victimSlot;
+            } else {
+                return;
+            }
+            for (int probe = 0; probe < PROBES; probe++) {
+                int slot = (start + probe) & (candidates.length() - 1);
+                if (slot != claimedSlot) {
+                    candidates.compareAndSet(slot, id, EMPTY);
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * Sets the floor to the k-th highest candidate estimate, or to 0 while there are fewer than
+     * top-k candidates. Skipped if another thread is already refreshing it.
+     */
+    private void refreshFloor() {
+        if (!refreshingFloor.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int held = 0;
+            for (int slot = 0; slot < candidates.length(); slot++) {
+                long id = candidates.get(slot);
+                if (id != EMPTY) {
+                    candidateEstimates[held++] = estimate(id);
+                }
+            }
+            if (held < topK) {
+                admissionFloor = 0;
+            } else {
+                Arrays.sort(candidateEstimates, 0, held);
+                admissionFloor = candidateEstimates[held - topK];
+            }
+        } finally {
+            refreshingFloor.set(false);
+        }
+    }
+
+    int slotsHeldBy(long id) {
+        int held = 0;
+        for (int slot = 0; slot < candidates.length(); slot++) {
+            if (candidates.get(slot) == id) {
+                held++;
+            }
+        }
+        return held;
+    }
+
+    private int counterIndex(int stripe, int row, long id) {
+        return (stripe * depth + row) * width + ((int) mix(id ^ seeds[row]) & (width - 1));
+    }
+
+    private int stripeOfCurrentThread() {
+        return (int) mix(Thread.currentThread().getId()) & (stripes - 1);
+    }
+
+    // MurmurHash3 finalizer: spreads consecutive ids over the whole row.
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB93FE51A3D53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,11 @@
+package one.digitalinnovation.beerstock.hotkeys;
+
+import lombok.Value;
+
+@Value
+public class HotKey {
+
+    long id;
+
+    long estimate;
+}
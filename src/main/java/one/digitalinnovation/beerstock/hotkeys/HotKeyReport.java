@@ -0,0 +1,15 @@
+package one.digitalinnovation.beerstock.hotkeys;
+
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+public class HotKeyReport {
+
+    long decayIntervalSeconds;
+
+    List<HotKey> lookups;
+
+    List<HotKey> stockMovements;
+}
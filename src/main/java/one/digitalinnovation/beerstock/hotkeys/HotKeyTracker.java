@@ -0,0 +1,89 @@
+package one.digitalinnovation.beerstock.hotkeys;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks which beers are hammered by name lookups and by stock movements, each in its own
+ * {@link HeavyHitters} sketch, so they can be pre-warmed or pinned by a cache. Counts are halved
+ * every {@code decay-interval-seconds}. Exposed as the {@code hotkeys} actuator endpoint.
+ */
+@Component
+@Endpoint(id = "hotkeys")
+public class HotKeyTracker {
+
+    private final HeavyHitters lookups;
+    private final HeavyHitters stockMovements;
+    private final Duration decayInterval;
+
+    private ScheduledExecutorService decayer;
+
+    @Autowired
+    public HotKeyTracker(@Value("${beerstock.hotkeys.width:4096}") int width,
+                         @Value("${beerstock.hotkeys.depth:4}") int depth,
+                         @Value("${beerstock.hotkeys.top-k:20}") int topK,
+                         @Value("${beerstock.hotkeys.decay-interval-seconds:60}") long decayIntervalSeconds) {
+        this.lookups = new HeavyHitters(width, depth, topK);
+        this.stockMovements = new HeavyHitters(width, depth, topK);
+        this.decayInterval = Duration.ofSeconds(decayIntervalSeconds);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (decayInterval.isZero() || decayInterval.isNegative()) {
+            return;
+        }
+        decayer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hot-key-decay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        decayer.scheduleWithFixedDelay(this::decay, decayInterval.toMillis(), decayInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (decayer != null) {
+            decayer.shutdownNow();
+        }
+    }
+
+    public void recordLookup(Long id) {
+        if (id != null) {
+            lookups.record(id);
+        }
+    }
+
+    public void recordStockMovement(Long id) {
+        if (id != null) {
+            stockMovements.record(id);
+        }
+    }
+
+    /**
+     * Whether the beer was among the hottest at the last decay or report, by either kind of use.
+     */
+    public boolean isHot(Long id) {
+        return id != null && (lookups.isHot(id) || stockMovements.isHot(id));
+    }
+
+    @ReadOperation
+    public HotKeyReport hotKeys() {
+        return new HotKeyReport(decayInterval.getSeconds(), lookups.top(), stockMovements.top());
+    }
+
+    void decay() {
+        lookups.decay();
+        stockMovements.decay();
+    }
+}
@@ -0,0 +1,230 @@
+package one.digitalinnovation.beerstock.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import one.digitalinnovation.beerstock.dto.ProblemDTO;
+import one.digitalinnovation.beerstock.sql.SqlStatisticsFilter;
+import one.digitalinnovation.beerstock.web.CachedBodyRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Makes mutating API requests that carry an {@code Idempotency-Key} header safe to retry. The
+ * first request with a key runs and its response is kept in the {@link IdempotencyStore}; a
+ * retry with the same key, method, URI and body gets that response back, headers included,
+ * marked with {@code Idempotent-Replayed: true}, without reaching the controller or the
+ * database. Headers set by enclosing filters are left to them.
+ *
+ * <p>Reusing a key for a different request is rejected with 422, and a retry that waits longer
+ * than {@code in-flight-wait-millis} for the original to finish gets 409. Server errors and
+ * rate-limited requests are not stored, so they can be retried with the same key. Keys are
+ * scoped by the client id header, and request bodies larger than {@code max-body-bytes}
+ * cannot use a key.
+ */
+@Component
+@Order(SqlStatisticsFilter.ORDER + 2)
+@ConditionalOnProperty(name = "beerstock.idempotency.enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    static final int MAX_KEY_LENGTH = 255;
+
+    private static final String API_PATH_PREFIX = "/api/";
+    // Describe the body or the connection rather than the result, so they are set again on replay.
+    private static final Set<String> UNSTORED_HEADERS = Stream.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH,
+                    HttpHeaders.TRANSFER_ENCODING, HttpHeaders.DATE, HttpHeaders.CONNECTION)
+            .map(name -> name.toLowerCase(Locale.ROOT))
+            .collect(Collectors.toSet());
+
+    private final IdempotencyStore idempotencyStore;
+    private final ObjectMapper objectMapper;
+    private final String clientHeader;
+    private final int maxBodyBytes;
+    private final Duration inFlightWait;
+
+    @Autowired
+    public IdempotencyFilter(IdempotencyStore idempotencyStore,
+                             ObjectMapper objectMapper,
+                             @Value("${beerstock.idempotency.client-header:X-Client-Id}") String clientHeader,
+                             @Value("${beerstock.idempotency.max-body-bytes:65536}") int maxBodyBytes,
+                             @Value("${beerstock.idempotency.in-flight-wait-millis:10000}") long inFlightWaitMillis) {
+        this.idempotencyStore = idempotencyStore;
+        this.objectMapper = objectMapper;
+        this.clientHeader = clientHeader;
+        this.maxBodyBytes = maxBodyBytes;
+        this.inFlightWait = Duration.ofMillis(inFlightWaitMillis);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String method = request.getMethod();
+        return request.getHeader(KEY_HEADER) == null
+                || !request.getRequestURI().startsWith(API_PATH_PREFIX)
+                || HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String key = request.getHeader(KEY_HEADER);
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            problem(response, HttpStatus.BAD_REQUEST, KEY_HEADER + " must have 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        byte[] body = readBody(request.getInputStream());
+        if (body == null) {
+            problem(response, HttpStatus.PAYLOAD_TOO_LARGE, "Requests with an " + KEY_HEADER + " are limited to " + maxBodyBytes + " bytes");
+            return;
+        }
+        String scopedKey = clientIdOf(request) + '\n' + key;
+        String fingerprint = fingerprintOf(request, body);
+        while (true) {
+            IdempotencyStore.Claim claim = idempotencyStore.claim(scopedKey, fingerprint);
+            if (claim.isOwner()) {
+                execute(claim, new CachedBodyRequest(request, body), response, filterChain);
+                return;
+            }
+            if (!claim.matches(fingerprint)) {
+                problem(response, HttpStatus.UNPROCESSABLE_ENTITY, KEY_HEADER + " " + key + " was already used for a different request");
+                return;
+            }
+            Optional<StoredResponse> storedResponse;
+            try {
+                storedResponse = claim.await(inFlightWait);
+            } catch (TimeoutException stillRunning) {
+                problem(response, HttpStatus.CONFLICT, "The request with " + KEY_HEADER + " " + key + " is still being processed");
+                return;
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                throw new ServletException(interrupted);
+            }
+            if (storedResponse.isPresent()) {
+                replay(storedResponse.get(), response);
+                return;
+            }
+            // the original request released the key without a response, so this retry runs it
+        }
+    }
+
+    private void execute(IdempotencyStore.Claim claim, HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper cachingResponse = new ContentCachingResponseWrapper(response);
+        // Headers already set come from enclosing filters, which set them again on a replay.
+        Set<String> outerHeaders = new HashSet<>(response.getHeaderNames());
+        boolean stored = false;
+        try {
+            filterChain.doFilter(request, cachingResponse);
+            int status = cachingResponse.getStatus();
+            if (!request.isAsyncStarted() && status < 500 && status != HttpStatus.TOO_MANY_REQUESTS.value()) {
+                claim.complete(new StoredResponse(status, cachingResponse.getContentType(),
+                        headersOf(cachingResponse, outerHeaders), cachingResponse.getContentAsByteArray()));
+                stored = true;
+            }
+        } finally {
+            if (!stored) {
+                claim.release();
+            }
+            cachingResponse.copyBodyToResponse();
+        }
+    }
+
+    private static Map<String, List<String>> headersOf(HttpServletResponse response, Set<String> outerHeaders) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : new LinkedHashSet<>(response.getHeaderNames())) {
+            if (!outerHeaders.contains(name) && !UNSTORED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                headers.put(name, new ArrayList<>(response.getHeaders(name)));
+            }
+        }
+        return headers;
+    }
+
+    private static void replay(StoredResponse storedResponse, HttpServletResponse response) throws IOException {
+        response.setStatus(storedResponse.getStatus());
+        storedResponse.getHeaders().forEach((name, values) -> {
+            for (int i = 0; i < values.size(); i++) {
+                if (i == 0) {
+                    response.setHeader(name, values.get(i));
+                } else {
+                    response.addHeader(name, values.get(i));
+                }
+            }
+        });
+        response.setHeader(REPLAYED_HEADER, "true");
+        if (storedResponse.getContentType() != null) {
+            response.setContentType(storedResponse.getContentType());
+        }
+        response.setContentLength(storedResponse.getBody().length);
+        response.getOutputStream().write(storedResponse.getBody());
+    }
+
+    private void problem(HttpServletResponse response, HttpStatus status, String detail) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), new ProblemDTO(status.value(), status.getReasonPhrase(), detail));
+    }
+
+    /**
+     * Reads the whole body, or returns null as soon as it exceeds {@code maxBodyBytes}.
+     */
+    private byte[] readBody(InputStream input) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            if (body.size() + read > maxBodyBytes) {
+                return null;
+            }
+            body.write(buffer, 0, read);
+        }
+        return body.toByteArray();
+    }
+
+    private String clientIdOf(HttpServletRequest request) {
+        String clientId = request.getHeader(clientHeader);
+        return clientId == null ? "" : clientId;
+    }
+
+    private static String fingerprintOf(HttpServletRequest request, byte[] body) {
+        String query = request.getQueryString();
+        String target = request.getMethod() + ' ' + request.getRequestURI() + (query == null ? "" : '?' + query);
+        try {
+            byte[] bodyDigest = MessageDigest.getInstance("SHA-256").digest(body);
+            return target + ' ' + Base64.getEncoder().encodeToString(bodyDigest);
+        } catch (NoSuchAlgorithmException impossible) {
+            throw new IllegalStateException(impossible);
+        }
+    }
+}
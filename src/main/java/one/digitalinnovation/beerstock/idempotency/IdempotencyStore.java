@@ -0,0 +1,187 @@
+package one.digitalinnovation.beerstock.idempotency;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers the response of each request made with an idempotency key, so that a retry gets the
+ * stored response instead of running again. The first request for a key claims it with one
+ * {@code putIfAbsent}; retries that arrive while it runs wait on its future instead of running
+ * in parallel, so a retry storm costs one execution per key and no lock is held across requests.
+ *
+ * <p>Entries expire {@code ttl} after the first request and the store keeps at most
+ * {@code maxEntries} of them, evicting the oldest completed ones first. A request that fails
+ * without a response to store gives up its key, and the next retry runs it again.
+ */
+@Component
+public class IdempotencyStore implements MeterBinder {
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Entries in claim order, which is also expiry order; eviction only ever looks at the head.
+    private final ConcurrentLinkedQueue<Entry> claimOrder = new ConcurrentLinkedQueue<>();
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder replays = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public IdempotencyStore(@Value("${beerstock.idempotency.max-entries:100000}") int maxEntries,
+                            @Value("${beerstock.idempotency.ttl-seconds:86400}") long ttlSeconds) {
+        this(maxEntries, Duration.ofSeconds(ttlSeconds), System::nanoTime);
+    }
+
+    IdempotencyStore(int maxEntries, Duration ttl, LongSupplier nanoClock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Idempotency store size must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Claims {@code key} for a request with the given fingerprint, or returns the claim of the
+     * request that already holds it.
+     */
+    public Claim claim(String key, String fingerprint) {
+        long now = nanoClock.getAsLong();
+        evict(now);
+        while (true) {
+            Entry entry = new Entry(key, fingerprint, now);
+            Entry existing = entries.putIfAbsent(key, entry);
+            if (existing == null) {
+                claimOrder.add(entry);
+                executions.increment();
+                return new Claim(entry, true);
+            }
+            if (!existing.isExpired(now, ttlNanos) || !existing.response.isDone()) {
+                return new Claim(existing, false);
+            }
+            entries.remove(key, existing);
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("beerstock.idempotency.executions", executions, LongAdder::doubleValue)
+                .description("Requests with an idempotency key that were executed")
+                .register(meterRegistry);
+        FunctionCounter.builder("beerstock.idempotency.replays", replays, LongAdder::doubleValue)
+                .description("Retried requests answered with the stored response")
+                .register(meterRegistry);
+        FunctionCounter.builder("beerstock.idempotency.evictions", evictions, LongAdder::doubleValue)
+                .description("Stored responses dropped before they expired to keep the store bounded")
+                .register(meterRegistry);
+        Gauge.builder("beerstock.idempotency.entries", entries, Map::size)
+                .description("Idempotency keys currently remembered")
+                .register(meterRegistry);
+    }
+
+    private void evict(long now) {
+        Entry oldest;
+        while ((oldest = claimOrder.peek()) != null) {
+            boolean released = entries.get(oldest.key) != oldest;
+            boolean expired = oldest.isExpired(now, ttlNanos) && oldest.response.isDone();
+            boolean overCapacity = entries.size() > maxEntries && oldest.response.isDone();
+            if (!released && !expired && !overCapacity) {
+                return;
+            }
+            if (claimOrder.remove(oldest) && entries.remove(oldest.key, oldest) && !expired) {
+                evictions.increment();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final String key;
+        private final String fingerprint;
+        private final long claimedAt;
+        // Completed with the stored response, or with null when the request released its key.
+        private final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+
+        private Entry(String key, String fingerprint, long claimedAt) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.claimedAt = claimedAt;
+        }
+
+        private boolean isExpired(long now, long ttlNanos) {
+            return now - claimedAt >= ttlNanos;
+        }
+    }
+
+    /**
+     * A request's hold on a key. The owner must either {@link #complete} or {@link #release} it;
+     * any other holder reads the owner's outcome with {@link #await}.
+     */
+    public final class Claim {
+
+        private final Entry entry;
+        private final boolean owner;
+
+        private Claim(Entry entry, boolean owner) {
+            this.entry = entry;
+            this.owner = owner;
+        }
+
+        public boolean isOwner() {
+            return owner;
+        }
+
+        public boolean matches(String fingerprint) {
+            return entry.fingerprint.equals(fingerprint);
+        }
+
+        public void complete(StoredResponse storedResponse) {
+            entry.response.complete(storedResponse);
+        }
+
+        public void release() {
+            entries.remove(entry.key, entry);
+            entry.response.complete(null);
+        }
+
+        /**
+         * Waits for the owner's response. Empty when the owner released the key, in which case
+         * the caller should claim it again.
+         *
+         * @throws TimeoutException when the owner is still running after {@code timeout}
+         */
+        public Optional<StoredResponse> await(Duration timeout) throws TimeoutException, InterruptedException {
+            try {
+                StoredResponse storedResponse = entry.response.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+                if (storedResponse != null) {
+                    replays.increment();
+                }
+                return Optional.ofNullable(storedResponse);
+            } catch (ExecutionException impossible) {
+                throw new IllegalStateException(impossible.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package one.digitalinnovation.beerstock.idempotency;
+
+import lombok.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What is replayed to a retried request: the status, content type, headers and body of the
+ * original response.
+ */
+@Value
+public class StoredResponse {
+
+    int status;
+
+    String contentType;
+
+    Map<String, List<String>> headers;
+
+    byte[] body;
+}
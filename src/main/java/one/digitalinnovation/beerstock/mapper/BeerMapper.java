@@ -5,7 +5,9 @@ import one.digitalinnovation.beerstock.entity.Beer;
 import org.mapstruct.Mapper;
 import org.mapstruct.factory.Mappers;
 
-@Mapper
+import java.util.List;
+
+@Mapper(componentModel = "spring")
 public interface BeerMapper {
 
     BeerMapper INSTANCE = Mappers.getMapper(BeerMapper.class);
@@ -13,4 +15,6 @@ public interface BeerMapper {
     Beer toModel(BeerDTO beerDTO);
 
     BeerDTO toDTO(Beer beer);
+
+    List<BeerDTO> toDTOs(List<Beer> beers);
 }
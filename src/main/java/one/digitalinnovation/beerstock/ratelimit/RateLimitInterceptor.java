@@ -0,0 +1,58 @@
+package one.digitalinnovation.beerstock.ratelimit;
+
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.security.Principal;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private final RateLimiter rateLimiter;
+    private final RateLimitProperties properties;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        RateLimiter.Kind kind = isRead(request) ? RateLimiter.Kind.READ : RateLimiter.Kind.WRITE;
+        long waitNanos = rateLimiter.tryAcquire(clientIdOf(request), endpointOf(request), kind);
+        if (waitNanos == 0) {
+            return true;
+        }
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        return false;
+    }
+
+    /**
+     * Authenticated callers are limited by principal and everyone else by remote address; a
+     * header sent by the client would let it pick a fresh bucket for every request.
+     */
+    private static String clientIdOf(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        return principal != null ? "principal:" + principal.getName() : "address:" + request.getRemoteAddr();
+    }
+
+    private static String endpointOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + ' ' + (pattern != null ? pattern : request.getRequestURI());
+    }
+
+    private static boolean isRead(HttpServletRequest request) {
+        String method = request.getMethod();
+        return HttpMethod.GET.matches(method) || HttpMethod.HEAD.matches(method) || HttpMethod.OPTIONS.matches(method);
+    }
+}
@@ -0,0 +1,31 @@
+package one.digitalinnovation.beerstock.ratelimit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "beerstock.ratelimit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    private int maxTrackedBuckets = 100_000;
+
+    private Limit read = new Limit(200, 100);
+
+    private Limit write = new Limit(50, 20);
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+
+        private int capacity;
+
+        private double refillPerSecond;
+    }
+}
@@ -0,0 +1,154 @@
+package one.digitalinnovation.beerstock.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps one {@link TokenBucket} per client and endpoint. Buckets live in a
+ * {@link ConcurrentHashMap}, so admission only contends on the bucket being used. At most
+ * {@code maxTrackedBuckets} are tracked: once they are all taken, idle buckets are swept at most
+ * once a second, and new clients that still find no room share one bucket per kind of request.
+ */
+@Component
+public class RateLimiter {
+
+    public enum Kind {
+        READ, WRITE
+    }
+
+    private final RateLimitProperties properties;
+    private final LongSupplier nanoClock;
+    private static final long EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    // Counts reserved slots, so that racing clients can never push the map past the cap.
+    private final AtomicInteger trackedBuckets = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final AtomicLong nextEvictionNanos;
+    private final TokenBucket sharedReadBucket;
+    private final TokenBucket sharedWriteBucket;
+    private final Counter sharedBucketRequests;
+    private final Counter readAdmitted;
+    private final Counter readRejected;
+    private final Counter writeAdmitted;
+    private final Counter writeRejected;
+
+    @Autowired
+    public RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    RateLimiter(RateLimitProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        this.nextEvictionNanos = new AtomicLong(nanoClock.getAsLong());
+        this.sharedReadBucket = newBucket(Kind.READ);
+        this.sharedWriteBucket = newBucket(Kind.WRITE);
+        this.sharedBucketRequests = Counter.builder("beerstock.ratelimit.shared")
+                .description("Requests of new clients checked against the shared bucket because no bucket could be tracked")
+                .register(meterRegistry);
+        this.readAdmitted = requestCounter(meterRegistry, Kind.READ, "admitted");
+        this.readRejected = requestCounter(meterRegistry, Kind.READ, "rejected");
+        this.writeAdmitted = requestCounter(meterRegistry, Kind.WRITE, "admitted");
+        this.writeRejected = requestCounter(meterRegistry, Kind.WRITE, "rejected");
+    }
+
+    /**
+     * Returns 0 if the request is admitted, otherwise the number of nanoseconds the client should
+     * wait before retrying.
+     */
+    public long tryAcquire(String clientId, String endpoint, Kind kind) {
+        long now = nanoClock.getAsLong();
+        String key = clientId + '|' + endpoint;
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = trackedBucket(key, kind, now);
+        }
+        long waitNanos = bucket.tryAcquire(now);
+        if (kind == Kind.READ) {
+            (waitNanos == 0 ? readAdmitted : readRejected).increment();
+        } else {
+            (waitNanos == 0 ? writeAdmitted : writeRejected).increment();
+        }
+        return waitNanos;
+    }
+
+    int trackedBuckets() {
+        return trackedBuckets.get();
+    }
+
+    private TokenBucket newBucket(Kind kind) {
+        RateLimitProperties.Limit limit = kind == Kind.READ ? properties.getRead() : properties.getWrite();
+        return new TokenBucket(limit.getCapacity(), limit.getRefillPerSecond());
+    }
+
+    private TokenBucket trackedBucket(String key, Kind kind, long now) {
+        if (!reserveSlot(now)) {
+            sharedBucketRequests.increment();
+            return kind == Kind.READ ? sharedReadBucket : sharedWriteBucket;
+        }
+        TokenBucket bucket = newBucket(kind);
+        TokenBucket existing = buckets.putIfAbsent(key, bucket);
+        if (existing != null) {
+            trackedBuckets.decrementAndGet();
+            return existing;
+        }
+        return bucket;
+    }
+
+    private boolean reserveSlot(long now) {
+        while (true) {
+            int tracked = trackedBuckets.get();
+            if (tracked >= properties.getMaxTrackedBuckets()) {
+                if (evictIdleBuckets(now) == 0) {
+                    return false;
+                }
+            } else if (trackedBuckets.compareAndSet(tracked, tracked + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Sweeps out idle buckets unless another thread is sweeping or the last sweep was less than
+     * a second ago, and returns how many were removed.
+     */
+    private int evictIdleBuckets(long now) {
+        long nextEviction = nextEvictionNanos.get();
+        if (now - nextEviction < 0 || !evicting.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            nextEvictionNanos.set(now + EVICTION_INTERVAL_NANOS);
+            int evicted = 0;
+            for (Map.Entry<String, TokenBucket> entry : buckets.entrySet()) {
+                if (entry.getValue().isIdle(now) && buckets.remove(entry.getKey(), entry.getValue())) {
+                    evicted++;
+                }
+            }
+            trackedBuckets.addAndGet(-evicted);
+            return evicted;
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static Counter requestCounter(MeterRegistry meterRegistry, Kind kind, String outcome) {
+        return Counter.builder("beerstock.ratelimit.requests")
+                .description("Requests seen by the stock API admission control")
+                .tag("kind", kind.name().toLowerCase())
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,46 @@
+package one.digitalinnovation.beerstock.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket implemented as a generic cell rate algorithm: the whole state is the
+ * theoretical arrival time of the next request, kept in one {@link AtomicLong}, so admitting
+ * a request is a single CAS and never blocks or allocates.
+ */
+public class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    public TokenBucket(int capacity, double refillPerSecond) {
+        if (capacity <= 0 || refillPerSecond <= 0) {
+            throw new IllegalArgumentException("Token bucket capacity and refill rate must be positive");
+        }
+        this.nanosPerToken = Math.max(1L, (long) (1_000_000_000L / refillPerSecond));
+        this.burstNanos = nanosPerToken * capacity;
+    }
+
+    /**
+     * Takes one token at {@code nowNanos}. Returns 0 when the request is admitted, otherwise the
+     * number of nanoseconds until a token becomes available.
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = theoreticalArrival.get();
+            long arrival = current == Long.MIN_VALUE ? nowNanos : Math.max(current, nowNanos);
+            long next = arrival + nanosPerToken;
+            long waitNanos = next - nowNanos - burstNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public boolean isIdle(long nowNanos) {
+        return theoreticalArrival.get() - nowNanos <= 0;
+    }
+}
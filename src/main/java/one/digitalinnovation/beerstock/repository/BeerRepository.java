@@ -2,10 +2,42 @@ package one.digitalinnovation.beerstock.repository;
 
 import one.digitalinnovation.beerstock.entity.Beer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface BeerRepository extends JpaRepository<Beer, Long> {
 
     Optional<Beer> findByName(String name);
+
+    List<Beer> findByNameIn(Collection<String> names);
+
+    // Holds the row lock of the beer until the end of the transaction.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Beer b where b.id = :id")
+    Optional<Beer> findAndLockById(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Beer b where b.id in :ids order by b.id")
+    List<Beer> findAndLockByIdIn(@Param("ids") Collection<Long> ids);
+
+    // A bulk delete, unlike deleteById, does not load the entity first.
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Beer b where b.id = :id")
+    int deleteBeerById(@Param("id") Long id);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Beer b set b.quantity = :newQuantity where b.id = :id and b.quantity = :expectedQuantity")
+    int updateQuantity(@Param("id") Long id,
+                       @Param("expectedQuantity") int expectedQuantity,
+                       @Param("newQuantity") int newQuantity);
 }
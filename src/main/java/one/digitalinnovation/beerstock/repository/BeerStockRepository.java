@@ -0,0 +1,48 @@
+package one.digitalinnovation.beerstock.repository;
+
+import one.digitalinnovation.beerstock.entity.BeerStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+
+public interface BeerStockRepository extends JpaRepository<BeerStock, Long> {
+
+    List<BeerStock> findByBeerId(Long beerId);
+
+    List<BeerStock> findByBeerIdIn(Collection<Long> beerIds);
+
+    boolean existsByBeerIdAndLocation(Long beerId, String location);
+
+    // Holds the row locks of the stock until the end of the transaction, taken in location order.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from BeerStock s where s.beerId = :beerId order by s.location")
+    List<BeerStock> findAndLockByBeerId(@Param("beerId") Long beerId);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update BeerStock s set s.quantity = :newQuantity "
+            + "where s.beerId = :beerId and s.location = :location and s.quantity = :expectedQuantity")
+    int updateQuantity(@Param("beerId") Long beerId,
+                       @Param("location") String location,
+                       @Param("expectedQuantity") int expectedQuantity,
+                       @Param("newQuantity") int newQuantity);
+
+    // Never takes a row below zero: an update that would is not applied.
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update BeerStock s set s.quantity = s.quantity + :delta "
+            + "where s.beerId = :beerId and s.location = :location and s.quantity + :delta >= 0")
+    int addQuantity(@Param("beerId") Long beerId, @Param("location") String location, @Param("delta") int delta);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from BeerStock s where s.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,40 @@
+package one.digitalinnovation.beerstock.repository;
+
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface StockLocationRepository extends JpaRepository<StockLocation, String> {
+
+    String TOTALS = "select new one.digitalinnovation.beerstock.entity.StockLocation(l.name, l.quantity + coalesce(sum(s.quantity), 0)) "
+            + "from StockLocation l left join StockLocationStripe s on s.location = l.name ";
+
+    // Unlike findById, these add the stripes of a location to its total.
+    @Query(TOTALS + "where l.name = :name group by l.name, l.quantity")
+    Optional<StockLocation> findTotalByName(@Param("name") String name);
+
+    @Query(TOTALS + "group by l.name, l.quantity order by l.name")
+    List<StockLocation> findAllTotals();
+
+    // A plain insert, unlike save, fails on an existing name instead of overwriting its total.
+    @Transactional
+    @Modifying
+    @Query(value = "insert into stock_location (name, quantity) values (:name, 0)", nativeQuery = true)
+    int register(@Param("name") String name);
+
+    @Transactional
+    @Modifying
+    @Query(value = "insert into stock_location_stripe (location, stripe, quantity) values (:name, :stripe, 0)", nativeQuery = true)
+    int registerStripe(@Param("name") String name, @Param("stripe") int stripe);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update StockLocationStripe s set s.quantity = s.quantity + :delta where s.location = :name and s.stripe = :stripe")
+    int addQuantity(@Param("name") String name, @Param("stripe") int stripe, @Param("delta") long delta);
+}
@@ -0,0 +1,156 @@
+package one.digitalinnovation.beerstock.reservation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel (Varghese &amp; Lauck, the scheme used by the Linux kernel timers).
+ *
+ * <p>Time advances in ticks. Level 0 has one slot per tick for the next {@value #SLOTS} ticks,
+ * and each level above covers {@value #SLOTS} times the range of the level below. Scheduling and
+ * cancelling are O(1): an entry is linked into a slot of an intrusive doubly-linked list. When
+ * level 0 wraps around, the matching slot of the next level is cascaded down, so every entry is
+ * moved at most once per level before it expires.
+ *
+ * <p>Entries extend {@link Entry} so the wheel does not allocate a node per timer. The wheel is
+ * not thread-safe on its own; callers guard it with a single lock.
+ */
+public class HierarchicalTimingWheel<E extends HierarchicalTimingWheel.Entry> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    public abstract static class Entry {
+
+        long deadlineTick;
+        Entry previous;
+        Entry next;
+        Entry[] slots;
+        int slotIndex = -1;
+
+        public boolean isScheduled() {
+            return slotIndex >= 0;
+        }
+    }
+
+    private final Entry[][] levels = new Entry[LEVELS][SLOTS];
+    private final long tickNanos;
+    private final long startNanos;
+    private long currentTick;
+    private int size;
+
+    public HierarchicalTimingWheel(long tickNanos, long startNanos) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive");
+        }
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Schedules {@code entry} to expire at {@code deadlineNanos}, rounded up to the next tick.
+     */
+    public void schedule(E entry, long deadlineNanos) {
+        if (entry.isScheduled()) {
+            throw new IllegalStateException("Entry is already scheduled");
+        }
+        long ticks = (deadlineNanos - startNanos + tickNanos - 1) / tickNanos;
+        entry.deadlineTick = Math.max(ticks, currentTick);
+        add(entry);
+        size++;
+    }
+
+    public boolean cancel(E entry) {
+        if (!entry.isScheduled()) {
+            return false;
+        }
+        unlink(entry);
+        size--;
+        return true;
+    }
+
+    /**
+     * Advances the wheel up to {@code nowNanos} and returns the entries that expired.
+     */
+    @SuppressWarnings("unchecked")
+    public List<E> advance(long nowNanos) {
+        long targetTick = (nowNanos - startNanos) / tickNanos;
+        List<E> expired = new ArrayList<>();
+        while (currentTick <= targetTick) {
+            int index = (int) (currentTick & SLOT_MASK);
+            if (index == 0) {
+                for (int level = 1; level < LEVELS && cascade(level) == 0; level++) {
+                    // keep cascading while the upper level wrapped around as well
+                }
+            }
+            Entry entry = levels[0][index];
+            while (entry != null) {
+                Entry next = entry.next;
+                unlink(entry);
+                size--;
+                expired.add((E) entry);
+                entry = next;
+            }
+            currentTick++;
+        }
+        return expired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int cascade(int level) {
+        int index = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Entry entry = levels[level][index];
+        while (entry != null) {
+            Entry next = entry.next;
+            unlink(entry);
+            add(entry);
+            entry = next;
+        }
+        return index;
+    }
+
+    private void add(Entry entry) {
+        long delay = entry.deadlineTick - currentTick;
+        long placementTick = delay > MAX_DELAY_TICKS ? currentTick + MAX_DELAY_TICKS : entry.deadlineTick;
+        delay = Math.min(delay, MAX_DELAY_TICKS);
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int index = (int) ((placementTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        link(entry, levels[level], index);
+    }
+
+    private static void link(Entry entry, Entry[] slots, int index) {
+        Entry head = slots[index];
+        entry.previous = null;
+        entry.next = head;
+        if (head != null) {
+            head.previous = entry;
+        }
+        slots[index] = entry;
+        entry.slots = slots;
+        entry.slotIndex = index;
+    }
+
+    private static void unlink(Entry entry) {
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            entry.slots[entry.slotIndex] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+        entry.slots = null;
+        entry.slotIndex = -1;
+    }
+}
@@ -0,0 +1,21 @@
+package one.digitalinnovation.beerstock.reservation;
+
+import lombok.Getter;
+
+import java.time.Instant;
+
+@Getter
+public class Reservation extends HierarchicalTimingWheel.Entry {
+
+    private final long id;
+    private final long beerId;
+    private final int quantity;
+    private final Instant expiresAt;
+
+    public Reservation(long id, long beerId, int quantity, Instant expiresAt) {
+        this.id = id;
+        this.beerId = beerId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+    }
+}
@@ -0,0 +1,246 @@
+package one.digitalinnovation.beerstock.reservation;
+
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Holds the open stock reservations of this instance. Each reservation sits in a
+ * {@link HierarchicalTimingWheel} that a single ticker thread advances, so expiry costs O(1) per
+ * reservation no matter how many are open. Per-beer reserved totals are only changed while
+ * holding that beer's lock from {@link #lockFor(long)}, which the services also take on every
+ * change to a beer. The same lock orders the versions of those changes, see {@link #nextVersion}.
+ * Since every change to a beer serializes on that lock, the time spent waiting for it is what
+ * concurrent changes cost, and it is counted.
+ */
+@Slf4j
+@Component
+public class ReservationRegistry implements MeterBinder {
+
+    private static final int LOCK_STRIPES = 256;
+
+    private final ConcurrentMap<Long, Reservation> reservations = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Integer> reservedByBeer = new ConcurrentHashMap<>();
+    private final ReentrantLock[] beerLocks = new ReentrantLock[LOCK_STRIPES];
+    // Acquisitions of a beer lock that found it held, and the time they waited for it.
+    @Getter
+    private final LongAdder contendedLockAcquisitions = new LongAdder();
+    @Getter
+    private final LongAdder lockWaitNanos = new LongAdder();
+    // Last change version issued per lock stripe, only read and advanced under the stripe's lock.
+    private final long[] changeVersions = new long[LOCK_STRIPES];
+    private final AtomicLong lastReservationId = new AtomicLong();
+    private final HierarchicalTimingWheel<Reservation> timingWheel;
+    private final Clock clock;
+    private final LongSupplier nanoClock;
+    private final Duration tick;
+    @Getter
+    private final Duration defaultTimeToLive;
+    private ScheduledExecutorService ticker;
+
+    @Autowired
+    public ReservationRegistry(@Value("${beerstock.reservation.tick-millis:100}") long tickMillis,
+                               @Value("${beerstock.reservation.default-ttl-seconds:900}") long defaultTimeToLiveSeconds) {
+        this(Duration.ofMillis(tickMillis), Duration.ofSeconds(defaultTimeToLiveSeconds), Clock.systemUTC(), System::nanoTime);
+    }
+
+    ReservationRegistry(Duration tick, Duration defaultTimeToLive, Clock clock, LongSupplier nanoClock) {
+        this.tick = tick;
+        this.defaultTimeToLive = defaultTimeToLive;
+        this.clock = clock;
+        this.nanoClock = nanoClock;
+        this.timingWheel = new HierarchicalTimingWheel<>(tick.toNanos(), nanoClock.getAsLong());
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            beerLocks[i] = new BeerLock();
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "reservation-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::expireReservations, tick.toNanos(), tick.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        FunctionTimer.builder("beerstock.beer.lock.wait", this,
+                        registry -> registry.contendedLockAcquisitions.sum(),
+                        registry -> registry.lockWaitNanos.sum(), TimeUnit.NANOSECONDS)
+                .description("Time spent waiting for a beer lock held by a concurrent change")
+                .register(meterRegistry);
+    }
+
+    public Lock lockFor(long beerId) {
+        return beerLocks[stripeOf(beerId)];
+    }
+
+    /**
+     * Takes the locks of all the given beers, always in the same order so that two callers
+     * cannot deadlock, and returns them for the caller to unlock.
+     */
+    public List<Lock> lockAllFor(Collection<Long> beerIds) {
+        List<Lock> locks = beerIds.stream()
+                .mapToInt(ReservationRegistry::stripeOf)
+                .distinct()
+                .sorted()
+                .mapToObj(stripe -> beerLocks[stripe])
+                .collect(Collectors.toList());
+        locks.forEach(Lock::lock);
+        return locks;
+    }
+
+    /**
+     * Issues the version of a change just made to the beer while holding {@link #lockFor(long)}.
+     * Versions of one beer therefore grow in the order its changes took effect, whatever order
+     * their events are delivered in. They start over on restart.
+     */
+    public long nextVersion(long beerId) {
+        int stripe = stripeOf(beerId);
+        if (!beerLocks[stripe].isHeldByCurrentThread()) {
+            throw new IllegalStateException("Change versions of beer " + beerId + " are only issued under its lock");
+        }
+        return ++changeVersions[stripe];
+    }
+
+    private static int stripeOf(long beerId) {
+        return Long.hashCode(beerId * 0x9E3779B97F4A7C15L) & (LOCK_STRIPES - 1);
+    }
+
+    /**
+     * Units of the given beer held by open reservations. Only stable while holding
+     * {@link #lockFor(long)}.
+     */
+    public int reservedQuantity(long beerId) {
+        return reservedByBeer.getOrDefault(beerId, 0);
+    }
+
+    /**
+     * Opens a reservation. The caller must hold the beer lock and have checked availability.
+     */
+    public Reservation reserve(long beerId, int quantity, Duration timeToLive) {
+        long deadlineNanos = nanoClock.getAsLong() + timeToLive.toNanos();
+        Reservation reservation = new Reservation(lastReservationId.incrementAndGet(), beerId, quantity,
+                Instant.now(clock).plus(timeToLive));
+        reservedByBeer.merge(beerId, quantity, Integer::sum);
+        reservations.put(reservation.getId(), reservation);
+        synchronized (timingWheel) {
+            timingWheel.schedule(reservation, deadlineNanos);
+        }
+        return reservation;
+    }
+
+    /**
+     * Removes an open reservation so it can be committed or released. Returns {@code null} if
+     * it does not exist, has expired or was already closed. The reserved total of its beer is
+     * only given back by {@link #unreserve(Reservation)}.
+     */
+    public Reservation close(long reservationId) {
+        Reservation reservation = reservations.remove(reservationId);
+        if (reservation != null) {
+            synchronized (timingWheel) {
+                timingWheel.cancel(reservation);
+            }
+        }
+        return reservation;
+    }
+
+    /**
+     * Puts back a reservation closed by {@link #close(long)} whose commit failed, with its
+     * original expiry and quantity. The caller must hold the beer lock.
+     */
+    public void reopen(Reservation reservation) {
+        long remainingNanos = Math.max(0, Duration.between(Instant.now(clock), reservation.getExpiresAt()).toNanos());
+        reservedByBeer.merge(reservation.getBeerId(), reservation.getQuantity(), Integer::sum);
+        reservations.put(reservation.getId(), reservation);
+        synchronized (timingWheel) {
+            timingWheel.schedule(reservation, nanoClock.getAsLong() + remainingNanos);
+        }
+    }
+
+    /**
+     * Gives the quantity of a closed reservation back to its beer. The caller must hold the beer lock.
+     */
+    public void unreserve(Reservation reservation) {
+        reservedByBeer.computeIfPresent(reservation.getBeerId(), (beerId, reserved) -> {
+            int remaining = reserved - reservation.getQuantity();
+            return remaining > 0 ? remaining : null;
+        });
+    }
+
+    public int openReservations() {
+        return reservations.size();
+    }
+
+    void expireReservations() {
+        List<Reservation> expired;
+        synchronized (timingWheel) {
+            expired = timingWheel.advance(nanoClock.getAsLong());
+        }
+        for (Reservation reservation : expired) {
+            if (reservations.remove(reservation.getId(), reservation)) {
+                Lock lock = lockFor(reservation.getBeerId());
+                lock.lock();
+                try {
+                    unreserve(reservation);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        if (!expired.isEmpty()) {
+            log.debug("Expired {} stock reservations", expired.size());
+        }
+    }
+
+    /**
+     * Beer lock that counts acquisitions finding it held and how long they waited.
+     */
+    private final class BeerLock extends ReentrantLock {
+
+        @Override
+        public void lock() {
+            if (tryLock()) {
+                return;
+            }
+            long waitStart = System.nanoTime();
+            super.lock();
+            lockWaitNanos.add(System.nanoTime() - waitStart);
+            contendedLockAcquisitions.increment();
+        }
+    }
+}
@@ -0,0 +1,539 @@
+package one.digitalinnovation.beerstock.search;
+
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.dto.BeerSuggestionDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.feed.BeerChangeEvent;
+import one.digitalinnovation.beerstock.feed.DeletionTombstones;
+import one.digitalinnovation.beerstock.storage.BeerStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Prefix index over normalized beer names (lower case, accents and repeated spaces removed)
+ * answering "the best stocked beers whose name starts with ..." in time independent of the
+ * number of beers.
+ *
+ * <p>Names are kept in a radix tree. Every node whose subtree holds more than
+ * {@code maxResults} beers caches the {@code maxResults} best stocked of them, so a query walks
+ * down to the node of the prefix and sorts at most {@code maxResults} entries; smaller subtrees
+ * are simply collected. Stock changes only touch the caches on the path of the changed name and
+ * stop as soon as the beer neither was nor becomes part of a cache.
+ *
+ * <p>Writers are serialized by a lock and publish nodes and arrays copy-on-write, so queries
+ * run without locking. The index is built from the store at startup and follows the
+ * {@link BeerChangeEvent}s published by the services afterwards. Publishing only parks the event
+ * as the pending change of its beer, keeping the newest version, and a single applier thread
+ * takes the lock and applies what is pending, so request threads never wait for the index. An
+ * event older than the last one applied to its beer, or than the beer's recent deletion (see
+ * {@link DeletionTombstones}), is ignored.
+ */
+@Slf4j
+@Component
+public class BeerNameIndex {
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+    private static final Comparator<Entry> BY_STOCK = Comparator.comparingInt((Entry entry) -> entry.quantity).reversed()
+            .thenComparing(entry -> entry.name)
+            .thenComparingLong(entry -> entry.id);
+
+    private final BeerStore beerStore;
+    private final int maxResults;
+    private final Map<Long, Entry> entriesById = new ConcurrentHashMap<>();
+    // Recent deletions, so that changes published before them are not applied after them.
+    private final DeletionTombstones deletions = new DeletionTombstones();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ConcurrentMap<Long, BeerChangeEvent> pendingChanges = new ConcurrentHashMap<>();
+    private final AtomicBoolean applyScheduled = new AtomicBoolean();
+    private final Executor applier;
+    private volatile Node root = new Node("", 0, 0);
+
+    @Autowired
+    public BeerNameIndex(BeerStore beerStore, @Value("${beerstock.autocomplete.max-results:10}") int maxResults) {
+        this(beerStore, maxResults, newApplier());
+    }
+
+    BeerNameIndex(BeerStore beerStore, int maxResults, Executor applier) {
+        if (maxResults <= 0) {
+            throw new IllegalArgumentException("Autocomplete max results must be positive: " + maxResults);
+        }
+        this.beerStore = beerStore;
+        this.maxResults = maxResults;
+        this.applier = applier;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        List<Beer> beers = beerStore.findAll();
+        writeLock.lock();
+        try {
+            entriesById.clear();
+            deletions.clear();
+            root = new Node("", 0, 0);
+            for (Beer beer : beers) {
+                insert(new Entry(beer), false);
+            }
+            computeTops(root);
+        } finally {
+            writeLock.unlock();
+        }
+        log.info("Indexed {} beer names for autocomplete", beers.size());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (applier instanceof ExecutorService) {
+            ((ExecutorService) applier).shutdownNow();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} (at most {@code maxResults}) beers whose normalized name starts
+     * with the normalized {@code prefix}, best stocked first.
+     */
+    public List<BeerSuggestionDTO> suggest(String prefix, int limit) {
+        int resultSize = Math.min(limit, maxResults);
+        if (resultSize <= 0) {
+            return Collections.emptyList();
+        }
+        Node node = nodeForPrefix(normalize(prefix, true));
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        Entry[] top = node.top;
+        Collection<Entry> candidates = top != null ? Arrays.asList(top) : collect(node, new ArrayList<>());
+        List<BeerSuggestionDTO> suggestions = new ArrayList<>(candidates.size());
+        for (Entry entry : candidates) {
+            suggestions.add(new BeerSuggestionDTO(entry.id, entry.name, entry.type, entry.quantity));
+        }
+        suggestions.sort(Comparator.comparingInt(BeerSuggestionDTO::getQuantity).reversed()
+                .thenComparing(BeerSuggestionDTO::getName)
+                .thenComparing(BeerSuggestionDTO::getId));
+        return suggestions.size() > resultSize ? new ArrayList<>(suggestions.subList(0, resultSize)) : suggestions;
+    }
+
+    public int size() {
+        return entriesById.size();
+    }
+
+    @EventListener
+    public void onBeerChange(BeerChangeEvent event) {
+        pendingChanges.merge(event.getBeerId(), event, (pending, newer) -> newer.getVersion() >= pending.getVersion() ? newer : pending);
+        if (applyScheduled.compareAndSet(false, true)) {
+            try {
+                applier.execute(this::applyPendingChanges);
+            } catch (RejectedExecutionException shuttingDown) {
+                applyScheduled.set(false);
+            }
+        }
+    }
+
+    private void applyPendingChanges() {
+        // Cleared first: a change parked from here on schedules another run.
+        applyScheduled.set(false);
+        writeLock.lock();
+        try {
+            for (Long id : pendingChanges.keySet()) {
+                BeerChangeEvent event = pendingChanges.remove(id);
+                if (event == null) {
+                    continue;
+                }
+                try {
+                    apply(event);
+                } catch (RuntimeException applyFailure) {
+                    log.warn("Could not apply a change of beer {} to the name index", id, applyFailure);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void apply(BeerChangeEvent event) {
+        Entry existing = entriesById.get(event.getBeerId());
+        if (deletions.isDeletedBy(event)
+                || (existing != null && event.getVersion() < existing.version)) {
+            return;
+        }
+        if (event.getKind() == BeerChangeEvent.Kind.DELETED) {
+            if (existing != null) {
+                remove(existing);
+            }
+            deletions.recordDeletion(event.getBeerId(), event.getVersion());
+        } else if (existing == null) {
+            insert(new Entry(event), true);
+        } else if (!existing.name.equals(event.getName()) || existing.type != event.getType()) {
+            remove(existing);
+            insert(new Entry(event), true);
+        } else {
+            updateQuantity(existing, event.getQuantity());
+            existing.version = event.getVersion();
+        }
+    }
+
+    private static ExecutorService newApplier() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "beer-name-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    static String normalize(String text, boolean keepTrailingSpace) {
+        String decomposed = Normalizer.normalize(text == null ? "" : text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                pendingSpace = normalized.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                normalized.append(' ');
+                pendingSpace = false;
+            }
+            normalized.append(Character.toLowerCase(c));
+        }
+        if (pendingSpace && keepTrailingSpace) {
+            normalized.append(' ');
+        }
+        return normalized.toString();
+    }
+
+    private Node nodeForPrefix(String key) {
+        Node node = root;
+        int position = 0;
+        while (position < key.length()) {
+            Node child = childFor(node, key.charAt(position));
+            if (child == null) {
+                return null;
+            }
+            int common = commonPrefixLength(child, key, position);
+            if (position + common == key.length()) {
+                return child;
+            }
+            if (common < child.length()) {
+                return null;
+            }
+            node = child;
+            position += common;
+        }
+        return node;
+    }
+
+    private void insert(Entry entry, boolean maintainTops) {
+        String key = entry.key;
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int position = 0;
+        while (position < key.length()) {
+            Node child = childFor(node, key.charAt(position));
+            if (child == null) {
+                child = new Node(key, position, key.length());
+                node.children = withChild(node.children, child);
+                node = child;
+                path.add(node);
+                break;
+            }
+            int common = commonPrefixLength(child, key, position);
+            if (common < child.length()) {
+                child = split(node, child, common);
+            }
+            node = child;
+            path.add(node);
+            position += common;
+        }
+        node.terminals = append(node.terminals, entry);
+        entriesById.put(entry.id, entry);
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node pathNode = path.get(i);
+            pathNode.size++;
+            if (maintainTops) {
+                updateTopAfterInsert(pathNode, entry);
+            }
+        }
+    }
+
+    private void remove(Entry entry) {
+        List<Node> path = pathTo(entry.key);
+        Node terminalNode = path.get(path.size() - 1);
+        terminalNode.terminals = without(terminalNode.terminals, entry);
+        entriesById.remove(entry.id);
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            node.size--;
+            if (node.size <= maxResults) {
+                node.top = null;
+            } else if (contains(node.top, entry)) {
+                node.top = computeTop(node);
+            }
+            if (i > 0 && node.size == 0) {
+                Node parent = path.get(i - 1);
+                parent.children = withoutChild(parent.children, node);
+            }
+        }
+    }
+
+    private void updateQuantity(Entry entry, int quantity) {
+        int previousQuantity = entry.quantity;
+        if (previousQuantity == quantity) {
+            return;
+        }
+        entry.quantity = quantity;
+        List<Node> path = pathTo(entry.key);
+        for (int i = path.size() - 1; i >= 0; i--) {
+            Node node = path.get(i);
+            Entry[] top = node.top;
+            if (top == null) {
+                continue;
+            }
+            if (contains(top, entry)) {
+                if (quantity < previousQuantity) {
+                    // another beer of the subtree may now rank above it
+                    node.top = computeTop(node);
+                }
+            } else if (!replaceWorst(node, entry)) {
+                // not good enough for this subtree, so not for any enclosing one either
+                return;
+            }
+        }
+    }
+
+    private void updateTopAfterInsert(Node node, Entry entry) {
+        if (node.size <= maxResults) {
+            node.top = null;
+        } else if (node.top == null) {
+            node.top = computeTop(node);
+        } else {
+            replaceWorst(node, entry);
+        }
+    }
+
+    private boolean replaceWorst(Node node, Entry entry) {
+        Entry[] top = node.top;
+        int worst = 0;
+        for (int i = 1; i < top.length; i++) {
+            if (BY_STOCK.compare(top[i], top[worst]) > 0) {
+                worst = i;
+            }
+        }
+        if (BY_STOCK.compare(entry, top[worst]) >= 0) {
+            return false;
+        }
+        Entry[] updatedTop = top.clone();
+        updatedTop[worst] = entry;
+        node.top = updatedTop;
+        return true;
+    }
+
+    private void computeTops(Node node) {
+        for (Node child : node.children) {
+            computeTops(child);
+        }
+        node.top = node.size > maxResults ? computeTop(node) : null;
+    }
+
+    private Entry[] computeTop(Node node) {
+        List<Entry> candidates = new ArrayList<>(Arrays.asList(node.terminals));
+        for (Node child : node.children) {
+            Entry[] childTop = child.top;
+            if (childTop != null) {
+                candidates.addAll(Arrays.asList(childTop));
+            } else {
+                collect(child, candidates);
+            }
+        }
+        candidates.sort(BY_STOCK);
+        return candidates.subList(0, Math.min(maxResults, candidates.size())).toArray(NO_ENTRIES);
+    }
+
+    private static List<Entry> collect(Node node, List<Entry> entries) {
+        entries.addAll(Arrays.asList(node.terminals));
+        for (Node child : node.children) {
+            collect(child, entries);
+        }
+        return entries;
+    }
+
+    private List<Node> pathTo(String key) {
+        List<Node> path = new ArrayList<>();
+        Node node = root;
+        path.add(node);
+        int position = 0;
+        while (position < key.length()) {
+            node = childFor(node, key.charAt(position));
+            path.add(node);
+            position += node.length();
+        }
+        return path;
+    }
+
+    private static Node split(Node parent, Node child, int length) {
+        Node lower = new Node(child.source, child.start + length, child.end);
+        lower.children = child.children;
+        lower.terminals = child.terminals;
+        lower.top = child.top;
+        lower.size = child.size;
+        Node upper = new Node(child.source, child.start, child.start + length);
+        upper.children = new Node[]{lower};
+        upper.top = child.top;
+        upper.size = child.size;
+        Node[] children = parent.children.clone();
+        children[Arrays.asList(children).indexOf(child)] = upper;
+        parent.children = children;
+        return upper;
+    }
+
+    private static Node childFor(Node node, char c) {
+        Node[] children = node.children;
+        int low = 0;
+        int high = children.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            char middleChar = children[middle].firstChar();
+            if (middleChar < c) {
+                low = middle + 1;
+            } else if (middleChar > c) {
+                high = middle - 1;
+            } else {
+                return children[middle];
+            }
+        }
+        return null;
+    }
+
+    private static int commonPrefixLength(Node node, String key, int position) {
+        int length = 0;
+        int max = Math.min(node.length(), key.length() - position);
+        while (length < max && node.source.charAt(node.start + length) == key.charAt(position + length)) {
+            length++;
+        }
+        return length;
+    }
+
+    private static Node[] withChild(Node[] children, Node child) {
+        int index = 0;
+        while (index < children.length && children[index].firstChar() < child.firstChar()) {
+            index++;
+        }
+        Node[] updated = new Node[children.length + 1];
+        System.arraycopy(children, 0, updated, 0, index);
+        updated[index] = child;
+        System.arraycopy(children, index, updated, index + 1, children.length - index);
+        return updated;
+    }
+
+    private static Node[] withoutChild(Node[] children, Node child) {
+        List<Node> remaining = new ArrayList<>(Arrays.asList(children));
+        remaining.remove(child);
+        return remaining.isEmpty() ? NO_CHILDREN : remaining.toArray(NO_CHILDREN);
+    }
+
+    private static Entry[] append(Entry[] entries, Entry entry) {
+        Entry[] updated = Arrays.copyOf(entries, entries.length + 1);
+        updated[entries.length] = entry;
+        return updated;
+    }
+
+    private static Entry[] without(Entry[] entries, Entry entry) {
+        List<Entry> remaining = new ArrayList<>(Arrays.asList(entries));
+        remaining.remove(entry);
+        return remaining.isEmpty() ? NO_ENTRIES : remaining.toArray(NO_ENTRIES);
+    }
+
+    private static boolean contains(Entry[] entries, Entry entry) {
+        if (entries != null) {
+            for (Entry candidate : entries) {
+                if (candidate == entry) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class Entry {
+
+        private final long id;
+        private final String name;
+        private final String key;
+        private final BeerType type;
+        private volatile int quantity;
+        // Version of the last change applied; only used under the write lock.
+        private long version;
+
+        private Entry(Beer beer) {
+            this(beer.getId(), beer.getName(), beer.getType(), beer.getQuantity(), BeerChangeEvent.INITIAL_VERSION);
+        }
+
+        private Entry(BeerChangeEvent event) {
+            this(event.getBeerId(), event.getName(), event.getType(), event.getQuantity(), event.getVersion());
+        }
+
+        private Entry(long id, String name, BeerType type, int quantity, long version) {
+            this.id = id;
+            this.name = name;
+            this.key = normalize(name, false);
+            this.type = type;
+            this.quantity = quantity;
+            this.version = version;
+        }
+    }
+
+    /**
+     * Radix tree node; its edge label is {@code source[start, end)}, shared with the key of the
+     * beer that created it instead of being copied.
+     */
+    private static final class Node {
+
+        private final String source;
+        private final int start;
+        private final int end;
+        private volatile Node[] children = NO_CHILDREN;
+        private volatile Entry[] terminals = NO_ENTRIES;
+        private volatile Entry[] top;
+        private int size;
+
+        private Node(String source, int start, int end) {
+            this.source = source;
+            this.start = start;
+            this.end = end;
+        }
+
+        private char firstChar() {
+            return source.charAt(start);
+        }
+
+        private int length() {
+            return end - start;
+        }
+    }
+}
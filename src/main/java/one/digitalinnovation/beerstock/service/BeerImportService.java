@@ -0,0 +1,339 @@
+package one.digitalinnovation.beerstock.service;
+
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.csv.CsvFormatException;
+import one.digitalinnovation.beerstock.csv.CsvReader;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.ImportProgressDTO;
+import one.digitalinnovation.beerstock.dto.ImportReportDTO;
+import one.digitalinnovation.beerstock.dto.ImportRowErrorDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.feed.BeerChangeEvent;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.reservation.ReservationRegistry;
+import one.digitalinnovation.beerstock.storage.BeerStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Imports a supplier catalog from CSV. The upload is parsed record by record and upserted by
+ * name in batches (one name lookup and one save per batch), so memory stays bounded by the
+ * batch size whatever the size of the file.
+ *
+ * <p>The quantity of a row is the new quantity of the beer, applied to its locations as
+ * {@link BeerStore#saveAll} describes. A row that would leave a beer with fewer units than its
+ * open reservations hold is rejected; the rest of its batch is still stored.
+ *
+ * <p>A batch locks the beers its names resolve to, then reads them again inside its transaction.
+ * If a name now resolves to a beer it did not lock, because the beer was deleted and created
+ * again meanwhile, nothing is stored and the batch is retried, up to {@value #MAX_LOCK_ATTEMPTS}
+ * times. A beer deleted meanwhile is created again.
+ */
+@Slf4j
+@Service
+public class BeerImportService {
+
+    private static final String[] COLUMNS = {"name", "brand", "max", "quantity", "type"};
+    private static final char SEPARATOR = ',';
+    private static final int MAX_LOCK_ATTEMPTS = 3;
+
+    private final BeerStore beerStore;
+    private final ReservationRegistry reservationRegistry;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    private final int maxReportedErrors;
+    private final BeerMapper beerMapper;
+
+    @Autowired
+    public BeerImportService(BeerStore beerStore,
+                             ReservationRegistry reservationRegistry,
+                             Validator validator,
+                             TransactionTemplate transactionTemplate,
+                             ApplicationEventPublisher eventPublisher,
+                             BeerMapper beerMapper,
+                             @Value("${beerstock.import.batch-size:500}") int batchSize,
+                             @Value("${beerstock.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.beerStore = beerStore;
+        this.reservationRegistry = reservationRegistry;
+        this.validator = validator;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.beerMapper = beerMapper;
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public ImportReportDTO importCsv(InputStream input) throws IOException {
+        return importCsv(input, progress -> { });
+    }
+
+    /**
+     * Imports the CSV, handing the counts so far to {@code progressListener} after every batch.
+     */
+    public ImportReportDTO importCsv(InputStream input, Consumer<ImportProgressDTO> progressListener) throws IOException {
+        ImportReportDTO report = ImportReportDTO.builder().build();
+        Map<String, ImportRow> batch = new LinkedHashMap<>();
+        // Rows replaced by a later row of the same name in the batch, counted once it is stored.
+        List<ImportRow> supersededRows = new ArrayList<>();
+        try (CsvReader csvReader = new CsvReader(new InputStreamReader(input, StandardCharsets.UTF_8), SEPARATOR)) {
+            List<String> header = csvReader.readRecord();
+            if (header == null) {
+                return report;
+            }
+            int[] columnIndexes = resolveColumns(header);
+            List<String> record;
+            while ((record = csvReader.readRecord()) != null) {
+                report.setRowsRead(report.getRowsRead() + 1);
+                ImportRow row = toImportRow(record, columnIndexes, csvReader.getRecordLineNumber(), report);
+                if (row == null) {
+                    continue;
+                }
+                ImportRow supersededRow = batch.put(row.getBeerDTO().getName(), row);
+                if (supersededRow != null) {
+                    supersededRows.add(supersededRow);
+                }
+                if (batch.size() >= batchSize) {
+                    flush(batch, supersededRows, report);
+                    progressListener.accept(ImportProgressDTO.builder()
+                            .rowsRead(report.getRowsRead())
+                            .created(report.getCreated())
+                            .updated(report.getUpdated())
+                            .rejected(report.getRejected())
+                            .build());
+                }
+            }
+        } catch (CsvFormatException csvFormatException) {
+            reject(report, csvFormatException.getLineNumber(), null, csvFormatException.getMessage());
+        }
+        flush(batch, supersededRows, report);
+        log.info("Beer import finished: {} rows read, {} created, {} updated, {} rejected",
+                report.getRowsRead(), report.getCreated(), report.getUpdated(), report.getRejected());
+        return report;
+    }
+
+    private ImportRow toImportRow(List<String> record, int[] columnIndexes, long line, ImportReportDTO report) {
+        String name = column(record, columnIndexes[0]);
+        BeerDTO beerDTO;
+        try {
+            beerDTO = BeerDTO.builder()
+                    .name(name)
+                    .brand(column(record, columnIndexes[1]))
+                    .max(parseInteger(column(record, columnIndexes[2]), COLUMNS[2]))
+                    .quantity(parseInteger(column(record, columnIndexes[3]), COLUMNS[3]))
+                    .type(parseType(column(record, columnIndexes[4])))
+                    .build();
+        } catch (IllegalArgumentException invalidValue) {
+            reject(report, line, name, invalidValue.getMessage());
+            return null;
+        }
+        Set<ConstraintViolation<BeerDTO>> violations = validator.validate(beerDTO);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(violation -> violation.getPropertyPath() + " " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            reject(report, line, name, message);
+            return null;
+        }
+        return new ImportRow(line, beerDTO);
+    }
+
+    private void flush(Map<String, ImportRow> batch, List<ImportRow> supersededRows, ImportReportDTO report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<BeerChangeEvent> changes = new ArrayList<>(batch.size());
+        List<ImportRowErrorDTO> rejections = new ArrayList<>();
+        try {
+            int[] createdAndUpdated = null;
+            for (int attempt = 1; createdAndUpdated == null && attempt <= MAX_LOCK_ATTEMPTS; attempt++) {
+                createdAndUpdated = lockAndUpsert(batch.values(), changes, rejections);
+            }
+            if (createdAndUpdated == null) {
+                log.warn("Beer import batch of {} rows kept changing while it was stored", batch.size());
+                rejectBatch(batch, supersededRows, report, "its beers kept changing");
+                return;
+            }
+            report.setCreated(report.getCreated() + createdAndUpdated[0]);
+            report.setUpdated(report.getUpdated() + createdAndUpdated[1] + supersededRows.size());
+            rejections.forEach(rejection -> reject(report, rejection.getLine(), rejection.getName(), rejection.getMessage()));
+            // Only announced once the batch is committed.
+            changes.forEach(eventPublisher::publishEvent);
+        } catch (DataAccessException dataAccessException) {
+            log.warn("Beer import batch of {} rows failed", batch.size(), dataAccessException);
+            rejectBatch(batch, supersededRows, report, dataAccessException.getMostSpecificCause().getMessage());
+            return;
+        }
+        log.debug("Beer import progress: {} rows read, {} created, {} updated, {} rejected",
+                report.getRowsRead(), report.getCreated(), report.getUpdated(), report.getRejected());
+        batch.clear();
+        supersededRows.clear();
+    }
+
+    private void rejectBatch(Map<String, ImportRow> batch, List<ImportRow> supersededRows, ImportReportDTO report, String cause) {
+        List<ImportRow> rows = new ArrayList<>(supersededRows);
+        rows.addAll(batch.values());
+        rows.sort(Comparator.comparingLong(ImportRow::getLine));
+        for (ImportRow row : rows) {
+            reject(report, row.getLine(), row.getBeerDTO().getName(), "Batch could not be stored: " + cause);
+        }
+        batch.clear();
+        supersededRows.clear();
+    }
+
+    /**
+     * Locks the beers the rows' names resolve to and upserts the rows in a transaction. The locks
+     * are held until the transaction is over, so no reservation can be opened between the check
+     * and the commit. Returns {@code null}, with nothing stored, if a name resolves to a beer that
+     * was not locked once read again inside the transaction.
+     */
+    private int[] lockAndUpsert(Collection<ImportRow> rows, List<BeerChangeEvent> changes, List<ImportRowErrorDTO> rejections) {
+        List<String> names = rows.stream().map(row -> row.getBeerDTO().getName()).collect(Collectors.toList());
+        Set<Long> lockedIds = beerStore.findAllByNameIn(names).stream().map(Beer::getId).collect(Collectors.toSet());
+        List<Lock> beerLocks = reservationRegistry.lockAllFor(lockedIds);
+        try {
+            return transactionTemplate.execute(status -> {
+                Map<String, Beer> existingBeers = beerStore.findAllByNameIn(names).stream()
+                        .collect(Collectors.toMap(Beer::getName, Function.identity()));
+                boolean allLocked = existingBeers.values().stream().map(Beer::getId).allMatch(lockedIds::contains);
+                return allLocked ? upsert(rows, existingBeers, changes, rejections) : null;
+            });
+        } finally {
+            beerLocks.forEach(Lock::unlock);
+        }
+    }
+
+    /**
+     * Saves the rows that keep their reservations covered, reading the existing beers and their
+     * reservations under the beer locks.
+     */
+    private int[] upsert(Collection<ImportRow> rows, Map<String, Beer> existingBeers,
+                         List<BeerChangeEvent> changes, List<ImportRowErrorDTO> rejections) {
+        rejections.clear();
+        List<Beer> beersToSave = new ArrayList<>(rows.size());
+        List<Integer> previousQuantities = new ArrayList<>(rows.size());
+        int created = 0;
+        int updated = 0;
+        for (ImportRow row : rows) {
+            Beer beer = beerMapper.toModel(row.getBeerDTO());
+            Beer existingBeer = existingBeers.get(beer.getName());
+            if (existingBeer == null) {
+                previousQuantities.add(null);
+                created++;
+            } else if (beer.getQuantity() < reservationRegistry.reservedQuantity(existingBeer.getId())) {
+                rejections.add(new ImportRowErrorDTO(row.getLine(), beer.getName(), "quantity " + beer.getQuantity()
+                        + " is below the " + reservationRegistry.reservedQuantity(existingBeer.getId()) + " units reserved"));
+                continue;
+            } else {
+                previousQuantities.add(existingBeer.getQuantity());
+                existingBeer.setBrand(beer.getBrand());
+                existingBeer.setMax(beer.getMax());
+                existingBeer.setQuantity(beer.getQuantity());
+                existingBeer.setType(beer.getType());
+                beer = existingBeer;
+                updated++;
+            }
+            beersToSave.add(beer);
+        }
+        List<Beer> savedBeers = beerStore.saveAll(beersToSave);
+        changes.clear();
+        for (int i = 0; i < savedBeers.size(); i++) {
+            Integer previousQuantity = previousQuantities.get(i);
+            changes.add(previousQuantity == null
+                    ? BeerChangeEvent.created(savedBeers.get(i))
+                    : BeerChangeEvent.updated(savedBeers.get(i), previousQuantity, reservationRegistry.nextVersion(savedBeers.get(i).getId())));
+        }
+        return new int[]{created, updated};
+    }
+
+    private void reject(ImportReportDTO report, long line, String name, String message) {
+        report.setRejected(report.getRejected() + 1);
+        if (report.getErrors().size() < maxReportedErrors) {
+            report.getErrors().add(new ImportRowErrorDTO(line, name, message));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+
+    private static int[] resolveColumns(List<String> header) {
+        int[] columnIndexes = new int[COLUMNS.length];
+        for (int i = 0; i < COLUMNS.length; i++) {
+            columnIndexes[i] = indexOfIgnoreCase(header, COLUMNS[i]);
+            if (columnIndexes[i] < 0) {
+                throw new CsvFormatException("Missing column " + COLUMNS[i] + " in header " + header, 1);
+            }
+        }
+        return columnIndexes;
+    }
+
+    private static int indexOfIgnoreCase(List<String> header, String column) {
+        for (int i = 0; i < header.size(); i++) {
+            if (header.get(i).trim().equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String column(List<String> record, int index) {
+        if (index >= record.size()) {
+            return null;
+        }
+        String value = record.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Integer parseInteger(String value, String column) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value);
+        } catch (NumberFormatException invalidNumber) {
+            throw new IllegalArgumentException(column + " is not a valid number: " + value);
+        }
+    }
+
+    private static BeerType parseType(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return BeerType.valueOf(value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException unknownType) {
+            throw new IllegalArgumentException("type is not a known beer type: " + value);
+        }
+    }
+
+    @lombok.Value
+    private static class ImportRow {
+        long line;
+        BeerDTO beerDTO;
+    }
+}
@@ -1,83 +1,325 @@
 package one.digitalinnovation.beerstock.service;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
+import lombok.Getter;
 import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerLookupDTO;
+import one.digitalinnovation.beerstock.dto.BeerStockDTO;
+import one.digitalinnovation.beerstock.dto.BeerSuggestionDTO;
+import one.digitalinnovation.beerstock.dto.ReservationDTO;
+import one.digitalinnovation.beerstock.dto.ReservationRequestDTO;
+import one.digitalinnovation.beerstock.dto.StockTransferDTO;
 import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.StockLocation;
 import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
 import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
 import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.ReservationNotFoundException;
+import one.digitalinnovation.beerstock.exception.StockLocationNotFoundException;
+import one.digitalinnovation.beerstock.feed.BeerChangeEvent;
+import one.digitalinnovation.beerstock.hotkeys.HotKeyTracker;
 import one.digitalinnovation.beerstock.mapper.BeerMapper;
-import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.reservation.Reservation;
+import one.digitalinnovation.beerstock.reservation.ReservationRegistry;
+import one.digitalinnovation.beerstock.search.BeerNameIndex;
+import one.digitalinnovation.beerstock.storage.BeerStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
 @Service
 @AllArgsConstructor(onConstructor = @__(@Autowired))
 public class BeerService {
 
-    private final BeerRepository beerRepository;
-    private final BeerMapper beerMapper = BeerMapper.INSTANCE;
+    // Upper bound of keys per IN query, well below the bind-parameter limits of common databases.
+    static final int LOOKUP_CHUNK_SIZE = 500;
+
+    private final BeerStore beerStore;
+    private final ReservationRegistry reservationRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BeerNameIndex beerNameIndex;
+    private final HotKeyTracker hotKeyTracker;
+    private final BeerMapper beerMapper;
+
+    // Concurrent identical reads share one store query and one mapped result.
+    @Getter(AccessLevel.PACKAGE)
+    private final SingleFlight<String, BeerDTO> findByNameFlight = new SingleFlight<>();
+    @Getter(AccessLevel.PACKAGE)
+    private final SingleFlight<Boolean, List<BeerDTO>> listAllFlight = new SingleFlight<>();
+    // Compare-and-set attempts that lost against a concurrent quantity change and were retried.
+    @Getter(AccessLevel.PACKAGE)
+    private final LongAdder quantityUpdateConflicts = new LongAdder();
 
     public BeerDTO createBeer(BeerDTO beerDTO) throws BeerAlreadyRegisteredException {
         verifyIfIsAlreadyRegistered(beerDTO.getName());
         Beer beer = beerMapper.toModel(beerDTO);
-        Beer savedBeer = beerRepository.save(beer);
+        Beer savedBeer = beerStore.create(beer);
+        eventPublisher.publishEvent(BeerChangeEvent.created(savedBeer));
         return beerMapper.toDTO(savedBeer);
     }
 
     public BeerDTO findByName(String name) throws BeerNotFoundException {
-        Beer foundBeer = beerRepository.findByName(name)
-                .orElseThrow(() -> new BeerNotFoundException(name));
-        return beerMapper.toDTO(foundBeer);
+        BeerDTO foundBeer = findByNameFlight.execute(name, () -> {
+            Beer beer = beerStore.findByName(name)
+                    .orElseThrow(() -> new BeerNotFoundException(name));
+            return beerMapper.toDTO(beer);
+        });
+        hotKeyTracker.recordLookup(foundBeer.getId());
+        return foundBeer;
     }
 
     public List<BeerDTO> listAll() {
-        return beerRepository.findAll()
-                .stream()
-                .map(beerMapper::toDTO)
+        return listAllFlight.execute(Boolean.TRUE, () -> Collections.unmodifiableList(beerMapper.toDTOs(beerStore.findAll())));
+    }
+
+    /**
+     * Resolves many ids with as few store queries as possible. The answer has one entry per
+     * requested id, in request order, with {@code found = false} for unknown ids.
+     */
+    public List<BeerLookupDTO> lookupByIds(List<Long> ids) {
+        Map<Long, BeerDTO> foundBeers = new HashMap<>();
+        for (List<Long> chunk : chunks(ids)) {
+            beerStore.findAllById(chunk).forEach(beer -> foundBeers.put(beer.getId(), beerMapper.toDTO(beer)));
+        }
+        return ids.stream()
+                .map(id -> new BeerLookupDTO(id, null, foundBeers.containsKey(id), foundBeers.get(id)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Same as {@link #lookupByIds(List)}, keyed by beer name.
+     */
+    public List<BeerLookupDTO> lookupByNames(List<String> names) {
+        Map<String, BeerDTO> foundBeers = new HashMap<>();
+        for (List<String> chunk : chunks(names)) {
+            beerStore.findAllByNameIn(chunk).forEach(beer -> foundBeers.put(beer.getName(), beerMapper.toDTO(beer)));
+        }
+        return names.stream()
+                .map(name -> new BeerLookupDTO(null, name, foundBeers.containsKey(name), foundBeers.get(name)))
                 .collect(Collectors.toList());
     }
 
+    private static <T> List<List<T>> chunks(Collection<T> keys) {
+        List<T> distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinctKeys.size(); from += LOOKUP_CHUNK_SIZE) {
+            chunks.add(distinctKeys.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, distinctKeys.size())));
+        }
+        return chunks;
+    }
+
+    public List<BeerSuggestionDTO> autocomplete(String prefix, int limit) {
+        return beerNameIndex.suggest(prefix, limit);
+    }
+
     public void deleteById(Long id) throws BeerNotFoundException {
-        verifyIfExists(id);
-        beerRepository.deleteById(id);
+        Lock beerLock = reservationRegistry.lockFor(id);
+        beerLock.lock();
+        try {
+            Beer beerToDelete = verifyIfExists(id);
+            beerStore.deleteById(id);
+            eventPublisher.publishEvent(BeerChangeEvent.deleted(beerToDelete, reservationRegistry.nextVersion(id)));
+        } finally {
+            beerLock.unlock();
+        }
     }
 
     private void verifyIfIsAlreadyRegistered(String name) throws BeerAlreadyRegisteredException {
-        Optional<Beer> optSavedBeer = beerRepository.findByName(name);
+        Optional<Beer> optSavedBeer = beerStore.findByName(name);
         if (optSavedBeer.isPresent()) {
             throw new BeerAlreadyRegisteredException(name);
         }
     }
 
     private Beer verifyIfExists(Long id) throws BeerNotFoundException {
-        return beerRepository.findById(id)
+        return beerStore.findById(id)
                 .orElseThrow(() -> new BeerNotFoundException(id));
     }
 
-    public BeerDTO increment(Long id, int quantityToIncrement) throws BeerNotFoundException, BeerStockExceededException {
-        Beer beerToIncrementStock = verifyIfExists(id);
-        int quantityAfterIncrement = quantityToIncrement + beerToIncrementStock.getQuantity();
-        if (quantityAfterIncrement <= beerToIncrementStock.getMax()) {
-            beerToIncrementStock.setQuantity(quantityAfterIncrement);
-            Beer incrementedBeerStock = beerRepository.save(beerToIncrementStock);
-            return beerMapper.toDTO(incrementedBeerStock);
+    public BeerDTO increment(Long id, int quantityToIncrement) throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        return increment(id, quantityToIncrement, StockLocation.DEFAULT);
+    }
+
+    public BeerDTO increment(Long id, int quantityToIncrement, String location) throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        return updateQuantity(id, locationOrDefault(location), quantityToIncrement, quantityToIncrement);
+    }
+
+    public BeerDTO decrement(Long id, int quantityToDecrement) throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        return decrement(id, quantityToDecrement, StockLocation.DEFAULT);
+    }
+
+    public BeerDTO decrement(Long id, int quantityToDecrement, String location) throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        return updateQuantity(id, locationOrDefault(location), -quantityToDecrement, quantityToDecrement);
+    }
+
+    public BeerStockDTO findStock(Long id) throws BeerNotFoundException {
+        Beer beer = verifyIfExists(id);
+        return new BeerStockDTO(beer.getId(), beer.getName(), beer.getMax(), beer.getQuantity(), beerStore.findStock(id));
+    }
+
+    /**
+     * Moves stock of a beer between two locations. The beer's quantity, and so what can be
+     * reserved, does not change.
+     */
+    public BeerStockDTO transfer(Long id, StockTransferDTO stockTransferDTO) throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        String from = stockTransferDTO.getFrom();
+        String to = stockTransferDTO.getTo();
+        int quantity = stockTransferDTO.getQuantity();
+        Lock beerLock = reservationRegistry.lockFor(id);
+        beerLock.lock();
+        try {
+            while (true) {
+                Beer beer = verifyIfExists(id);
+                Map<String, Integer> stock = beerStore.findStock(id);
+                int fromQuantity = quantityAt(stock, from);
+                int toQuantity = quantityAt(stock, to);
+                if (fromQuantity < quantity) {
+                    throw new BeerStockExceededException(id, from, quantity, fromQuantity);
+                }
+                if (beerStore.compareAndTransferStock(id, from, fromQuantity, to, toQuantity, quantity)) {
+                    stock.put(from, fromQuantity - quantity);
+                    stock.put(to, toQuantity + quantity);
+                    eventPublisher.publishEvent(BeerChangeEvent.stockTransferred(beer, from, to, quantity, reservationRegistry.nextVersion(id)));
+                    return new BeerStockDTO(beer.getId(), beer.getName(), beer.getMax(), beer.getQuantity(), stock);
+                }
+                quantityUpdateConflicts.increment();
+            }
+        } finally {
+            beerLock.unlock();
+        }
+    }
+
+    public ReservationDTO reserve(Long id, ReservationRequestDTO reservationRequestDTO) throws BeerNotFoundException, BeerStockExceededException {
+        int quantityToReserve = reservationRequestDTO.getQuantity();
+        Duration timeToLive = reservationRequestDTO.getTtlSeconds() == null
+                ? reservationRegistry.getDefaultTimeToLive()
+                : Duration.ofSeconds(reservationRequestDTO.getTtlSeconds());
+        Lock beerLock = reservationRegistry.lockFor(id);
+        beerLock.lock();
+        try {
+            Beer beerToReserve = verifyIfExists(id);
+            int availableQuantity = beerToReserve.getQuantity() - reservationRegistry.reservedQuantity(id);
+            if (quantityToReserve > availableQuantity) {
+                throw new BeerStockExceededException(id, quantityToReserve, beerToReserve.getMax(), availableQuantity);
+            }
+            Reservation reservation = reservationRegistry.reserve(id, quantityToReserve, timeToLive);
+            return new ReservationDTO(reservation.getId(), reservation.getBeerId(), reservation.getQuantity(), reservation.getExpiresAt());
+        } finally {
+            beerLock.unlock();
+        }
+    }
+
+    public BeerDTO commitReservation(Long reservationId) throws ReservationNotFoundException, BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        return commitReservation(reservationId, StockLocation.DEFAULT);
+    }
+
+    /**
+     * Takes the reserved units from the given location. Reservations hold units of the beer's
+     * quantity, not of a location, so the location is only chosen when the units leave. If the
+     * location is unknown or short of units, the reservation stays open.
+     */
+    public BeerDTO commitReservation(Long reservationId, String location) throws ReservationNotFoundException, BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        String stockLocation = locationOrDefault(location);
+        Reservation reservation = closeReservation(reservationId);
+        Lock beerLock = reservationRegistry.lockFor(reservation.getBeerId());
+        beerLock.lock();
+        try {
+            reservationRegistry.unreserve(reservation);
+            try {
+                return applyQuantityUpdate(reservation.getBeerId(), stockLocation, -reservation.getQuantity(), reservation.getQuantity());
+            } catch (BeerStockExceededException | StockLocationNotFoundException | RuntimeException commitFailure) {
+                reservationRegistry.reopen(reservation);
+                throw commitFailure;
+            }
+        } finally {
+            beerLock.unlock();
+        }
+    }
+
+    public void releaseReservation(Long reservationId) throws ReservationNotFoundException {
+        Reservation reservation = closeReservation(reservationId);
+        Lock beerLock = reservationRegistry.lockFor(reservation.getBeerId());
+        beerLock.lock();
+        try {
+            reservationRegistry.unreserve(reservation);
+        } finally {
+            beerLock.unlock();
         }
-        throw new BeerStockExceededException(id, quantityToIncrement, beerToIncrementStock.getMax(), beerToIncrementStock.getQuantity());
     }
 
-    public BeerDTO decrement(Long id, int quantityToDecrement) throws BeerNotFoundException, BeerStockExceededException {
-        Beer beerToDecrementStock = verifyIfExists(id);
-        int quantityAfterDecrement = beerToDecrementStock.getQuantity() - quantityToDecrement;
-        if (quantityAfterDecrement >= 0) {
-            beerToDecrementStock.setQuantity(quantityAfterDecrement);
-            Beer decrementedBeerStock = beerRepository.save(beerToDecrementStock);
-            return beerMapper.toDTO(decrementedBeerStock);
+    private Reservation closeReservation(Long reservationId) throws ReservationNotFoundException {
+        Reservation reservation = reservationRegistry.close(reservationId);
+        if (reservation == null) {
+            throw new ReservationNotFoundException(reservationId);
         }
-        throw new BeerStockExceededException(id, quantityToDecrement, beerToDecrementStock.getMax(), beerToDecrementStock.getQuantity());
+        return reservation;
+    }
+
+    private BeerDTO updateQuantity(Long id, String location, int delta, int requestedQuantity) throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        hotKeyTracker.recordStockMovement(id);
+        // Decreases must see a stable reserved total, and every change needs its event version
+        // issued in the order the changes took effect, so both run under the beer's lock.
+        Lock beerLock = reservationRegistry.lockFor(id);
+        beerLock.lock();
+        try {
+            return applyQuantityUpdate(id, location, delta, requestedQuantity);
+        } finally {
+            beerLock.unlock();
+        }
+    }
+
+    private BeerDTO applyQuantityUpdate(Long id, String location, int delta, int requestedQuantity) throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        while (true) {
+            Beer beerToUpdate = verifyIfExists(id);
+            int currentQuantity = beerToUpdate.getQuantity();
+            int quantityAfterUpdate = currentQuantity + delta;
+            int reservedQuantity = delta < 0 ? reservationRegistry.reservedQuantity(id) : 0;
+            if (quantityAfterUpdate - reservedQuantity < 0 || quantityAfterUpdate > beerToUpdate.getMax()) {
+                throw new BeerStockExceededException(id, requestedQuantity, beerToUpdate.getMax(), currentQuantity);
+            }
+            int locationQuantity = quantityAt(beerStore.findStock(id), location);
+            if (locationQuantity + delta < 0) {
+                throw new BeerStockExceededException(id, location, requestedQuantity, locationQuantity);
+            }
+            if (beerStore.compareAndSetStock(id, location, currentQuantity, locationQuantity, delta)) {
+                beerToUpdate.setQuantity(quantityAfterUpdate);
+                eventPublisher.publishEvent(BeerChangeEvent.quantityChanged(beerToUpdate, location, delta, reservationRegistry.nextVersion(id)));
+                return beerMapper.toDTO(beerToUpdate);
+            }
+            quantityUpdateConflicts.increment();
+        }
+    }
+
+    /**
+     * Units of a beer held at a location. A location the beer was never stocked at holds none,
+     * provided it is registered.
+     */
+    private int quantityAt(Map<String, Integer> stock, String location) throws StockLocationNotFoundException {
+        Integer quantity = stock.get(location);
+        if (quantity != null) {
+            return quantity;
+        }
+        if (!beerStore.findLocation(location).isPresent()) {
+            throw new StockLocationNotFoundException(location);
+        }
+        return 0;
+    }
+
+    private static String locationOrDefault(String location) {
+        return location == null ? StockLocation.DEFAULT : location;
     }
 }
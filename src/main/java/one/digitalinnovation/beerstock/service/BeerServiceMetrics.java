@@ -0,0 +1,26 @@
+package one.digitalinnovation.beerstock.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+@Component
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class BeerServiceMetrics implements MeterBinder {
+
+    private final BeerService beerService;
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        beerService.getFindByNameFlight().bindTo(meterRegistry, "findByName");
+        beerService.getListAllFlight().bindTo(meterRegistry, "listAll");
+        FunctionCounter.builder("beerstock.stock.update.conflicts", beerService.getQuantityUpdateConflicts(), LongAdder::sum)
+                .description("Stock updates retried because the quantity changed concurrently")
+                .register(meterRegistry);
+    }
+}
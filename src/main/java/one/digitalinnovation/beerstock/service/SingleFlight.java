@@ -0,0 +1,84 @@
+package one.digitalinnovation.beerstock.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deduplicates concurrent calls for the same key: the first caller runs the loader and every
+ * caller that arrives while it is still running waits for, and receives, the same result or
+ * exception. Nothing is cached once the call completes.
+ */
+public class SingleFlight<K, V> {
+
+    @FunctionalInterface
+    public interface Loader<V, E extends Exception> {
+        V load() throws E;
+    }
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder executions = new LongAdder();
+
+    public <E extends Exception> V execute(K key, Loader<V, E> loader) throws E {
+        calls.increment();
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> runningCall = inFlight.putIfAbsent(key, call);
+        if (runningCall != null) {
+            return await(runningCall);
+        }
+        executions.increment();
+        try {
+            V value = loader.load();
+            call.complete(value);
+            return value;
+        } catch (Throwable throwable) {
+            call.completeExceptionally(throwable);
+            throw throwable;
+        } finally {
+            inFlight.remove(key, call);
+        }
+    }
+
+    public void bindTo(MeterRegistry meterRegistry, String operation) {
+        FunctionCounter.builder("beerstock.singleflight.calls", calls, LongAdder::doubleValue)
+                .description("Calls received by the request coalescer")
+                .tag("operation", operation)
+                .register(meterRegistry);
+        FunctionCounter.builder("beerstock.singleflight.executions", executions, LongAdder::doubleValue)
+                .description("Calls that actually hit the store")
+                .tag("operation", operation)
+                .register(meterRegistry);
+        Gauge.builder("beerstock.singleflight.coalescing.ratio", this, SingleFlight::coalescingRatio)
+                .description("Fraction of calls served by another caller's in-flight query")
+                .tag("operation", operation)
+                .register(meterRegistry);
+    }
+
+    public double coalescingRatio() {
+        long totalCalls = calls.sum();
+        return totalCalls == 0 ? 0 : 1 - (double) executions.sum() / totalCalls;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V, E extends Exception> V await(CompletableFuture<V> call) throws E {
+        try {
+            return call.join();
+        } catch (CompletionException completionException) {
+            Throwable cause = completionException.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (E) cause;
+        }
+    }
+}
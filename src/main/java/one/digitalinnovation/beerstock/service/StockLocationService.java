@@ -0,0 +1,46 @@
+package one.digitalinnovation.beerstock.service;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.dto.StockLocationDTO;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.exception.StockLocationAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.storage.BeerStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Registers the warehouses and bars that hold stock. Totals per location are maintained by the
+ * store with every stock change, so listing them is a plain read.
+ */
+@Service
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class StockLocationService {
+
+    private final BeerStore beerStore;
+
+    public StockLocationDTO createLocation(StockLocationDTO stockLocationDTO) throws StockLocationAlreadyRegisteredException {
+        String name = stockLocationDTO.getName();
+        if (beerStore.findLocation(name).isPresent()) {
+            throw new StockLocationAlreadyRegisteredException(name);
+        }
+        try {
+            return toDTO(beerStore.createLocation(name));
+        } catch (DataIntegrityViolationException registeredConcurrently) {
+            throw new StockLocationAlreadyRegisteredException(name);
+        }
+    }
+
+    public List<StockLocationDTO> listAll() {
+        return beerStore.findAllLocations().stream()
+                .map(StockLocationService::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    private static StockLocationDTO toDTO(StockLocation stockLocation) {
+        return new StockLocationDTO(stockLocation.getName(), stockLocation.getQuantity());
+    }
+}
@@ -0,0 +1,65 @@
+package one.digitalinnovation.beerstock.sql;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number of SQL statements executed, and time spent executing them, within one unit of work
+ * such as an HTTP request. Statistics are bound to the current thread with {@link #bind} and
+ * filled in by datasources wrapped with {@link SqlStatisticsDataSource}; work handed to other
+ * threads can carry them along by binding the same instance there.
+ */
+public final class SqlStatistics {
+
+    private static final ThreadLocal<SqlStatistics> CURRENT = new ThreadLocal<>();
+
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+
+    /**
+     * Returns the statistics bound to the current thread, or {@code null} if there are none.
+     */
+    public static SqlStatistics current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds the statistics to the current thread until the returned scope is closed, which
+     * restores whatever was bound before.
+     */
+    public static Scope bind(SqlStatistics statistics) {
+        SqlStatistics previous = CURRENT.get();
+        CURRENT.set(statistics);
+        return () -> {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        };
+    }
+
+    public long getStatements() {
+        return statements.get();
+    }
+
+    public Duration getTime() {
+        return Duration.ofNanos(nanos.get());
+    }
+
+    void record(long elapsedNanos) {
+        statements.incrementAndGet();
+        nanos.addAndGet(elapsedNanos);
+    }
+
+    @Override
+    public String toString() {
+        return getStatements() + " SQL statements in " + getTime().toNanos() / 1_000 + " µs";
+    }
+
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
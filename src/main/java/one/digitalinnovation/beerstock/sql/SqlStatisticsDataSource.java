@@ -0,0 +1,101 @@
+package one.digitalinnovation.beerstock.sql;
+
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Wraps a {@link DataSource} so that every statement execution is recorded in the
+ * {@link SqlStatistics} bound to the calling thread. A JDBC batch counts as one statement,
+ * since it is sent in one round trip. The wrapper implements every interface of the wrapped
+ * datasource, so pools stay {@link java.io.Closeable} and unwrappable.
+ */
+public final class SqlStatisticsDataSource {
+
+    private SqlStatisticsDataSource() {
+    }
+
+    public static DataSource wrap(DataSource dataSource) {
+        if (isWrapped(dataSource)) {
+            return dataSource;
+        }
+        return proxy(dataSource, new DataSourceHandler(dataSource));
+    }
+
+    public static boolean isWrapped(Object target) {
+        return Proxy.isProxyClass(target.getClass()) && Proxy.getInvocationHandler(target) instanceof DataSourceHandler;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(T target, InvocationHandler handler) {
+        Class<?>[] interfaces = ClassUtils.getAllInterfacesForClass(target.getClass(), SqlStatisticsDataSource.class.getClassLoader());
+        return (T) Proxy.newProxyInstance(SqlStatisticsDataSource.class.getClassLoader(), interfaces, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException invocationFailure) {
+            throw invocationFailure.getCause();
+        }
+    }
+
+    private static final class DataSourceHandler implements InvocationHandler {
+
+        private final DataSource target;
+
+        private DataSourceHandler(DataSource target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = SqlStatisticsDataSource.invoke(target, method, args);
+            return result instanceof Connection ? proxy(result, new ConnectionHandler((Connection) result)) : result;
+        }
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = SqlStatisticsDataSource.invoke(target, method, args);
+            return result instanceof Statement ? proxy(result, new StatementHandler(result)) : result;
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Object target;
+
+        private StatementHandler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            SqlStatistics statistics = SqlStatistics.current();
+            if (statistics == null || !method.getName().startsWith("execute")) {
+                return SqlStatisticsDataSource.invoke(target, method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                return SqlStatisticsDataSource.invoke(target, method, args);
+            } finally {
+                statistics.record(System.nanoTime() - start);
+            }
+        }
+    }
+}
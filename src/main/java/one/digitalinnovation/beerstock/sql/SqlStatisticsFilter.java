@@ -0,0 +1,108 @@
+package one.digitalinnovation.beerstock.sql;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.web.BeforeCommitResponse;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the SQL statements each HTTP request executes and the time they take. The totals are
+ * put in the MDC for the request log line and recorded in the {@code beerstock.http.sql.statements}
+ * and {@code beerstock.http.sql.time} histograms, tagged by method and URI pattern. With
+ * {@code beerstock.sql.statistics.response-headers} on, they are also returned in the
+ * {@code X-Sql-Statements} and {@code X-Sql-Time} (milliseconds) headers. That is off by default,
+ * since the headers tell any client how much database work its request caused; tests turn it on
+ * to pin statement counts.
+ *
+ * <p>Headers must go out before the body, so they hold the statements executed before the
+ * first byte of the response was written, which is all of them for the REST endpoints.
+ */
+@Slf4j
+@Component
+@Order(SqlStatisticsFilter.ORDER)
+@ConditionalOnProperty(name = "beerstock.sql.statistics.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatisticsFilter extends OncePerRequestFilter {
+
+    public static final int ORDER = Ordered.HIGHEST_PRECEDENCE + 100;
+    public static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    public static final String TIME_HEADER = "X-Sql-Time";
+    static final String STATEMENTS_MDC_KEY = "sqlStatements";
+    static final String TIME_MDC_KEY = "sqlTimeMs";
+
+    private final MeterRegistry meterRegistry;
+    private final boolean responseHeaders;
+
+    @Autowired
+    public SqlStatisticsFilter(MeterRegistry meterRegistry,
+                               @Value("${beerstock.sql.statistics.response-headers:false}") boolean responseHeaders) {
+        this.meterRegistry = meterRegistry;
+        this.responseHeaders = responseHeaders;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlStatistics statistics = new SqlStatistics();
+        BeforeCommitResponse statisticsResponse = responseHeaders ? new BeforeCommitResponse(response, () -> {
+            response.setHeader(STATEMENTS_HEADER, String.valueOf(statistics.getStatements()));
+            response.setHeader(TIME_HEADER, formatMillis(statistics));
+        }) : null;
+        try (SqlStatistics.Scope ignored = SqlStatistics.bind(statistics)) {
+            filterChain.doFilter(request, statisticsResponse != null ? statisticsResponse : response);
+        } finally {
+            if (statisticsResponse != null) {
+                statisticsResponse.beforeCommit();
+            }
+            if (!request.isAsyncStarted()) {
+                record(request, statistics);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, SqlStatistics statistics) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        DistributionSummary.builder("beerstock.http.sql.statements")
+                .description("SQL statements executed per HTTP request")
+                .tags("method", request.getMethod(), "uri", uri)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statistics.getStatements());
+        Timer.builder("beerstock.http.sql.time")
+                .description("Time spent executing SQL statements per HTTP request")
+                .tags("method", request.getMethod(), "uri", uri)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statistics.getTime());
+        MDC.put(STATEMENTS_MDC_KEY, String.valueOf(statistics.getStatements()));
+        MDC.put(TIME_MDC_KEY, formatMillis(statistics));
+        try {
+            log.debug("{} {} executed {}", request.getMethod(), uri, statistics);
+        } finally {
+            MDC.remove(STATEMENTS_MDC_KEY);
+            MDC.remove(TIME_MDC_KEY);
+        }
+    }
+
+    private static String formatMillis(SqlStatistics statistics) {
+        return String.format(Locale.ROOT, "%.3f", statistics.getTime().toNanos() / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,20 @@
+package one.digitalinnovation.beerstock.sql;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps every {@link DataSource} bean with {@link SqlStatisticsDataSource}.
+ */
+@Component
+@ConditionalOnProperty(name = "beerstock.sql.statistics.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatisticsPostProcessor implements BeanPostProcessor {
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        return bean instanceof DataSource ? SqlStatisticsDataSource.wrap((DataSource) bean) : bean;
+    }
+}
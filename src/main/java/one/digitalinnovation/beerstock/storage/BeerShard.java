@@ -0,0 +1,391 @@
+package one.digitalinnovation.beerstock.storage;
+
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.entity.StockLocationStripe;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * One shard of a {@link ShardedBeerStore}: a {@code beer} table in its own datasource. Rows keep
+ * a shard-local identity id; the id seen by callers is {@code localId * shardCount + index}, so
+ * the owning shard of any id is {@code id % shardCount}.
+ *
+ * <p>The stock of the shard's beers per location lives next to them in {@code beer_stock}, and
+ * {@code stock_location} holds every location with the units of the shard's beers held there,
+ * spread over the location row and its {@code stock_location_stripe} rows as in
+ * {@link JpaBeerStore}. Stock changes are local transactions that lock rows in the same order.
+ */
+class BeerShard {
+
+    private static final String CREATE_TABLE = "create table if not exists beer ("
+            + "id bigint auto_increment primary key, "
+            + "name varchar(255) not null unique, "
+            + "brand varchar(255) not null, "
+            + "max integer not null, "
+            + "quantity integer not null, "
+            + "type varchar(255) not null)";
+    private static final String CREATE_STOCK_TABLE = "create table if not exists beer_stock ("
+            + "beer_id bigint not null, "
+            + "location varchar(255) not null, "
+            + "quantity integer not null, "
+            + "primary key (beer_id, location))";
+    private static final String CREATE_LOCATION_TABLE = "create table if not exists stock_location ("
+            + "name varchar(255) primary key, "
+            + "quantity bigint not null)";
+    private static final String CREATE_STRIPE_TABLE = "create table if not exists stock_location_stripe ("
+            + "location varchar(255) not null, "
+            + "stripe integer not null, "
+            + "quantity bigint not null, "
+            + "primary key (location, stripe))";
+    private static final String SELECT_LOCATIONS = "select l.name, l.quantity + coalesce(sum(s.quantity), 0) as quantity "
+            + "from stock_location l left join stock_location_stripe s on s.location = l.name ";
+    private static final RowMapper<StockLocation> LOCATION_MAPPER = (resultSet, rowNumber) ->
+            new StockLocation(resultSet.getString("name"), resultSet.getLong("quantity"));
+    private static final String COLUMNS = "id, name, brand, max, quantity, type";
+    private static final String INSERT_STOCK = "insert into beer_stock (beer_id, location, quantity) values (:beerId, :location, :quantity)";
+    private static final StockConflict CONFLICT = new StockConflict();
+    private static final String INSERT = "insert into beer (name, brand, max, quantity, type) values (:name, :brand, :max, :quantity, :type)";
+    private static final String UPDATE = "update beer set name = :name, brand = :brand, max = :max, quantity = :quantity, type = :type where id = :id";
+
+    private final int index;
+    private final int shardCount;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RowMapper<Beer> rowMapper;
+
+    BeerShard(int index, int shardCount, DataSource dataSource) {
+        this.index = index;
+        this.shardCount = shardCount;
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.rowMapper = (resultSet, rowNumber) -> new Beer(globalId(resultSet.getLong("id")),
+                resultSet.getString("name"),
+                resultSet.getString("brand"),
+                resultSet.getInt("max"),
+                resultSet.getInt("quantity"),
+                BeerType.valueOf(resultSet.getString("type")));
+        jdbcTemplate.getJdbcTemplate().execute(CREATE_TABLE);
+        jdbcTemplate.getJdbcTemplate().execute(CREATE_STOCK_TABLE);
+        jdbcTemplate.getJdbcTemplate().execute(CREATE_LOCATION_TABLE);
+        jdbcTemplate.getJdbcTemplate().execute(CREATE_STRIPE_TABLE);
+        if (!findLocation(StockLocation.DEFAULT).isPresent()) {
+            registerLocation(StockLocation.DEFAULT);
+        }
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    Beer insert(Beer beer) {
+        return transactionTemplate.execute(status -> {
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(INSERT, parametersOf(beer), keyHolder, new String[]{"id"});
+            long localId = keyHolder.getKey().longValue();
+            jdbcTemplate.update(INSERT_STOCK, stockParameters(localId, StockLocation.DEFAULT, beer.getQuantity()));
+            addToLocation(StockLocation.DEFAULT, localId, beer.getQuantity());
+            return copyOf(beer, globalId(localId));
+        });
+    }
+
+    Optional<Beer> findById(long id) {
+        List<Beer> beers = jdbcTemplate.query("select " + COLUMNS + " from beer where id = :id",
+                new MapSqlParameterSource("id", localId(id)), rowMapper);
+        return beers.stream().findFirst();
+    }
+
+    Optional<Beer> findByName(String name) {
+        List<Beer> beers = jdbcTemplate.query("select " + COLUMNS + " from beer where name = :name",
+                new MapSqlParameterSource("name", name), rowMapper);
+        return beers.stream().findFirst();
+    }
+
+    List<Beer> findAllById(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> localIds = ids.stream().map(this::localId).collect(Collectors.toList());
+        return jdbcTemplate.query("select " + COLUMNS + " from beer where id in (:ids)",
+                new MapSqlParameterSource("ids", localIds), rowMapper);
+    }
+
+    List<Beer> findAll() {
+        return jdbcTemplate.query("select " + COLUMNS + " from beer order by id", rowMapper);
+    }
+
+    List<Beer> findAllByNameIn(Collection<String> names) {
+        if (names.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return jdbcTemplate.query("select " + COLUMNS + " from beer where name in (:names)",
+                new MapSqlParameterSource("names", names), rowMapper);
+    }
+
+    /**
+     * Saves the beers in one local transaction: new beers with one batched insert, existing
+     * beers with one batched update. Returns the saved beers in the given order.
+     */
+    List<Beer> saveAll(List<Beer> beers) {
+        return transactionTemplate.execute(status -> {
+            List<SqlParameterSource> inserts = new ArrayList<>();
+            List<SqlParameterSource> updates = new ArrayList<>();
+            List<String> insertedNames = new ArrayList<>();
+            List<Long> updatedIds = new ArrayList<>();
+            for (Beer beer : beers) {
+                if (beer.getId() == null) {
+                    inserts.add(parametersOf(beer));
+                    insertedNames.add(beer.getName());
+                } else {
+                    updates.add(parametersOf(beer).addValue("id", localId(beer.getId())));
+                    updatedIds.add(beer.getId());
+                }
+            }
+            Map<Long, Map<String, Integer>> stockByBeer = new HashMap<>();
+            if (!updatedIds.isEmpty()) {
+                // Stored beers are locked first, in id order, so their stock holds still until commit.
+                MapSqlParameterSource ids = new MapSqlParameterSource("ids",
+                        updatedIds.stream().map(this::localId).collect(Collectors.toList()));
+                jdbcTemplate.queryForList("select id from beer where id in (:ids) order by id for update", ids, Long.class);
+                jdbcTemplate.query("select beer_id, location, quantity from beer_stock where beer_id in (:ids)", ids,
+                        resultSet -> {
+                            stockByBeer.computeIfAbsent(resultSet.getLong("beer_id"), beerId -> new HashMap<>())
+                                    .put(resultSet.getString("location"), resultSet.getInt("quantity"));
+                        });
+            }
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT, inserts.toArray(new SqlParameterSource[0]));
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE, updates.toArray(new SqlParameterSource[0]));
+            }
+            Map<String, Beer> insertedByName = findAllByNameIn(insertedNames).stream()
+                    .collect(Collectors.toMap(Beer::getName, Function.identity()));
+            List<Beer> savedBeers = new ArrayList<>(beers.size());
+            Map<String, Map<Integer, Long>> locationDeltas = new TreeMap<>();
+            for (Beer beer : beers) {
+                Beer savedBeer = beer.getId() == null ? insertedByName.get(beer.getName()) : copyOf(beer, beer.getId());
+                long localId = localId(savedBeer.getId());
+                Map<String, Integer> stock = stockByBeer.getOrDefault(localId, Collections.emptyMap());
+                Map<String, Integer> deltas = stock.isEmpty()
+                        ? Collections.singletonMap(StockLocation.DEFAULT, savedBeer.getQuantity())
+                        : StockAdjustment.toQuantity(savedBeer.getName(), stock, savedBeer.getQuantity());
+                deltas.forEach((location, delta) -> {
+                    if (!stock.containsKey(location)) {
+                        jdbcTemplate.update(INSERT_STOCK, stockParameters(localId, location, delta));
+                    } else if (!addStock(localId, location, delta)) {
+                        throw new DataIntegrityViolationException("Beer " + savedBeer.getName() + " does not hold "
+                                + -delta + " units at location " + location);
+                    }
+                    locationDeltas.computeIfAbsent(location, name -> new TreeMap<>())
+                            .merge(StockLocationStripe.of(localId), (long) delta, Long::sum);
+                });
+                savedBeers.add(savedBeer);
+            }
+            locationDeltas.forEach((location, stripes) -> stripes.forEach((stripe, delta) -> addToStripe(location, stripe, delta)));
+            return savedBeers;
+        });
+    }
+
+    void deleteById(long id) {
+        transactionTemplate.execute(status -> {
+            MapSqlParameterSource parameters = new MapSqlParameterSource("id", localId(id));
+            if (jdbcTemplate.queryForList("select id from beer where id = :id for update", parameters, Long.class).isEmpty()) {
+                return null;
+            }
+            Map<String, Integer> stock = new TreeMap<>();
+            jdbcTemplate.query("select location, quantity from beer_stock where beer_id = :id order by location for update",
+                    parameters,
+                    resultSet -> {
+                        stock.put(resultSet.getString("location"), resultSet.getInt("quantity"));
+                    });
+            jdbcTemplate.batchUpdate("delete from beer_stock where beer_id = :beerId and location = :location",
+                    stock.keySet().stream()
+                            .map(location -> stockParameters(localId(id), location, 0))
+                            .toArray(SqlParameterSource[]::new));
+            jdbcTemplate.update("delete from beer where id = :id", parameters);
+            stock.forEach((location, quantity) -> addToLocation(location, localId(id), -quantity));
+            return null;
+        });
+    }
+
+    Map<String, Integer> findStock(long id) {
+        Map<String, Integer> stock = new TreeMap<>();
+        jdbcTemplate.query("select location, quantity from beer_stock where beer_id = :id",
+                new MapSqlParameterSource("id", localId(id)),
+                resultSet -> {
+                    stock.put(resultSet.getString("location"), resultSet.getInt("quantity"));
+                });
+        return stock;
+    }
+
+    boolean compareAndSetStock(long id, String location, int expectedQuantity, int expectedLocationQuantity, int delta) {
+        long localId = localId(id);
+        return atomically(() -> {
+            MapSqlParameterSource parameters = new MapSqlParameterSource("id", localId)
+                    .addValue("expectedQuantity", expectedQuantity)
+                    .addValue("newQuantity", expectedQuantity + delta);
+            if (jdbcTemplate.update("update beer set quantity = :newQuantity where id = :id and quantity = :expectedQuantity", parameters) != 1) {
+                throw CONFLICT;
+            }
+            compareAndAddStock(localId, location, expectedLocationQuantity, delta);
+            addToLocation(location, localId, delta);
+        });
+    }
+
+    boolean compareAndTransferStock(long id, String from, int expectedFromQuantity, String to, int expectedToQuantity, int quantity) {
+        long localId = localId(id);
+        boolean fromFirst = from.compareTo(to) < 0;
+        return atomically(() -> {
+            if (jdbcTemplate.queryForList("select id from beer where id = :id for update",
+                    new MapSqlParameterSource("id", localId), Long.class).isEmpty()) {
+                throw CONFLICT;
+            }
+            if (fromFirst) {
+                compareAndAddStock(localId, from, expectedFromQuantity, -quantity);
+                compareAndAddStock(localId, to, expectedToQuantity, quantity);
+                addToLocation(from, localId, -quantity);
+                addToLocation(to, localId, quantity);
+            } else {
+                compareAndAddStock(localId, to, expectedToQuantity, quantity);
+                compareAndAddStock(localId, from, expectedFromQuantity, -quantity);
+                addToLocation(to, localId, quantity);
+                addToLocation(from, localId, -quantity);
+            }
+        });
+    }
+
+    /**
+     * Registers an empty location in this shard. Returns {@code false} if it was registered already.
+     */
+    boolean registerLocation(String name) {
+        try {
+            transactionTemplate.execute(status -> {
+                jdbcTemplate.update("insert into stock_location (name, quantity) values (:name, 0)", new MapSqlParameterSource("name", name));
+                jdbcTemplate.batchUpdate("insert into stock_location_stripe (location, stripe, quantity) values (:name, :stripe, 0)",
+                        IntStream.range(0, StockLocationStripe.STRIPES)
+                                .mapToObj(stripe -> new MapSqlParameterSource("name", name).addValue("stripe", stripe))
+                                .toArray(SqlParameterSource[]::new));
+                return null;
+            });
+            return true;
+        } catch (DuplicateKeyException alreadyRegistered) {
+            return false;
+        }
+    }
+
+    Optional<StockLocation> findLocation(String name) {
+        List<StockLocation> locations = jdbcTemplate.query(SELECT_LOCATIONS + "where l.name = :name group by l.name, l.quantity",
+                new MapSqlParameterSource("name", name), LOCATION_MAPPER);
+        return locations.stream().findFirst();
+    }
+
+    List<StockLocation> findAllLocations() {
+        return jdbcTemplate.query(SELECT_LOCATIONS + "group by l.name, l.quantity order by l.name", LOCATION_MAPPER);
+    }
+
+    private boolean atomically(Runnable changes) {
+        try {
+            transactionTemplate.execute(status -> {
+                changes.run();
+                return null;
+            });
+            return true;
+        } catch (StockConflict | DataIntegrityViolationException conflict) {
+            return false;
+        }
+    }
+
+    /**
+     * Must run with the beer row locked: a missing row is then inserted without racing another
+     * first stock of the same beer.
+     */
+    private void compareAndAddStock(long localId, String location, int expectedLocationQuantity, int delta) {
+        MapSqlParameterSource parameters = stockParameters(localId, location, expectedLocationQuantity + delta)
+                .addValue("expectedQuantity", expectedLocationQuantity);
+        if (jdbcTemplate.update("update beer_stock set quantity = :quantity "
+                + "where beer_id = :beerId and location = :location and quantity = :expectedQuantity", parameters) == 1) {
+            return;
+        }
+        if (expectedLocationQuantity != 0 || delta < 0 || !jdbcTemplate.queryForList("select quantity from beer_stock "
+                + "where beer_id = :beerId and location = :location", parameters, Integer.class).isEmpty()) {
+            throw CONFLICT;
+        }
+        jdbcTemplate.update(INSERT_STOCK, parameters);
+    }
+
+    private boolean addStock(long localId, String location, int delta) {
+        return jdbcTemplate.update("update beer_stock set quantity = quantity + :quantity "
+                + "where beer_id = :beerId and location = :location and quantity + :quantity >= 0", stockParameters(localId, location, delta)) == 1;
+    }
+
+    private void addToLocation(String location, long localId, long delta) {
+        addToStripe(location, StockLocationStripe.of(localId), delta);
+    }
+
+    private void addToStripe(String location, int stripe, long delta) {
+        if (delta != 0 && jdbcTemplate.update("update stock_location_stripe set quantity = quantity + :delta "
+                        + "where location = :name and stripe = :stripe",
+                new MapSqlParameterSource("name", location).addValue("stripe", stripe).addValue("delta", delta)) != 1) {
+            throw new IllegalStateException("Stock location " + location + " is not registered in shard " + index);
+        }
+    }
+
+    private long globalId(long localId) {
+        return localId * shardCount + index;
+    }
+
+    private long localId(long globalId) {
+        return globalId / shardCount;
+    }
+
+    private static MapSqlParameterSource parametersOf(Beer beer) {
+        return new MapSqlParameterSource("name", beer.getName())
+                .addValue("brand", beer.getBrand())
+                .addValue("max", beer.getMax())
+                .addValue("quantity", beer.getQuantity())
+                .addValue("type", beer.getType() == null ? null : beer.getType().name());
+    }
+
+    private static MapSqlParameterSource stockParameters(long localId, String location, int quantity) {
+        return new MapSqlParameterSource("beerId", localId)
+                .addValue("location", location)
+                .addValue("quantity", quantity);
+    }
+
+    private static Beer copyOf(Beer beer, Long id) {
+        return new Beer(id, beer.getName(), beer.getBrand(), beer.getMax(), beer.getQuantity(), beer.getType());
+    }
+
+    /**
+     * Signals an expectation that no longer holds; thrown to roll the transaction back.
+     */
+    private static class StockConflict extends RuntimeException {
+
+        StockConflict() {
+            super(null, null, false, false);
+        }
+    }
+}
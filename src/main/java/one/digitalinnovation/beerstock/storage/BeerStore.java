@@ -0,0 +1,80 @@
+package one.digitalinnovation.beerstock.storage;
+
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Storage SPI used by the service layer. Implementations are selected with the
+ * {@code beerstock.storage.type} property. Beers returned by a store are detached copies:
+ * changing them does not change what is stored.
+ *
+ * <p>Stock is held per {@link StockLocation}. A beer's quantity is the total of its locations
+ * and every location carries the total of the beers held there; stores update both together
+ * with the stock itself, so neither is ever computed from the stock on read. Beers are created
+ * with their whole quantity at {@link StockLocation#DEFAULT}.
+ */
+public interface BeerStore {
+
+    Beer create(Beer beer);
+
+    Optional<Beer> findById(Long id);
+
+    Optional<Beer> findByName(String name);
+
+    /**
+     * Returns the stored beers among the given ids, in no particular order.
+     */
+    List<Beer> findAllById(Collection<Long> ids);
+
+    List<Beer> findAll();
+
+    List<Beer> findAllByNameIn(Collection<String> names);
+
+    /**
+     * Inserts beers without an id and overwrites the stored beers whose id is set. A changed
+     * quantity of a stored beer is applied to its stock: an increase is received at
+     * {@link StockLocation#DEFAULT}, a decrease is taken from {@link StockLocation#DEFAULT}
+     * first and then from the other locations in name order.
+     */
+    List<Beer> saveAll(List<Beer> beers);
+
+    void deleteById(Long id);
+
+    /**
+     * Returns the units of the beer held at each location, by location name. Locations that
+     * never held the beer are absent.
+     */
+    Map<String, Integer> findStock(Long id);
+
+    /**
+     * Adds {@code delta} to the stock of the given beer at {@code location} and to the beer's
+     * quantity, atomically, only if the quantity is still {@code expectedQuantity} and the
+     * location still holds {@code expectedLocationQuantity}. Returns {@code false} if either
+     * changed in the meantime or the beer no longer exists. The location must be registered.
+     */
+    boolean compareAndSetStock(Long id, String location, int expectedQuantity, int expectedLocationQuantity, int delta);
+
+    /**
+     * Moves {@code quantity} units of the given beer from one location to another, atomically,
+     * only if both still hold the expected units. The beer's quantity does not change. Returns
+     * {@code false} if either location changed in the meantime. Both locations must be registered.
+     */
+    boolean compareAndTransferStock(Long id, String from, int expectedFromQuantity, String to, int expectedToQuantity, int quantity);
+
+    /**
+     * Registers an empty location. Fails if the name is taken.
+     */
+    StockLocation createLocation(String name);
+
+    Optional<StockLocation> findLocation(String name);
+
+    /**
+     * Returns every location with the units it holds, by name.
+     */
+    List<StockLocation> findAllLocations();
+}
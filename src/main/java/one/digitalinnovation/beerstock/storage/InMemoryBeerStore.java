@@ -0,0 +1,364 @@
+package one.digitalinnovation.beerstock.storage;
+
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Heap-only store meant as a cache tier and as a fast test backend.
+ *
+ * <p>Ids are handed out sequentially, so a beer lives at slot {@code id} of a chunked array
+ * and lookups by id are plain index arithmetic. Quantity and max are packed into one
+ * {@code long} per slot ({@code max} in the high half, {@code quantity} in the low half),
+ * which lets reads see quantity and max together without locking. Name, brand and type are
+ * kept in a parallel array of immutable snapshots and names are indexed in a
+ * {@link ConcurrentHashMap}.
+ *
+ * <p>The stock of a beer per location is a small map guarded by its own monitor; a stock change
+ * holds it while it checks the expected quantities, CASes the packed word and updates the
+ * location total, so changes to different beers never contend. Stock changes are therefore not
+ * lock-free since stock became per location: a CAS on the packed word alone cannot also check
+ * the location, because the quantity may return to its expected value after changes at other
+ * locations. Reads of quantity and max still only load the packed word.
+ */
+@Component
+@ConditionalOnProperty(name = "beerstock.storage.type", havingValue = "memory")
+public class InMemoryBeerStore implements BeerStore {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MAX_CHUNKS = 1 << 14;
+
+    private static final long TOMBSTONE = pack(Integer.MIN_VALUE, 0);
+
+    private final AtomicReferenceArray<AtomicLongArray> stockChunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final AtomicReferenceArray<AtomicReferenceArray<Beer>> catalogChunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final ConcurrentMap<String, Long> idsByName = new ConcurrentHashMap<>();
+    private final AtomicLong lastId = new AtomicLong();
+    private final ConcurrentMap<Long, Map<String, Integer>> stockByBeer = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<String, AtomicLong> locationTotals = new ConcurrentSkipListMap<>();
+
+    public InMemoryBeerStore() {
+        locationTotals.put(StockLocation.DEFAULT, new AtomicLong());
+    }
+
+    @Override
+    public Beer create(Beer beer) {
+        long id = lastId.incrementAndGet();
+        int slot = slotOf(id);
+        AtomicLongArray stock = stockChunk(id, true);
+        AtomicReferenceArray<Beer> catalog = catalogChunk(id, true);
+        if (idsByName.putIfAbsent(beer.getName(), id) != null) {
+            throw new DataIntegrityViolationException("Beer with name " + beer.getName() + " already stored");
+        }
+        Map<String, Integer> locations = new HashMap<>();
+        locations.put(StockLocation.DEFAULT, beer.getQuantity());
+        stockByBeer.put(id, locations);
+        locationTotals.get(StockLocation.DEFAULT).addAndGet(beer.getQuantity());
+        stock.set(slot, pack(beer.getMax(), beer.getQuantity()));
+        Beer stored = new Beer(id, beer.getName(), beer.getBrand(), beer.getMax(), beer.getQuantity(), beer.getType());
+        catalog.set(slot, stored);
+        return copyOf(stored, beer.getMax(), beer.getQuantity());
+    }
+
+    @Override
+    public Optional<Beer> findById(Long id) {
+        if (!isAllocated(id)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(read(id));
+    }
+
+    @Override
+    public Optional<Beer> findByName(String name) {
+        Long id = idsByName.get(name);
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    @Override
+    public List<Beer> findAllById(Collection<Long> ids) {
+        List<Beer> beers = new ArrayList<>();
+        for (Long id : ids) {
+            findById(id).ifPresent(beers::add);
+        }
+        return beers;
+    }
+
+    @Override
+    public List<Beer> findAll() {
+        long last = lastId.get();
+        List<Beer> beers = new ArrayList<>();
+        for (long id = 1; id <= last; id++) {
+            Beer beer = read(id);
+            if (beer != null) {
+                beers.add(beer);
+            }
+        }
+        return beers;
+    }
+
+    @Override
+    public List<Beer> findAllByNameIn(Collection<String> names) {
+        List<Beer> beers = new ArrayList<>();
+        for (String name : names) {
+            findByName(name).ifPresent(beers::add);
+        }
+        return beers;
+    }
+
+    @Override
+    public List<Beer> saveAll(List<Beer> beers) {
+        List<Beer> savedBeers = new ArrayList<>(beers.size());
+        for (Beer beer : beers) {
+            Beer savedBeer = isAllocated(beer.getId()) ? update(beer) : null;
+            // Like the JPA store, a beer deleted meanwhile is stored again under a new id.
+            savedBeers.add(savedBeer != null ? savedBeer : create(beer));
+        }
+        return savedBeers;
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        if (!isAllocated(id)) {
+            return;
+        }
+        int slot = slotOf(id);
+        AtomicReferenceArray<Beer> catalog = catalogChunk(id, false);
+        AtomicLongArray stock = stockChunk(id, false);
+        Map<String, Integer> locations = stockByBeer.get(id);
+        if (catalog == null || stock == null || locations == null) {
+            return;
+        }
+        synchronized (locations) {
+            Beer removed = catalog.getAndSet(slot, null);
+            if (removed != null) {
+                stock.set(slot, TOMBSTONE);
+                idsByName.remove(removed.getName(), id);
+                stockByBeer.remove(id, locations);
+                locations.forEach((location, quantity) -> locationTotals.get(location).addAndGet(-quantity));
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Integer> findStock(Long id) {
+        Map<String, Integer> locations = id == null ? null : stockByBeer.get(id);
+        if (locations == null) {
+            return new TreeMap<>();
+        }
+        synchronized (locations) {
+            return new TreeMap<>(locations);
+        }
+    }
+
+    @Override
+    public boolean compareAndSetStock(Long id, String location, int expectedQuantity, int expectedLocationQuantity, int delta) {
+        Map<String, Integer> locations = id == null ? null : stockByBeer.get(id);
+        if (locations == null) {
+            return false;
+        }
+        AtomicLong locationTotal = registeredLocation(location);
+        synchronized (locations) {
+            if (locations.getOrDefault(location, 0) != expectedLocationQuantity
+                    || !compareAndSetQuantity(id, expectedQuantity, expectedQuantity + delta)) {
+                return false;
+            }
+            locations.put(location, expectedLocationQuantity + delta);
+            locationTotal.addAndGet(delta);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean compareAndTransferStock(Long id, String from, int expectedFromQuantity, String to, int expectedToQuantity, int quantity) {
+        Map<String, Integer> locations = id == null ? null : stockByBeer.get(id);
+        if (locations == null) {
+            return false;
+        }
+        AtomicLong fromTotal = registeredLocation(from);
+        AtomicLong toTotal = registeredLocation(to);
+        synchronized (locations) {
+            if (stockByBeer.get(id) != locations
+                    || locations.getOrDefault(from, 0) != expectedFromQuantity
+                    || locations.getOrDefault(to, 0) != expectedToQuantity) {
+                return false;
+            }
+            locations.put(from, expectedFromQuantity - quantity);
+            locations.put(to, expectedToQuantity + quantity);
+            fromTotal.addAndGet(-quantity);
+            toTotal.addAndGet(quantity);
+            return true;
+        }
+    }
+
+    @Override
+    public StockLocation createLocation(String name) {
+        if (locationTotals.putIfAbsent(name, new AtomicLong()) != null) {
+            throw new DataIntegrityViolationException("Stock location " + name + " already registered");
+        }
+        return new StockLocation(name, 0);
+    }
+
+    @Override
+    public Optional<StockLocation> findLocation(String name) {
+        AtomicLong total = locationTotals.get(name);
+        return total == null ? Optional.empty() : Optional.of(new StockLocation(name, total.get()));
+    }
+
+    @Override
+    public List<StockLocation> findAllLocations() {
+        List<StockLocation> locations = new ArrayList<>(locationTotals.size());
+        locationTotals.forEach((name, total) -> locations.add(new StockLocation(name, total.get())));
+        return locations;
+    }
+
+    private AtomicLong registeredLocation(String location) {
+        AtomicLong total = locationTotals.get(location);
+        if (total == null) {
+            throw new IllegalStateException("Stock location " + location + " is not registered");
+        }
+        return total;
+    }
+
+    private boolean compareAndSetQuantity(long id, int expectedQuantity, int newQuantity) {
+        if (!isAllocated(id)) {
+            return false;
+        }
+        int slot = slotOf(id);
+        AtomicLongArray stock = stockChunk(id, false);
+        AtomicReferenceArray<Beer> catalog = catalogChunk(id, false);
+        if (catalog == null || stock == null) {
+            return false;
+        }
+        while (true) {
+            long word = stock.get(slot);
+            if (word == TOMBSTONE || catalog.get(slot) == null || quantityOf(word) != expectedQuantity) {
+                return false;
+            }
+            if (stock.compareAndSet(slot, word, pack(maxOf(word), newQuantity))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Overwrites a stored beer under its monitor. Returns {@code null} if the beer is not stored,
+     * or was deleted before its monitor was taken.
+     */
+    private Beer update(Beer beer) {
+        long id = beer.getId();
+        int slot = slotOf(id);
+        AtomicReferenceArray<Beer> catalog = catalogChunk(id, false);
+        AtomicLongArray stock = stockChunk(id, false);
+        Map<String, Integer> locations = stockByBeer.get(id);
+        if (catalog == null || stock == null || locations == null) {
+            return null;
+        }
+        Beer stored = new Beer(id, beer.getName(), beer.getBrand(), beer.getMax(), beer.getQuantity(), beer.getType());
+        synchronized (locations) {
+            Beer previous = catalog.get(slot);
+            if (stockByBeer.get(id) != locations || previous == null) {
+                return null;
+            }
+            Map<String, Integer> deltas = StockAdjustment.toQuantity(beer.getName(), locations, beer.getQuantity());
+            if (!previous.getName().equals(beer.getName())) {
+                if (idsByName.putIfAbsent(beer.getName(), id) != null) {
+                    throw new DataIntegrityViolationException("Beer with name " + beer.getName() + " already stored");
+                }
+                idsByName.remove(previous.getName(), id);
+            }
+            catalog.set(slot, stored);
+            stock.set(slot, pack(beer.getMax(), beer.getQuantity()));
+            deltas.forEach((location, delta) -> {
+                locations.merge(location, delta, Integer::sum);
+                locationTotals.get(location).addAndGet(delta);
+            });
+        }
+        return copyOf(stored, beer.getMax(), beer.getQuantity());
+    }
+
+    private Beer read(long id) {
+        int slot = slotOf(id);
+        AtomicReferenceArray<Beer> catalog = catalogChunk(id, false);
+        AtomicLongArray stock = stockChunk(id, false);
+        if (catalog == null || stock == null) {
+            return null;
+        }
+        Beer beer = catalog.get(slot);
+        long word = stock.get(slot);
+        if (beer == null || word == TOMBSTONE) {
+            return null;
+        }
+        return copyOf(beer, maxOf(word), quantityOf(word));
+    }
+
+    private boolean isAllocated(Long id) {
+        return id != null && id > 0 && id <= lastId.get();
+    }
+
+    private AtomicLongArray stockChunk(long id, boolean create) {
+        int index = chunkOf(id);
+        AtomicLongArray chunk = stockChunks.get(index);
+        if (chunk == null && create) {
+            stockChunks.compareAndSet(index, null, new AtomicLongArray(CHUNK_SIZE));
+            chunk = stockChunks.get(index);
+        }
+        return chunk;
+    }
+
+    private AtomicReferenceArray<Beer> catalogChunk(long id, boolean create) {
+        int index = chunkOf(id);
+        AtomicReferenceArray<Beer> chunk = catalogChunks.get(index);
+        if (chunk == null && create) {
+            catalogChunks.compareAndSet(index, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = catalogChunks.get(index);
+        }
+        return chunk;
+    }
+
+    private static int chunkOf(long id) {
+        long index = id >>> CHUNK_BITS;
+        if (index >= MAX_CHUNKS) {
+            throw new IllegalStateException("In-memory beer store is full, id " + id + " is out of range");
+        }
+        return (int) index;
+    }
+
+    private static int slotOf(long id) {
+        return (int) (id & CHUNK_MASK);
+    }
+
+    private static long pack(int max, int quantity) {
+        return ((long) max << 32) | (quantity & 0xFFFFFFFFL);
+    }
+
+    private static int maxOf(long word) {
+        return (int) (word >> 32);
+    }
+
+    private static int quantityOf(long word) {
+        return (int) word;
+    }
+
+    private static Beer copyOf(Beer beer, int max, int quantity) {
+        return new Beer(beer.getId(), beer.getName(), beer.getBrand(), max, quantity, beer.getType());
+    }
+}
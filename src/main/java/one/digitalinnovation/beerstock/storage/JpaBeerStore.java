@@ -0,0 +1,294 @@
+package one.digitalinnovation.beerstock.storage;
+
+import lombok.AllArgsConstructor;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.BeerStock;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.entity.StockLocationStripe;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.BeerStockRepository;
+import one.digitalinnovation.beerstock.repository.StockLocationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Stores beers with Spring Data JPA. Every stock change runs in one transaction that takes its
+ * row locks in a fixed order (beer, then stock rows by location, then location totals by name),
+ * so concurrent changes wait for each other instead of deadlocking. Holding the beer row also
+ * means no other transaction can insert stock of that beer meanwhile.
+ *
+ * <p>A change adds to the {@link StockLocationStripe} of its beer rather than to the location
+ * row, so changes of different beers at one location only meet on their own stripe.
+ *
+ * <p>Beers are returned as copies of the entities: with the session held open for the whole
+ * request, a caller changing a managed entity would otherwise have the change flushed by the
+ * next transaction of that request.
+ */
+@Component
+@ConditionalOnProperty(name = "beerstock.storage.type", havingValue = "jpa", matchIfMissing = true)
+@AllArgsConstructor(onConstructor = @__(@Autowired))
+public class JpaBeerStore implements BeerStore {
+
+    private static final StockConflict CONFLICT = new StockConflict();
+
+    private final BeerRepository beerRepository;
+    private final BeerStockRepository beerStockRepository;
+    private final StockLocationRepository stockLocationRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void registerDefaultLocation() {
+        if (stockLocationRepository.existsById(StockLocation.DEFAULT)) {
+            return;
+        }
+        try {
+            registerLocation(StockLocation.DEFAULT);
+        } catch (DataIntegrityViolationException registeredConcurrently) {
+            // another instance sharing the database got there first
+        }
+    }
+
+    @Override
+    public Beer create(Beer beer) {
+        return transactionTemplate.execute(status -> {
+            Beer savedBeer = beerRepository.save(beer);
+            beerStockRepository.save(new BeerStock(null, savedBeer.getId(), StockLocation.DEFAULT, savedBeer.getQuantity()));
+            addToLocation(StockLocation.DEFAULT, savedBeer.getId(), savedBeer.getQuantity());
+            return copyOf(savedBeer);
+        });
+    }
+
+    @Override
+    public Optional<Beer> findById(Long id) {
+        return beerRepository.findById(id).map(JpaBeerStore::copyOf);
+    }
+
+    @Override
+    public Optional<Beer> findByName(String name) {
+        return beerRepository.findByName(name).map(JpaBeerStore::copyOf);
+    }
+
+    @Override
+    public List<Beer> findAllById(Collection<Long> ids) {
+        return copiesOf(beerRepository.findAllById(ids));
+    }
+
+    @Override
+    public List<Beer> findAll() {
+        return copiesOf(beerRepository.findAll());
+    }
+
+    @Override
+    public List<Beer> findAllByNameIn(Collection<String> names) {
+        return copiesOf(beerRepository.findByNameIn(names));
+    }
+
+    @Override
+    public List<Beer> saveAll(List<Beer> beers) {
+        return transactionTemplate.execute(status -> {
+            List<Long> storedIds = beers.stream()
+                    .map(Beer::getId)
+                    .filter(id -> id != null)
+                    .collect(Collectors.toList());
+            Map<Long, Map<String, Integer>> stockByBeer = new HashMap<>();
+            if (!storedIds.isEmpty()) {
+                // Stored beers are locked first, in id order, so their stock holds still until commit.
+                beerRepository.findAndLockByIdIn(storedIds);
+                beerStockRepository.findByBeerIdIn(storedIds).forEach(row -> stockByBeer
+                        .computeIfAbsent(row.getBeerId(), id -> new HashMap<>())
+                        .put(row.getLocation(), row.getQuantity()));
+            }
+            List<Beer> savedBeers = beerRepository.saveAll(beers);
+            Map<String, Map<Integer, Long>> locationDeltas = new TreeMap<>();
+            for (Beer savedBeer : savedBeers) {
+                Long id = savedBeer.getId();
+                Map<String, Integer> stock = stockByBeer.getOrDefault(id, Collections.emptyMap());
+                Map<String, Integer> deltas = stock.isEmpty()
+                        ? Collections.singletonMap(StockLocation.DEFAULT, savedBeer.getQuantity())
+                        : StockAdjustment.toQuantity(savedBeer.getName(), stock, savedBeer.getQuantity());
+                deltas.forEach((location, delta) -> {
+                    if (!stock.containsKey(location)) {
+                        beerStockRepository.save(new BeerStock(null, id, location, delta));
+                    } else if (beerStockRepository.addQuantity(id, location, delta) != 1) {
+                        throw new DataIntegrityViolationException("Beer " + savedBeer.getName() + " does not hold "
+                                + -delta + " units at location " + location);
+                    }
+                    locationDeltas.computeIfAbsent(location, name -> new TreeMap<>())
+                            .merge(StockLocationStripe.of(id), (long) delta, Long::sum);
+                });
+            }
+            locationDeltas.forEach((location, stripes) -> stripes.forEach((stripe, delta) -> addToStripe(location, stripe, delta)));
+            return copiesOf(savedBeers);
+        });
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        transactionTemplate.execute(status -> {
+            // Same lock order as a stock change, and the totals are reduced by what is actually
+            // deleted: nothing can change the rows between reading and deleting them.
+            if (!beerRepository.findAndLockById(id).isPresent()) {
+                return null;
+            }
+            List<BeerStock> stock = beerStockRepository.findAndLockByBeerId(id);
+            if (!stock.isEmpty()) {
+                beerStockRepository.deleteByIdIn(stock.stream().map(BeerStock::getId).collect(Collectors.toList()));
+            }
+            beerRepository.deleteBeerById(id);
+            stock.forEach(row -> addToLocation(row.getLocation(), id, -row.getQuantity()));
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, Integer> findStock(Long id) {
+        return beerStockRepository.findByBeerId(id).stream()
+                .collect(Collectors.toMap(BeerStock::getLocation, BeerStock::getQuantity, Integer::sum, TreeMap::new));
+    }
+
+    @Override
+    public boolean compareAndSetStock(Long id, String location, int expectedQuantity, int expectedLocationQuantity, int delta) {
+        return atomically(() -> {
+            if (beerRepository.updateQuantity(id, expectedQuantity, expectedQuantity + delta) != 1) {
+                throw CONFLICT;
+            }
+            compareAndAddStock(id, location, expectedLocationQuantity, delta);
+            addToLocation(location, id, delta);
+        });
+    }
+
+    /**
+     * Same as {@link #compareAndSetStock} without touching the quantity of the beer, for stores
+     * that keep the quantity elsewhere.
+     */
+    boolean compareAndSetLocationStock(Long id, String location, int expectedLocationQuantity, int delta) {
+        return atomically(() -> {
+            lockBeer(id);
+            compareAndAddStock(id, location, expectedLocationQuantity, delta);
+            addToLocation(location, id, delta);
+        });
+    }
+
+    @Override
+    public boolean compareAndTransferStock(Long id, String from, int expectedFromQuantity, String to, int expectedToQuantity, int quantity) {
+        boolean fromFirst = from.compareTo(to) < 0;
+        return atomically(() -> {
+            lockBeer(id);
+            if (fromFirst) {
+                compareAndAddStock(id, from, expectedFromQuantity, -quantity);
+                compareAndAddStock(id, to, expectedToQuantity, quantity);
+                addToLocation(from, id, -quantity);
+                addToLocation(to, id, quantity);
+            } else {
+                compareAndAddStock(id, to, expectedToQuantity, quantity);
+                compareAndAddStock(id, from, expectedFromQuantity, -quantity);
+                addToLocation(to, id, quantity);
+                addToLocation(from, id, -quantity);
+            }
+        });
+    }
+
+    @Override
+    public StockLocation createLocation(String name) {
+        registerLocation(name);
+        return new StockLocation(name, 0);
+    }
+
+    @Override
+    public Optional<StockLocation> findLocation(String name) {
+        return stockLocationRepository.findTotalByName(name);
+    }
+
+    @Override
+    public List<StockLocation> findAllLocations() {
+        return stockLocationRepository.findAllTotals();
+    }
+
+    private void registerLocation(String name) {
+        transactionTemplate.execute(status -> {
+            stockLocationRepository.register(name);
+            for (int stripe = 0; stripe < StockLocationStripe.STRIPES; stripe++) {
+                stockLocationRepository.registerStripe(name, stripe);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs the stock changes in one transaction and reports whether they were applied. Any
+     * expectation that no longer holds rolls the whole transaction back.
+     */
+    private boolean atomically(Runnable changes) {
+        try {
+            transactionTemplate.execute(status -> {
+                changes.run();
+                return null;
+            });
+            return true;
+        } catch (StockConflict | DataIntegrityViolationException conflict) {
+            return false;
+        }
+    }
+
+    private void lockBeer(Long id) {
+        if (!beerRepository.findAndLockById(id).isPresent()) {
+            throw CONFLICT;
+        }
+    }
+
+    /**
+     * Must run with the beer row locked: a missing row is then inserted without racing another
+     * first stock of the same beer.
+     */
+    private void compareAndAddStock(Long id, String location, int expectedLocationQuantity, int delta) {
+        if (beerStockRepository.updateQuantity(id, location, expectedLocationQuantity, expectedLocationQuantity + delta) == 1) {
+            return;
+        }
+        if (expectedLocationQuantity != 0 || delta < 0 || beerStockRepository.existsByBeerIdAndLocation(id, location)) {
+            throw CONFLICT;
+        }
+        beerStockRepository.save(new BeerStock(null, id, location, delta));
+    }
+
+    private void addToLocation(String location, Long beerId, long delta) {
+        addToStripe(location, StockLocationStripe.of(beerId), delta);
+    }
+
+    private void addToStripe(String location, int stripe, long delta) {
+        if (delta != 0 && stockLocationRepository.addQuantity(location, stripe, delta) != 1) {
+            throw new IllegalStateException("Stock location " + location + " is not registered");
+        }
+    }
+
+    private static Beer copyOf(Beer beer) {
+        return new Beer(beer.getId(), beer.getName(), beer.getBrand(), beer.getMax(), beer.getQuantity(), beer.getType());
+    }
+
+    private static List<Beer> copiesOf(List<Beer> beers) {
+        return beers.stream().map(JpaBeerStore::copyOf).collect(Collectors.toList());
+    }
+
+    /**
+     * Signals an expectation that no longer holds; thrown to roll the transaction back, so it
+     * carries no stack trace.
+     */
+    private static class StockConflict extends RuntimeException {
+
+        StockConflict() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package one.digitalinnovation.beerstock.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.BeerStockRepository;
+import one.digitalinnovation.beerstock.repository.StockLocationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Store for edge nodes: quantity and max of every beer whose id fits in the table live in a
+ * {@link MappedStockTable} that survives a process crash, and a stock change is decided by one
+ * CAS on its off-heap record, bounded by {@code 0..max}. Catalog rows and the split of stock
+ * over locations are served from memory by a {@link WriteBehindBeerStore}, which holds the
+ * beer's stock while the table is updated and writes quantities and their split back to the
+ * database every {@code max-staleness-millis}. On startup the table is authoritative for
+ * quantity: beers whose database quantity fell behind it are saved again with the table's
+ * quantity. Beers whose id does not fit in the table are only written behind.
+ *
+ * <p>The table must be opened with the capacity it was created with; a table of another
+ * capacity is refused rather than rebuilt from the older quantities of the database.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "beerstock.storage.type", havingValue = "mapped")
+public class MappedBeerStore implements BeerStore, MeterBinder {
+
+    private final WriteBehindBeerStore memoryStore;
+    private final Path tableFile;
+    private final int tableCapacity;
+    private final ConcurrentMap<String, Long> idsByName = new ConcurrentHashMap<>();
+    // Stock changes share the read side; saves and deletes rewrite table records under the write side.
+    private final ReadWriteLock tableLock = new ReentrantReadWriteLock();
+
+    private MappedStockTable stockTable;
+
+    @Autowired
+    public MappedBeerStore(BeerRepository beerRepository,
+                           BeerStockRepository beerStockRepository,
+                           StockLocationRepository stockLocationRepository,
+                           TransactionTemplate transactionTemplate,
+                           DataSource dataSource,
+                           @Value("${beerstock.storage.mapped.file:data/beer-stock.dat}") String tableFile,
+                           @Value("${beerstock.storage.mapped.capacity:1048576}") int tableCapacity,
+                           @Value("${beerstock.storage.mapped.max-staleness-millis:1000}") long maxStalenessMillis) {
+        this.memoryStore = new WriteBehindBeerStore(beerRepository, beerStockRepository, stockLocationRepository,
+                transactionTemplate, dataSource, maxStalenessMillis);
+        this.tableFile = Paths.get(tableFile);
+        this.tableCapacity = tableCapacity;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        memoryStore.open();
+        stockTable = MappedStockTable.open(tableFile, tableCapacity);
+        Map<Long, Beer> catalog = memoryStore.findAll().stream()
+                .collect(Collectors.toMap(Beer::getId, Function.identity()));
+        MappedStockTable.RecoveryReport report = stockTable.recover(catalog);
+        List<Beer> behindTable = new ArrayList<>();
+        for (Beer beer : catalog.values()) {
+            idsByName.put(beer.getName(), beer.getId());
+            if (stockTable.contains(beer.getId()) && stockTable.quantityOf(beer.getId()) != beer.getQuantity()) {
+                behindTable.add(new Beer(beer.getId(), beer.getName(), beer.getBrand(), beer.getMax(),
+                        stockTable.quantityOf(beer.getId()), beer.getType()));
+            }
+        }
+        if (!behindTable.isEmpty()) {
+            memoryStore.saveAll(behindTable);
+        }
+        log.info("Opened stock table {}: {}; {} beers caught up with it", tableFile, report, behindTable.size());
+        if (report.getOutOfRange() > 0) {
+            log.warn("{} beers do not fit in the stock table (capacity {}); their unflushed stock changes are lost on a crash",
+                    report.getOutOfRange(), tableCapacity);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        try {
+            memoryStore.close();
+        } finally {
+            stockTable.close();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        memoryStore.bindTo(meterRegistry);
+    }
+
+    @Override
+    public Beer create(Beer beer) {
+        Beer createdBeer = memoryStore.create(beer);
+        if (fitsInTable(createdBeer.getId())) {
+            stockTable.put(createdBeer.getId(), createdBeer.getMax(), createdBeer.getQuantity());
+        }
+        idsByName.put(createdBeer.getName(), createdBeer.getId());
+        return createdBeer;
+    }
+
+    @Override
+    public Optional<Beer> findById(Long id) {
+        Optional<Beer> beer = memoryStore.findById(id);
+        if (beer.isPresent() && fitsInTable(id)) {
+            stockTable.copyStockTo(beer.get());
+        }
+        return beer;
+    }
+
+    @Override
+    public Optional<Beer> findByName(String name) {
+        Long id = idsByName.get(name);
+        return id == null ? Optional.empty() : findById(id).filter(beer -> beer.getName().equals(name));
+    }
+
+    @Override
+    public List<Beer> findAllById(Collection<Long> ids) {
+        return ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .map(this::findById)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Beer> findAll() {
+        return idsByName.values().stream()
+                .sorted()
+                .map(this::findById)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Beer> findAllByNameIn(Collection<String> names) {
+        return names.stream()
+                .distinct()
+                .map(this::findByName)
+                .flatMap(Optional::stream)
+                .sorted(Comparator.comparing(Beer::getId))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Beer> saveAll(List<Beer> beers) {
+        tableLock.writeLock().lock();
+        try {
+            List<String> previousNames = beers.stream()
+                    .map(beer -> memoryStore.findById(beer.getId()).map(Beer::getName).orElse(null))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+            List<Beer> savedBeers = memoryStore.saveAll(beers);
+            previousNames.forEach(idsByName::remove);
+            for (Beer savedBeer : savedBeers) {
+                if (fitsInTable(savedBeer.getId())) {
+                    stockTable.put(savedBeer.getId(), savedBeer.getMax(), savedBeer.getQuantity());
+                }
+                idsByName.put(savedBeer.getName(), savedBeer.getId());
+            }
+            return savedBeers;
+        } finally {
+            tableLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        tableLock.writeLock().lock();
+        try {
+            Optional<Beer> deletedBeer = memoryStore.findById(id);
+            memoryStore.deleteById(id);
+            if (fitsInTable(id)) {
+                stockTable.remove(id);
+            }
+            deletedBeer.ifPresent(beer -> idsByName.remove(beer.getName(), id));
+        } finally {
+            tableLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Integer> findStock(Long id) {
+        return memoryStore.findStock(id);
+    }
+
+    @Override
+    public boolean compareAndSetStock(Long id, String location, int expectedQuantity, int expectedLocationQuantity, int delta) {
+        tableLock.readLock().lock();
+        try {
+            if (!fitsInTable(id) || !stockTable.contains(id)) {
+                return memoryStore.compareAndSetStock(id, location, expectedQuantity, expectedLocationQuantity, delta);
+            }
+            return memoryStore.compareAndSetStock(id, location, expectedLocationQuantity, delta,
+                    () -> stockTable.compareAndSetQuantity(id, expectedQuantity, expectedQuantity + delta));
+        } finally {
+            tableLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean compareAndTransferStock(Long id, String from, int expectedFromQuantity, String to, int expectedToQuantity, int quantity) {
+        return memoryStore.compareAndTransferStock(id, from, expectedFromQuantity, to, expectedToQuantity, quantity);
+    }
+
+    @Override
+    public StockLocation createLocation(String name) {
+        return memoryStore.createLocation(name);
+    }
+
+    @Override
+    public Optional<StockLocation> findLocation(String name) {
+        return memoryStore.findLocation(name);
+    }
+
+    @Override
+    public List<StockLocation> findAllLocations() {
+        return memoryStore.findAllLocations();
+    }
+
+    private boolean fitsInTable(Long id) {
+        return id != null && id > 0 && id < stockTable.getCapacity();
+    }
+}
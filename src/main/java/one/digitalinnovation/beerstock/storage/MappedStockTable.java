@@ -0,0 +1,264 @@
+package one.digitalinnovation.beerstock.storage;
+
+import lombok.Value;
+import one.digitalinnovation.beerstock.entity.Beer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Fixed-record stock table kept in a memory-mapped file and indexed by beer id.
+ *
+ * <p>The file starts with a 64 byte header (magic, version, capacity) followed by one
+ * 16 byte record per id: the owning id (0 while the slot is free) and the stock word with
+ * {@code max} in the high half and {@code quantity} in the low half. Stock words are only
+ * ever changed by an aligned 8 byte CAS on the mapped memory, so a crash leaves each record
+ * either before or after an update, never torn. {@link #recover} validates every record on
+ * startup against the catalog. A table is only ever opened with the capacity it was created
+ * with: its records would otherwise be thrown away for the older quantities of the catalog.
+ */
+public class MappedStockTable implements Closeable {
+
+    private static final long MAGIC = 0x4245455253544b31L;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 16;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int STOCK_OFFSET = 8;
+
+    private static final VarHandle LONG_VIEW = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INT_VIEW = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final boolean formatted;
+
+    private MappedStockTable(FileChannel channel, MappedByteBuffer buffer, int capacity, boolean formatted) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.formatted = formatted;
+    }
+
+    public static MappedStockTable open(Path file, int capacity) throws IOException {
+        if (capacity <= 0 || (long) capacity * RECORD_SIZE + HEADER_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Unsupported stock table capacity: " + capacity);
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            checkHeader(file, channel, capacity);
+        } catch (IOException | RuntimeException invalidHeader) {
+            channel.close();
+            throw invalidHeader;
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        boolean formatted = false;
+        if ((long) LONG_VIEW.getVolatile(buffer, 0) != MAGIC) {
+            format(buffer, capacity);
+            formatted = true;
+        }
+        return new MappedStockTable(channel, buffer, capacity, formatted);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public boolean contains(long id) {
+        return isInRange(id) && ownerOf(id) == id;
+    }
+
+    public int quantityOf(long id) {
+        return (int) stockWord(id);
+    }
+
+    public int maxOf(long id) {
+        return (int) (stockWord(id) >> 32);
+    }
+
+    /**
+     * Sets the quantity and max of the given beer to those of its record, read together in one
+     * load. Leaves the beer as it is if it is not in the table.
+     */
+    public void copyStockTo(Beer beer) {
+        if (!contains(beer.getId())) {
+            return;
+        }
+        long word = stockWord(beer.getId());
+        beer.setMax((int) (word >> 32));
+        beer.setQuantity((int) word);
+    }
+
+    public void put(long id, int max, int quantity) {
+        checkRange(id);
+        LONG_VIEW.setVolatile(buffer, stockOffset(id), pack(max, quantity));
+        LONG_VIEW.setVolatile(buffer, recordOffset(id), id);
+    }
+
+    /**
+     * Sets the quantity of a stored beer to {@code newQuantity} only if it is still
+     * {@code expectedQuantity} and the new quantity stays within {@code 0..max}, in one CAS on
+     * the stock word. Returns {@code false} otherwise, or if the beer is not in the table.
+     */
+    public boolean compareAndSetQuantity(long id, int expectedQuantity, int newQuantity) {
+        if (!contains(id)) {
+            return false;
+        }
+        int offset = stockOffset(id);
+        while (true) {
+            long word = (long) LONG_VIEW.getVolatile(buffer, offset);
+            int max = (int) (word >> 32);
+            if ((int) word != expectedQuantity || newQuantity < 0 || newQuantity > max) {
+                return false;
+            }
+            if (LONG_VIEW.compareAndSet(buffer, offset, word, pack(max, newQuantity))) {
+                return ownerOf(id) == id;
+            }
+        }
+    }
+
+    public void remove(long id) {
+        if (isInRange(id)) {
+            LONG_VIEW.setVolatile(buffer, recordOffset(id), 0L);
+            LONG_VIEW.setVolatile(buffer, stockOffset(id), 0L);
+        }
+    }
+
+    /**
+     * Checks every record against the catalog: beers missing from the table (or whose record
+     * breaks {@code 0 <= quantity <= max}) are seeded from the catalog, records of beers that
+     * are no longer in the catalog are freed, and valid records are kept as the source of truth.
+     */
+    public RecoveryReport recover(Map<Long, Beer> catalog) {
+        int verified = 0;
+        int seeded = 0;
+        int repaired = 0;
+        int cleared = 0;
+        for (long id = 1; id < capacity; id++) {
+            long owner = ownerOf(id);
+            Beer beer = catalog.get(id);
+            if (beer == null) {
+                if (owner != 0 || stockWord(id) != 0) {
+                    remove(id);
+                    cleared++;
+                }
+            } else if (owner == 0) {
+                put(id, beer.getMax(), beer.getQuantity());
+                seeded++;
+            } else {
+                long word = stockWord(id);
+                int quantity = (int) word;
+                int max = (int) (word >> 32);
+                if (owner != id || quantity < 0 || quantity > max || max != beer.getMax()) {
+                    put(id, beer.getMax(), Math.max(0, Math.min(beer.getQuantity(), beer.getMax())));
+                    repaired++;
+                } else {
+                    verified++;
+                }
+            }
+        }
+        int outOfRange = (int) catalog.keySet().stream().filter(id -> !isInRange(id)).count();
+        force();
+        return new RecoveryReport(formatted, verified, seeded, repaired, cleared, outOfRange);
+    }
+
+    public void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private long ownerOf(long id) {
+        return (long) LONG_VIEW.getVolatile(buffer, recordOffset(id));
+    }
+
+    private long stockWord(long id) {
+        checkRange(id);
+        return (long) LONG_VIEW.getVolatile(buffer, stockOffset(id));
+    }
+
+    private boolean isInRange(long id) {
+        return id > 0 && id < capacity;
+    }
+
+    private void checkRange(long id) {
+        if (!isInRange(id)) {
+            throw new IllegalArgumentException("Beer id " + id + " is outside the stock table capacity " + capacity);
+        }
+    }
+
+    private static int recordOffset(long id) {
+        return HEADER_SIZE + (int) id * RECORD_SIZE;
+    }
+
+    private static int stockOffset(long id) {
+        return recordOffset(id) + STOCK_OFFSET;
+    }
+
+    private static long pack(int max, int quantity) {
+        return ((long) max << 32) | (quantity & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Refuses a file written by another version or with another capacity. A file without the
+     * magic number, new or left half formatted by a crash, is formatted again.
+     */
+    private static void checkHeader(Path file, FileChannel channel, int capacity) throws IOException {
+        if (channel.size() < HEADER_SIZE) {
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.nativeOrder());
+        channel.read(header, 0);
+        if (header.getLong(0) != MAGIC) {
+            return;
+        }
+        int storedVersion = header.getInt(8);
+        int storedCapacity = header.getInt(CAPACITY_OFFSET);
+        if (storedVersion != VERSION || storedCapacity != capacity) {
+            throw new IllegalStateException("Stock table " + file + " has version " + storedVersion + " and capacity "
+                    + storedCapacity + ", not version " + VERSION + " and capacity " + capacity
+                    + "; configure the capacity it was created with, or move it away to rebuild it from the database");
+        }
+    }
+
+    private static void format(MappedByteBuffer buffer, int capacity) {
+        LONG_VIEW.setVolatile(buffer, 0, 0L);
+        for (int offset = HEADER_SIZE; offset < buffer.capacity(); offset += Long.BYTES) {
+            LONG_VIEW.set(buffer, offset, 0L);
+        }
+        INT_VIEW.setVolatile(buffer, 8, VERSION);
+        INT_VIEW.setVolatile(buffer, CAPACITY_OFFSET, capacity);
+        buffer.force();
+        LONG_VIEW.setVolatile(buffer, 0, MAGIC);
+        buffer.force();
+    }
+
+    @Value
+    public static class RecoveryReport {
+        boolean formatted;
+        int verified;
+        int seeded;
+        int repaired;
+        int cleared;
+        int outOfRange;
+    }
+}
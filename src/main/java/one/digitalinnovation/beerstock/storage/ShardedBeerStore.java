@@ -0,0 +1,300 @@
+package one.digitalinnovation.beerstock.storage;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.sql.SqlStatistics;
+import one.digitalinnovation.beerstock.sql.SqlStatisticsDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Spreads beers over several datasources. A beer is placed on the shard picked by the hash of
+ * its name, and its id encodes that shard ({@code id % shardCount}), so lookups by name or id go
+ * to exactly one shard without a lookup table. Listing and multi-name lookups query the shards
+ * in parallel and merge the results in id order.
+ *
+ * <p>Stock per location is kept in the shard of its beer, and every shard registers every
+ * location with the total of its own beers there; a location's total is the sum over shards.
+ *
+ * <p>The shard count is fixed for the lifetime of the data: changing the list of datasources
+ * needs a migration that re-inserts every beer.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "beerstock.storage.type", havingValue = "sharded")
+public class ShardedBeerStore implements BeerStore, Closeable {
+
+    private static final String DEFAULT_URLS = "jdbc:h2:mem:beerstock-shard-0;DB_CLOSE_DELAY=-1,"
+            + "jdbc:h2:mem:beerstock-shard-1;DB_CLOSE_DELAY=-1";
+
+    private final List<BeerShard> shards = new ArrayList<>();
+    private final List<DataSource> dataSources;
+    private final ExecutorService scatterExecutor;
+
+    @Autowired
+    public ShardedBeerStore(@Value("${beerstock.storage.sharded.urls:" + DEFAULT_URLS + "}") String[] urls,
+                            @Value("${beerstock.storage.sharded.username:sa}") String username,
+                            @Value("${beerstock.storage.sharded.password:}") String password,
+                            @Value("${beerstock.storage.sharded.pool-size:10}") int poolSize) {
+        this(createPools(urls, username, password, poolSize));
+        log.info("Sharding beers across {} datasources", urls.length);
+    }
+
+    public ShardedBeerStore(List<? extends DataSource> dataSources) {
+        if (dataSources.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard datasource is required");
+        }
+        this.dataSources = new ArrayList<>(dataSources);
+        for (int i = 0; i < dataSources.size(); i++) {
+            shards.add(new BeerShard(i, dataSources.size(), dataSources.get(i)));
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.scatterExecutor = Executors.newFixedThreadPool(dataSources.size(), runnable -> {
+            Thread thread = new Thread(runnable, "beer-shard-scatter-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public Beer create(Beer beer) {
+        return shardForName(beer.getName()).insert(beer);
+    }
+
+    @Override
+    public Optional<Beer> findById(Long id) {
+        return isValid(id) ? shardForId(id).findById(id) : Optional.empty();
+    }
+
+    @Override
+    public Optional<Beer> findByName(String name) {
+        return shardForName(name).findByName(name);
+    }
+
+    @Override
+    public List<Beer> findAllById(Collection<Long> ids) {
+        List<Long> validIds = ids.stream().filter(ShardedBeerStore::isValid).collect(Collectors.toList());
+        List<List<Long>> idsByShard = partition(validIds, this::shardForId);
+        return gather(shardsWithKeys(idsByShard), shard -> shard.findAllById(idsByShard.get(shard.getIndex())));
+    }
+
+    @Override
+    public List<Beer> findAll() {
+        return gather(shards, BeerShard::findAll);
+    }
+
+    @Override
+    public List<Beer> findAllByNameIn(Collection<String> names) {
+        List<List<String>> namesByShard = partition(names, this::shardForName);
+        return gather(shardsWithKeys(namesByShard), shard -> shard.findAllByNameIn(namesByShard.get(shard.getIndex())));
+    }
+
+    @Override
+    public List<Beer> saveAll(List<Beer> beers) {
+        List<List<Beer>> beersByShard = partition(beers, this::shardFor);
+        List<List<Beer>> savedByShard = new ArrayList<>(shards.size());
+        for (BeerShard shard : shards) {
+            List<Beer> shardBeers = beersByShard.get(shard.getIndex());
+            savedByShard.add(shardBeers.isEmpty() ? shardBeers : shard.saveAll(shardBeers));
+        }
+        int[] positions = new int[shards.size()];
+        List<Beer> savedBeers = new ArrayList<>(beers.size());
+        for (Beer beer : beers) {
+            int shardIndex = shardFor(beer).getIndex();
+            savedBeers.add(savedByShard.get(shardIndex).get(positions[shardIndex]++));
+        }
+        return savedBeers;
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        if (isValid(id)) {
+            shardForId(id).deleteById(id);
+        }
+    }
+
+    @Override
+    public Map<String, Integer> findStock(Long id) {
+        return isValid(id) ? shardForId(id).findStock(id) : new TreeMap<>();
+    }
+
+    @Override
+    public boolean compareAndSetStock(Long id, String location, int expectedQuantity, int expectedLocationQuantity, int delta) {
+        return isValid(id) && shardForId(id).compareAndSetStock(id, location, expectedQuantity, expectedLocationQuantity, delta);
+    }
+
+    @Override
+    public boolean compareAndTransferStock(Long id, String from, int expectedFromQuantity, String to, int expectedToQuantity, int quantity) {
+        return isValid(id) && shardForId(id).compareAndTransferStock(id, from, expectedFromQuantity, to, expectedToQuantity, quantity);
+    }
+
+    /**
+     * Registers the location in every shard. A location left missing from some shards by an
+     * earlier failure is completed instead of being rejected.
+     */
+    @Override
+    public StockLocation createLocation(String name) {
+        boolean registered = false;
+        for (BeerShard shard : shards) {
+            registered |= shard.registerLocation(name);
+        }
+        if (!registered) {
+            throw new DataIntegrityViolationException("Stock location " + name + " already registered");
+        }
+        return new StockLocation(name, 0);
+    }
+
+    @Override
+    public Optional<StockLocation> findLocation(String name) {
+        long quantity = 0;
+        boolean found = false;
+        for (BeerShard shard : shards) {
+            Optional<StockLocation> location = shard.findLocation(name);
+            if (location.isPresent()) {
+                quantity += location.get().getQuantity();
+                found = true;
+            }
+        }
+        return found ? Optional.of(new StockLocation(name, quantity)) : Optional.empty();
+    }
+
+    @Override
+    public List<StockLocation> findAllLocations() {
+        Map<String, Long> totals = new TreeMap<>();
+        for (BeerShard shard : shards) {
+            shard.findAllLocations().forEach(location -> totals.merge(location.getName(), location.getQuantity(), Long::sum));
+        }
+        return totals.entrySet().stream()
+                .map(total -> new StockLocation(total.getKey(), total.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @PreDestroy
+    public void close() throws IOException {
+        scatterExecutor.shutdownNow();
+        for (DataSource dataSource : dataSources) {
+            if (dataSource instanceof Closeable) {
+                ((Closeable) dataSource).close();
+            }
+        }
+    }
+
+    private BeerShard shardFor(Beer beer) {
+        if (beer.getId() == null) {
+            return shardForName(beer.getName());
+        }
+        BeerShard shard = shardForId(beer.getId());
+        if (shard != shardForName(beer.getName())) {
+            throw new IllegalArgumentException("Beer " + beer.getId() + " cannot be renamed to " + beer.getName()
+                    + " because the new name belongs to another shard");
+        }
+        return shard;
+    }
+
+    private BeerShard shardForName(String name) {
+        int hash = name.hashCode();
+        return shards.get(Math.floorMod(hash ^ (hash >>> 16), shards.size()));
+    }
+
+    private BeerShard shardForId(long id) {
+        return shards.get((int) (id % shards.size()));
+    }
+
+    private <T> List<List<T>> partition(Collection<T> values, Function<T, BeerShard> router) {
+        List<List<T>> partitions = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (T value : values) {
+            partitions.get(router.apply(value).getIndex()).add(value);
+        }
+        return partitions;
+    }
+
+    private List<BeerShard> shardsWithKeys(List<? extends List<?>> keysByShard) {
+        List<BeerShard> targetShards = new ArrayList<>();
+        for (BeerShard shard : shards) {
+            if (!keysByShard.get(shard.getIndex()).isEmpty()) {
+                targetShards.add(shard);
+            }
+        }
+        return targetShards;
+    }
+
+    private List<Beer> gather(List<BeerShard> targetShards, Function<BeerShard, List<Beer>> query) {
+        if (targetShards.size() == 1) {
+            return query.apply(targetShards.get(0));
+        }
+        SqlStatistics statistics = SqlStatistics.current();
+        List<CompletableFuture<List<Beer>>> results = targetShards.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> queryWith(statistics, shard, query), scatterExecutor))
+                .collect(Collectors.toList());
+        try {
+            return results.stream()
+                    .flatMap(result -> result.join().stream())
+                    .sorted(Comparator.comparing(Beer::getId))
+                    .collect(Collectors.toList());
+        } catch (CompletionException shardFailure) {
+            if (shardFailure.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) shardFailure.getCause();
+            }
+            throw shardFailure;
+        }
+    }
+
+    private static List<Beer> queryWith(SqlStatistics statistics, BeerShard shard, Function<BeerShard, List<Beer>> query) {
+        if (statistics == null) {
+            return query.apply(shard);
+        }
+        try (SqlStatistics.Scope ignored = SqlStatistics.bind(statistics)) {
+            return query.apply(shard);
+        }
+    }
+
+    private static boolean isValid(Long id) {
+        return id != null && id > 0;
+    }
+
+    private static List<DataSource> createPools(String[] urls, String username, String password, int poolSize) {
+        List<DataSource> pools = new ArrayList<>(urls.length);
+        for (int i = 0; i < urls.length; i++) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("beer-shard-" + i);
+            pool.setJdbcUrl(urls[i].trim());
+            pool.setUsername(username);
+            pool.setPassword(password);
+            pool.setMaximumPoolSize(poolSize);
+            pools.add(SqlStatisticsDataSource.wrap(pool));
+        }
+        return pools;
+    }
+}
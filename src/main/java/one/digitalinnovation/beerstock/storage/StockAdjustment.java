@@ -0,0 +1,50 @@
+package one.digitalinnovation.beerstock.storage;
+
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maps a new quantity given to {@link BeerStore#saveAll} onto the locations of a stored beer:
+ * an increase is received at {@link StockLocation#DEFAULT}, and a decrease is taken from
+ * {@link StockLocation#DEFAULT} first, then from the other locations in name order.
+ */
+final class StockAdjustment {
+
+    private StockAdjustment() {
+    }
+
+    /**
+     * Returns the change per location, by location name, that brings the given stock to
+     * {@code newQuantity}. Locations that do not change are absent.
+     */
+    static Map<String, Integer> toQuantity(String beerName, Map<String, Integer> stock, int newQuantity) {
+        Map<String, Integer> deltas = new TreeMap<>();
+        int delta = newQuantity - stock.values().stream().mapToInt(Integer::intValue).sum();
+        if (delta > 0) {
+            deltas.put(StockLocation.DEFAULT, delta);
+            return deltas;
+        }
+        int remaining = -delta;
+        remaining = take(deltas, StockLocation.DEFAULT, stock.getOrDefault(StockLocation.DEFAULT, 0), remaining);
+        for (Map.Entry<String, Integer> location : new TreeMap<>(stock).entrySet()) {
+            if (!location.getKey().equals(StockLocation.DEFAULT)) {
+                remaining = take(deltas, location.getKey(), location.getValue(), remaining);
+            }
+        }
+        if (remaining > 0) {
+            throw new DataIntegrityViolationException("Stock of beer " + beerName + " does not add up to its quantity");
+        }
+        return deltas;
+    }
+
+    private static int take(Map<String, Integer> deltas, String location, int held, int remaining) {
+        int taken = Math.min(held, remaining);
+        if (taken > 0) {
+            deltas.put(location, -taken);
+        }
+        return remaining - taken;
+    }
+}
@@ -0,0 +1,513 @@
+package one.digitalinnovation.beerstock.storage;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.BeerStock;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.BeerStockRepository;
+import one.digitalinnovation.beerstock.repository.StockLocationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Store for event nights: the catalog stays in the database, but stock is kept authoritatively
+ * in memory next to a copy of each beer, so lookups by id and stock changes answer without a
+ * database round trip. Changed beers and locations
+ * are marked dirty and written back in one batched transaction every
+ * {@code max-staleness-millis}, and once more on graceful shutdown. Startup reloads the stock
+ * from the database.
+ *
+ * <p>Stock changes of the last {@code max-staleness-millis} are lost if the process dies
+ * without shutting down, and other readers of the tables (other instances) see them that late.
+ * Imports, deletes and backups flush first, and imports and deletes hold off stock changes while
+ * they rewrite the stock in the database. A restore rewrites the tables through
+ * {@link #reloadAfter}, which reloads the stock from them.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "beerstock.storage.type", havingValue = "write-behind")
+public class WriteBehindBeerStore implements BeerStore, MeterBinder {
+
+    private static final String UPDATE_BEER = "update beer set quantity = :quantity where id = :id";
+    private static final String UPDATE_STOCK = "update beer_stock set quantity = :quantity where beer_id = :beerId and location = :location";
+    private static final String INSERT_STOCK = "insert into beer_stock (beer_id, location, quantity) values (:beerId, :location, :quantity)";
+    private static final String UPDATE_LOCATION = "update stock_location set quantity = :quantity where name = :name";
+    // The flushed totals are absolute, so they replace whatever the stripes of a location held.
+    private static final String CLEAR_STRIPES = "update stock_location_stripe set quantity = 0 where location = :name";
+
+    private final JpaBeerStore catalogStore;
+    private final BeerStockRepository beerStockRepository;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration maxStaleness;
+
+    private final ConcurrentMap<Long, StockState> stockByBeer = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<String, AtomicLong> locationTotals = new ConcurrentSkipListMap<>();
+    private final Set<Long> dirtyBeers = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirtyLocations = ConcurrentHashMap.newKeySet();
+    // Stock changes share the read side; imports and deletes rewrite stock in the database under the write side.
+    private final ReadWriteLock stockLock = new ReentrantReadWriteLock();
+    private final Lock flushLock = new ReentrantLock();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushedBeers = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    private ScheduledExecutorService flusher;
+
+    @Autowired
+    public WriteBehindBeerStore(BeerRepository beerRepository,
+                                BeerStockRepository beerStockRepository,
+                                StockLocationRepository stockLocationRepository,
+                                TransactionTemplate transactionTemplate,
+                                DataSource dataSource,
+                                @Value("${beerstock.storage.write-behind.max-staleness-millis:1000}") long maxStalenessMillis) {
+        this.catalogStore = new JpaBeerStore(beerRepository, beerStockRepository, stockLocationRepository, transactionTemplate);
+        this.beerStockRepository = beerStockRepository;
+        this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        this.transactionTemplate = transactionTemplate;
+        this.maxStaleness = Duration.ofMillis(maxStalenessMillis);
+    }
+
+    @PostConstruct
+    public void open() {
+        catalogStore.registerDefaultLocation();
+        load();
+        log.info("Loaded stock of {} beers at {} locations; flushing every {} ms",
+                stockByBeer.size(), locationTotals.size(), maxStaleness.toMillis());
+        if (!maxStaleness.isZero() && !maxStaleness.isNegative()) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "beer-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::scheduledFlush, maxStaleness.toMillis(), maxStaleness.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void load() {
+        catalogStore.findAllLocations().forEach(location -> locationTotals.put(location.getName(), new AtomicLong()));
+        catalogStore.findAll().forEach(beer -> stockByBeer.put(beer.getId(), new StockState(beer)));
+        for (BeerStock beerStock : beerStockRepository.findAll()) {
+            StockState state = stockByBeer.get(beerStock.getBeerId());
+            if (state != null) {
+                state.add(beerStock.getLocation(), beerStock.getQuantity());
+                locationTotals.computeIfAbsent(beerStock.getLocation(), name -> new AtomicLong()).addAndGet(beerStock.getQuantity());
+            }
+        }
+        // Totals are rebuilt from the stock rows, which a crash between flushes cannot leave behind them.
+        dirtyLocations.addAll(locationTotals.keySet());
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher.awaitTermination(maxStaleness.toMillis() + TimeUnit.SECONDS.toMillis(10), TimeUnit.MILLISECONDS);
+        }
+        int beers = flush();
+        log.info("Flushed the stock of {} beers on shutdown", beers);
+    }
+
+    /**
+     * Writes every dirty beer and location to the database in one transaction and returns how
+     * many beers were written. Changes made while it runs are left for the next flush.
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            List<Long> beerIds = drain(dirtyBeers);
+            List<String> locations = drain(dirtyLocations);
+            if (beerIds.isEmpty() && locations.isEmpty()) {
+                return 0;
+            }
+            List<SqlParameterSource> beerRows = new ArrayList<>();
+            List<SqlParameterSource> stockRows = new ArrayList<>();
+            for (Long id : beerIds) {
+                StockState state = stockByBeer.get(id);
+                if (state == null) {
+                    continue;
+                }
+                synchronized (state) {
+                    beerRows.add(new MapSqlParameterSource("id", id).addValue("quantity", state.quantity));
+                    state.locations.forEach((location, quantity) -> stockRows.add(new MapSqlParameterSource("beerId", id)
+                            .addValue("location", location)
+                            .addValue("quantity", quantity)));
+                }
+            }
+            List<SqlParameterSource> locationRows = new ArrayList<>();
+            for (String location : locations) {
+                AtomicLong total = locationTotals.get(location);
+                if (total != null) {
+                    locationRows.add(new MapSqlParameterSource("name", location).addValue("quantity", total.get()));
+                }
+            }
+            try {
+                transactionTemplate.execute(status -> {
+                    write(beerRows, stockRows, locationRows);
+                    return null;
+                });
+            } catch (RuntimeException flushFailure) {
+                dirtyBeers.addAll(beerIds);
+                dirtyLocations.addAll(locations);
+                throw flushFailure;
+            }
+            flushes.increment();
+            flushedBeers.add(beerRows.size());
+            return beerRows.size();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Flushes, then runs {@code rewrite}, which replaces the tables behind this store, with stock
+     * changes and flushes held off, and reloads the stock from the rewritten tables. Meant for
+     * restores, with writes stopped: beers created meanwhile are not held off.
+     */
+    public <T> T reloadAfter(Supplier<T> rewrite) {
+        stockLock.writeLock().lock();
+        flushLock.lock();
+        try {
+            flush();
+            T result = rewrite.get();
+            stockByBeer.clear();
+            locationTotals.clear();
+            dirtyBeers.clear();
+            dirtyLocations.clear();
+            load();
+            return result;
+        } finally {
+            flushLock.unlock();
+            stockLock.writeLock().unlock();
+        }
+    }
+
+    public int pendingBeers() {
+        return dirtyBeers.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("beerstock.writebehind.flushes", flushes, LongAdder::doubleValue)
+                .description("Batched write-backs of stock to the database")
+                .register(meterRegistry);
+        FunctionCounter.builder("beerstock.writebehind.flushed.beers", flushedBeers, LongAdder::doubleValue)
+                .description("Beers whose stock was written back")
+                .register(meterRegistry);
+        FunctionCounter.builder("beerstock.writebehind.flush.failures", flushFailures, LongAdder::doubleValue)
+                .description("Write-backs that failed and were left for the next flush")
+                .register(meterRegistry);
+        Gauge.builder("beerstock.writebehind.dirty.beers", dirtyBeers, Set::size)
+                .description("Beers with stock changes not yet written back")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Beer create(Beer beer) {
+        Beer createdBeer = catalogStore.create(beer);
+        StockState state = new StockState(createdBeer);
+        state.add(StockLocation.DEFAULT, createdBeer.getQuantity());
+        stockByBeer.put(createdBeer.getId(), state);
+        registeredLocation(StockLocation.DEFAULT).addAndGet(createdBeer.getQuantity());
+        dirtyLocations.add(StockLocation.DEFAULT);
+        return createdBeer;
+    }
+
+    @Override
+    public Optional<Beer> findById(Long id) {
+        StockState state = id == null ? null : stockByBeer.get(id);
+        if (state == null) {
+            return Optional.empty();
+        }
+        synchronized (state) {
+            return Optional.of(state.toBeer());
+        }
+    }
+
+    @Override
+    public Optional<Beer> findByName(String name) {
+        return catalogStore.findByName(name).map(this::withStock);
+    }
+
+    @Override
+    public List<Beer> findAllById(Collection<Long> ids) {
+        return catalogStore.findAllById(ids).stream()
+                .map(this::withStock)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Beer> findAll() {
+        return catalogStore.findAll().stream()
+                .map(this::withStock)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Beer> findAllByNameIn(Collection<String> names) {
+        return catalogStore.findAllByNameIn(names).stream()
+                .map(this::withStock)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Beer> saveAll(List<Beer> beers) {
+        stockLock.writeLock().lock();
+        flushLock.lock();
+        try {
+            flush();
+            List<Beer> savedBeers = catalogStore.saveAll(beers);
+            Map<Long, StockState> reloadedStock = new HashMap<>();
+            savedBeers.forEach(beer -> reloadedStock.put(beer.getId(), new StockState(beer)));
+            beerStockRepository.findByBeerIdIn(reloadedStock.keySet())
+                    .forEach(stock -> reloadedStock.get(stock.getBeerId()).add(stock.getLocation(), stock.getQuantity()));
+            reloadedStock.forEach((id, state) -> {
+                StockState previousState = stockByBeer.put(id, state);
+                state.locations.forEach((location, quantity) -> registeredLocation(location).addAndGet(quantity));
+                if (previousState != null) {
+                    previousState.locations.forEach((location, quantity) -> registeredLocation(location).addAndGet(-quantity));
+                }
+            });
+            return savedBeers;
+        } finally {
+            flushLock.unlock();
+            stockLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        stockLock.writeLock().lock();
+        flushLock.lock();
+        try {
+            flush();
+            catalogStore.deleteById(id);
+            StockState state = stockByBeer.remove(id);
+            if (state != null) {
+                state.locations.forEach((location, quantity) -> registeredLocation(location).addAndGet(-quantity));
+            }
+        } finally {
+            flushLock.unlock();
+            stockLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, Integer> findStock(Long id) {
+        StockState state = id == null ? null : stockByBeer.get(id);
+        if (state == null) {
+            return new TreeMap<>();
+        }
+        synchronized (state) {
+            return new TreeMap<>(state.locations);
+        }
+    }
+
+    @Override
+    public boolean compareAndSetStock(Long id, String location, int expectedQuantity, int expectedLocationQuantity, int delta) {
+        return compareAndSetStock(id, location, expectedLocationQuantity, delta, state -> state.quantity == expectedQuantity);
+    }
+
+    /**
+     * Same as {@link #compareAndSetStock(Long, String, int, int, int)} for a store that keeps the
+     * beer's quantity itself: {@code quantityUpdate} runs while the beer's stock is held, once the
+     * location is known to hold {@code expectedLocationQuantity}, and either applies the change
+     * to that quantity or refuses it. The quantity kept here then only follows it for the write-back.
+     */
+    boolean compareAndSetStock(Long id, String location, int expectedLocationQuantity, int delta, BooleanSupplier quantityUpdate) {
+        return compareAndSetStock(id, location, expectedLocationQuantity, delta, state -> quantityUpdate.getAsBoolean());
+    }
+
+    private boolean compareAndSetStock(Long id, String location, int expectedLocationQuantity, int delta, Predicate<StockState> quantityUpdate) {
+        AtomicLong locationTotal = registeredLocation(location);
+        stockLock.readLock().lock();
+        try {
+            StockState state = id == null ? null : stockByBeer.get(id);
+            if (state == null) {
+                return false;
+            }
+            synchronized (state) {
+                if (state.quantityAt(location) != expectedLocationQuantity || !quantityUpdate.test(state)) {
+                    return false;
+                }
+                state.add(location, delta);
+            }
+            locationTotal.addAndGet(delta);
+            dirtyBeers.add(id);
+            dirtyLocations.add(location);
+            return true;
+        } finally {
+            stockLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean compareAndTransferStock(Long id, String from, int expectedFromQuantity, String to, int expectedToQuantity, int quantity) {
+        AtomicLong fromTotal = registeredLocation(from);
+        AtomicLong toTotal = registeredLocation(to);
+        stockLock.readLock().lock();
+        try {
+            StockState state = id == null ? null : stockByBeer.get(id);
+            if (state == null) {
+                return false;
+            }
+            synchronized (state) {
+                if (state.quantityAt(from) != expectedFromQuantity || state.quantityAt(to) != expectedToQuantity) {
+                    return false;
+                }
+                state.add(from, -quantity);
+                state.add(to, quantity);
+            }
+            fromTotal.addAndGet(-quantity);
+            toTotal.addAndGet(quantity);
+            dirtyBeers.add(id);
+            dirtyLocations.add(from);
+            dirtyLocations.add(to);
+            return true;
+        } finally {
+            stockLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public StockLocation createLocation(String name) {
+        StockLocation stockLocation = catalogStore.createLocation(name);
+        locationTotals.putIfAbsent(name, new AtomicLong());
+        return stockLocation;
+    }
+
+    @Override
+    public Optional<StockLocation> findLocation(String name) {
+        AtomicLong total = locationTotals.get(name);
+        return total == null ? Optional.empty() : Optional.of(new StockLocation(name, total.get()));
+    }
+
+    @Override
+    public List<StockLocation> findAllLocations() {
+        return locationTotals.entrySet().stream()
+                .map(location -> new StockLocation(location.getKey(), location.getValue().get()))
+                .collect(Collectors.toList());
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException flushFailure) {
+            flushFailures.increment();
+            log.warn("Could not write back the stock of {} beers, retrying in {} ms",
+                    dirtyBeers.size(), maxStaleness.toMillis(), flushFailure);
+        }
+    }
+
+    private void write(List<SqlParameterSource> beerRows, List<SqlParameterSource> stockRows, List<SqlParameterSource> locationRows) {
+        jdbcTemplate.batchUpdate(UPDATE_BEER, beerRows.toArray(new SqlParameterSource[0]));
+        int[] updatedStock = jdbcTemplate.batchUpdate(UPDATE_STOCK, stockRows.toArray(new SqlParameterSource[0]));
+        List<SqlParameterSource> newStockRows = new ArrayList<>();
+        for (int i = 0; i < updatedStock.length; i++) {
+            if (updatedStock[i] == 0) {
+                newStockRows.add(stockRows.get(i));
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_STOCK, newStockRows.toArray(new SqlParameterSource[0]));
+        jdbcTemplate.batchUpdate(UPDATE_LOCATION, locationRows.toArray(new SqlParameterSource[0]));
+        jdbcTemplate.batchUpdate(CLEAR_STRIPES, locationRows.toArray(new SqlParameterSource[0]));
+    }
+
+    private Beer withStock(Beer beer) {
+        StockState state = stockByBeer.get(beer.getId());
+        if (state == null) {
+            return beer;
+        }
+        synchronized (state) {
+            beer.setQuantity(state.quantity);
+        }
+        return beer;
+    }
+
+    private AtomicLong registeredLocation(String location) {
+        AtomicLong total = locationTotals.get(location);
+        if (total == null) {
+            throw new IllegalStateException("Stock location " + location + " is not registered");
+        }
+        return total;
+    }
+
+    private static <T> List<T> drain(Set<T> dirty) {
+        List<T> drained = new ArrayList<>();
+        for (Iterator<T> iterator = dirty.iterator(); iterator.hasNext(); ) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+
+    /**
+     * Catalog entry and stock of one beer, guarded by its own monitor.
+     */
+    private static final class StockState {
+
+        private final Beer catalogEntry;
+        private final Map<String, Integer> locations = new TreeMap<>();
+        private int quantity;
+
+        private StockState(Beer beer) {
+            this.catalogEntry = new Beer(beer.getId(), beer.getName(), beer.getBrand(), beer.getMax(), 0, beer.getType());
+        }
+
+        private Beer toBeer() {
+            return new Beer(catalogEntry.getId(), catalogEntry.getName(), catalogEntry.getBrand(), catalogEntry.getMax(),
+                    quantity, catalogEntry.getType());
+        }
+
+        private int quantityAt(String location) {
+            return locations.getOrDefault(location, 0);
+        }
+
+        private void add(String location, int delta) {
+            locations.merge(location, delta, Integer::sum);
+            quantity += delta;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package one.digitalinnovation.beerstock.timing;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage time of the request handled by the current thread. Instrumented code asks for
+ * {@link #current()} and records nothing when it is {@code null}, so outside of a timed request
+ * the cost is one thread-local read.
+ */
+public final class RequestTiming {
+
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+    private static final Stage[] STAGES = Stage.values();
+
+    private final long startNanos;
+    private final long[] stageNanos = new long[STAGES.length];
+    private long serializationStartNanos;
+    private long totalNanos;
+
+    private RequestTiming(long startNanos) {
+        this.startNanos = startNanos;
+    }
+
+    public static RequestTiming current() {
+        return CURRENT.get();
+    }
+
+    static RequestTiming start() {
+        RequestTiming timing = new RequestTiming(System.nanoTime());
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    public void add(Stage stage, long nanos) {
+        stageNanos[stage.ordinal()] += nanos;
+    }
+
+    /**
+     * Marks the point where the response body starts being written. Everything from here to
+     * {@link #finish} counts as serialization.
+     */
+    public void markSerializationStart() {
+        if (serializationStartNanos == 0) {
+            serializationStartNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Closes the timing with the database time measured elsewhere and derives the serialization
+     * and application stages.
+     */
+    void finish(long databaseNanos) {
+        long endNanos = System.nanoTime();
+        totalNanos = endNanos - startNanos;
+        stageNanos[Stage.DATABASE.ordinal()] = databaseNanos;
+        if (serializationStartNanos != 0) {
+            stageNanos[Stage.SERIALIZATION.ordinal()] = endNanos - serializationStartNanos;
+        }
+        stageNanos[Stage.APPLICATION.ordinal()] = 0;
+        stageNanos[Stage.APPLICATION.ordinal()] = Math.max(0, totalNanos - measuredNanos());
+    }
+
+    public long getNanos(Stage stage) {
+        return stageNanos[stage.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public Map<Stage, Double> getMillisByStage() {
+        Map<Stage, Double> millis = new EnumMap<>(Stage.class);
+        for (Stage stage : STAGES) {
+            millis.put(stage, toMillis(stageNanos[stage.ordinal()]));
+        }
+        return millis;
+    }
+
+    /**
+     * Formats the stages measured so far as a {@code Server-Timing} header value.
+     */
+    String toServerTiming(long databaseNanos) {
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long validationNanos = getNanos(Stage.VALIDATION);
+        long mappingNanos = getNanos(Stage.MAPPING);
+        long applicationNanos = Math.max(0, elapsedNanos - validationNanos - databaseNanos - mappingNanos);
+        return Stage.VALIDATION.getMetricName() + ";dur=" + format(validationNanos)
+                + ", " + Stage.DATABASE.getMetricName() + ";dur=" + format(databaseNanos)
+                + ", " + Stage.MAPPING.getMetricName() + ";dur=" + format(mappingNanos)
+                + ", " + Stage.APPLICATION.getMetricName() + ";dur=" + format(applicationNanos);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Stage stage : STAGES) {
+            text.append(stage.getMetricName()).append('=').append(format(stageNanos[stage.ordinal()])).append("ms ");
+        }
+        return text.append("total=").append(format(totalNanos)).append("ms").toString();
+    }
+
+    private long measuredNanos() {
+        long measured = 0;
+        for (long nanos : stageNanos) {
+            measured += nanos;
+        }
+        return measured;
+    }
+
+    static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    // Milliseconds rounded to the microsecond; cheaper than String.format on every request.
+    private static String format(long nanos) {
+        return Double.toString(Math.round(nanos / 1_000.0) / 1_000.0);
+    }
+}
@@ -0,0 +1,24 @@
+package one.digitalinnovation.beerstock.timing;
+
+import lombok.Value;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Value
+public class SlowRequest {
+
+    Instant time;
+
+    String method;
+
+    String uri;
+
+    int status;
+
+    double totalMillis;
+
+    Map<Stage, Double> stageMillis;
+
+    long sqlStatements;
+}
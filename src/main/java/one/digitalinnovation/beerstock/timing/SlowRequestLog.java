@@ -0,0 +1,62 @@
+package one.digitalinnovation.beerstock.timing;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the most recent requests slower than a threshold, with their stage breakdown, in a
+ * fixed ring buffer. Recording claims a slot with one atomic increment, so concurrent slow
+ * requests never wait for each other; readers may see a slot overwritten while they copy.
+ * Exposed as the {@code slowrequests} actuator endpoint, newest first.
+ */
+@Component
+@Endpoint(id = "slowrequests")
+public class SlowRequestLog {
+
+    private final AtomicReferenceArray<SlowRequest> ring;
+    private final int mask;
+    private final AtomicLong nextSlot = new AtomicLong();
+    private final long thresholdNanos;
+
+    @Autowired
+    public SlowRequestLog(@Value("${beerstock.timing.slow-request-buffer-size:128}") int bufferSize,
+                          @Value("${beerstock.timing.slow-request-threshold-millis:250}") long thresholdMillis) {
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Slow request buffer size must be a power of two: " + bufferSize);
+        }
+        this.ring = new AtomicReferenceArray<>(bufferSize);
+        this.mask = bufferSize - 1;
+        this.thresholdNanos = Duration.ofMillis(thresholdMillis).toNanos();
+    }
+
+    public boolean isSlow(long totalNanos) {
+        return totalNanos >= thresholdNanos;
+    }
+
+    public void record(SlowRequest slowRequest) {
+        ring.set((int) (nextSlot.getAndIncrement() & mask), slowRequest);
+    }
+
+    @ReadOperation
+    public List<SlowRequest> recent() {
+        long next = nextSlot.get();
+        int size = (int) Math.min(next, ring.length());
+        List<SlowRequest> slowRequests = new ArrayList<>(size);
+        for (long slot = next - 1; slot >= next - size; slot--) {
+            SlowRequest slowRequest = ring.get((int) (slot & mask));
+            if (slowRequest != null) {
+                slowRequests.add(slowRequest);
+            }
+        }
+        return slowRequests;
+    }
+}
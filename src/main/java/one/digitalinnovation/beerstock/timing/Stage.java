@@ -0,0 +1,24 @@
+package one.digitalinnovation.beerstock.timing;
+
+/**
+ * Stages a request's time is split into. {@link #APPLICATION} is what remains of the total
+ * once the measured stages are subtracted: controller and service logic plus framework dispatch.
+ */
+public enum Stage {
+
+    VALIDATION("validation"),
+    DATABASE("db"),
+    MAPPING("mapping"),
+    SERIALIZATION("serialization"),
+    APPLICATION("app");
+
+    private final String metricName;
+
+    Stage(String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+}
@@ -0,0 +1,125 @@
+package one.digitalinnovation.beerstock.timing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import one.digitalinnovation.beerstock.sql.SqlStatistics;
+import one.digitalinnovation.beerstock.sql.SqlStatisticsFilter;
+import one.digitalinnovation.beerstock.web.BeforeCommitResponse;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the time of every request into {@link Stage}s. The full breakdown is recorded in the
+ * {@code beerstock.http.stage} timers, tagged by method, URI pattern and stage, logged at debug
+ * level with the breakdown in the MDC, and kept in the {@link SlowRequestLog} when the request
+ * was slow. With {@code beerstock.timing.server-timing-header} on, the stages known before the
+ * body is written also go out in a {@code Server-Timing} header; that is off by default, so
+ * clients cannot read the database time of their requests.
+ *
+ * <p>Database time comes from the {@link SqlStatistics} of the enclosing
+ * {@link SqlStatisticsFilter}, which is why this filter is ordered right after it.
+ */
+@Slf4j
+@Component
+@Order(SqlStatisticsFilter.ORDER + 1)
+@ConditionalOnProperty(name = "beerstock.timing.enabled", havingValue = "true", matchIfMissing = true)
+public class StageTimingFilter extends OncePerRequestFilter {
+
+    static final String SERVER_TIMING_HEADER = "Server-Timing";
+    static final String STAGES_MDC_KEY = "stages";
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final MeterRegistry meterRegistry;
+    private final SlowRequestLog slowRequestLog;
+    private final boolean serverTimingHeader;
+    // Timers are looked up once per endpoint rather than built on every request.
+    private final ConcurrentMap<String, Timer[]> timersByEndpoint = new ConcurrentHashMap<>();
+
+    @Autowired
+    public StageTimingFilter(MeterRegistry meterRegistry,
+                             SlowRequestLog slowRequestLog,
+                             @Value("${beerstock.timing.server-timing-header:false}") boolean serverTimingHeader) {
+        this.meterRegistry = meterRegistry;
+        this.slowRequestLog = slowRequestLog;
+        this.serverTimingHeader = serverTimingHeader;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestTiming timing = RequestTiming.start();
+        BeforeCommitResponse timingResponse = serverTimingHeader ? new BeforeCommitResponse(response,
+                () -> response.setHeader(SERVER_TIMING_HEADER, timing.toServerTiming(databaseNanos()))) : null;
+        try {
+            filterChain.doFilter(request, timingResponse != null ? timingResponse : response);
+        } finally {
+            if (timingResponse != null) {
+                timingResponse.beforeCommit();
+            }
+            RequestTiming.clear();
+            if (!request.isAsyncStarted()) {
+                timing.finish(databaseNanos());
+                record(request, response, timing);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, HttpServletResponse response, RequestTiming timing) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        Timer[] timers = timersByEndpoint.computeIfAbsent(request.getMethod() + ' ' + uri,
+                endpoint -> registerTimers(request.getMethod(), uri));
+        for (Stage stage : STAGES) {
+            timers[stage.ordinal()].record(timing.getNanos(stage), TimeUnit.NANOSECONDS);
+        }
+        if (slowRequestLog.isSlow(timing.getTotalNanos())) {
+            SqlStatistics statistics = SqlStatistics.current();
+            slowRequestLog.record(new SlowRequest(Instant.now(), request.getMethod(), request.getRequestURI(),
+                    response.getStatus(), RequestTiming.toMillis(timing.getTotalNanos()), timing.getMillisByStage(),
+                    statistics == null ? 0 : statistics.getStatements()));
+        }
+        if (log.isDebugEnabled()) {
+            MDC.put(STAGES_MDC_KEY, timing.toString());
+            try {
+                log.debug("{} {} took {}", request.getMethod(), uri, timing);
+            } finally {
+                MDC.remove(STAGES_MDC_KEY);
+            }
+        }
+    }
+
+    private Timer[] registerTimers(String method, String uri) {
+        Timer[] timers = new Timer[STAGES.length];
+        for (Stage stage : STAGES) {
+            timers[stage.ordinal()] = Timer.builder("beerstock.http.stage")
+                    .description("Time spent in each stage of an HTTP request")
+                    .tags("method", method, "uri", uri, "stage", stage.getMetricName())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+        return timers;
+    }
+
+    private static long databaseNanos() {
+        SqlStatistics statistics = SqlStatistics.current();
+        return statistics == null ? 0 : statistics.getTime().toNanos();
+    }
+}
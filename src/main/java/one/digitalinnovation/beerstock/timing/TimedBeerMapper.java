@@ -0,0 +1,49 @@
+package one.digitalinnovation.beerstock.timing;
+
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Adds the time spent in a {@link BeerMapper} to the {@link Stage#MAPPING} stage of the current
+ * request.
+ */
+public class TimedBeerMapper implements BeerMapper {
+
+    private final BeerMapper delegate;
+
+    public TimedBeerMapper(BeerMapper delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Beer toModel(BeerDTO beerDTO) {
+        return timed(() -> delegate.toModel(beerDTO));
+    }
+
+    @Override
+    public BeerDTO toDTO(Beer beer) {
+        return timed(() -> delegate.toDTO(beer));
+    }
+
+    @Override
+    public List<BeerDTO> toDTOs(List<Beer> beers) {
+        return timed(() -> delegate.toDTOs(beers));
+    }
+
+    private static <T> T timed(Supplier<T> mapping) {
+        RequestTiming timing = RequestTiming.current();
+        if (timing == null) {
+            return mapping.get();
+        }
+        long start = System.nanoTime();
+        try {
+            return mapping.get();
+        } finally {
+            timing.add(Stage.MAPPING, System.nanoTime() - start);
+        }
+    }
+}
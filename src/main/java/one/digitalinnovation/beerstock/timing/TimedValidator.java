@@ -0,0 +1,42 @@
+package one.digitalinnovation.beerstock.timing;
+
+import org.springframework.validation.Errors;
+import org.springframework.validation.SmartValidator;
+
+/**
+ * Adds the time spent validating request bodies to the {@link Stage#VALIDATION} stage of the
+ * current request.
+ */
+public class TimedValidator implements SmartValidator {
+
+    private final SmartValidator delegate;
+
+    public TimedValidator(SmartValidator delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return delegate.supports(clazz);
+    }
+
+    @Override
+    public void validate(Object target, Errors errors) {
+        validate(target, errors, new Object[0]);
+    }
+
+    @Override
+    public void validate(Object target, Errors errors, Object... validationHints) {
+        RequestTiming timing = RequestTiming.current();
+        if (timing == null) {
+            delegate.validate(target, errors, validationHints);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            delegate.validate(target, errors, validationHints);
+        } finally {
+            timing.add(Stage.VALIDATION, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package one.digitalinnovation.beerstock.web;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Runs a callback once, just before the response is committed, so that filters can add headers
+ * computed while the request was handled. Call {@link #beforeCommit()} after the filter chain
+ * to cover responses without a body.
+ */
+public class BeforeCommitResponse extends HttpServletResponseWrapper {
+
+    private final Runnable callback;
+    private boolean called;
+
+    public BeforeCommitResponse(HttpServletResponse response, Runnable callback) {
+        super(response);
+        this.callback = callback;
+    }
+
+    public void beforeCommit() {
+        if (called || isCommitted()) {
+            return;
+        }
+        called = true;
+        callback.run();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        beforeCommit();
+        return super.getOutputStream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        beforeCommit();
+        return super.getWriter();
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        beforeCommit();
+        super.flushBuffer();
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        beforeCommit();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        beforeCommit();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        beforeCommit();
+        super.sendRedirect(location);
+    }
+}
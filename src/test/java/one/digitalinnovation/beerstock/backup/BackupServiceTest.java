@@ -0,0 +1,286 @@
+package one.digitalinnovation.beerstock.backup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.StockTransferDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.BeerStock;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.exception.BeerStockException;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.reservation.ReservationRegistry;
+import one.digitalinnovation.beerstock.service.BeerService;
+import one.digitalinnovation.beerstock.storage.BeerStore;
+import one.digitalinnovation.beerstock.storage.WriteBehindBeerStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:beerstock-backup-test;DB_CLOSE_DELAY=-1",
+        "beerstock.backup.interval-seconds=0",
+        "beerstock.backup.page-size=20",
+        "beerstock.backup.max-rows-per-second=2000",
+        "beerstock.ratelimit.enabled=false"})
+@AutoConfigureMockMvc
+public class BackupServiceTest {
+
+    private static final int BEERS = 60;
+    private static final int WRITERS = 4;
+    private static final int DELTAS = 5;
+    private static final String BAR = "backup-bar";
+    private static final AtomicInteger NAMES = new AtomicInteger();
+
+    @TempDir
+    static Path backupDirectory;
+
+    @DynamicPropertySource
+    static void backupProperties(DynamicPropertyRegistry registry) {
+        registry.add("beerstock.backup.directory", () -> backupDirectory.toString());
+    }
+
+    @Autowired
+    BackupService backupService;
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    BeerStore beerStore;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    ReservationRegistry reservationRegistry;
+
+    @Autowired
+    ApplicationContext applicationContext;
+
+    @Test
+    void whenBeersChangeDuringBackupsThenRestoreShouldReproduceTheLastBackedUpState() throws Exception {
+        // given
+        if (!beerStore.findLocation(BAR).isPresent()) {
+            beerStore.createLocation(BAR);
+        }
+        List<Long> ids = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < BEERS; i++) {
+            ids.add(beerService.createBeer(newBeer()).getId());
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder writes = new LongAdder();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            Random random = new Random(41 + w);
+            Thread writer = new Thread(() -> {
+                while (running.get()) {
+                    try {
+                        write(random, ids);
+                        writes.increment();
+                    } catch (BeerStockException expected) {
+                        // concurrent deletes and stock limits are part of the workload
+                    } catch (RuntimeException unexpected) {
+                        failures.add(unexpected);
+                    }
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+
+        // when
+        List<BackupSummary> backupsUnderLoad = new ArrayList<>();
+        backupsUnderLoad.add(backupService.fullBackup());
+        for (int i = 0; i < DELTAS; i++) {
+            Thread.sleep(50);
+            backupsUnderLoad.add(backupService.deltaBackup());
+        }
+        running.set(false);
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        backupService.deltaBackup();
+        List<Beer> backedUpBeers = allBeers();
+        Map<Long, Map<String, Integer>> backedUpStock = allStock(backedUpBeers);
+        List<StockLocation> backedUpLocations = beerStore.findAllLocations();
+
+        List<Long> survivingIds = backedUpBeers.stream().map(Beer::getId).collect(Collectors.toList());
+        beerService.deleteById(survivingIds.get(0));
+        beerService.increment(survivingIds.get(1), 1, BAR);
+        beerService.createBeer(newBeer());
+        RestoreSummary summary = backupService.restore();
+
+        // then
+        assertThat(failures).isEmpty();
+        assertThat(writes.sum()).isGreaterThan(DELTAS);
+        for (BackupSummary backup : backupsUnderLoad) {
+            assertStockBalances(backup);
+        }
+        assertThat(summary.getBackupsApplied()).isEqualTo(DELTAS + 2);
+        assertThat(summary.getCreated()).isEqualTo(1);
+        assertThat(summary.getDeleted()).isEqualTo(1);
+        assertThat(summary.getUpdated()).isEqualTo(1);
+        assertThat(allBeers()).isEqualTo(backedUpBeers);
+        assertThat(allStock(backedUpBeers)).isEqualTo(backedUpStock);
+        assertThat(beerStore.findAllLocations()).isEqualTo(backedUpLocations);
+        BeerDTO beerCreatedAfterRestore = beerService.createBeer(newBeer());
+        assertThat(beerCreatedAfterRestore.getId()).isGreaterThan(survivingIds.get(survivingIds.size() - 1));
+    }
+
+    @Test
+    void whenFullBackupIsTakenThenReadsShouldBePacedToTheConfiguredRowRate() throws Exception {
+        // given
+        for (int i = 0; i < BEERS; i++) {
+            beerService.createBeer(newBeer());
+        }
+        long rows = beerRepository.count();
+
+        // when
+        long start = System.nanoTime();
+        backupService.fullBackup();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        // then pages after the first wait for their share of 2000 rows per second
+        long pagedRows = rows - rows % 20;
+        assertThat(elapsed).isGreaterThanOrEqualTo(Duration.ofMillis((pagedRows - 20) * 1000 / 2000));
+    }
+
+    @Test
+    void whenServiceRestartsBetweenBackupsThenTheNextBackupShouldBeFull() throws Exception {
+        // given
+        Long id = beerService.createBeer(newBeer()).getId();
+        backupService.fullBackup();
+        beerService.increment(id, 1);
+        int quantityBeforeRestart = beerStore.findById(id).map(Beer::getQuantity).orElseThrow();
+
+        // when the restarted service has not seen the change above
+        BackupService restarted = new BackupService(dataSource, objectMapper, applicationContext,
+                reservationRegistry, applicationContext.getBeanProvider(WriteBehindBeerStore.class),
+                backupDirectory.toString(), 20, 2000, 0, 12, false);
+        BackupSummary firstAfterRestart = restarted.deltaBackup();
+        BackupSummary secondAfterRestart = restarted.backup();
+
+        // then
+        assertThat(firstAfterRestart.getKind()).isEqualTo(BeerBackup.Kind.FULL);
+        assertThat(secondAfterRestart.getKind()).isEqualTo(BeerBackup.Kind.DELTA);
+        BeerBackup backup = objectMapper.readValue(backupDirectory.resolve(firstAfterRestart.getFile()).toFile(), BeerBackup.class);
+        assertThat(backup.getBeers()).filteredOn(beer -> beer.getId().equals(id))
+                .extracting(Beer::getQuantity).containsExactly(quantityBeforeRestart);
+    }
+
+    @Test
+    void whenBackupIsTriggeredFromActuatorThenItShouldBeListed() throws Exception {
+        // when
+        mockMvc.perform(post("/actuator/backup/full"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.kind").value("FULL"));
+        mockMvc.perform(post("/actuator/backup/delta"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.kind").value("DELTA"));
+
+        // then
+        mockMvc.perform(get("/actuator/backup"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[-1:].kind").value("DELTA"));
+        mockMvc.perform(post("/actuator/backup/compact"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/actuator/backup/restore"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void write(Random random, List<Long> ids) throws BeerStockException {
+        int choice = random.nextInt(100);
+        if (choice == 0) {
+            ids.add(beerService.createBeer(newBeer()).getId());
+        } else if (choice == 1 && ids.size() > 1) {
+            beerService.deleteById(ids.remove(random.nextInt(ids.size())));
+        } else if (choice < 30) {
+            Long id = ids.get(random.nextInt(ids.size()));
+            beerService.transfer(id, random.nextBoolean()
+                    ? new StockTransferDTO(StockLocation.DEFAULT, BAR, 1 + random.nextInt(3))
+                    : new StockTransferDTO(BAR, StockLocation.DEFAULT, 1 + random.nextInt(3)));
+        } else {
+            Long id = ids.get(random.nextInt(ids.size()));
+            if (random.nextBoolean()) {
+                beerService.increment(id, 1 + random.nextInt(3));
+            } else {
+                beerService.decrement(id, 1 + random.nextInt(3));
+            }
+        }
+    }
+
+    /**
+     * Every beer in a backup must hold exactly the units of its stock rows in that backup.
+     */
+    private void assertStockBalances(BackupSummary summary) throws IOException {
+        BeerBackup backup = objectMapper.readValue(backupDirectory.resolve(summary.getFile()).toFile(), BeerBackup.class);
+        Map<Long, Integer> stockSums = backup.getStock().stream()
+                .collect(Collectors.groupingBy(BeerStock::getBeerId, Collectors.summingInt(BeerStock::getQuantity)));
+        Map<Long, Integer> quantities = backup.getBeers().stream()
+                .collect(Collectors.toMap(Beer::getId, Beer::getQuantity));
+        assertThat(backup.getBeers()).isNotEmpty();
+        assertThat(stockSums).as("stock per beer in %s", summary.getFile()).isEqualTo(quantities);
+    }
+
+    private List<Beer> allBeers() {
+        List<Beer> beers = beerRepository.findAll();
+        beers.sort(Comparator.comparing(Beer::getId));
+        return beers;
+    }
+
+    private Map<Long, Map<String, Integer>> allStock(List<Beer> beers) {
+        Map<Long, Map<String, Integer>> stock = new TreeMap<>();
+        beers.forEach(beer -> stock.put(beer.getId(), beerStore.findStock(beer.getId())));
+        return stock;
+    }
+
+    private static BeerDTO newBeer() {
+        return BeerDTO.builder()
+                .name("Backup " + NAMES.incrementAndGet())
+                .brand("Backup")
+                .max(100)
+                .quantity(50)
+                .type(BeerType.STOUT)
+                .build();
+    }
+}
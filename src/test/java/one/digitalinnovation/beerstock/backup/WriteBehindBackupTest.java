@@ -0,0 +1,78 @@
+package one.digitalinnovation.beerstock.backup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.service.BeerService;
+import one.digitalinnovation.beerstock.storage.BeerStore;
+import one.digitalinnovation.beerstock.storage.WriteBehindBeerStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:beerstock-write-behind-backup;DB_CLOSE_DELAY=-1",
+        "beerstock.storage.type=write-behind",
+        "beerstock.storage.write-behind.max-staleness-millis=3600000",
+        "beerstock.backup.interval-seconds=0",
+        "beerstock.ratelimit.enabled=false"})
+public class WriteBehindBackupTest {
+
+    @TempDir
+    static Path backupDirectory;
+
+    @DynamicPropertySource
+    static void backupProperties(DynamicPropertyRegistry registry) {
+        registry.add("beerstock.backup.directory", () -> backupDirectory.toString());
+    }
+
+    @Autowired
+    BackupService backupService;
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerStore beerStore;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    void whenStockIsWrittenBehindThenBackupsShouldSeeUnflushedChangesAndRestoreShouldReloadThem() throws Exception {
+        // given
+        Long id = beerService.createBeer(BeerDTO.builder()
+                .name("Write behind backup")
+                .brand("Backup")
+                .max(100)
+                .quantity(50)
+                .type(BeerType.LAGER)
+                .build()).getId();
+        beerService.increment(id, 5);
+        assertThat(((WriteBehindBeerStore) beerStore).pendingBeers()).isEqualTo(1);
+
+        // when
+        BackupSummary summary = backupService.fullBackup();
+        beerService.decrement(id, 20);
+        backupService.restore();
+
+        // then
+        BeerBackup backup = objectMapper.readValue(backupDirectory.resolve(summary.getFile()).toFile(), BeerBackup.class);
+        assertThat(backup.getBeers()).extracting(Beer::getQuantity).containsExactly(55);
+        assertThat(beerStore.findById(id)).map(Beer::getQuantity).contains(55);
+        assertThat(beerStore.findStock(id)).isEqualTo(Collections.singletonMap(StockLocation.DEFAULT, 55));
+        beerService.increment(id, 1);
+        ((WriteBehindBeerStore) beerStore).flush();
+        assertThat(beerStore.findById(id)).map(Beer::getQuantity).contains(56);
+    }
+}
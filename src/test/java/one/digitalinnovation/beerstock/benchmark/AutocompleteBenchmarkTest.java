@@ -0,0 +1,71 @@
+package one.digitalinnovation.beerstock.benchmark;
+
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.feed.BeerChangeEvent;
+import one.digitalinnovation.beerstock.search.BeerNameIndex;
+import one.digitalinnovation.beerstock.storage.InMemoryBeerStore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Tag("benchmark")
+public class AutocompleteBenchmarkTest {
+
+    private static final int BEERS = 1_000_000;
+    private static final int QUERIES = 200_000;
+    private static final String[] WORDS = {"brahma", "beer", "bock", "blonde", "ale", "ipa", "stout", "porter",
+            "lager", "weiss", "pils", "amber", "red", "double", "imperial", "session", "hazy", "dark", "gold", "sour"};
+
+    @Test
+    void suggestionsShouldStaySubMillisecondAtAMillionNames() throws Exception {
+        Random random = new Random(36);
+        InMemoryBeerStore beerStore = new InMemoryBeerStore();
+        String[] names = new String[BEERS];
+        for (int i = 0; i < BEERS; i++) {
+            names[i] = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            beerStore.create(new Beer(null, names[i], "Brand", 1_000, random.nextInt(1_000), BeerType.ALE));
+        }
+        BeerNameIndex beerNameIndex = new BeerNameIndex(beerStore, 10);
+        long buildStart = System.nanoTime();
+        beerNameIndex.rebuild();
+        long buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - buildStart);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            Random writerRandom = new Random(1);
+            long version = 0;
+            while (running.get()) {
+                long id = 1 + writerRandom.nextInt(BEERS);
+                Beer beer = new Beer(id, names[(int) id - 1], "Brand", 1_000, writerRandom.nextInt(1_000), BeerType.ALE);
+                beerNameIndex.onBeerChange(BeerChangeEvent.quantityChanged(beer, 1, ++version));
+            }
+        });
+        writer.start();
+
+        long[] latencies = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String name = names[random.nextInt(BEERS)];
+            String prefix = name.substring(0, 1 + random.nextInt(Math.min(name.length(), 12)));
+            long start = System.nanoTime();
+            beerNameIndex.suggest(prefix, 10);
+            latencies[i] = System.nanoTime() - start;
+        }
+        running.set(false);
+        writer.join();
+        beerNameIndex.stop();
+
+        Arrays.sort(latencies);
+        long p50 = latencies[QUERIES / 2];
+        long p99 = latencies[(int) (QUERIES * 0.99)];
+        System.out.printf("Autocomplete over %d names (index built in %d ms): p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                BEERS, buildMillis, p50 / 1_000.0, p99 / 1_000.0, latencies[QUERIES - 1] / 1_000.0);
+        assertThat(p99).isLessThan(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,81 @@
+package one.digitalinnovation.beerstock.benchmark;
+
+import one.digitalinnovation.beerstock.dto.ProblemDTO;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceptionHandler;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.LongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Tag("benchmark")
+public class ExceptionAllocationBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 50_000;
+    private static final int MEASURED_ITERATIONS = 200_000;
+    private static final String NOT_FOUND_TEMPLATE = "Beer with id %s not found in the system.";
+    private static final String EXCEEDED_TEMPLATE = "%s Beers informed with ID %s to increment, exceeds the max stock capacity: %s. Current Amount: %s";
+
+    private static Object sink;
+
+    private final BeerStockExceptionHandler exceptionHandler = new BeerStockExceptionHandler();
+
+    @Test
+    void whenBeerNotFoundIsAnsweredThenItShouldAllocateLessThanAStackTracedException() {
+        long legacyBytes = allocatedBytesPerOperation(id -> legacyProblem(HttpStatus.NOT_FOUND, "Beer not found",
+                new Exception(String.format(NOT_FOUND_TEMPLATE, id))));
+        long stacklessBytes = allocatedBytesPerOperation(id -> exceptionHandler.handleNotFound(new BeerNotFoundException(id)));
+
+        report("BeerNotFoundException", legacyBytes, stacklessBytes);
+        assertThat(stacklessBytes).isLessThan(legacyBytes / 2);
+    }
+
+    @Test
+    void whenBeerStockExceededIsAnsweredThenItShouldAllocateLessThanAStackTracedException() {
+        long legacyBytes = allocatedBytesPerOperation(id -> legacyProblem(HttpStatus.BAD_REQUEST, "Beer stock exceeded",
+                new Exception(String.format(EXCEEDED_TEMPLATE, 41, id, 50, 10))));
+        long stacklessBytes = allocatedBytesPerOperation(id -> exceptionHandler.handleBadRequest(new BeerStockExceededException(id, 41, 50, 10)));
+
+        report("BeerStockExceededException", legacyBytes, stacklessBytes);
+        assertThat(stacklessBytes).isLessThan(legacyBytes / 2);
+    }
+
+    @Test
+    void whenProblemDetailIsRenderedThenItShouldAllocateLessThanStringFormat() {
+        long formattedBytes = allocatedBytesPerOperation(id -> String.format(EXCEEDED_TEMPLATE, 41, id, 50, 10));
+        long templatedBytes = allocatedBytesPerOperation(id -> new BeerStockExceededException(id, 41, 50, 10).getMessage());
+
+        System.out.printf("Problem detail: %d bytes/op with String.format, %d bytes/op with exception and precompiled template%n",
+                formattedBytes, templatedBytes);
+        assertThat(templatedBytes).isLessThan(formattedBytes);
+    }
+
+    private static ResponseEntity<ProblemDTO> legacyProblem(HttpStatus status, String title, Exception exception) {
+        return ResponseEntity.status(status).body(new ProblemDTO(status.value(), title, exception.getMessage()));
+    }
+
+    private static long allocatedBytesPerOperation(LongFunction<Object> operation) {
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink = operation.apply(i);
+        }
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink = operation.apply(i);
+        }
+        long after = threadMXBean.getThreadAllocatedBytes(threadId);
+        return (after - before) / MEASURED_ITERATIONS;
+    }
+
+    private static void report(String name, long legacyBytes, long stacklessBytes) {
+        System.out.printf("%s through the handler: %d bytes/op with stack trace and eager message, %d bytes/op stackless%n",
+                name, legacyBytes, stacklessBytes);
+    }
+}
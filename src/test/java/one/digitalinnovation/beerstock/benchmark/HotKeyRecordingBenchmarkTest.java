@@ -0,0 +1,50 @@
+package one.digitalinnovation.beerstock.benchmark;
+
+import one.digitalinnovation.beerstock.hotkeys.HeavyHitters;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Tag("benchmark")
+public class HotKeyRecordingBenchmarkTest {
+
+    private static final int THREADS = 4;
+    private static final int BEERS = 10_000;
+    private static final int COLD_BEERS = 8;
+    private static final Duration WARMUP = Duration.ofSeconds(1);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(3);
+
+    @Test
+    void recordingShouldCostLessThanAMicrosecondPerEvent() throws Exception {
+        HeavyHitters heavyHitters = new HeavyHitters(4096, 4, 20);
+        // Roughly Zipf-like: a handful of beers take most of the events.
+        ThroughputRunner.Operation record = (thread, iteration) -> {
+            long id = 1 + (iteration * 0x9E3779B9L + thread) % BEERS;
+            heavyHitters.record((iteration & 3) == 0 ? id : 1 + id % 16);
+        };
+        ThroughputRunner.operationsPerSecond(THREADS, WARMUP, record);
+        double opsPerSecond = ThroughputRunner.operationsPerSecond(THREADS, MEASUREMENT, record);
+
+        double nanosPerEvent = THREADS * 1_000_000_000.0 / opsPerSecond;
+        System.out.printf("Hot key recording with %d threads: %.0f events/s, %.0f ns/event per thread; top %s%n",
+                THREADS, opsPerSecond, nanosPerEvent, heavyHitters.top().subList(0, 3));
+        assertThat(nanosPerEvent).isLessThan(1000);
+    }
+
+    @Test
+    void recordingFewerIdsThanTopKShouldCostLessThanAMicrosecondPerEvent() throws Exception {
+        // Never decayed nor reported, and too few ids to fill the candidate table: the floor stays 0.
+        HeavyHitters heavyHitters = new HeavyHitters(4096, 4, 20);
+        ThroughputRunner.Operation record = (thread, iteration) -> heavyHitters.record(1 + (iteration + thread) % COLD_BEERS);
+        ThroughputRunner.operationsPerSecond(THREADS, WARMUP, record);
+        double opsPerSecond = ThroughputRunner.operationsPerSecond(THREADS, MEASUREMENT, record);
+
+        double nanosPerEvent = THREADS * 1_000_000_000.0 / opsPerSecond;
+        System.out.printf("Cold hot key recording of %d ids with %d threads: %.0f events/s, %.0f ns/event per thread%n",
+                COLD_BEERS, THREADS, opsPerSecond, nanosPerEvent);
+        assertThat(nanosPerEvent).isLessThan(1000);
+    }
+}
@@ -0,0 +1,120 @@
+package one.digitalinnovation.beerstock.benchmark;
+
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.hotkeys.HotKeyTracker;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.BeerStockRepository;
+import one.digitalinnovation.beerstock.repository.StockLocationRepository;
+import one.digitalinnovation.beerstock.reservation.ReservationRegistry;
+import one.digitalinnovation.beerstock.search.BeerNameIndex;
+import one.digitalinnovation.beerstock.service.BeerService;
+import one.digitalinnovation.beerstock.storage.MappedBeerStore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Tag("benchmark")
+@SpringBootTest(properties = "beerstock.ratelimit.enabled=false")
+public class MappedStockBenchmarkTest {
+
+    private static final int THREADS = 4;
+    private static final int BEERS = 64;
+    private static final int MAX = 500;
+    private static final int CAPACITY = 1 << 16;
+    private static final Duration WARMUP = Duration.ofSeconds(1);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(3);
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    BeerStockRepository beerStockRepository;
+
+    @Autowired
+    StockLocationRepository stockLocationRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    ReservationRegistry reservationRegistry;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    BeerNameIndex beerNameIndex;
+
+    @Autowired
+    HotKeyTracker hotKeyTracker;
+
+    @Autowired
+    BeerMapper beerMapper;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void mappedStoreShouldOutperformTheJpaPath() throws Exception {
+        long[] ids = new long[BEERS];
+        for (int i = 0; i < BEERS; i++) {
+            BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).name("Mapped benchmark " + i).max(MAX).quantity(100).build().toBeerDTO();
+            ids[i] = beerService.createBeer(beerDTO).getId();
+        }
+
+        double jpaOps = measure(beerService, ids);
+
+        MappedBeerStore mappedStore = new MappedBeerStore(beerRepository, beerStockRepository, stockLocationRepository,
+                transactionTemplate, dataSource, tempDir.resolve("stock.dat").toString(), CAPACITY, 1000);
+        mappedStore.open();
+        double mappedOps;
+        try {
+            mappedOps = measure(new BeerService(mappedStore, reservationRegistry, eventPublisher, beerNameIndex, hotKeyTracker,
+                    beerMapper), ids);
+            for (long id : ids) {
+                assertThat(mappedStore.findById(id).get().getQuantity()).isBetween(0, MAX);
+            }
+        } finally {
+            mappedStore.close();
+        }
+
+        System.out.printf("Stock updates through BeerService with %d threads: H2/JPA %.0f ops/s, memory-mapped store %.0f ops/s (%.0fx)%n",
+                THREADS, jpaOps, mappedOps, mappedOps / jpaOps);
+        assertThat(mappedOps).isGreaterThan(jpaOps);
+    }
+
+    private static double measure(BeerService service, long[] ids) throws Exception {
+        ThroughputRunner.operationsPerSecond(THREADS, WARMUP, mutation(service, ids));
+        return ThroughputRunner.operationsPerSecond(THREADS, MEASUREMENT, mutation(service, ids));
+    }
+
+    private static ThroughputRunner.Operation mutation(BeerService service, long[] ids) {
+        return (thread, iteration) -> {
+            // each thread takes back what it added to a beer, so stock never drifts to a limit
+            long id = ids[(int) ((thread * 31 + iteration / 2) % BEERS)];
+            if ((iteration & 1) == 0) {
+                service.increment(id, 1);
+            } else {
+                service.decrement(id, 1);
+            }
+        };
+    }
+}
@@ -0,0 +1,62 @@
+package one.digitalinnovation.beerstock.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.storage.ShardedBeerStore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Tag("benchmark")
+public class ShardedWriteBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final int[] SHARD_COUNTS = {1, 2, 4};
+    private static final Duration WARMUP = Duration.ofSeconds(1);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(3);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writeThroughputShouldGrowWithTheShardCount() throws Exception {
+        Map<Integer, Double> opsByShardCount = new LinkedHashMap<>();
+        for (int shardCount : SHARD_COUNTS) {
+            try (ShardedBeerStore beerStore = new ShardedBeerStore(shardPools(shardCount))) {
+                AtomicLong sequence = new AtomicLong();
+                ThroughputRunner.Operation insert = (thread, iteration) ->
+                        beerStore.create(new Beer(null, "Beer " + sequence.incrementAndGet(), "Brand", 100, 10, BeerType.LAGER));
+                ThroughputRunner.operationsPerSecond(THREADS, WARMUP, insert);
+                opsByShardCount.put(shardCount, ThroughputRunner.operationsPerSecond(THREADS, MEASUREMENT, insert));
+            }
+        }
+
+        opsByShardCount.forEach((shardCount, ops) ->
+                System.out.printf("Inserts with %d threads over %d shard(s): %.0f ops/s%n", THREADS, shardCount, ops));
+        assertThat(opsByShardCount.get(4)).isGreaterThan(opsByShardCount.get(1));
+    }
+
+    private List<HikariDataSource> shardPools(int shardCount) {
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            HikariDataSource pool = new HikariDataSource();
+            pool.setJdbcUrl("jdbc:h2:file:" + tempDir.resolve(shardCount + "-shards/shard-" + i).toAbsolutePath());
+            pool.setUsername("sa");
+            pool.setPassword("");
+            pool.setMaximumPoolSize(THREADS);
+            pools.add(pool);
+        }
+        return pools;
+    }
+}
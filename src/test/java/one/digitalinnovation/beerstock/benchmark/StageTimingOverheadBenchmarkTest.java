@@ -0,0 +1,90 @@
+package one.digitalinnovation.beerstock.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.service.BeerService;
+import one.digitalinnovation.beerstock.timing.RequestTiming;
+import one.digitalinnovation.beerstock.timing.SlowRequestLog;
+import one.digitalinnovation.beerstock.timing.Stage;
+import one.digitalinnovation.beerstock.timing.StageTimingFilter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Compares the cost stage timing adds to a request, measured on the filter alone with a chain
+ * that touches every instrumented stage, with the cost of a full findByName request.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "beerstock.ratelimit.enabled=false")
+@AutoConfigureMockMvc
+public class StageTimingOverheadBenchmarkTest {
+
+    private static final int THREADS = 2;
+    private static final Duration DURATION = Duration.ofSeconds(3);
+    private static final double MAX_OVERHEAD_PERCENT = 3;
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    BeerService beerService;
+
+    @Test
+    void stageTimingShouldCostUnderAFewPercentOfARequest() throws Exception {
+        BeerDTO beerDTO = beerService.createBeer(BeerDTOBuilder.builder().id(null).name("Overhead").build().toBeerDTO());
+        double requestsPerSecond = ThroughputRunner.operationsPerSecond(THREADS, DURATION, (thread, iteration) -> {
+            try {
+                mockMvc.perform(get("/api/v1/beers/" + beerDTO.getName())).andExpect(status().isOk());
+            } catch (Exception requestFailure) {
+                throw new IllegalStateException(requestFailure);
+            }
+        });
+
+        StageTimingFilter filter = new StageTimingFilter(new SimpleMeterRegistry(), new SlowRequestLog(128, 250), true);
+        FilterChain chain = (request, response) -> {
+            RequestTiming timing = RequestTiming.current();
+            if (timing != null) {
+                timing.add(Stage.VALIDATION, 1);
+                timing.add(Stage.MAPPING, 1);
+                timing.markSerializationStart();
+            }
+            response.getOutputStream();
+        };
+        double bareChainPerSecond = ThroughputRunner.operationsPerSecond(THREADS, DURATION,
+                (thread, iteration) -> run(chain::doFilter));
+        double timedChainPerSecond = ThroughputRunner.operationsPerSecond(THREADS, DURATION,
+                (thread, iteration) -> run((request, response) -> filter.doFilter(request, response, chain)));
+
+        double requestNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        double overheadNanos = Math.max(0, TimeUnit.SECONDS.toNanos(1) / timedChainPerSecond - TimeUnit.SECONDS.toNanos(1) / bareChainPerSecond);
+        double overheadPercent = 100 * overheadNanos / requestNanos;
+        System.out.printf("request %.1f µs, stage timing %.0f ns (%.2f%%)%n", requestNanos / 1_000, overheadNanos, overheadPercent);
+        assertThat(overheadPercent).isLessThan(MAX_OVERHEAD_PERCENT);
+    }
+
+    private static void run(FilterChain chain) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/beers/Overhead");
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/v1/beers/{name}");
+        try {
+            chain.doFilter(request, new MockHttpServletResponse());
+        } catch (Exception filterFailure) {
+            throw new IllegalStateException(filterFailure);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package one.digitalinnovation.beerstock.benchmark;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class ThroughputRunner {
+
+    @FunctionalInterface
+    public interface Operation {
+        void run(int threadIndex, long iteration) throws Exception;
+    }
+
+    public static double operationsPerSecond(int threads, Duration duration, Operation operation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int threadIndex = i;
+            results.add(executor.submit(() -> {
+                start.await();
+                long iterations = 0;
+                while (running.get()) {
+                    operation.run(threadIndex, iterations++);
+                }
+                return iterations;
+            }));
+        }
+        long startNanos = System.nanoTime();
+        start.countDown();
+        Thread.sleep(duration.toMillis());
+        running.set(false);
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        return total * 1_000_000_000.0 / elapsedNanos;
+    }
+}
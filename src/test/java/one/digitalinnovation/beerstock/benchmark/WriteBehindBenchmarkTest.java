@@ -0,0 +1,138 @@
+package one.digitalinnovation.beerstock.benchmark;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.hotkeys.HotKeyTracker;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.BeerStockRepository;
+import one.digitalinnovation.beerstock.repository.StockLocationRepository;
+import one.digitalinnovation.beerstock.reservation.ReservationRegistry;
+import one.digitalinnovation.beerstock.search.BeerNameIndex;
+import one.digitalinnovation.beerstock.service.BeerService;
+import one.digitalinnovation.beerstock.storage.WriteBehindBeerStore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Tag("benchmark")
+@SpringBootTest(properties = "beerstock.ratelimit.enabled=false")
+public class WriteBehindBenchmarkTest {
+
+    private static final int THREADS = 4;
+    private static final int BEERS = 64;
+    private static final Duration WARMUP = Duration.ofSeconds(1);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(3);
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    BeerStockRepository beerStockRepository;
+
+    @Autowired
+    StockLocationRepository stockLocationRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    ReservationRegistry reservationRegistry;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    BeerNameIndex beerNameIndex;
+
+    @Autowired
+    HotKeyTracker hotKeyTracker;
+
+    @Autowired
+    BeerMapper beerMapper;
+
+    @Test
+    void writeBehindShouldOutperformTheSynchronousPath() throws Exception {
+        long[] ids = new long[BEERS];
+        for (int i = 0; i < BEERS; i++) {
+            BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).name("Write behind benchmark " + i).max(500).quantity(100).build().toBeerDTO();
+            ids[i] = beerService.createBeer(beerDTO).getId();
+        }
+
+        Result synchronous = measure(beerService, ids);
+
+        WriteBehindBeerStore writeBehindStore = new WriteBehindBeerStore(beerRepository, beerStockRepository,
+                stockLocationRepository, transactionTemplate, dataSource, 1000);
+        writeBehindStore.open();
+        Result writeBehind;
+        try {
+            writeBehind = measure(new BeerService(writeBehindStore, reservationRegistry, eventPublisher, beerNameIndex, hotKeyTracker,
+                    beerMapper), ids);
+        } finally {
+            writeBehindStore.close();
+        }
+
+        System.out.printf("Stock updates with %d threads: synchronous %.0f ops/s (p99 %.1f us), "
+                        + "write-behind %.0f ops/s (p99 %.1f us), %.0fx%n",
+                THREADS, synchronous.opsPerSecond, synchronous.p99Micros,
+                writeBehind.opsPerSecond, writeBehind.p99Micros, writeBehind.opsPerSecond / synchronous.opsPerSecond);
+        assertThat(writeBehind.opsPerSecond).isGreaterThan(synchronous.opsPerSecond);
+        assertThat(writeBehind.p99Micros).isLessThan(synchronous.p99Micros);
+    }
+
+    private static Result measure(BeerService service, long[] ids) throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        Timer warmupTimer = Timer.builder("warmup").register(registry);
+        Timer timer = Timer.builder("mutation").publishPercentiles(0.99).register(registry);
+        ThroughputRunner.operationsPerSecond(THREADS, WARMUP, mutation(service, ids, warmupTimer));
+        double opsPerSecond = ThroughputRunner.operationsPerSecond(THREADS, MEASUREMENT, mutation(service, ids, timer));
+        double p99Micros = 0;
+        for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+            p99Micros = percentile.value(TimeUnit.MICROSECONDS);
+        }
+        return new Result(opsPerSecond, p99Micros);
+    }
+
+    private static ThroughputRunner.Operation mutation(BeerService service, long[] ids, Timer timer) {
+        return (thread, iteration) -> {
+            // each thread takes back what it added to a beer, so stock never drifts to a limit
+            long id = ids[(int) ((thread * 31 + iteration / 2) % BEERS)];
+            long start = System.nanoTime();
+            if ((iteration & 1) == 0) {
+                service.increment(id, 1);
+            } else {
+                service.decrement(id, 1);
+            }
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        };
+    }
+
+    private static final class Result {
+
+        private final double opsPerSecond;
+        private final double p99Micros;
+
+        private Result(double opsPerSecond, double p99Micros) {
+            this.opsPerSecond = opsPerSecond;
+            this.p99Micros = p99Micros;
+        }
+    }
+}
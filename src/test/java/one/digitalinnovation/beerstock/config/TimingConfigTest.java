@@ -0,0 +1,27 @@
+package one.digitalinnovation.beerstock.config;
+
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.timing.TimedBeerMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.annotation.UserConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(UserConfigurations.of(TimingConfig.class))
+            .withBean(BeerMapper.class, () -> BeerMapper.INSTANCE);
+
+    @Test
+    void whenTimingIsEnabledThenTheMapperShouldBeTimed() {
+        contextRunner.run(context -> assertThat(context.getBean(BeerMapper.class)).isInstanceOf(TimedBeerMapper.class));
+    }
+
+    @Test
+    void whenTimingIsDisabledThenTheMapperShouldBeInjectedAsItIs() {
+        contextRunner.withPropertyValues("beerstock.timing.enabled=false")
+                .run(context -> assertThat(context.getBean(BeerMapper.class)).isSameAs(BeerMapper.INSTANCE));
+    }
+}
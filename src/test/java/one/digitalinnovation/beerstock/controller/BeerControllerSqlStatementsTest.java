@@ -0,0 +1,147 @@
+package one.digitalinnovation.beerstock.controller;
+
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerLookupRequestDTO;
+import one.digitalinnovation.beerstock.dto.QuantityDTO;
+import one.digitalinnovation.beerstock.dto.ReservationRequestDTO;
+import one.digitalinnovation.beerstock.service.BeerService;
+import one.digitalinnovation.beerstock.utils.JsonConvertionUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static one.digitalinnovation.beerstock.utils.SqlStatementAssertions.sqlStatements;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pins the number of SQL statements each endpoint executes against the default JPA store.
+ * A failing count means a query was added or removed: check that it was on purpose and update
+ * the expectation.
+ */
+@SpringBootTest(properties = "beerstock.sql.statistics.response-headers=true")
+@AutoConfigureMockMvc
+public class BeerControllerSqlStatementsTest {
+
+    private static final String BEER_API_URL_PATH = "/api/v1/beers";
+    private static final AtomicInteger NAMES = new AtomicInteger();
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    BeerService beerService;
+
+    BeerDTO beerDTO;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        beerDTO = beerService.createBeer(newBeer());
+    }
+
+    @Test
+    void whenBeerIsCreatedThenNameCheckInsertsAndLocationTotalUpdateShouldBeExecuted() throws Exception {
+        mockMvc.perform(post(BEER_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(newBeer())))
+                .andExpect(status().isCreated())
+                .andExpect(sqlStatements(4));
+    }
+
+    @Test
+    void whenBeerIsFoundByNameThenOneSelectShouldBeExecuted() throws Exception {
+        mockMvc.perform(get(BEER_API_URL_PATH + "/" + beerDTO.getName()))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatements(1));
+    }
+
+    @Test
+    void whenBeersAreListedThenOneSelectShouldBeExecuted() throws Exception {
+        mockMvc.perform(get(BEER_API_URL_PATH))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatements(1));
+    }
+
+    @Test
+    void whenBeersAreLookedUpThenOneSelectShouldBeExecuted() throws Exception {
+        BeerLookupRequestDTO lookupRequestDTO = BeerLookupRequestDTO.builder()
+                .ids(Arrays.asList(beerDTO.getId(), -1L, beerDTO.getId()))
+                .build();
+
+        mockMvc.perform(post(BEER_API_URL_PATH + "/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(lookupRequestDTO)))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatements(1));
+    }
+
+    @Test
+    void whenAutocompleteIsCalledThenNoStatementShouldBeExecuted() throws Exception {
+        mockMvc.perform(get(BEER_API_URL_PATH + "/-/autocomplete").param("prefix", "sql"))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatements(0));
+    }
+
+    @Test
+    void whenBeerIsIncrementedThenSelectsAndConditionalUpdatesShouldBeExecuted() throws Exception {
+        mockMvc.perform(patch(BEER_API_URL_PATH + "/" + beerDTO.getId() + "/increment")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(QuantityDTO.builder().quantity(1).build())))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatements(5));
+    }
+
+    @Test
+    void whenBeerIsDecrementedThenSelectsAndConditionalUpdatesShouldBeExecuted() throws Exception {
+        mockMvc.perform(patch(BEER_API_URL_PATH + "/" + beerDTO.getId() + "/decrement")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(QuantityDTO.builder().quantity(1).build())))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatements(5));
+    }
+
+    @Test
+    void whenUnknownBeerIsIncrementedThenOnlyTheSelectShouldBeExecuted() throws Exception {
+        mockMvc.perform(patch(BEER_API_URL_PATH + "/-1/increment")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(QuantityDTO.builder().quantity(1).build())))
+                .andExpect(status().isNotFound())
+                .andExpect(sqlStatements(1));
+    }
+
+    @Test
+    void whenBeerIsReservedThenOnlyTheSelectShouldBeExecuted() throws Exception {
+        mockMvc.perform(post(BEER_API_URL_PATH + "/" + beerDTO.getId() + "/reservations")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(new ReservationRequestDTO(1, null))))
+                .andExpect(status().isCreated())
+                .andExpect(sqlStatements(1));
+    }
+
+    @Test
+    void whenBeerIsDeletedThenSelectsDeletesAndLocationTotalUpdateShouldBeExecuted() throws Exception {
+        mockMvc.perform(delete(BEER_API_URL_PATH + "/" + beerDTO.getId()))
+                .andExpect(status().isNoContent())
+                .andExpect(sqlStatements(6));
+    }
+
+    private static BeerDTO newBeer() {
+        return BeerDTOBuilder.builder()
+                .id(null)
+                .name("Sql " + NAMES.incrementAndGet())
+                .quantity(10)
+                .build()
+                .toBeerDTO();
+    }
+}
@@ -1,10 +1,25 @@
 package one.digitalinnovation.beerstock.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
 import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerForecastDTO;
+import one.digitalinnovation.beerstock.dto.BeerLookupDTO;
+import one.digitalinnovation.beerstock.dto.BeerLookupRequestDTO;
+import one.digitalinnovation.beerstock.dto.BeerStockDTO;
+import one.digitalinnovation.beerstock.dto.BeerSuggestionDTO;
+import one.digitalinnovation.beerstock.dto.ImportProgressDTO;
+import one.digitalinnovation.beerstock.dto.ImportReportDTO;
 import one.digitalinnovation.beerstock.dto.QuantityDTO;
+import one.digitalinnovation.beerstock.dto.StockTransferDTO;
+import one.digitalinnovation.beerstock.enums.BeerType;
 import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
 import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceptionHandler;
+import one.digitalinnovation.beerstock.exception.StockLocationNotFoundException;
+import one.digitalinnovation.beerstock.feed.BeerChangeFeed;
+import one.digitalinnovation.beerstock.forecast.ConsumptionTracker;
+import one.digitalinnovation.beerstock.service.BeerImportService;
 import one.digitalinnovation.beerstock.service.BeerService;
 import one.digitalinnovation.beerstock.utils.JsonConvertionUtils;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,21 +27,35 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
 
 import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -39,6 +68,14 @@ public class BeerControllerTest {
     private static final String BEER_API_SUBPATH_DECREMENT_URL = "/decrement";
     @Mock
     BeerService beerService;
+    @Mock
+    BeerImportService beerImportService;
+    @Mock
+    BeerChangeFeed beerChangeFeed;
+    @Mock
+    ConsumptionTracker consumptionTracker;
+    @Spy
+    ObjectMapper objectMapper = new ObjectMapper();
     @InjectMocks
     BeerController beerController;
     private MockMvc mockMvc;
@@ -47,6 +84,7 @@ public class BeerControllerTest {
     void setUp() {
         mockMvc = MockMvcBuilders.standaloneSetup(beerController)
                 .setCustomArgumentResolvers(new PageableHandlerMethodArgumentResolver())
+                .setControllerAdvice(new BeerStockExceptionHandler())
                 .setViewResolvers((s, locale) -> new MappingJackson2JsonView())
                 .build();
     }
@@ -84,6 +122,66 @@ public class BeerControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void whenCsvIsUploadedThenImportReportShouldBeReturned() throws Exception {
+        // given
+        MockMultipartFile file = new MockMultipartFile("file", "beers.csv", "text/csv",
+                "name,brand,max,quantity,type\nBrahma,Ambev,50,10,LAGER\n".getBytes());
+        ImportReportDTO report = ImportReportDTO.builder().rowsRead(1).created(1).build();
+
+        // when
+        when(beerImportService.importCsv(any())).thenReturn(report);
+
+        // then
+        mockMvc.perform(multipart(BEER_API_URL_PATH + "/import").file(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rowsRead", is(1)))
+                .andExpect(jsonPath("$.created", is(1)))
+                .andExpect(jsonPath("$.rejected", is(0)));
+    }
+
+    @Test
+    void whenCsvIsUploadedAcceptingNdjsonThenProgressShouldBeStreamedBeforeTheReport() throws Exception {
+        // given
+        MockMultipartFile file = new MockMultipartFile("file", "beers.csv", "text/csv",
+                "name,brand,max,quantity,type\nBrahma,Ambev,50,10,LAGER\nSkol,Ambev,50,10,LAGER\n".getBytes());
+        ImportProgressDTO progress = ImportProgressDTO.builder().rowsRead(1).created(1).build();
+        ImportReportDTO report = ImportReportDTO.builder().rowsRead(2).created(2).build();
+
+        // when
+        when(beerImportService.importCsv(any(), any())).thenAnswer(invocation -> {
+            invocation.<Consumer<ImportProgressDTO>>getArgument(1).accept(progress);
+            return report;
+        });
+
+        // then
+        MvcResult mvcResult = mockMvc.perform(multipart(BEER_API_URL_PATH + "/import").file(file)
+                .accept(BeerController.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BeerController.APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string(objectMapper.writeValueAsString(progress) + "\n"
+                        + objectMapper.writeValueAsString(report) + "\n"));
+    }
+
+    @Test
+    void whenBeerIsNamedLikeACollectionRouteThenGETByNameShouldStillFindIt() throws Exception {
+        // given
+        BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        mockBeerDTO.setName("autocomplete");
+
+        // when
+        when(beerService.findByName("autocomplete")).thenReturn(mockBeerDTO);
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/autocomplete")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name", is("autocomplete")));
+    }
+
     @Test
     void whenGETisInvokedWithAValidNameThenStatusOKShouldBeReturned() throws Exception {
         // given
@@ -117,6 +215,23 @@ public class BeerControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void whenGETisInvokedWithAInvalidNameThenProblemBodyShouldBeReturned() throws Exception {
+        // given
+        BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+
+        // when
+        when(beerService.findByName(mockBeerDTO.getName())).thenThrow(new BeerNotFoundException(mockBeerDTO.getName()));
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + mockBeerDTO.getName())
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.status", is(404)))
+                .andExpect(jsonPath("$.title", is("Beer not found")))
+                .andExpect(jsonPath("$.detail", is("Beer with name Brahma not found in the system.")));
+    }
+
     @Test
     void whenGETListIsInvokedAndListContainsItemsThenStatusOKShouldBeReturned() throws Exception {
         // given
@@ -179,7 +294,7 @@ public class BeerControllerTest {
         mockBeerDTO.setQuantity(expectedIncrementedQuantity);
 
         // when
-        when(beerService.increment(VALID_BEER_ID, mockQuantityDTO.getQuantity())).thenReturn(mockBeerDTO);
+        when(beerService.increment(VALID_BEER_ID, mockQuantityDTO.getQuantity(), null)).thenReturn(mockBeerDTO);
 
         // then
         mockMvc.perform(MockMvcRequestBuilders
@@ -200,7 +315,7 @@ public class BeerControllerTest {
         QuantityDTO mockQuantityDTO = QuantityDTO.builder().quantity(40).build();
 
         // when
-        doThrow(BeerNotFoundException.class).when(beerService).increment(INVALID_BEER_ID, mockQuantityDTO.getQuantity());
+        doThrow(BeerNotFoundException.class).when(beerService).increment(INVALID_BEER_ID, mockQuantityDTO.getQuantity(), null);
 
         // then
         mockMvc.perform(MockMvcRequestBuilders
@@ -216,7 +331,7 @@ public class BeerControllerTest {
         QuantityDTO mockQuantityDTO = QuantityDTO.builder().quantity(41).build();
 
         // when
-        doThrow(BeerStockExceededException.class).when(beerService).increment(VALID_BEER_ID, mockQuantityDTO.getQuantity());
+        doThrow(BeerStockExceededException.class).when(beerService).increment(VALID_BEER_ID, mockQuantityDTO.getQuantity(), null);
 
         // then
         mockMvc.perform(MockMvcRequestBuilders
@@ -236,7 +351,7 @@ public class BeerControllerTest {
         mockBeerDTO.setQuantity(expectedDecrementedQuantity);
 
         // when
-        when(beerService.decrement(VALID_BEER_ID, mockQuantityDTO.getQuantity())).thenReturn(mockBeerDTO);
+        when(beerService.decrement(VALID_BEER_ID, mockQuantityDTO.getQuantity(), null)).thenReturn(mockBeerDTO);
 
         // then
         mockMvc.perform(MockMvcRequestBuilders
@@ -257,7 +372,7 @@ public class BeerControllerTest {
         QuantityDTO mockQuantityDTO = QuantityDTO.builder().quantity(10).build();
 
         // when
-        doThrow(BeerNotFoundException.class).when(beerService).decrement(INVALID_BEER_ID, mockQuantityDTO.getQuantity());
+        doThrow(BeerNotFoundException.class).when(beerService).decrement(INVALID_BEER_ID, mockQuantityDTO.getQuantity(), null);
 
         // then
         mockMvc.perform(MockMvcRequestBuilders
@@ -273,7 +388,7 @@ public class BeerControllerTest {
         QuantityDTO mockQuantityDTO = QuantityDTO.builder().quantity(11).build();
 
         // when
-        doThrow(BeerStockExceededException.class).when(beerService).decrement(VALID_BEER_ID, mockQuantityDTO.getQuantity());
+        doThrow(BeerStockExceededException.class).when(beerService).decrement(VALID_BEER_ID, mockQuantityDTO.getQuantity(), null);
 
         // then
         mockMvc.perform(MockMvcRequestBuilders
@@ -282,4 +397,172 @@ public class BeerControllerTest {
                 .content(JsonConvertionUtils.asJsonString(mockQuantityDTO)))
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    void whenGETEventsIsCalledThenChangeStreamShouldBeOpenedWithFilters() throws Exception {
+        // when
+        when(beerChangeFeed.subscribe(List.of(VALID_BEER_ID), List.of(BeerType.LAGER, BeerType.IPA), 41L)).thenReturn(new SseEmitter());
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/-/events")
+                .param("beerId", String.valueOf(VALID_BEER_ID))
+                .param("type", "LAGER", "IPA")
+                .header("Last-Event-ID", "41")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void whenGETAutocompleteIsCalledThenSuggestionsShouldBeReturned() throws Exception {
+        // given
+        BeerSuggestionDTO suggestion = new BeerSuggestionDTO(VALID_BEER_ID, "Brahma", BeerType.LAGER, 10);
+
+        // when
+        when(beerService.autocomplete("bra", 5)).thenReturn(List.of(suggestion));
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/-/autocomplete")
+                .param("prefix", "bra")
+                .param("limit", "5")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is("Brahma")))
+                .andExpect(jsonPath("$[0].quantity", is(10)));
+    }
+
+    @Test
+    void whenPOSTIsCalledToLookupIdsThenEntriesShouldBeReturnedInRequestOrder() throws Exception {
+        // given
+        BeerDTO beerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        BeerLookupRequestDTO lookupRequestDTO = BeerLookupRequestDTO.builder().ids(Arrays.asList(INVALID_BEER_ID, VALID_BEER_ID)).build();
+
+        // when
+        when(beerService.lookupByIds(lookupRequestDTO.getIds())).thenReturn(Arrays.asList(
+                new BeerLookupDTO(INVALID_BEER_ID, null, false, null),
+                new BeerLookupDTO(VALID_BEER_ID, null, true, beerDTO)));
+
+        // then
+        mockMvc.perform(post(BEER_API_URL_PATH + "/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(lookupRequestDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].found", is(false)))
+                .andExpect(jsonPath("$[1].found", is(true)))
+                .andExpect(jsonPath("$[1].beer.name", is(beerDTO.getName())));
+    }
+
+    @Test
+    void whenPOSTIsCalledToLookupBothIdsAndNamesThenBadRequestStatusIsReturned() throws Exception {
+        // given
+        BeerLookupRequestDTO lookupRequestDTO = BeerLookupRequestDTO.builder()
+                .ids(Collections.singletonList(VALID_BEER_ID))
+                .names(Collections.singletonList("Brahma"))
+                .build();
+
+        // then
+        mockMvc.perform(post(BEER_API_URL_PATH + "/lookup")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(lookupRequestDTO)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGETForecastsIsCalledThenForecastsShouldBeReturned() throws Exception {
+        // given
+        BeerForecastDTO forecastDTO = BeerForecastDTO.builder()
+                .id(VALID_BEER_ID)
+                .name("Brahma")
+                .quantity(10)
+                .max(50)
+                .consumptionPerDay(12)
+                .hoursToStockout(20.0)
+                .suggestedReorderQuantity(40)
+                .build();
+
+        // when
+        when(consumptionTracker.forecastAll()).thenReturn(Collections.singletonList(forecastDTO));
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/-/forecasts")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is("Brahma")))
+                .andExpect(jsonPath("$[0].suggestedReorderQuantity", is(40)));
+    }
+
+    @Test
+    void whenGETForecastIsCalledWithUntrackedIdThenNotFoundStatusIsReturned() throws Exception {
+        // when
+        when(consumptionTracker.forecast(INVALID_BEER_ID)).thenThrow(BeerNotFoundException.class);
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + INVALID_BEER_ID + "/forecast")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenGETStockIsCalledThenQuantityPerLocationShouldBeReturned() throws Exception {
+        // given
+        Map<String, Integer> locations = new TreeMap<>();
+        locations.put("bar", 4);
+        locations.put("default", 6);
+        BeerStockDTO beerStockDTO = new BeerStockDTO(VALID_BEER_ID, "Brahma", 50, 10, locations);
+
+        // when
+        when(beerService.findStock(VALID_BEER_ID)).thenReturn(beerStockDTO);
+
+        // then
+        mockMvc.perform(MockMvcRequestBuilders.get(BEER_API_URL_PATH + "/" + VALID_BEER_ID + "/stock")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity", is(10)))
+                .andExpect(jsonPath("$.locations.bar", is(4)))
+                .andExpect(jsonPath("$.locations.default", is(6)));
+    }
+
+    @Test
+    void whenPOSTTransferIsCalledThenStockPerLocationShouldBeReturned() throws Exception {
+        // given
+        StockTransferDTO stockTransferDTO = StockTransferDTO.builder().from("default").to("bar").quantity(4).build();
+        BeerStockDTO beerStockDTO = new BeerStockDTO(VALID_BEER_ID, "Brahma", 50, 10, Map.of("bar", 4, "default", 6));
+
+        // when
+        when(beerService.transfer(VALID_BEER_ID, stockTransferDTO)).thenReturn(beerStockDTO);
+
+        // then
+        mockMvc.perform(post(BEER_API_URL_PATH + "/" + VALID_BEER_ID + "/transfers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(stockTransferDTO)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.locations.bar", is(4)));
+    }
+
+    @Test
+    void whenPOSTTransferIsCalledWithinOneLocationThenBadRequestStatusIsReturned() throws Exception {
+        // given
+        StockTransferDTO stockTransferDTO = StockTransferDTO.builder().from("bar").to("bar").quantity(4).build();
+
+        // then
+        mockMvc.perform(post(BEER_API_URL_PATH + "/" + VALID_BEER_ID + "/transfers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(stockTransferDTO)))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(beerService);
+    }
+
+    @Test
+    void whenPOSTTransferIsCalledFromUnknownLocationThenNotFoundStatusIsReturned() throws Exception {
+        // given
+        StockTransferDTO stockTransferDTO = StockTransferDTO.builder().from("cellar").to("bar").quantity(4).build();
+
+        // when
+        doThrow(StockLocationNotFoundException.class).when(beerService).transfer(VALID_BEER_ID, stockTransferDTO);
+
+        // then
+        mockMvc.perform(post(BEER_API_URL_PATH + "/" + VALID_BEER_ID + "/transfers")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(stockTransferDTO)))
+                .andExpect(status().isNotFound());
+    }
 }
@@ -0,0 +1,106 @@
+package one.digitalinnovation.beerstock.controller;
+
+import one.digitalinnovation.beerstock.dto.StockLocationDTO;
+import one.digitalinnovation.beerstock.exception.BeerStockExceptionHandler;
+import one.digitalinnovation.beerstock.exception.StockLocationAlreadyRegisteredException;
+import one.digitalinnovation.beerstock.service.StockLocationService;
+import one.digitalinnovation.beerstock.utils.JsonConvertionUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
+
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+public class StockLocationControllerTest {
+
+    private static final String LOCATION_API_URL_PATH = "/api/v1/locations";
+
+    @Mock
+    StockLocationService stockLocationService;
+
+    @InjectMocks
+    StockLocationController stockLocationController;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(stockLocationController)
+                .setControllerAdvice(new BeerStockExceptionHandler())
+                .setViewResolvers((s, locale) -> new MappingJackson2JsonView())
+                .build();
+    }
+
+    @Test
+    void whenPOSTIsCalledThenLocationIsCreated() throws Exception {
+        // given
+        StockLocationDTO stockLocationDTO = StockLocationDTO.builder().name("bar").build();
+
+        // when
+        when(stockLocationService.createLocation(stockLocationDTO)).thenReturn(stockLocationDTO);
+
+        // then
+        mockMvc.perform(post(LOCATION_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(stockLocationDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.name", is("bar")))
+                .andExpect(jsonPath("$.quantity", is(0)));
+    }
+
+    @Test
+    void whenPOSTIsCalledWithInvalidNameThenBadRequestStatusIsReturned() throws Exception {
+        // given
+        StockLocationDTO stockLocationDTO = StockLocationDTO.builder().name("main bar").build();
+
+        // then
+        mockMvc.perform(post(LOCATION_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(stockLocationDTO)))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(stockLocationService);
+    }
+
+    @Test
+    void whenPOSTIsCalledWithRegisteredNameThenBadRequestStatusIsReturned() throws Exception {
+        // given
+        StockLocationDTO stockLocationDTO = StockLocationDTO.builder().name("bar").build();
+
+        // when
+        when(stockLocationService.createLocation(stockLocationDTO)).thenThrow(StockLocationAlreadyRegisteredException.class);
+
+        // then
+        mockMvc.perform(post(LOCATION_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(stockLocationDTO)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void whenGETIsCalledThenLocationsWithTotalsAreReturned() throws Exception {
+        // when
+        when(stockLocationService.listAll()).thenReturn(List.of(new StockLocationDTO("bar", 4), new StockLocationDTO("default", 6)));
+
+        // then
+        mockMvc.perform(get(LOCATION_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name", is("bar")))
+                .andExpect(jsonPath("$[1].quantity", is(6)));
+    }
+}
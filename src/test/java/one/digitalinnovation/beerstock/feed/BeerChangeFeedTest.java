@@ -0,0 +1,231 @@
+package one.digitalinnovation.beerstock.feed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BeerChangeFeedTest {
+
+    private static final int BUFFER_SIZE = 8;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BeerChangeFeed beerChangeFeed = new BeerChangeFeed(new ObjectMapper(), meterRegistry, BUFFER_SIZE,
+            Runnable::run, Duration.ofHours(1), Duration.ofMinutes(1), Duration.ofMinutes(1));
+
+    @Test
+    void whenEventsArePublishedThenMatchingSubscribersShouldReceiveThemInOrder() {
+        // given
+        RecordingSink allBeers = new RecordingSink();
+        RecordingSink firstBeer = new RecordingSink();
+        RecordingSink stouts = new RecordingSink();
+        beerChangeFeed.subscribe(null, null, null, allBeers);
+        beerChangeFeed.subscribe(Collections.singletonList(1L), null, null, firstBeer);
+        beerChangeFeed.subscribe(null, Collections.singletonList(BeerType.STOUT), null, stouts);
+
+        // when
+        beerChangeFeed.publish(BeerChangeEvent.created(beer(1L, BeerType.LAGER, 10)));
+        beerChangeFeed.publish(BeerChangeEvent.quantityChanged(beer(2L, BeerType.STOUT, 7), 2, 1));
+        beerChangeFeed.publish(BeerChangeEvent.deleted(beer(1L, BeerType.LAGER, 10), 1));
+        beerChangeFeed.dispatch();
+
+        // then
+        assertThat(allBeers.events).containsExactly("0 created", "1 quantity-changed", "2 deleted");
+        assertThat(firstBeer.events).containsExactly("0 created", "2 deleted");
+        assertThat(stouts.events).containsExactly("1 quantity-changed");
+        assertThat(allBeers.payloads.get(1)).contains("\"beerId\":2", "\"quantity\":7", "\"delta\":2");
+    }
+
+    @Test
+    void whenSubscriberFallsBehindTheBufferThenItShouldBeResynced() {
+        // given
+        RecordingSink slowSink = new RecordingSink();
+        beerChangeFeed.subscribe(null, null, null, slowSink);
+
+        // when
+        for (int i = 0; i < BUFFER_SIZE * 2; i++) {
+            beerChangeFeed.publish(BeerChangeEvent.quantityChanged(beer(1L, BeerType.ALE, i), 1, i));
+        }
+        beerChangeFeed.dispatch();
+        beerChangeFeed.publish(BeerChangeEvent.quantityChanged(beer(1L, BeerType.ALE, 99), 1, 99));
+        beerChangeFeed.dispatch();
+
+        // then
+        assertThat(slowSink.events).containsExactly("15 " + BeerChangeFeed.RESYNC_EVENT, "16 quantity-changed");
+        assertThat(meterRegistry.counter("beerstock.feed.resyncs").count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenLastEventIdIsGivenThenStreamShouldResumeAfterIt() {
+        // given
+        for (int i = 0; i < 3; i++) {
+            beerChangeFeed.publish(BeerChangeEvent.quantityChanged(beer(1L, BeerType.ALE, i), 1, i));
+        }
+        RecordingSink resumedSink = new RecordingSink();
+
+        // when
+        beerChangeFeed.subscribe(null, null, 0L, resumedSink);
+
+        // then
+        assertThat(resumedSink.events).containsExactly("1 quantity-changed", "2 quantity-changed");
+    }
+
+    @Test
+    void whenLastEventIdIsAtOrPastTheHeadThenStreamShouldStartWithResync() {
+        // given
+        for (int i = 0; i < 3; i++) {
+            beerChangeFeed.publish(BeerChangeEvent.quantityChanged(beer(1L, BeerType.ALE, i), 1, i));
+        }
+        RecordingSink reconnectedSink = new RecordingSink();
+
+        // when
+        beerChangeFeed.subscribe(null, null, 41L, reconnectedSink);
+        beerChangeFeed.publish(BeerChangeEvent.quantityChanged(beer(1L, BeerType.ALE, 3), 1, 3));
+        beerChangeFeed.dispatch();
+
+        // then
+        assertThat(reconnectedSink.events).containsExactly("2 " + BeerChangeFeed.RESYNC_EVENT, "3 quantity-changed");
+        assertThat(meterRegistry.counter("beerstock.feed.resyncs").count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenResyncWasSentBeforeTheFirstEventThenStreamShouldResumeFromTheStart() {
+        // given
+        RecordingSink firstSink = new RecordingSink();
+        beerChangeFeed.subscribe(null, null, 5L, firstSink);
+        beerChangeFeed.publish(BeerChangeEvent.created(beer(1L, BeerType.ALE, 1)));
+        RecordingSink resumedSink = new RecordingSink();
+
+        // when
+        beerChangeFeed.subscribe(null, null, -1L, resumedSink);
+
+        // then
+        assertThat(firstSink.events).startsWith("-1 " + BeerChangeFeed.RESYNC_EVENT);
+        assertThat(resumedSink.events).containsExactly("0 created");
+    }
+
+    @Test
+    void whenSendFailsThenSubscriberShouldBeDropped() {
+        // given
+        RecordingSink brokenSink = new RecordingSink();
+        brokenSink.broken = true;
+        beerChangeFeed.subscribe(null, null, null, brokenSink);
+
+        // when
+        beerChangeFeed.publish(BeerChangeEvent.created(beer(1L, BeerType.IPA, 1)));
+        beerChangeFeed.dispatch();
+
+        // then
+        assertThat(beerChangeFeed.subscriberCount()).isZero();
+        assertThat(brokenSink.closedWith).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void whenSubscriberBlocksPastTheSendTimeoutThenItShouldBeDroppedAndOthersServed() throws Exception {
+        // given
+        ExecutorService sender = Executors.newSingleThreadExecutor();
+        BeerChangeFeed slowClientFeed = new BeerChangeFeed(new ObjectMapper(), meterRegistry, BUFFER_SIZE,
+                sender, Duration.ofHours(1), Duration.ofMinutes(1), Duration.ofMillis(50));
+        BlockingSink blockedSink = new BlockingSink();
+        RecordingSink healthySink = new RecordingSink();
+        CountDownLatch healthySinkServed = new CountDownLatch(1);
+        healthySink.onSend = healthySinkServed::countDown;
+        slowClientFeed.subscribe(null, null, null, blockedSink);
+        slowClientFeed.subscribe(null, null, null, healthySink);
+
+        try {
+            // when
+            slowClientFeed.publish(BeerChangeEvent.created(beer(1L, BeerType.LAGER, 10)));
+            slowClientFeed.dispatch();
+            assertThat(blockedSink.sending.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 500 && slowClientFeed.subscriberCount() > 1; i++) {
+                Thread.sleep(10);
+                slowClientFeed.dispatch();
+            }
+
+            // then
+            assertThat(healthySinkServed.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(healthySink.events).containsExactly("0 created");
+            assertThat(slowClientFeed.subscriberCount()).isEqualTo(1);
+            assertThat(blockedSink.closedWith).isInstanceOf(TimeoutException.class);
+            assertThat(meterRegistry.counter("beerstock.feed.slow-subscribers").count()).isEqualTo(1);
+        } finally {
+            sender.shutdownNow();
+        }
+    }
+
+    private static Beer beer(Long id, BeerType type, int quantity) {
+        return new Beer(id, "Beer " + id, "Brand", 100, quantity, type);
+    }
+
+    private static class RecordingSink implements EventSink {
+
+        private final List<String> events = new ArrayList<>();
+        private final List<String> payloads = new ArrayList<>();
+        private boolean broken;
+        private Runnable onSend = () -> { };
+        private Throwable closedWith;
+
+        @Override
+        public void send(long sequence, String eventName, String json) throws IOException {
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            events.add(sequence + " " + eventName);
+            payloads.add(json);
+            onSend.run();
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close(Throwable failure) {
+            closedWith = failure;
+        }
+    }
+
+    /**
+     * A client that stopped reading: sends block until the sender thread is interrupted.
+     */
+    private static class BlockingSink implements EventSink {
+
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private volatile Throwable closedWith;
+
+        @Override
+        public void send(long sequence, String eventName, String json) throws IOException {
+            sending.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException interrupted) {
+                throw new InterruptedIOException("Write abandoned");
+            }
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close(Throwable failure) {
+            closedWith = failure;
+        }
+    }
+}
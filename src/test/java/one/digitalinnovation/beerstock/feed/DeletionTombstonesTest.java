@@ -0,0 +1,68 @@
+package one.digitalinnovation.beerstock.feed;
+
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeletionTombstonesTest {
+
+    private static final Duration RETENTION = Duration.ofMinutes(1);
+
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @Test
+    void whenEventIsNotNewerThanTheDeletionThenItShouldBeDeletedByIt() {
+        // given
+        DeletionTombstones tombstones = new DeletionTombstones(RETENTION, 10, nanoTime::get);
+
+        // when
+        tombstones.recordDeletion(1L, 5);
+
+        // then
+        assertThat(tombstones.isDeletedBy(quantityChanged(1L, 4))).isTrue();
+        assertThat(tombstones.isDeletedBy(quantityChanged(1L, 5))).isTrue();
+        assertThat(tombstones.isDeletedBy(quantityChanged(1L, 6))).isFalse();
+        assertThat(tombstones.isDeletedBy(quantityChanged(2L, 1))).isFalse();
+    }
+
+    @Test
+    void whenDeletionIsOlderThanTheRetentionThenItShouldBeForgotten() {
+        // given
+        DeletionTombstones tombstones = new DeletionTombstones(RETENTION, 10, nanoTime::get);
+        tombstones.recordDeletion(1L, 5);
+
+        // when
+        nanoTime.addAndGet(RETENTION.toNanos() + 1);
+        tombstones.recordDeletion(2L, 7);
+
+        // then
+        assertThat(tombstones.size()).isEqualTo(1);
+        assertThat(tombstones.isDeletedBy(quantityChanged(1L, 4))).isFalse();
+        assertThat(tombstones.isDeletedBy(quantityChanged(2L, 6))).isTrue();
+    }
+
+    @Test
+    void whenThereAreMoreDeletionsThanMaxEntriesThenTheOldestShouldBeForgotten() {
+        // given
+        DeletionTombstones tombstones = new DeletionTombstones(RETENTION, 3, nanoTime::get);
+
+        // when
+        for (long id = 1; id <= 100; id++) {
+            tombstones.recordDeletion(id, 1);
+        }
+
+        // then
+        assertThat(tombstones.size()).isEqualTo(3);
+        assertThat(tombstones.isDeletedBy(quantityChanged(97L, 1))).isFalse();
+        assertThat(tombstones.isDeletedBy(quantityChanged(100L, 1))).isTrue();
+    }
+
+    private static BeerChangeEvent quantityChanged(long id, long version) {
+        return BeerChangeEvent.quantityChanged(new Beer(id, "Beer " + id, "Brand", 100, 10, BeerType.LAGER), 1, version);
+    }
+}
@@ -0,0 +1,188 @@
+package one.digitalinnovation.beerstock.forecast;
+
+import one.digitalinnovation.beerstock.dto.BeerForecastDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.feed.BeerChangeEvent;
+import one.digitalinnovation.beerstock.storage.InMemoryBeerStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.within;
+
+public class ConsumptionTrackerTest {
+
+    private static final Duration HALF_LIFE = Duration.ofHours(24);
+    private static final Duration LEAD_TIME = Duration.ofHours(48);
+
+    MutableClock clock = new MutableClock();
+
+    InMemoryBeerStore beerStore = new InMemoryBeerStore();
+
+    ConsumptionTracker consumptionTracker;
+
+    Beer beer;
+
+    long version;
+
+    @BeforeEach
+    void setUp() {
+        beer = beerStore.create(new Beer(null, "Brahma", "Ambev", 1_000, 1_000, BeerType.LAGER));
+        consumptionTracker = new ConsumptionTracker(beerStore, clock, HALF_LIFE, LEAD_TIME);
+        consumptionTracker.load();
+    }
+
+    @Test
+    void whenBeerIsConsumedSteadilyThenRateShouldConvergeToTheTrueRate() throws BeerNotFoundException {
+        // given 10 units every hour, i.e. 240 a day, for ten days
+        for (int hour = 0; hour < 240; hour++) {
+            clock.advance(Duration.ofHours(1));
+            consume(10);
+            restock();
+        }
+
+        // when
+        BeerForecastDTO forecast = consumptionTracker.forecast(beer.getId());
+
+        // then
+        assertThat(forecast.getConsumptionPerDay()).isCloseTo(240, within(12.0));
+        assertThat(forecast.getHoursToStockout()).isCloseTo(100, within(5.0));
+        assertThat(forecast.getSuggestedReorderQuantity()).isZero();
+    }
+
+    @Test
+    void whenConsumptionHasJustStartedThenRateShouldReflectTheObservedPeriod() throws BeerNotFoundException {
+        // given
+        for (int hour = 0; hour < 6; hour++) {
+            clock.advance(Duration.ofHours(1));
+            consume(10);
+        }
+
+        // when
+        BeerForecastDTO forecast = consumptionTracker.forecast(beer.getId());
+
+        // then
+        assertThat(forecast.getConsumptionPerDay()).isCloseTo(240, within(24.0));
+        assertThat(forecast.getQuantity()).isEqualTo(940);
+    }
+
+    @Test
+    void whenBeerIsNoLongerConsumedThenRateShouldDecayByHalfEveryHalfLife() throws BeerNotFoundException {
+        // given
+        for (int hour = 0; hour < 240; hour++) {
+            clock.advance(Duration.ofHours(1));
+            consume(10);
+            restock();
+        }
+        double rateBefore = consumptionTracker.forecast(beer.getId()).getConsumptionPerDay();
+
+        // when
+        clock.advance(HALF_LIFE);
+
+        // then
+        assertThat(consumptionTracker.forecast(beer.getId()).getConsumptionPerDay()).isCloseTo(rateBefore / 2, within(1.0));
+    }
+
+    @Test
+    void whenStockoutIsWithinLeadTimeThenReorderUpToMaxShouldBeSuggested() throws BeerNotFoundException {
+        // given
+        for (int hour = 0; hour < 48; hour++) {
+            clock.advance(Duration.ofHours(1));
+            consume(20);
+        }
+
+        // when
+        BeerForecastDTO forecast = consumptionTracker.forecast(beer.getId());
+
+        // then
+        assertThat(forecast.getQuantity()).isEqualTo(40);
+        assertThat(forecast.getHoursToStockout()).isLessThan(LEAD_TIME.toHours());
+        assertThat(forecast.getStockoutAt()).isAfter(clock.instant());
+        assertThat(forecast.getSuggestedReorderQuantity()).isEqualTo(960);
+    }
+
+    @Test
+    void whenCatalogIsForecastThenBeersRunningOutSoonestShouldComeFirst() {
+        // given
+        Beer idleBeer = beerStore.create(new Beer(null, "Skol", "Ambev", 100, 50, BeerType.LAGER));
+        consumptionTracker.onBeerChange(BeerChangeEvent.created(idleBeer));
+        clock.advance(Duration.ofHours(1));
+        consume(100);
+
+        // then
+        assertThat(consumptionTracker.forecastAll()).extracting(BeerForecastDTO::getName).containsExactly("Brahma", "Skol");
+        assertThat(consumptionTracker.forecastAll().get(1).getHoursToStockout()).isNull();
+    }
+
+    @Test
+    void whenBeerIsDeletedThenItShouldNoLongerBeForecast() {
+        // when
+        consumptionTracker.onBeerChange(BeerChangeEvent.deleted(beer, ++version));
+
+        // then
+        assertThat(consumptionTracker.forecastAll()).isEmpty();
+        assertThatExceptionOfType(BeerNotFoundException.class).isThrownBy(() -> consumptionTracker.forecast(beer.getId()));
+    }
+
+    @Test
+    void whenEventsArriveOutOfOrderThenOnlyTheLatestStockShouldBeKept() throws BeerNotFoundException {
+        // given
+        Beer afterFirstSale = new Beer(beer.getId(), beer.getName(), beer.getBrand(), beer.getMax(), 990, beer.getType());
+        Beer afterSecondSale = new Beer(beer.getId(), beer.getName(), beer.getBrand(), beer.getMax(), 970, beer.getType());
+        clock.advance(Duration.ofHours(1));
+
+        // when
+        consumptionTracker.onBeerChange(BeerChangeEvent.quantityChanged(afterSecondSale, -20, 2));
+        consumptionTracker.onBeerChange(BeerChangeEvent.quantityChanged(afterFirstSale, -10, 1));
+
+        // then
+        assertThat(consumptionTracker.forecast(beer.getId()).getQuantity()).isEqualTo(970);
+        consumptionTracker.onBeerChange(BeerChangeEvent.deleted(afterSecondSale, 3));
+        consumptionTracker.onBeerChange(BeerChangeEvent.quantityChanged(afterFirstSale, -10, 1));
+        assertThat(consumptionTracker.forecastAll()).isEmpty();
+    }
+
+    private void consume(int units) {
+        beer.setQuantity(beer.getQuantity() - units);
+        consumptionTracker.onBeerChange(BeerChangeEvent.quantityChanged(beer, -units, ++version));
+    }
+
+    private void restock() {
+        int delta = beer.getMax() - beer.getQuantity();
+        beer.setQuantity(beer.getMax());
+        consumptionTracker.onBeerChange(BeerChangeEvent.quantityChanged(beer, delta, ++version));
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.parse("2020-10-18T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package one.digitalinnovation.beerstock.hotkeys;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+public class HeavyHittersTest {
+
+    private final HeavyHitters heavyHitters = new HeavyHitters(1024, 4, 3);
+
+    @Test
+    void whenStreamIsSkewedThenTheHottestIdsShouldBeReportedHottestFirst() {
+        // given
+        for (long id = 1; id <= 5000; id++) {
+            heavyHitters.record(id);
+            recordTimes(42, 3);
+            recordTimes(7, 2);
+            if (id % 5 == 0) {
+                heavyHitters.record(99);
+            }
+        }
+
+        // when
+        List<HotKey> top = heavyHitters.top();
+
+        // then
+        assertThat(top).extracting(HotKey::getId).containsExactly(42L, 7L, 99L);
+        assertThat(top.get(0).getEstimate()).isGreaterThanOrEqualTo(15001);
+        assertThat(top.get(1).getEstimate()).isGreaterThanOrEqualTo(10001);
+        assertThat(top.get(2).getEstimate()).isGreaterThanOrEqualTo(1001);
+        assertThat(heavyHitters.isHot(99)).isTrue();
+        assertThat(heavyHitters.isHot(1234)).isFalse();
+    }
+
+    @Test
+    void whenCountsDecayThenOldTrafficShouldFadeAway() {
+        // given
+        recordTimes(5, 8);
+
+        // when
+        heavyHitters.decay();
+        long halved = heavyHitters.estimate(5);
+        heavyHitters.decay();
+        heavyHitters.decay();
+        heavyHitters.decay();
+
+        // then
+        assertThat(halved).isEqualTo(4);
+        assertThat(heavyHitters.estimate(5)).isZero();
+        assertThat(heavyHitters.top()).isEmpty();
+    }
+
+    @Test
+    void whenCandidateTableFillsThenTheFloorShouldRiseBeforeAnyDecayOrReport() {
+        // given
+        for (int i = 0; i < 100; i++) {
+            heavyHitters.record(1);
+            heavyHitters.record(2);
+            heavyHitters.record(3);
+        }
+
+        // when
+        heavyHitters.record(4);
+
+        // then
+        assertThat(heavyHitters.isHot(1)).isTrue();
+        assertThat(heavyHitters.isHot(3)).isTrue();
+        assertThat(heavyHitters.isHot(4)).isFalse();
+    }
+
+    @Test
+    void whenSlotsAheadOfACandidateAreFreedThenItShouldStillHoldASingleSlot() {
+        // given
+        HeavyHitters single = new HeavyHitters(1024, 4, 1);
+        for (long id = 2; id <= 4; id++) {
+            single.record(id);
+        }
+        for (int i = 0; i < 8; i++) {
+            single.record(1);
+        }
+        single.decay();
+
+        // when
+        for (int i = 0; i < 8; i++) {
+            single.record(1);
+        }
+
+        // then
+        assertThat(single.slotsHeldBy(1)).isEqualTo(1);
+        assertThat(single.top()).extracting(HotKey::getId).containsExactly(1L);
+    }
+
+    @Test
+    void whenHotIdIsRecordedConcurrentlyThenNoEventShouldBeLost() throws Exception {
+        // given
+        int threads = 8;
+        int events = 100_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int thread = 0; thread < threads; thread++) {
+            long coldId = 1000 + thread;
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < events; i++) {
+                    heavyHitters.record(1);
+                    if (i % 100 == 0) {
+                        heavyHitters.record(coldId);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        // when
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        // then
+        assertThat(heavyHitters.estimate(1)).isGreaterThanOrEqualTo((long) threads * events);
+        assertThat(heavyHitters.top().get(0).getId()).isEqualTo(1);
+    }
+
+    @Test
+    void whenWidthIsNotAPowerOfTwoThenExceptionShouldBeThrown() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new HeavyHitters(1000, 4, 3));
+    }
+
+    private void recordTimes(long id, int times) {
+        for (int i = 0; i < times; i++) {
+            heavyHitters.record(id);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package one.digitalinnovation.beerstock.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.QuantityDTO;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.service.BeerService;
+import one.digitalinnovation.beerstock.sql.SqlStatisticsFilter;
+import one.digitalinnovation.beerstock.utils.JsonConvertionUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"beerstock.ratelimit.enabled=false", "beerstock.sql.statistics.response-headers=true"})
+@AutoConfigureMockMvc
+public class IdempotencyFilterTest {
+
+    private static final String BEER_API_URL_PATH = "/api/v1/beers";
+    private static final AtomicInteger NAMES = new AtomicInteger();
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    BeerService beerService;
+
+    private BeerDTO beerDTO;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        beerDTO = beerService.createBeer(BeerDTO.builder()
+                .name("Idempotent " + NAMES.incrementAndGet())
+                .brand("Retry")
+                .max(100)
+                .quantity(10)
+                .type(BeerType.LAGER)
+                .build());
+    }
+
+    @Test
+    void whenIncrementIsRetriedWithTheSameKeyThenItShouldBeAppliedOnceAndReplayed() throws Exception {
+        // given
+        String key = UUID.randomUUID().toString();
+
+        // when
+        mockMvc.perform(increment(5).header(IdempotencyFilter.KEY_HEADER, key))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.quantity").value(15));
+        mockMvc.perform(increment(5).header(IdempotencyFilter.KEY_HEADER, key))
+                .andExpect(status().isOk())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+                .andExpect(header().string(SqlStatisticsFilter.STATEMENTS_HEADER, "0"))
+                .andExpect(jsonPath("$.quantity").value(15));
+
+        // then
+        assertThat(beerService.findByName(beerDTO.getName()).getQuantity()).isEqualTo(15);
+    }
+
+    @Test
+    void whenRejectionIsRetriedWithTheSameKeyThenTheRejectionShouldBeReplayed() throws Exception {
+        // given
+        String key = UUID.randomUUID().toString();
+        mockMvc.perform(decrement(11).header(IdempotencyFilter.KEY_HEADER, key))
+                .andExpect(status().isBadRequest());
+        beerService.increment(beerDTO.getId(), 50);
+
+        // then
+        mockMvc.perform(decrement(11).header(IdempotencyFilter.KEY_HEADER, key))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"));
+        assertThat(beerService.findByName(beerDTO.getName()).getQuantity()).isEqualTo(60);
+    }
+
+    @Test
+    void whenKeyIsReusedForADifferentRequestThenUnprocessableEntityShouldBeReturned() throws Exception {
+        // given
+        String key = UUID.randomUUID().toString();
+        mockMvc.perform(increment(5).header(IdempotencyFilter.KEY_HEADER, key))
+                .andExpect(status().isOk());
+
+        // then
+        mockMvc.perform(increment(6).header(IdempotencyFilter.KEY_HEADER, key))
+                .andExpect(status().isUnprocessableEntity());
+        mockMvc.perform(decrement(5).header(IdempotencyFilter.KEY_HEADER, key))
+                .andExpect(status().isUnprocessableEntity());
+        assertThat(beerService.findByName(beerDTO.getName()).getQuantity()).isEqualTo(15);
+    }
+
+    @Test
+    void whenKeysBelongToDifferentClientsThenRequestsShouldNotBeDeduplicated() throws Exception {
+        // given
+        String key = UUID.randomUUID().toString();
+
+        // when
+        mockMvc.perform(increment(5).header(IdempotencyFilter.KEY_HEADER, key).header("X-Client-Id", "gateway-a"))
+                .andExpect(status().isOk());
+        mockMvc.perform(increment(5).header(IdempotencyFilter.KEY_HEADER, key).header("X-Client-Id", "gateway-b"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER));
+
+        // then
+        assertThat(beerService.findByName(beerDTO.getName()).getQuantity()).isEqualTo(20);
+    }
+
+    @Test
+    void whenRequestsCarryNoKeyThenEveryRequestShouldBeApplied() throws Exception {
+        // when
+        mockMvc.perform(increment(5)).andExpect(status().isOk());
+        mockMvc.perform(increment(5)).andExpect(status().isOk());
+
+        // then
+        assertThat(beerService.findByName(beerDTO.getName()).getQuantity()).isEqualTo(20);
+    }
+
+    @Test
+    void whenManyRetriesArriveConcurrentlyThenIncrementShouldBeAppliedOnce() throws Exception {
+        // given
+        int retries = 16;
+        String key = UUID.randomUUID().toString();
+        ExecutorService executor = Executors.newFixedThreadPool(retries);
+        CountDownLatch start = new CountDownLatch(1);
+        Callable<MvcResult> retry = () -> {
+            start.await();
+            return mockMvc.perform(increment(1).header(IdempotencyFilter.KEY_HEADER, key)).andReturn();
+        };
+
+        // when
+        List<Future<MvcResult>> results = new ArrayList<>();
+        for (int i = 0; i < retries; i++) {
+            results.add(executor.submit(retry));
+        }
+        start.countDown();
+        int replayed = 0;
+        for (Future<MvcResult> result : results) {
+            assertThat(result.get().getResponse().getStatus()).isEqualTo(200);
+            assertThat(result.get().getResponse().getContentAsString()).contains("\"quantity\":11");
+            replayed += result.get().getResponse().getHeader(IdempotencyFilter.REPLAYED_HEADER) != null ? 1 : 0;
+        }
+        executor.shutdown();
+
+        // then
+        assertThat(replayed).isEqualTo(retries - 1);
+        assertThat(beerService.findByName(beerDTO.getName()).getQuantity()).isEqualTo(11);
+    }
+
+    @Test
+    void whenResponseCarriesHeadersThenTheReplayShouldCarryThemToo() throws Exception {
+        // given
+        IdempotencyFilter filter = new IdempotencyFilter(new IdempotencyStore(10, 60), new ObjectMapper(), "X-Client-Id", 1024, 1000);
+        AtomicInteger executions = new AtomicInteger();
+        FilterChain created = (request, response) -> {
+            executions.incrementAndGet();
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            httpResponse.setStatus(HttpStatus.CREATED.value());
+            httpResponse.setHeader(HttpHeaders.LOCATION, BEER_API_URL_PATH + "/42");
+            httpResponse.addHeader(HttpHeaders.WARNING, "199 - \"first\"");
+            httpResponse.addHeader(HttpHeaders.WARNING, "199 - \"second\"");
+            httpResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            httpResponse.getOutputStream().write("{\"id\":42}".getBytes(StandardCharsets.UTF_8));
+        };
+        filter.doFilter(createRequest(), new MockHttpServletResponse(), created);
+
+        // when
+        MockHttpServletResponse replay = new MockHttpServletResponse();
+        filter.doFilter(createRequest(), replay, created);
+
+        // then
+        assertThat(executions).hasValue(1);
+        assertThat(replay.getStatus()).isEqualTo(HttpStatus.CREATED.value());
+        assertThat(replay.getHeader(IdempotencyFilter.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(replay.getHeader(HttpHeaders.LOCATION)).isEqualTo(BEER_API_URL_PATH + "/42");
+        assertThat(replay.getHeaders(HttpHeaders.WARNING)).containsExactly("199 - \"first\"", "199 - \"second\"");
+        assertThat(replay.getContentType()).isEqualTo(MediaType.APPLICATION_JSON_VALUE);
+        assertThat(replay.getContentAsString()).isEqualTo("{\"id\":42}");
+    }
+
+    private static MockHttpServletRequest createRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest(HttpMethod.POST.name(), BEER_API_URL_PATH);
+        request.addHeader(IdempotencyFilter.KEY_HEADER, "create-42");
+        request.setContent("{\"name\":\"Retry\"}".getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    private MockHttpServletRequestBuilder increment(int quantity) {
+        return patch(BEER_API_URL_PATH + "/" + beerDTO.getId() + "/increment")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(QuantityDTO.builder().quantity(quantity).build()));
+    }
+
+    private MockHttpServletRequestBuilder decrement(int quantity) {
+        return patch(BEER_API_URL_PATH + "/" + beerDTO.getId() + "/decrement")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(QuantityDTO.builder().quantity(quantity).build()));
+    }
+}
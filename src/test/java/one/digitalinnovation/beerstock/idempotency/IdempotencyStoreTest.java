@@ -0,0 +1,138 @@
+package one.digitalinnovation.beerstock.idempotency;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class IdempotencyStoreTest {
+
+    private static final Duration TTL = Duration.ofMinutes(10);
+    private static final StoredResponse RESPONSE = new StoredResponse(200, "application/json", Collections.emptyMap(), "{}".getBytes());
+
+    private final AtomicLong now = new AtomicLong();
+    private final IdempotencyStore idempotencyStore = new IdempotencyStore(3, TTL, now::get);
+
+    @Test
+    void whenKeyIsClaimedAgainThenTheStoredResponseShouldBeReturned() throws Exception {
+        // given
+        IdempotencyStore.Claim first = idempotencyStore.claim("key", "PATCH /beers/1 a");
+
+        // when
+        first.complete(RESPONSE);
+        IdempotencyStore.Claim retry = idempotencyStore.claim("key", "PATCH /beers/1 a");
+
+        // then
+        assertThat(first.isOwner()).isTrue();
+        assertThat(retry.isOwner()).isFalse();
+        assertThat(retry.matches("PATCH /beers/1 a")).isTrue();
+        assertThat(retry.matches("PATCH /beers/1 b")).isFalse();
+        assertThat(retry.await(Duration.ZERO)).contains(RESPONSE);
+    }
+
+    @Test
+    void whenOwnerIsStillRunningThenRetryShouldTimeOut() {
+        // given
+        idempotencyStore.claim("key", "a");
+
+        // then
+        assertThatExceptionOfType(TimeoutException.class)
+                .isThrownBy(() -> idempotencyStore.claim("key", "a").await(Duration.ofMillis(10)));
+    }
+
+    @Test
+    void whenOwnerReleasesTheKeyThenWaitingRetryShouldClaimItAgain() throws Exception {
+        // given
+        IdempotencyStore.Claim first = idempotencyStore.claim("key", "a");
+        IdempotencyStore.Claim retry = idempotencyStore.claim("key", "a");
+
+        // when
+        first.release();
+
+        // then
+        assertThat(retry.await(Duration.ZERO)).isEmpty();
+        assertThat(idempotencyStore.claim("key", "a").isOwner()).isTrue();
+    }
+
+    @Test
+    void whenTimeToLivePassesThenKeyShouldBeClaimableAgain() {
+        // given
+        idempotencyStore.claim("key", "a").complete(RESPONSE);
+
+        // when
+        now.addAndGet(TTL.toNanos() - 1);
+        boolean ownerBeforeExpiry = idempotencyStore.claim("key", "a").isOwner();
+        now.addAndGet(1);
+
+        // then
+        assertThat(ownerBeforeExpiry).isFalse();
+        assertThat(idempotencyStore.claim("key", "b").isOwner()).isTrue();
+        assertThat(idempotencyStore.size()).isEqualTo(1);
+    }
+
+    @Test
+    void whenStoreIsFullThenOldestCompletedKeysShouldBeEvicted() {
+        // given
+        IdempotencyStore.Claim inFlight = idempotencyStore.claim("in-flight", "a");
+        for (int i = 0; i < 4; i++) {
+            idempotencyStore.claim("key " + i, "a").complete(RESPONSE);
+        }
+
+        // when
+        idempotencyStore.claim("key 4", "a").complete(RESPONSE);
+
+        // then the in-flight head is kept and holds off eviction only until it completes
+        assertThat(idempotencyStore.claim("in-flight", "a").isOwner()).isFalse();
+        assertThat(idempotencyStore.size()).isLessThanOrEqualTo(6);
+        inFlight.complete(RESPONSE);
+        idempotencyStore.claim("key 5", "a").complete(RESPONSE);
+        assertThat(idempotencyStore.size()).isLessThanOrEqualTo(4);
+        assertThat(idempotencyStore.claim("key 5", "a").isOwner()).isFalse();
+        assertThat(idempotencyStore.claim("key 0", "a").isOwner()).isTrue();
+    }
+
+    @Test
+    void whenManyThreadsClaimTheSameKeyThenOnlyOneShouldOwnIt() throws Exception {
+        // given
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        Callable<Boolean> claimer = () -> {
+            start.await();
+            IdempotencyStore.Claim claim = idempotencyStore.claim("key", "a");
+            if (claim.isOwner()) {
+                claim.complete(RESPONSE);
+                return true;
+            }
+            assertThat(claim.await(Duration.ofSeconds(5))).contains(RESPONSE);
+            return false;
+        };
+
+        // when
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(claimer));
+        }
+        start.countDown();
+        int owners = 0;
+        for (Future<Boolean> result : results) {
+            owners += result.get() ? 1 : 0;
+        }
+        executor.shutdown();
+
+        // then
+        assertThat(owners).isEqualTo(1);
+    }
+}
@@ -0,0 +1,136 @@
+package one.digitalinnovation.beerstock.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RateLimiterTest {
+
+    private static final String CLIENT_ID = "storefront";
+    private static final String DECREMENT_ENDPOINT = "PATCH /api/v1/beers/{id}/decrement";
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.SECONDS.toNanos(1_000));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RateLimitProperties properties;
+    private RateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RateLimitProperties();
+        properties.setWrite(new RateLimitProperties.Limit(2, 1));
+        properties.setRead(new RateLimitProperties.Limit(5, 10));
+        rateLimiter = new RateLimiter(properties, meterRegistry, clock::get);
+    }
+
+    @Test
+    void whenBucketIsEmptyThenRequestShouldBeRejectedUntilItRefills() {
+        // given
+        TokenBucket bucket = new TokenBucket(2, 1);
+        long now = clock.get();
+
+        // then
+        assertThat(bucket.tryAcquire(now)).isZero();
+        assertThat(bucket.tryAcquire(now)).isZero();
+        assertThat(bucket.tryAcquire(now)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+        assertThat(bucket.tryAcquire(now + TimeUnit.SECONDS.toNanos(1))).isZero();
+    }
+
+    @Test
+    void whenClientExceedsItsWriteLimitThenOtherClientsAndEndpointsShouldStillBeAdmitted() {
+        // when
+        rateLimiter.tryAcquire(CLIENT_ID, DECREMENT_ENDPOINT, RateLimiter.Kind.WRITE);
+        rateLimiter.tryAcquire(CLIENT_ID, DECREMENT_ENDPOINT, RateLimiter.Kind.WRITE);
+
+        // then
+        assertThat(rateLimiter.tryAcquire(CLIENT_ID, DECREMENT_ENDPOINT, RateLimiter.Kind.WRITE)).isPositive();
+        assertThat(rateLimiter.tryAcquire("backoffice", DECREMENT_ENDPOINT, RateLimiter.Kind.WRITE)).isZero();
+        assertThat(rateLimiter.tryAcquire(CLIENT_ID, "GET /api/v1/beers", RateLimiter.Kind.READ)).isZero();
+        assertThat(meterRegistry.get("beerstock.ratelimit.requests").tag("kind", "write").tag("outcome", "rejected").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("beerstock.ratelimit.requests").tag("kind", "write").tag("outcome", "admitted").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void whenTooManyBucketsAreTrackedThenIdleBucketsShouldBeEvicted() {
+        // given
+        properties.setMaxTrackedBuckets(2);
+        rateLimiter.tryAcquire("first", DECREMENT_ENDPOINT, RateLimiter.Kind.WRITE);
+        rateLimiter.tryAcquire("second", DECREMENT_ENDPOINT, RateLimiter.Kind.WRITE);
+
+        // when
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        rateLimiter.tryAcquire("third", DECREMENT_ENDPOINT, RateLimiter.Kind.WRITE);
+
+        // then
+        assertThat(rateLimiter.trackedBuckets()).isEqualTo(1);
+    }
+
+    @Test
+    void whenNoBucketCanBeEvictedThenNewClientsShouldShareOneBucketWithoutBeingTracked() {
+        // given
+        properties.setMaxTrackedBuckets(2);
+        rateLimiter.tryAcquire("first", DECREMENT_ENDPOINT, RateLimiter.Kind.WRITE);
+        rateLimiter.tryAcquire("second", DECREMENT_ENDPOINT, RateLimiter.Kind.WRITE);
+
+        // when
+        long third = rateLimiter.tryAcquire("third", DECREMENT_ENDPOINT, RateLimiter.Kind.WRITE);
+        long fourth = rateLimiter.tryAcquire("fourth", DECREMENT_ENDPOINT, RateLimiter.Kind.WRITE);
+        long fifth = rateLimiter.tryAcquire("fifth", DECREMENT_ENDPOINT, RateLimiter.Kind.WRITE);
+
+        // then
+        assertThat(third).isZero();
+        assertThat(fourth).isZero();
+        assertThat(fifth).isPositive();
+        assertThat(rateLimiter.trackedBuckets()).isEqualTo(2);
+        assertThat(rateLimiter.tryAcquire("first", DECREMENT_ENDPOINT, RateLimiter.Kind.WRITE)).isZero();
+        assertThat(meterRegistry.get("beerstock.ratelimit.shared").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void whenRequestIsRejectedThenInterceptorShouldAnswerTooManyRequestsWithRetryAfter() {
+        // given
+        RateLimitInterceptor interceptor = new RateLimitInterceptor(rateLimiter, properties);
+
+        // when
+        interceptor.preHandle(decrementFrom("10.0.0.1", "first"), new MockHttpServletResponse(), null);
+        interceptor.preHandle(decrementFrom("10.0.0.1", "second"), new MockHttpServletResponse(), null);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean admitted = interceptor.preHandle(decrementFrom("10.0.0.1", "third"), response, null);
+
+        // then
+        assertThat(admitted).isFalse();
+        assertThat(response.getStatus()).isEqualTo(429);
+        assertThat(response.getHeader("Retry-After")).isEqualTo("1");
+        assertThat(interceptor.preHandle(decrementFrom("10.0.0.2", "third"), new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    @Test
+    void whenCallerIsAuthenticatedThenItShouldBeLimitedByPrincipalRatherThanAddress() {
+        // given
+        RateLimitInterceptor interceptor = new RateLimitInterceptor(rateLimiter, properties);
+        interceptor.preHandle(decrementFrom("10.0.0.1", null), new MockHttpServletResponse(), null);
+        interceptor.preHandle(decrementFrom("10.0.0.1", null), new MockHttpServletResponse(), null);
+
+        // when
+        MockHttpServletRequest request = decrementFrom("10.0.0.1", null);
+        request.setUserPrincipal(() -> CLIENT_ID);
+
+        // then
+        assertThat(interceptor.preHandle(request, new MockHttpServletResponse(), null)).isTrue();
+    }
+
+    private static MockHttpServletRequest decrementFrom(String remoteAddress, String clientHeader) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PATCH", "/api/v1/beers/1/decrement");
+        request.setRemoteAddr(remoteAddress);
+        if (clientHeader != null) {
+            request.addHeader("X-Client-Id", clientHeader);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,97 @@
+package one.digitalinnovation.beerstock.reservation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HierarchicalTimingWheelTest {
+
+    private static final long TICK_NANOS = 1_000;
+
+    private final HierarchicalTimingWheel<Timer> timingWheel = new HierarchicalTimingWheel<>(TICK_NANOS, 0);
+
+    @Test
+    void whenDeadlineIsReachedThenEntryShouldExpireOnThatTickOnly() {
+        // given
+        Timer timer = new Timer(5);
+        timingWheel.schedule(timer, 5 * TICK_NANOS);
+
+        // then
+        assertThat(timingWheel.advance(4 * TICK_NANOS)).isEmpty();
+        assertThat(timingWheel.advance(5 * TICK_NANOS)).containsExactly(timer);
+        assertThat(timingWheel.size()).isZero();
+        assertThat(timer.isScheduled()).isFalse();
+    }
+
+    @Test
+    void whenEntriesSpanSeveralLevelsThenEachShouldExpireExactlyOnItsTick() {
+        // given
+        Random random = new Random(42);
+        List<Timer> timers = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            long deadlineTick = 1 + (long) (Math.pow(random.nextDouble(), 3) * 300_000);
+            Timer timer = new Timer(deadlineTick);
+            timingWheel.schedule(timer, deadlineTick * TICK_NANOS);
+            timers.add(timer);
+        }
+
+        // when
+        long lastTick = 300_001;
+        for (long tick = 0; tick <= lastTick; tick += 1 + tick % 7) {
+            for (Timer timer : timingWheel.advance(tick * TICK_NANOS)) {
+                timer.expiredAtTick = tick;
+            }
+        }
+        timingWheel.advance(lastTick * TICK_NANOS).forEach(timer -> timer.expiredAtTick = lastTick);
+
+        // then
+        assertThat(timingWheel.size()).isZero();
+        for (Timer timer : timers) {
+            assertThat(timer.expiredAtTick).isGreaterThanOrEqualTo(timer.deadlineTick);
+            assertThat(timer.expiredAtTick - timer.deadlineTick).isLessThan(8);
+        }
+    }
+
+    @Test
+    void whenEntryIsCancelledThenItShouldNotExpire() {
+        // given
+        Timer cancelled = new Timer(100);
+        Timer kept = new Timer(100);
+        timingWheel.schedule(cancelled, 100 * TICK_NANOS);
+        timingWheel.schedule(kept, 100 * TICK_NANOS);
+
+        // when
+        boolean wasScheduled = timingWheel.cancel(cancelled);
+
+        // then
+        assertThat(wasScheduled).isTrue();
+        assertThat(timingWheel.cancel(cancelled)).isFalse();
+        assertThat(timingWheel.advance(200 * TICK_NANOS)).containsExactly(kept);
+    }
+
+    @Test
+    void whenDeadlineIsBeyondTheWheelRangeThenEntryShouldStillExpireOnTime() {
+        // given
+        long deadlineTick = (1L << 24) + 1_000;
+        Timer timer = new Timer(deadlineTick);
+        timingWheel.schedule(timer, deadlineTick * TICK_NANOS);
+
+        // then
+        assertThat(timingWheel.advance((deadlineTick - 1) * TICK_NANOS)).isEmpty();
+        assertThat(timingWheel.advance(deadlineTick * TICK_NANOS)).containsExactly(timer);
+    }
+
+    private static class Timer extends HierarchicalTimingWheel.Entry {
+
+        private final long deadlineTick;
+        private long expiredAtTick = -1;
+
+        private Timer(long deadlineTick) {
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
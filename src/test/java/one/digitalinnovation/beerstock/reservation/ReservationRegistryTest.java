@@ -0,0 +1,70 @@
+package one.digitalinnovation.beerstock.reservation;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReservationRegistryTest {
+
+    private static final long BEER_ID = 1L;
+
+    private final AtomicLong nanoClock = new AtomicLong();
+    private final ReservationRegistry reservationRegistry = new ReservationRegistry(Duration.ofMillis(100),
+            Duration.ofMinutes(15), Clock.systemUTC(), nanoClock::get);
+
+    @Test
+    void whenReservationExpiresThenItsQuantityShouldBeGivenBack() {
+        // given
+        Reservation shortReservation = reservationRegistry.reserve(BEER_ID, 3, Duration.ofSeconds(1));
+        reservationRegistry.reserve(BEER_ID, 2, Duration.ofSeconds(10));
+        assertThat(reservationRegistry.reservedQuantity(BEER_ID)).isEqualTo(5);
+
+        // when
+        nanoClock.set(Duration.ofSeconds(1).toNanos());
+        reservationRegistry.expireReservations();
+
+        // then
+        assertThat(reservationRegistry.reservedQuantity(BEER_ID)).isEqualTo(2);
+        assertThat(reservationRegistry.openReservations()).isEqualTo(1);
+        assertThat(reservationRegistry.close(shortReservation.getId())).isNull();
+    }
+
+    @Test
+    void whenReservationIsClosedThenItShouldNotExpireAnymore() {
+        // given
+        Reservation reservation = reservationRegistry.reserve(BEER_ID, 3, Duration.ofSeconds(1));
+
+        // when
+        assertThat(reservationRegistry.close(reservation.getId())).isSameAs(reservation);
+        reservationRegistry.unreserve(reservation);
+        nanoClock.set(Duration.ofSeconds(5).toNanos());
+        reservationRegistry.expireReservations();
+
+        // then
+        assertThat(reservationRegistry.reservedQuantity(BEER_ID)).isZero();
+        assertThat(reservationRegistry.close(reservation.getId())).isNull();
+    }
+
+    @Test
+    void whenClosedReservationIsReopenedThenItShouldHoldItsQuantityUntilItsOriginalExpiry() {
+        // given
+        Reservation reservation = reservationRegistry.reserve(BEER_ID, 3, Duration.ofSeconds(1));
+        reservationRegistry.close(reservation.getId());
+        reservationRegistry.unreserve(reservation);
+
+        // when
+        reservationRegistry.reopen(reservation);
+
+        // then
+        assertThat(reservationRegistry.reservedQuantity(BEER_ID)).isEqualTo(3);
+        assertThat(reservationRegistry.openReservations()).isEqualTo(1);
+        nanoClock.set(Duration.ofSeconds(2).toNanos());
+        reservationRegistry.expireReservations();
+        assertThat(reservationRegistry.reservedQuantity(BEER_ID)).isZero();
+        assertThat(reservationRegistry.close(reservation.getId())).isNull();
+    }
+}
@@ -0,0 +1,171 @@
+package one.digitalinnovation.beerstock.search;
+
+import one.digitalinnovation.beerstock.dto.BeerSuggestionDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.feed.BeerChangeEvent;
+import one.digitalinnovation.beerstock.storage.InMemoryBeerStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class BeerNameIndexTest {
+
+    private static final int MAX_RESULTS = 3;
+
+    private final InMemoryBeerStore beerStore = new InMemoryBeerStore();
+
+    @Test
+    void whenPrefixIsGivenThenMatchesShouldBeRankedByStockIgnoringCaseAndAccents() {
+        // given
+        store("Brahma", 10);
+        store("Brahma Duplo Malte", 30);
+        store("Bravaria", 20);
+        store("Budweiser", 99);
+        store("Bräu  Weiss", 5);
+        BeerNameIndex beerNameIndex = buildIndex();
+
+        // when
+        List<BeerSuggestionDTO> suggestions = beerNameIndex.suggest("BRA", 10);
+
+        // then
+        assertThat(suggestions).extracting(BeerSuggestionDTO::getName)
+                .containsExactly("Brahma Duplo Malte", "Bravaria", "Brahma");
+        assertThat(beerNameIndex.suggest("brau w", 10)).extracting(BeerSuggestionDTO::getName).containsExactly("Bräu  Weiss");
+        assertThat(beerNameIndex.suggest("brahma ", 10)).extracting(BeerSuggestionDTO::getName).containsExactly("Brahma Duplo Malte");
+        assertThat(beerNameIndex.suggest("bx", 10)).isEmpty();
+        assertThat(beerNameIndex.suggest("", 2)).extracting(BeerSuggestionDTO::getName).containsExactly("Budweiser", "Brahma Duplo Malte");
+    }
+
+    @Test
+    void whenBeersChangeThenSuggestionsShouldFollowTheEvents() {
+        // given
+        BeerNameIndex beerNameIndex = buildIndex();
+        Beer skol = new Beer(1L, "Skol", "Ambev", 100, 10, BeerType.LAGER);
+        Beer stella = new Beer(2L, "Stella Artois", "Ambev", 100, 20, BeerType.LAGER);
+
+        // when
+        beerNameIndex.onBeerChange(BeerChangeEvent.created(skol));
+        beerNameIndex.onBeerChange(BeerChangeEvent.created(stella));
+        skol.setQuantity(50);
+        beerNameIndex.onBeerChange(BeerChangeEvent.quantityChanged(skol, 40, 1));
+
+        // then
+        assertThat(beerNameIndex.suggest("s", 10)).extracting(BeerSuggestionDTO::getName).containsExactly("Skol", "Stella Artois");
+        beerNameIndex.onBeerChange(BeerChangeEvent.deleted(skol, 2));
+        assertThat(beerNameIndex.suggest("s", 10)).extracting(BeerSuggestionDTO::getName).containsExactly("Stella Artois");
+        assertThat(beerNameIndex.size()).isEqualTo(1);
+    }
+
+    @Test
+    void whenRandomChangesAreAppliedThenSuggestionsShouldMatchABruteForceSearch() {
+        // given
+        Random random = new Random(36);
+        String[] syllables = {"bra", "hma", "b", "r", "ale", "ipa", " ", "st", "out", "a"};
+        BeerNameIndex beerNameIndex = buildIndex();
+        Map<Long, Beer> beers = new HashMap<>();
+        long version = 0;
+
+        for (long id = 1; id <= 3_000; id++) {
+            // when
+            int operation = random.nextInt(10);
+            if (operation < 5 || beers.isEmpty()) {
+                StringBuilder name = new StringBuilder();
+                for (int i = 1 + random.nextInt(4); i > 0; i--) {
+                    name.append(syllables[random.nextInt(syllables.length)]);
+                }
+                Beer beer = new Beer(id, name.toString() + id % 7, "Brand", 100, random.nextInt(100), BeerType.ALE);
+                beers.put(id, beer);
+                beerNameIndex.onBeerChange(BeerChangeEvent.created(beer));
+            } else {
+                List<Long> ids = new ArrayList<>(beers.keySet());
+                Beer beer = beers.get(ids.get(random.nextInt(ids.size())));
+                if (operation < 9) {
+                    int previousQuantity = beer.getQuantity();
+                    beer.setQuantity(random.nextInt(100));
+                    beerNameIndex.onBeerChange(BeerChangeEvent.quantityChanged(beer, beer.getQuantity() - previousQuantity, ++version));
+                } else {
+                    beers.remove(beer.getId());
+                    beerNameIndex.onBeerChange(BeerChangeEvent.deleted(beer, ++version));
+                }
+            }
+
+            // then
+            String prefix = randomPrefix(random, beers);
+            assertThat(beerNameIndex.suggest(prefix, MAX_RESULTS))
+                    .as("prefix '%s'", prefix)
+                    .extracting(BeerSuggestionDTO::getId)
+                    .containsExactlyElementsOf(bruteForce(beers, prefix));
+        }
+    }
+
+    @Test
+    void whenEventsArriveOutOfOrderThenOlderOnesShouldBeIgnored() {
+        // given
+        List<Runnable> applierQueue = new ArrayList<>();
+        BeerNameIndex beerNameIndex = new BeerNameIndex(beerStore, MAX_RESULTS, applierQueue::add);
+        beerNameIndex.rebuild();
+        Beer skol = new Beer(1L, "Skol", "Ambev", 100, 30, BeerType.LAGER);
+        Beer brahma = new Beer(2L, "Brahma", "Ambev", 100, 10, BeerType.LAGER);
+
+        // when
+        beerNameIndex.onBeerChange(BeerChangeEvent.quantityChanged(skol, 10, 2));
+        beerNameIndex.onBeerChange(BeerChangeEvent.created(new Beer(1L, "Skol", "Ambev", 100, 10, BeerType.LAGER)));
+        beerNameIndex.onBeerChange(BeerChangeEvent.deleted(brahma, 5));
+        assertThat(beerNameIndex.suggest("", 10)).isEmpty();
+        applierQueue.forEach(Runnable::run);
+        beerNameIndex.onBeerChange(BeerChangeEvent.quantityChanged(new Beer(1L, "Skol", "Ambev", 100, 20, BeerType.LAGER), 10, 1));
+        beerNameIndex.onBeerChange(BeerChangeEvent.quantityChanged(brahma, 1, 4));
+        applierQueue.forEach(Runnable::run);
+
+        // then
+        assertThat(applierQueue).hasSize(2);
+        assertThat(beerNameIndex.suggest("", 10)).extracting(BeerSuggestionDTO::getName, BeerSuggestionDTO::getQuantity)
+                .containsExactly(tuple("Skol", 30));
+    }
+
+    @Test
+    void whenNameIsNormalizedThenCaseAccentsAndSpacesShouldBeFolded() {
+        assertThat(BeerNameIndex.normalize("  Bräu   Akademie ", false)).isEqualTo("brau akademie");
+        assertThat(BeerNameIndex.normalize("Bräu ", true)).isEqualTo("brau ");
+    }
+
+    private String randomPrefix(Random random, Map<Long, Beer> beers) {
+        if (beers.isEmpty()) {
+            return "";
+        }
+        List<Beer> values = new ArrayList<>(beers.values());
+        String name = BeerNameIndex.normalize(values.get(random.nextInt(values.size())).getName(), false);
+        return name.substring(0, random.nextInt(name.length() + 1));
+    }
+
+    private List<Long> bruteForce(Map<Long, Beer> beers, String prefix) {
+        return beers.values().stream()
+                .filter(beer -> BeerNameIndex.normalize(beer.getName(), false).startsWith(prefix))
+                .sorted(Comparator.comparingInt(Beer::getQuantity).reversed()
+                        .thenComparing(Beer::getName)
+                        .thenComparing(Beer::getId))
+                .limit(MAX_RESULTS)
+                .map(Beer::getId)
+                .collect(Collectors.toList());
+    }
+
+    private void store(String name, int quantity) {
+        beerStore.create(new Beer(null, name, "Brand", 100, quantity, BeerType.LAGER));
+    }
+
+    private BeerNameIndex buildIndex() {
+        BeerNameIndex beerNameIndex = new BeerNameIndex(beerStore, MAX_RESULTS, Runnable::run);
+        beerNameIndex.rebuild();
+        return beerNameIndex;
+    }
+}
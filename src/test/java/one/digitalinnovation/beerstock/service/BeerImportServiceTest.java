@@ -0,0 +1,261 @@
+package one.digitalinnovation.beerstock.service;
+
+import one.digitalinnovation.beerstock.dto.ImportProgressDTO;
+import one.digitalinnovation.beerstock.dto.ImportReportDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.feed.BeerChangeEvent;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import one.digitalinnovation.beerstock.reservation.ReservationRegistry;
+import one.digitalinnovation.beerstock.storage.BeerStore;
+import one.digitalinnovation.beerstock.storage.InMemoryBeerStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.mock;
+
+public class BeerImportServiceTest {
+
+    private static final int BATCH_SIZE = 2;
+    private static final String HEADER = "name,brand,max,quantity,type\n";
+
+    private InMemoryBeerStore beerStore;
+    private ReservationRegistry reservationRegistry;
+    private BeerImportService beerImportService;
+    private List<Object> publishedEvents;
+
+    @BeforeEach
+    void setUp() {
+        beerStore = new InMemoryBeerStore();
+        reservationRegistry = new ReservationRegistry(100, 900);
+        publishedEvents = new ArrayList<>();
+        beerImportService = newImportService(beerStore);
+    }
+
+    @Test
+    void whenValidCsvIsImportedThenBeersShouldBeCreated() throws IOException {
+        // given
+        String csv = HEADER
+                + "Brahma,Ambev,50,10,lager\n"
+                + "\"Colorado, Appia\",Colorado,100,20,WITBIER\r\n"
+                + "\"Duvel \"\"Tripel\"\"\",Duvel,60,0,ALE\n";
+
+        // when
+        ImportReportDTO report = beerImportService.importCsv(asStream(csv));
+
+        // then
+        assertThat(report.getRowsRead()).isEqualTo(3);
+        assertThat(report.getCreated()).isEqualTo(3);
+        assertThat(report.getRejected()).isZero();
+        assertThat(beerStore.findByName("Colorado, Appia").map(Beer::getType)).contains(BeerType.WITBIER);
+        assertThat(beerStore.findByName("Duvel \"Tripel\"").map(Beer::getMax)).contains(60);
+    }
+
+    @Test
+    void whenBeerAlreadyExistsThenItShouldBeUpdatedByName() throws IOException {
+        // given
+        beerStore.create(new Beer(null, "Brahma", "Ambev", 50, 10, BeerType.LAGER));
+        String csv = "type,quantity,max,brand,name\n"
+                + "IPA,30,80,Ambev Craft,Brahma\n"
+                + "IPA,5,80,Ambev Craft,Brahma\n";
+
+        // when
+        ImportReportDTO report = beerImportService.importCsv(asStream(csv));
+
+        // then
+        assertThat(report.getCreated()).isZero();
+        assertThat(report.getUpdated()).isEqualTo(2);
+        assertThat(beerStore.findAll()).hasSize(1);
+        Beer updatedBeer = beerStore.findByName("Brahma").orElseThrow();
+        assertThat(updatedBeer.getQuantity()).isEqualTo(5);
+        assertThat(updatedBeer.getBrand()).isEqualTo("Ambev Craft");
+        assertThat(publishedEvents).extracting("kind", "quantity", "delta")
+                .containsExactly(tuple(BeerChangeEvent.Kind.UPDATED, 5, -5));
+        assertThat(updatedBeer.getType()).isEqualTo(BeerType.IPA);
+    }
+
+    @Test
+    void whenRowWouldGoBelowTheReservedQuantityThenOnlyThatRowShouldBeRejected() throws IOException {
+        // given
+        Beer reservedBeer = beerStore.create(new Beer(null, "Brahma", "Ambev", 50, 10, BeerType.LAGER));
+        beerStore.create(new Beer(null, "Skol", "Ambev", 50, 10, BeerType.LAGER));
+        reservationRegistry.reserve(reservedBeer.getId(), 6, Duration.ofMinutes(1));
+        String csv = HEADER
+                + "Brahma,Ambev,50,5,LAGER\n"
+                + "Skol,Ambev,50,5,LAGER\n";
+
+        // when
+        ImportReportDTO report = beerImportService.importCsv(asStream(csv));
+
+        // then
+        assertThat(report.getUpdated()).isEqualTo(1);
+        assertThat(report.getRejected()).isEqualTo(1);
+        assertThat(report.getErrors()).extracting("line", "name", "message")
+                .containsExactly(tuple(2L, "Brahma", "quantity 5 is below the 6 units reserved"));
+        assertThat(beerStore.findByName("Brahma").map(Beer::getQuantity)).contains(10);
+        assertThat(beerStore.findByName("Skol").map(Beer::getQuantity)).contains(5);
+    }
+
+    @Test
+    void whenBeerIsRecreatedBeforeItsBatchIsLockedThenTheBatchShouldBeRetriedOnTheNewBeer() throws IOException {
+        // given
+        AtomicBoolean recreated = new AtomicBoolean();
+        InMemoryBeerStore racingStore = new InMemoryBeerStore() {
+            @Override
+            public List<Beer> findAllByNameIn(Collection<String> names) {
+                List<Beer> beers = super.findAllByNameIn(names);
+                if (recreated.compareAndSet(false, true)) {
+                    deleteById(beers.get(0).getId());
+                    create(new Beer(null, "Brahma", "Ambev", 50, 20, BeerType.LAGER));
+                }
+                return beers;
+            }
+        };
+        racingStore.create(new Beer(null, "Brahma", "Ambev", 50, 10, BeerType.LAGER));
+        String csv = HEADER + "Brahma,Ambev,50,5,LAGER\n";
+
+        // when
+        ImportReportDTO report = newImportService(racingStore).importCsv(asStream(csv));
+
+        // then
+        assertThat(report.getUpdated()).isEqualTo(1);
+        assertThat(report.getRejected()).isZero();
+        assertThat(racingStore.findAll()).extracting("id", "quantity").containsExactly(tuple(2L, 5));
+        assertThat(publishedEvents).extracting("beerId", "kind", "delta")
+                .containsExactly(tuple(2L, BeerChangeEvent.Kind.UPDATED, -15));
+    }
+
+    @Test
+    void whenBatchWithARepeatedNameFailsThenEveryRowShouldBeRejected() throws IOException {
+        // given
+        InMemoryBeerStore failingStore = new InMemoryBeerStore() {
+            @Override
+            public List<Beer> saveAll(List<Beer> beers) {
+                throw new DataIntegrityViolationException("Disk full");
+            }
+        };
+        String csv = HEADER
+                + "Brahma,Ambev,50,5,LAGER\n"
+                + "Brahma,Ambev,50,6,LAGER\n";
+
+        // when
+        ImportReportDTO report = newImportService(failingStore).importCsv(asStream(csv));
+
+        // then
+        assertThat(report.getRowsRead()).isEqualTo(2);
+        assertThat(report.getCreated() + report.getUpdated()).isZero();
+        assertThat(report.getRejected()).isEqualTo(2);
+        assertThat(report.getErrors()).extracting("line", "message")
+                .containsExactly(tuple(2L, "Batch could not be stored: Disk full"), tuple(3L, "Batch could not be stored: Disk full"));
+    }
+
+    @Test
+    void whenRowsAreInvalidThenTheyShouldBeReportedAndTheOthersImported() throws IOException {
+        // given
+        String csv = HEADER
+                + "Brahma,Ambev,50,10,LAGER\n"
+                + ",Ambev,50,10,LAGER\n"
+                + "Skol,Ambev,501,10,LAGER\n"
+                + "Bohemia,Ambev,ten,10,LAGER\n"
+                + "Stella,AB InBev,50,10,PILSEN\n";
+
+        // when
+        ImportReportDTO report = beerImportService.importCsv(asStream(csv));
+
+        // then
+        assertThat(report.getRowsRead()).isEqualTo(5);
+        assertThat(report.getCreated()).isEqualTo(1);
+        assertThat(report.getRejected()).isEqualTo(4);
+        assertThat(report.getErrors()).hasSize(2);
+        assertThat(report.isErrorsTruncated()).isTrue();
+        assertThat(report.getErrors().get(0).getLine()).isEqualTo(3);
+        assertThat(report.getErrors().get(0).getMessage()).isEqualTo("name must not be null");
+        assertThat(report.getErrors().get(1).getName()).isEqualTo("Skol");
+        assertThat(report.getErrors().get(1).getMessage()).isEqualTo("max must be less than or equal to 500");
+    }
+
+    @Test
+    void whenHeaderIsMissingAColumnThenImportShouldBeRejected() throws IOException {
+        // when
+        ImportReportDTO report = beerImportService.importCsv(asStream("name,brand,max\nBrahma,Ambev,50\n"));
+
+        // then
+        assertThat(report.getRejected()).isEqualTo(1);
+        assertThat(report.getErrors().get(0).getMessage()).contains("Missing column quantity");
+        assertThat(beerStore.findAll()).isEmpty();
+    }
+
+    @Test
+    void whenRecordHasTooManyFieldsThenImportShouldStopAtIt() throws IOException {
+        // given
+        String csv = HEADER
+                + "Brahma,Ambev,50,10,lager\n"
+                + "Skol" + ",".repeat(100_000) + "\n";
+
+        // when
+        ImportReportDTO report = beerImportService.importCsv(asStream(csv));
+
+        // then
+        assertThat(report.getCreated()).isEqualTo(1);
+        assertThat(report.getRejected()).isEqualTo(1);
+        assertThat(report.getErrors().get(0).getLine()).isEqualTo(3);
+        assertThat(report.getErrors().get(0).getMessage()).contains("more than 256 fields");
+    }
+
+    @Test
+    void whenLargeCsvIsStreamedThenAllRowsShouldBeImportedInBatches() throws IOException {
+        // given
+        int rows = 10_000;
+        Enumeration<InputStream> chunks = Collections.enumeration(IntStream.range(0, rows + 1)
+                .mapToObj(i -> asStream(i == 0 ? HEADER : "Beer " + i + ",Brand,100," + (i % 100) + ",STOUT\n"))
+                .collect(Collectors.toList()));
+
+        List<ImportProgressDTO> progress = new ArrayList<>();
+
+        // when
+        ImportReportDTO report = beerImportService.importCsv(new SequenceInputStream(chunks), progress::add);
+
+        // then
+        assertThat(report.getCreated()).isEqualTo(rows);
+        assertThat(beerStore.findAll()).hasSize(rows);
+        assertThat(progress).hasSize(rows / BATCH_SIZE);
+        assertThat(progress.get(0).getCreated()).isEqualTo(BATCH_SIZE);
+        assertThat(progress.get(progress.size() - 1).getCreated()).isEqualTo(rows);
+    }
+
+    private BeerImportService newImportService(BeerStore store) {
+        return new BeerImportService(store,
+                reservationRegistry,
+                Validation.buildDefaultValidatorFactory().getValidator(),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                publishedEvents::add,
+                BeerMapper.INSTANCE,
+                BATCH_SIZE,
+                2);
+    }
+
+    private static InputStream asStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
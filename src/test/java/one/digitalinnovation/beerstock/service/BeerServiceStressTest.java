@@ -0,0 +1,229 @@
+package one.digitalinnovation.beerstock.service;
+
+import one.digitalinnovation.beerstock.benchmark.ThroughputRunner;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.StockTransferDTO;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.BeerStock;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.StockLocationNotFoundException;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.BeerStockRepository;
+import one.digitalinnovation.beerstock.reservation.ReservationRegistry;
+import one.digitalinnovation.beerstock.storage.BeerStore;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs randomized increments, decrements, transfers and deletes at several locations from many
+ * threads against the real H2 database and checks that stock stays within {@code 0..max} and
+ * that every unit is accounted for: the final quantity of a surviving beer must equal its initial
+ * quantity plus the deltas the service reported as applied, and must equal the sum of its stock
+ * per location, and every location total must equal the stock held there.
+ */
+@SpringBootTest
+public class BeerServiceStressTest {
+
+    private static final int BEERS = 8;
+    private static final int DELETABLE_BEERS = 2;
+    private static final int MAX = 200;
+    private static final int INITIAL_QUANTITY = 100;
+    private static final int MAX_DELTA = 5;
+    private static final long SEED = 20201018L;
+    private static final int[] BENCHMARK_THREADS = {1, 2, 4, 8, 16, 32, 64};
+    private static final String[] LOCATIONS = {StockLocation.DEFAULT, "stress-bar", "stress-cellar"};
+
+    private static final AtomicInteger RUNS = new AtomicInteger();
+
+    @Autowired
+    BeerService beerService;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    BeerStockRepository beerStockRepository;
+
+    @Autowired
+    BeerStore beerStore;
+
+    @Autowired
+    ReservationRegistry reservationRegistry;
+
+    @Test
+    void whenManyThreadsUpdateTheSameBeersThenStockInvariantsShouldHold() throws Exception {
+        StressResult result = stress(8, Duration.ofSeconds(2));
+
+        assertThat(result.getUnexpectedFailures()).isEmpty();
+        assertThat(result.getAppliedUpdates()).isPositive();
+    }
+
+    @Tag("benchmark")
+    @Test
+    void stockUpdatesShouldScaleWithoutBreakingInvariants() throws Exception {
+        List<String> report = new ArrayList<>();
+        report.add(String.format("%8s %12s %12s %14s %12s", "threads", "ops/s", "contended", "lock wait/op", "rejected"));
+        for (int threads : BENCHMARK_THREADS) {
+            StressResult result = stress(threads, Duration.ofSeconds(3));
+            assertThat(result.getUnexpectedFailures()).isEmpty();
+            report.add(String.format("%8d %12.0f %11.1f%% %11.1f us %11.1f%%", threads, result.getOperationsPerSecond(),
+                    result.getContendedPercentage(), result.getLockWaitMicrosPerOperation(), result.getRejectedPercentage()));
+        }
+        report.forEach(System.out::println);
+    }
+
+    private StressResult stress(int threads, Duration duration) throws Exception {
+        int run = RUNS.incrementAndGet();
+        for (String location : LOCATIONS) {
+            if (!beerStore.findLocation(location).isPresent()) {
+                beerStore.createLocation(location);
+            }
+        }
+        long[] ids = new long[BEERS];
+        for (int i = 0; i < BEERS; i++) {
+            BeerDTO beerDTO = BeerDTO.builder()
+                    .name("Stress " + run + "-" + i)
+                    .brand("Stress")
+                    .max(MAX)
+                    .quantity(INITIAL_QUANTITY)
+                    .type(BeerType.LAGER)
+                    .build();
+            ids[i] = beerService.createBeer(beerDTO).getId();
+        }
+
+        AtomicLongArray appliedDeltas = new AtomicLongArray(BEERS);
+        Set<Integer> deletedBeers = ConcurrentHashMap.newKeySet();
+        LongAdder appliedUpdates = new LongAdder();
+        LongAdder rejectedUpdates = new LongAdder();
+        ConcurrentLinkedQueue<String> unexpectedFailures = new ConcurrentLinkedQueue<>();
+        Random[] randoms = new Random[threads];
+        for (int i = 0; i < threads; i++) {
+            randoms[i] = new Random(SEED + run * 1000L + i);
+        }
+        long contendedBefore = reservationRegistry.getContendedLockAcquisitions().sum();
+        long lockWaitNanosBefore = reservationRegistry.getLockWaitNanos().sum();
+
+        double operationsPerSecond = ThroughputRunner.operationsPerSecond(threads, duration, (thread, iteration) -> {
+            Random random = randoms[thread];
+            int beer = random.nextInt(BEERS);
+            int delta = 1 + random.nextInt(MAX_DELTA);
+            int location = random.nextInt(LOCATIONS.length);
+            try {
+                if (beer < DELETABLE_BEERS && random.nextInt(1000) == 0) {
+                    beerService.deleteById(ids[beer]);
+                    deletedBeers.add(beer);
+                    return;
+                }
+                if (random.nextInt(3) == 0) {
+                    String to = LOCATIONS[(location + 1 + random.nextInt(LOCATIONS.length - 1)) % LOCATIONS.length];
+                    beerService.transfer(ids[beer], new StockTransferDTO(LOCATIONS[location], to, delta));
+                    appliedUpdates.increment();
+                    return;
+                }
+                boolean increment = random.nextBoolean();
+                BeerDTO updatedBeer = increment
+                        ? beerService.increment(ids[beer], delta, LOCATIONS[location])
+                        : beerService.decrement(ids[beer], delta, LOCATIONS[location]);
+                if (updatedBeer.getQuantity() < 0 || updatedBeer.getQuantity() > updatedBeer.getMax()) {
+                    unexpectedFailures.add("Returned quantity out of range: " + updatedBeer);
+                }
+                appliedDeltas.addAndGet(beer, increment ? delta : -delta);
+                appliedUpdates.increment();
+            } catch (BeerStockExceededException | BeerNotFoundException expected) {
+                rejectedUpdates.increment();
+            } catch (StockLocationNotFoundException | RuntimeException unexpected) {
+                unexpectedFailures.add(unexpected.toString());
+            }
+        });
+
+        for (int i = 0; i < BEERS; i++) {
+            Optional<Beer> storedBeer = beerRepository.findById(ids[i]);
+            if (deletedBeers.contains(i)) {
+                if (storedBeer.isPresent()) {
+                    unexpectedFailures.add("Deleted beer is still stored: " + storedBeer.get());
+                }
+                continue;
+            }
+            if (!storedBeer.isPresent()) {
+                unexpectedFailures.add("Beer " + ids[i] + " disappeared without being deleted");
+                continue;
+            }
+            int quantity = storedBeer.get().getQuantity();
+            if (quantity < 0 || quantity > MAX) {
+                unexpectedFailures.add("Stored quantity out of range: " + storedBeer.get());
+            }
+            long expectedQuantity = INITIAL_QUANTITY + appliedDeltas.get(i);
+            if (quantity != expectedQuantity) {
+                unexpectedFailures.add("Beer " + ids[i] + " has " + quantity + " units, oracle expects " + expectedQuantity);
+            }
+            Map<String, Integer> stock = beerStore.findStock(ids[i]);
+            if (stock.values().stream().mapToInt(Integer::intValue).sum() != quantity
+                    || stock.values().stream().anyMatch(locationQuantity -> locationQuantity < 0)) {
+                unexpectedFailures.add("Beer " + ids[i] + " has " + quantity + " units but stock per location " + stock);
+            }
+        }
+        Map<String, Long> stockedPerLocation = new HashMap<>();
+        for (BeerStock beerStock : beerStockRepository.findAll()) {
+            stockedPerLocation.merge(beerStock.getLocation(), (long) beerStock.getQuantity(), Long::sum);
+        }
+        for (StockLocation stockLocation : beerStore.findAllLocations()) {
+            long stocked = stockedPerLocation.getOrDefault(stockLocation.getName(), 0L);
+            if (stockLocation.getQuantity() != stocked) {
+                unexpectedFailures.add("Location " + stockLocation.getName() + " totals " + stockLocation.getQuantity()
+                        + " units but holds " + stocked);
+            }
+        }
+
+        long contended = reservationRegistry.getContendedLockAcquisitions().sum() - contendedBefore;
+        long lockWaitNanos = reservationRegistry.getLockWaitNanos().sum() - lockWaitNanosBefore;
+        return new StressResult(operationsPerSecond, appliedUpdates.sum(), rejectedUpdates.sum(), contended, lockWaitNanos,
+                new ArrayList<>(unexpectedFailures));
+    }
+
+    @lombok.Value
+    private static class StressResult {
+        double operationsPerSecond;
+        long appliedUpdates;
+        long rejectedUpdates;
+        long contendedLockAcquisitions;
+        long lockWaitNanos;
+        List<String> unexpectedFailures;
+
+        // Every change to a beer serializes on its lock, so waiting for it is what contention costs.
+        double getContendedPercentage() {
+            long total = appliedUpdates + rejectedUpdates;
+            return total == 0 ? 0 : 100.0 * contendedLockAcquisitions / total;
+        }
+
+        double getLockWaitMicrosPerOperation() {
+            long total = appliedUpdates + rejectedUpdates;
+            return total == 0 ? 0 : lockWaitNanos / 1000.0 / total;
+        }
+
+        double getRejectedPercentage() {
+            long total = appliedUpdates + rejectedUpdates;
+            return total == 0 ? 0 : 100.0 * rejectedUpdates / total;
+        }
+    }
+}
@@ -2,24 +2,51 @@ package one.digitalinnovation.beerstock.service;
 
 import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
 import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.dto.BeerLookupDTO;
+import one.digitalinnovation.beerstock.dto.BeerStockDTO;
+import one.digitalinnovation.beerstock.dto.ReservationDTO;
+import one.digitalinnovation.beerstock.dto.ReservationRequestDTO;
+import one.digitalinnovation.beerstock.dto.StockTransferDTO;
 import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.BeerStock;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.entity.StockLocationStripe;
 import one.digitalinnovation.beerstock.exception.BeerAlreadyRegisteredException;
 import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
 import one.digitalinnovation.beerstock.exception.BeerStockExceededException;
+import one.digitalinnovation.beerstock.exception.ReservationNotFoundException;
+import one.digitalinnovation.beerstock.exception.StockLocationNotFoundException;
+import one.digitalinnovation.beerstock.feed.BeerChangeEvent;
+import one.digitalinnovation.beerstock.hotkeys.HotKey;
+import one.digitalinnovation.beerstock.hotkeys.HotKeyReport;
+import one.digitalinnovation.beerstock.hotkeys.HotKeyTracker;
 import one.digitalinnovation.beerstock.mapper.BeerMapper;
 import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.BeerStockRepository;
+import one.digitalinnovation.beerstock.repository.StockLocationRepository;
+import one.digitalinnovation.beerstock.reservation.ReservationRegistry;
+import one.digitalinnovation.beerstock.search.BeerNameIndex;
+import one.digitalinnovation.beerstock.storage.InMemoryBeerStore;
+import one.digitalinnovation.beerstock.storage.JpaBeerStore;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,11 +61,41 @@ public class BeerServiceTest {
     @Mock
     BeerRepository beerRepository;
 
+    @Mock
+    BeerStockRepository beerStockRepository;
+
+    @Mock
+    StockLocationRepository stockLocationRepository;
+
+    @Mock
+    PlatformTransactionManager transactionManager;
+
     BeerMapper beerMapper = BeerMapper.INSTANCE;
 
-    @InjectMocks
+    ReservationRegistry reservationRegistry = new ReservationRegistry(100, 900);
+
+    List<Object> publishedEvents = new ArrayList<>();
+
+    HotKeyTracker hotKeyTracker = new HotKeyTracker(1024, 4, 10, 60);
+
     BeerService beerService;
 
+    @BeforeEach
+    void setUp() {
+        JpaBeerStore beerStore = new JpaBeerStore(beerRepository, beerStockRepository, stockLocationRepository,
+                new TransactionTemplate(transactionManager));
+        beerService = new BeerService(beerStore, reservationRegistry, publishedEvents::add,
+                new BeerNameIndex(new InMemoryBeerStore(), 10), hotKeyTracker, beerMapper);
+    }
+
+    private void givenWholeStockAtDefaultLocation(Beer beer) {
+        lenient().when(beerRepository.findAndLockById(beer.getId())).thenReturn(Optional.of(beer));
+        lenient().when(beerStockRepository.findByBeerId(beer.getId()))
+                .thenReturn(Collections.singletonList(new BeerStock(1L, beer.getId(), StockLocation.DEFAULT, beer.getQuantity())));
+        lenient().when(beerStockRepository.updateQuantity(eq(beer.getId()), eq(StockLocation.DEFAULT), anyInt(), anyInt())).thenReturn(1);
+        lenient().when(stockLocationRepository.addQuantity(anyString(), anyInt(), anyLong())).thenReturn(1);
+    }
+
     @Test
     void whenValidBeerIsGivenThenItShouldBeCreated() throws BeerAlreadyRegisteredException {
         // given
@@ -48,6 +105,7 @@ public class BeerServiceTest {
         // when
         when(beerRepository.findByName(mockBeerDTO.getName())).thenReturn(Optional.empty());
         when(beerRepository.save(mockBeer)).thenReturn(mockBeer);
+        when(stockLocationRepository.addQuantity(StockLocation.DEFAULT, StockLocationStripe.of(mockBeer.getId()), mockBeer.getQuantity())).thenReturn(1);
 
         // then
         BeerDTO beerCreatedDTO = beerService.createBeer(mockBeerDTO);
@@ -95,6 +153,27 @@ public class BeerServiceTest {
                 .isThrownBy(() -> beerService.findByName(mockBeerDTO.getName()));
     }
 
+    @Test
+    void whenBeerIsLookedUpAndMovedThenItShouldBeReportedAsHot() throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        // given
+        BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer mockBeer = beerMapper.toModel(mockBeerDTO);
+        when(beerRepository.findByName(mockBeerDTO.getName())).thenReturn(Optional.of(mockBeer));
+        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
+        givenWholeStockAtDefaultLocation(mockBeer);
+
+        // when
+        beerService.findByName(mockBeerDTO.getName());
+        beerService.findByName(mockBeerDTO.getName());
+        assertThatExceptionOfType(BeerStockExceededException.class)
+                .isThrownBy(() -> beerService.decrement(mockBeerDTO.getId(), mockBeerDTO.getQuantity() + 1));
+
+        // then
+        HotKeyReport report = hotKeyTracker.hotKeys();
+        assertThat(report.getLookups()).containsExactly(new HotKey(mockBeerDTO.getId(), 2));
+        assertThat(report.getStockMovements()).containsExactly(new HotKey(mockBeerDTO.getId(), 1));
+    }
+
     @Test
     void whenListAllBeersInvokedThenListOfBeersShouldBeReturned() {
         // given
@@ -117,12 +196,18 @@ public class BeerServiceTest {
 
         // when
         when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
-        doNothing().when(beerRepository).deleteById(mockBeerDTO.getId());
+        when(beerRepository.findAndLockById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
+        when(beerStockRepository.findAndLockByBeerId(mockBeerDTO.getId())).thenReturn(Collections.singletonList(
+                new BeerStock(5L, mockBeer.getId(), StockLocation.DEFAULT, mockBeer.getQuantity())));
+        when(beerRepository.deleteBeerById(mockBeerDTO.getId())).thenReturn(1);
+        when(stockLocationRepository.addQuantity(StockLocation.DEFAULT, StockLocationStripe.of(mockBeer.getId()), -mockBeer.getQuantity())).thenReturn(1);
 
         // then
         beerService.deleteById(mockBeerDTO.getId());
         verify(beerRepository, times(1)).findById(mockBeerDTO.getId());
-        verify(beerRepository, times(1)).deleteById(mockBeerDTO.getId());
+        verify(beerStockRepository, times(1)).deleteByIdIn(Collections.singletonList(5L));
+        verify(beerRepository, times(1)).deleteBeerById(mockBeerDTO.getId());
+        verify(stockLocationRepository, times(1)).addQuantity(StockLocation.DEFAULT, StockLocationStripe.of(mockBeer.getId()), -mockBeer.getQuantity());
     }
 
     @Test
@@ -139,15 +224,16 @@ public class BeerServiceTest {
     }
 
     @Test
-    void whenQuantityOfBeerToIncrementIsInformedThenItShouldBeAddedToExistingQuantity() throws BeerNotFoundException, BeerStockExceededException {
+    void whenQuantityOfBeerToIncrementIsInformedThenItShouldBeAddedToExistingQuantity() throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
         // given
         BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
         Beer mockBeer = beerMapper.toModel(mockBeerDTO);
 
         // when
-        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
-        when(beerRepository.save(mockBeer)).thenReturn(mockBeer);
         int expectedIncrementedQuantity = mockBeerDTO.getQuantity() + VALID_INCREMENT_BEER_QUANTITY;
+        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
+        givenWholeStockAtDefaultLocation(mockBeer);
+        when(beerRepository.updateQuantity(mockBeerDTO.getId(), mockBeerDTO.getQuantity(), expectedIncrementedQuantity)).thenReturn(1);
 
         // then
         BeerDTO incrementedBeer = beerService.increment(mockBeerDTO.getId(), VALID_INCREMENT_BEER_QUANTITY);
@@ -155,6 +241,45 @@ public class BeerServiceTest {
         assertThat(incrementedBeer.getQuantity()).isLessThanOrEqualTo(incrementedBeer.getMax());
     }
 
+    @Test
+    void whenQuantityIsIncrementedThenChangeEventShouldBePublished() throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        // given
+        BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer mockBeer = beerMapper.toModel(mockBeerDTO);
+        int expectedIncrementedQuantity = mockBeerDTO.getQuantity() + VALID_INCREMENT_BEER_QUANTITY;
+
+        // when
+        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
+        givenWholeStockAtDefaultLocation(mockBeer);
+        when(beerRepository.updateQuantity(mockBeerDTO.getId(), mockBeerDTO.getQuantity(), expectedIncrementedQuantity)).thenReturn(1);
+        beerService.increment(mockBeerDTO.getId(), VALID_INCREMENT_BEER_QUANTITY);
+
+        // then
+        assertThat(publishedEvents).containsExactly(new BeerChangeEvent(BeerChangeEvent.Kind.QUANTITY_CHANGED,
+                mockBeerDTO.getId(), mockBeerDTO.getName(), mockBeerDTO.getType(), mockBeerDTO.getMax(),
+                expectedIncrementedQuantity, VALID_INCREMENT_BEER_QUANTITY, StockLocation.DEFAULT, null, 1L));
+    }
+
+    @Test
+    void whenQuantityChangesConcurrentlyThenIncrementShouldRetryOnTheFreshQuantity() throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        // given
+        BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer staleBeer = beerMapper.toModel(mockBeerDTO);
+        Beer freshBeer = beerMapper.toModel(mockBeerDTO);
+        freshBeer.setQuantity(mockBeerDTO.getQuantity() + 5);
+        int expectedIncrementedQuantity = freshBeer.getQuantity() + VALID_DECREMENT_BEER_QUANTITY;
+
+        // when
+        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(staleBeer), Optional.of(freshBeer));
+        givenWholeStockAtDefaultLocation(freshBeer);
+        when(beerRepository.updateQuantity(mockBeerDTO.getId(), staleBeer.getQuantity(), staleBeer.getQuantity() + VALID_DECREMENT_BEER_QUANTITY)).thenReturn(0);
+        when(beerRepository.updateQuantity(mockBeerDTO.getId(), freshBeer.getQuantity(), expectedIncrementedQuantity)).thenReturn(1);
+
+        // then
+        BeerDTO incrementedBeer = beerService.increment(mockBeerDTO.getId(), VALID_DECREMENT_BEER_QUANTITY);
+        assertThat(incrementedBeer.getQuantity()).isEqualTo(expectedIncrementedQuantity);
+    }
+
     @Test
     void whenQuantityOfBeerToIncrementIsInformedAndIdDoesNotExistThenItShouldThrowException() {
         // given
@@ -181,15 +306,16 @@ public class BeerServiceTest {
     }
 
     @Test
-    void whenQuantityOfBeerToDecrementIsInformedThenItShouldBeSubtractedFromExistingQuantity() throws BeerNotFoundException, BeerStockExceededException {
+    void whenQuantityOfBeerToDecrementIsInformedThenItShouldBeSubtractedFromExistingQuantity() throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
         // given
         BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
         Beer mockBeer = beerMapper.toModel(mockBeerDTO);
 
         // when
-        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
-        when(beerRepository.save(mockBeer)).thenReturn(mockBeer);
         int expectedDecrementedQuantity = mockBeerDTO.getQuantity() - VALID_DECREMENT_BEER_QUANTITY;
+        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
+        givenWholeStockAtDefaultLocation(mockBeer);
+        when(beerRepository.updateQuantity(mockBeerDTO.getId(), mockBeerDTO.getQuantity(), expectedDecrementedQuantity)).thenReturn(1);
 
         // then
         BeerDTO decrementedBeer = beerService.decrement(mockBeerDTO.getId(), VALID_DECREMENT_BEER_QUANTITY);
@@ -221,4 +347,205 @@ public class BeerServiceTest {
         assertThatExceptionOfType(BeerStockExceededException.class)
                 .isThrownBy(() -> beerService.decrement(mockBeerDTO.getId(), INVALID_DECREMENT_BEER_QUANTITY));
     }
+
+    @Test
+    void whenStockIsReservedThenItShouldNotBeAvailableForDecrement() throws BeerNotFoundException, BeerStockExceededException, StockLocationNotFoundException {
+        // given
+        BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer mockBeer = beerMapper.toModel(mockBeerDTO);
+
+        // when
+        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
+        ReservationDTO reservationDTO = beerService.reserve(mockBeerDTO.getId(), new ReservationRequestDTO(4, 60));
+
+        // then
+        assertThat(reservationDTO.getQuantity()).isEqualTo(4);
+        assertThat(reservationRegistry.reservedQuantity(mockBeerDTO.getId())).isEqualTo(4);
+        assertThatExceptionOfType(BeerStockExceededException.class)
+                .isThrownBy(() -> beerService.decrement(mockBeerDTO.getId(), 7));
+        assertThatExceptionOfType(BeerStockExceededException.class)
+                .isThrownBy(() -> beerService.reserve(mockBeerDTO.getId(), new ReservationRequestDTO(7, null)));
+    }
+
+    @Test
+    void whenReservationIsCommittedThenReservedQuantityShouldBeDecremented() throws Exception {
+        // given
+        BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer mockBeer = beerMapper.toModel(mockBeerDTO);
+        int expectedDecrementedQuantity = mockBeerDTO.getQuantity() - 4;
+
+        // when
+        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
+        givenWholeStockAtDefaultLocation(mockBeer);
+        when(beerRepository.updateQuantity(mockBeerDTO.getId(), mockBeerDTO.getQuantity(), expectedDecrementedQuantity)).thenReturn(1);
+        ReservationDTO reservationDTO = beerService.reserve(mockBeerDTO.getId(), new ReservationRequestDTO(4, 60));
+        BeerDTO committedBeer = beerService.commitReservation(reservationDTO.getId());
+
+        // then
+        assertThat(committedBeer.getQuantity()).isEqualTo(expectedDecrementedQuantity);
+        assertThat(reservationRegistry.reservedQuantity(mockBeerDTO.getId())).isZero();
+        assertThatExceptionOfType(ReservationNotFoundException.class)
+                .isThrownBy(() -> beerService.commitReservation(reservationDTO.getId()));
+    }
+
+    @Test
+    void whenReservationIsCommittedFromALocationShortOfUnitsThenItShouldStayOpen() throws Exception {
+        // given
+        BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer mockBeer = beerMapper.toModel(mockBeerDTO);
+        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
+        when(beerStockRepository.findByBeerId(mockBeer.getId())).thenReturn(Arrays.asList(
+                new BeerStock(1L, mockBeer.getId(), StockLocation.DEFAULT, mockBeer.getQuantity() - 2),
+                new BeerStock(2L, mockBeer.getId(), "bar", 2)));
+        ReservationDTO reservationDTO = beerService.reserve(mockBeerDTO.getId(), new ReservationRequestDTO(4, 60));
+
+        // when
+        assertThatExceptionOfType(BeerStockExceededException.class)
+                .isThrownBy(() -> beerService.commitReservation(reservationDTO.getId(), "bar"));
+
+        // then
+        assertThat(reservationRegistry.reservedQuantity(mockBeerDTO.getId())).isEqualTo(4);
+        verify(beerRepository, never()).updateQuantity(anyLong(), anyInt(), anyInt());
+        assertThatExceptionOfType(BeerStockExceededException.class)
+                .isThrownBy(() -> beerService.reserve(mockBeerDTO.getId(), new ReservationRequestDTO(mockBeerDTO.getQuantity() - 3, 60)));
+        beerService.releaseReservation(reservationDTO.getId());
+        assertThat(reservationRegistry.reservedQuantity(mockBeerDTO.getId())).isZero();
+    }
+
+    @Test
+    void whenReservationIsReleasedThenStockShouldBeAvailableAgain() throws Exception {
+        // given
+        BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer mockBeer = beerMapper.toModel(mockBeerDTO);
+
+        // when
+        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
+        ReservationDTO reservationDTO = beerService.reserve(mockBeerDTO.getId(), new ReservationRequestDTO(10, 60));
+        beerService.releaseReservation(reservationDTO.getId());
+
+        // then
+        assertThat(reservationRegistry.reservedQuantity(mockBeerDTO.getId())).isZero();
+        verify(beerRepository, never()).updateQuantity(anyLong(), anyInt(), anyInt());
+        assertThatExceptionOfType(ReservationNotFoundException.class)
+                .isThrownBy(() -> beerService.releaseReservation(reservationDTO.getId()));
+    }
+
+    @Test
+    void whenQuantityIsIncrementedAtUnknownLocationThenExceptionShouldBeThrown() {
+        // given
+        BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer mockBeer = beerMapper.toModel(mockBeerDTO);
+
+        // when
+        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
+        givenWholeStockAtDefaultLocation(mockBeer);
+
+        // then
+        assertThatExceptionOfType(StockLocationNotFoundException.class)
+                .isThrownBy(() -> beerService.increment(mockBeerDTO.getId(), VALID_INCREMENT_BEER_QUANTITY, "cellar"));
+        verify(beerRepository, never()).updateQuantity(anyLong(), anyInt(), anyInt());
+    }
+
+    @Test
+    void whenQuantityToDecrementExceedsTheLocationStockThenExceptionShouldBeThrown() {
+        // given
+        BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer mockBeer = beerMapper.toModel(mockBeerDTO);
+
+        // when
+        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
+        when(beerStockRepository.findByBeerId(mockBeerDTO.getId())).thenReturn(Arrays.asList(
+                new BeerStock(1L, mockBeerDTO.getId(), StockLocation.DEFAULT, mockBeerDTO.getQuantity() - 2),
+                new BeerStock(2L, mockBeerDTO.getId(), "bar", 2)));
+
+        // then
+        assertThatExceptionOfType(BeerStockExceededException.class)
+                .isThrownBy(() -> beerService.decrement(mockBeerDTO.getId(), 3, "bar"));
+        verify(beerRepository, never()).updateQuantity(anyLong(), anyInt(), anyInt());
+    }
+
+    @Test
+    void whenStockIsTransferredThenLocationsShouldChangeAndQuantityShouldNot() throws Exception {
+        // given
+        BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer mockBeer = beerMapper.toModel(mockBeerDTO);
+        StockTransferDTO stockTransferDTO = new StockTransferDTO(StockLocation.DEFAULT, "bar", 4);
+
+        // when
+        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
+        givenWholeStockAtDefaultLocation(mockBeer);
+        when(stockLocationRepository.findTotalByName("bar")).thenReturn(Optional.of(new StockLocation("bar", 0)));
+        BeerStockDTO beerStockDTO = beerService.transfer(mockBeerDTO.getId(), stockTransferDTO);
+
+        // then
+        assertThat(beerStockDTO.getQuantity()).isEqualTo(mockBeerDTO.getQuantity());
+        assertThat(beerStockDTO.getLocations()).containsOnly(entry("bar", 4), entry(StockLocation.DEFAULT, mockBeerDTO.getQuantity() - 4));
+        verify(beerStockRepository).save(new BeerStock(null, mockBeerDTO.getId(), "bar", 4));
+        verify(beerRepository, never()).updateQuantity(anyLong(), anyInt(), anyInt());
+        assertThat(publishedEvents).containsExactly(BeerChangeEvent.stockTransferred(mockBeer, StockLocation.DEFAULT, "bar", 4, 1L));
+    }
+
+    @Test
+    void whenTransferExceedsTheSourceLocationStockThenExceptionShouldBeThrown() {
+        // given
+        BeerDTO mockBeerDTO = BeerDTOBuilder.builder().build().toBeerDTO();
+        Beer mockBeer = beerMapper.toModel(mockBeerDTO);
+        StockTransferDTO stockTransferDTO = new StockTransferDTO(StockLocation.DEFAULT, "bar", mockBeerDTO.getQuantity() + 1);
+
+        // when
+        when(beerRepository.findById(mockBeerDTO.getId())).thenReturn(Optional.of(mockBeer));
+        givenWholeStockAtDefaultLocation(mockBeer);
+        when(stockLocationRepository.findTotalByName("bar")).thenReturn(Optional.of(new StockLocation("bar", 0)));
+
+        // then
+        assertThatExceptionOfType(BeerStockExceededException.class)
+                .isThrownBy(() -> beerService.transfer(mockBeerDTO.getId(), stockTransferDTO));
+        assertThat(publishedEvents).isEmpty();
+    }
+
+    @Test
+    void whenIdsAreLookedUpThenOneQueryShouldAnswerInRequestOrderWithMissingMarkers() {
+        // given
+        Beer firstBeer = beerMapper.toModel(BeerDTOBuilder.builder().id(1L).name("Brahma").build().toBeerDTO());
+        Beer secondBeer = beerMapper.toModel(BeerDTOBuilder.builder().id(3L).name("Skol").build().toBeerDTO());
+
+        // when
+        when(beerRepository.findAllById(Arrays.asList(3L, 2L, 1L))).thenReturn(Arrays.asList(firstBeer, secondBeer));
+
+        // then
+        List<BeerLookupDTO> lookups = beerService.lookupByIds(Arrays.asList(3L, 2L, 1L, 3L));
+        assertThat(lookups).extracting(BeerLookupDTO::getId).containsExactly(3L, 2L, 1L, 3L);
+        assertThat(lookups).extracting(BeerLookupDTO::isFound).containsExactly(true, false, true, true);
+        assertThat(lookups.get(0).getBeer().getName()).isEqualTo("Skol");
+        assertThat(lookups.get(1).getBeer()).isNull();
+        verify(beerRepository, times(1)).findAllById(any());
+    }
+
+    @Test
+    void whenManyIdsAreLookedUpThenQueriesShouldBeChunked() {
+        // given
+        List<Long> ids = LongStream.rangeClosed(1, 2 * BeerService.LOOKUP_CHUNK_SIZE + 1).boxed().collect(Collectors.toList());
+
+        // when
+        when(beerRepository.findAllById(any())).thenReturn(Collections.emptyList());
+
+        // then
+        List<BeerLookupDTO> lookups = beerService.lookupByIds(ids);
+        assertThat(lookups).hasSize(ids.size()).noneMatch(BeerLookupDTO::isFound);
+        verify(beerRepository, times(3)).findAllById(any());
+    }
+
+    @Test
+    void whenNamesAreLookedUpThenMissingNamesShouldBeMarked() {
+        // given
+        Beer foundBeer = beerMapper.toModel(BeerDTOBuilder.builder().build().toBeerDTO());
+
+        // when
+        when(beerRepository.findByNameIn(Arrays.asList("Unknown", foundBeer.getName()))).thenReturn(Collections.singletonList(foundBeer));
+
+        // then
+        List<BeerLookupDTO> lookups = beerService.lookupByNames(Arrays.asList("Unknown", foundBeer.getName()));
+        assertThat(lookups).extracting(BeerLookupDTO::getName).containsExactly("Unknown", foundBeer.getName());
+        assertThat(lookups).extracting(BeerLookupDTO::isFound).containsExactly(false, true);
+    }
 }
@@ -0,0 +1,88 @@
+package one.digitalinnovation.beerstock.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.beerstock.exception.BeerNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+public class SingleFlightTest {
+
+    private static final int CALLERS = 16;
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void whenCallsForSameKeyOverlapThenLoaderShouldRunOnceAndResultBeShared() throws Exception {
+        // given
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        List<Future<String>> results = new ArrayList<>();
+
+        // when
+        results.add(executor.submit(() -> singleFlight.execute("Brahma", () -> {
+            executions.incrementAndGet();
+            loaderStarted.countDown();
+            releaseLoader.await();
+            return "result";
+        })));
+        loaderStarted.await();
+        for (int i = 1; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("Brahma", () -> {
+                executions.incrementAndGet();
+                return "other result";
+            })));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.coalescingRatio() < 1 - 1.0 / CALLERS && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+        releaseLoader.countDown();
+
+        // then
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        }
+        executor.shutdown();
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(singleFlight.coalescingRatio()).isEqualTo(1 - 1.0 / CALLERS);
+    }
+
+    @Test
+    void whenLoaderFailsThenCheckedExceptionShouldPropagateAndNextCallShouldRunAgain() throws Exception {
+        // then
+        assertThatExceptionOfType(BeerNotFoundException.class)
+                .isThrownBy(() -> singleFlight.execute("Brahma", () -> {
+                    throw new BeerNotFoundException("Brahma");
+                }));
+        assertThat(singleFlight.execute("Brahma", () -> "result")).isEqualTo("result");
+    }
+
+    @Test
+    void whenBoundToRegistryThenCoalescingMetricsShouldBeExposed() throws Exception {
+        // given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        singleFlight.bindTo(meterRegistry, "findByName");
+
+        // when
+        singleFlight.execute("Brahma", () -> "result");
+
+        // then
+        assertThat(meterRegistry.get("beerstock.singleflight.calls").tag("operation", "findByName").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("beerstock.singleflight.executions").tag("operation", "findByName").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("beerstock.singleflight.coalescing.ratio").tag("operation", "findByName").gauge().value()).isZero();
+    }
+}
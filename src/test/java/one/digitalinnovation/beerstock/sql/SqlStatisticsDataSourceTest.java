@@ -0,0 +1,93 @@
+package one.digitalinnovation.beerstock.sql;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SqlStatisticsDataSourceTest {
+
+    DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:sql-statistics;DB_CLOSE_DELAY=-1");
+        dataSource = SqlStatisticsDataSource.wrap(h2);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists item (id int primary key)");
+            statement.execute("delete from item");
+        }
+    }
+
+    @Test
+    void whenStatementsAreExecutedThenEachShouldBeCounted() throws Exception {
+        // given
+        SqlStatistics statistics = new SqlStatistics();
+
+        // when
+        try (SqlStatistics.Scope ignored = SqlStatistics.bind(statistics);
+             Connection connection = dataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement("insert into item (id) values (?)")) {
+            insert.setInt(1, 1);
+            insert.executeUpdate();
+            try (Statement select = connection.createStatement(); ResultSet resultSet = select.executeQuery("select count(*) from item")) {
+                resultSet.next();
+            }
+        }
+
+        // then
+        assertThat(statistics.getStatements()).isEqualTo(2);
+        assertThat(statistics.getTime()).isPositive();
+    }
+
+    @Test
+    void whenBatchIsExecutedThenItShouldCountAsOneStatement() throws Exception {
+        // given
+        SqlStatistics statistics = new SqlStatistics();
+
+        // when
+        try (SqlStatistics.Scope ignored = SqlStatistics.bind(statistics);
+             Connection connection = dataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement("insert into item (id) values (?)")) {
+            for (int id = 1; id <= 10; id++) {
+                insert.setInt(1, id);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+
+        // then
+        assertThat(statistics.getStatements()).isEqualTo(1);
+    }
+
+    @Test
+    void whenScopeIsClosedThenStatementsShouldNoLongerBeCounted() throws Exception {
+        // given
+        SqlStatistics statistics = new SqlStatistics();
+        try (SqlStatistics.Scope ignored = SqlStatistics.bind(statistics)) {
+            assertThat(SqlStatistics.current()).isSameAs(statistics);
+        }
+
+        // when
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("select 1");
+        }
+
+        // then
+        assertThat(SqlStatistics.current()).isNull();
+        assertThat(statistics.getStatements()).isZero();
+    }
+
+    @Test
+    void whenDataSourceIsWrappedTwiceThenTheSameWrapperShouldBeReturned() {
+        assertThat(SqlStatisticsDataSource.wrap(dataSource)).isSameAs(dataSource);
+    }
+}
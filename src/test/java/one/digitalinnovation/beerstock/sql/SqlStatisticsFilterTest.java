@@ -0,0 +1,48 @@
+package one.digitalinnovation.beerstock.sql;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SqlStatisticsFilterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FilterChain chain = (request, response) -> {
+        SqlStatistics.current().record(1_000_000);
+        response.getWriter().write("[]");
+    };
+
+    @Test
+    void whenResponseHeadersAreOffThenStatisticsShouldOnlyBeRecorded() throws Exception {
+        // given
+        SqlStatisticsFilter filter = new SqlStatisticsFilter(meterRegistry, false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // when
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/beers"), response, chain);
+
+        // then
+        assertThat(response.getHeader(SqlStatisticsFilter.STATEMENTS_HEADER)).isNull();
+        assertThat(response.getHeader(SqlStatisticsFilter.TIME_HEADER)).isNull();
+        assertThat(meterRegistry.summary("beerstock.http.sql.statements", "method", "GET", "uri", "UNKNOWN").count()).isEqualTo(1);
+    }
+
+    @Test
+    void whenResponseHeadersAreOnThenStatisticsShouldBeReturned() throws Exception {
+        // given
+        SqlStatisticsFilter filter = new SqlStatisticsFilter(meterRegistry, true);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // when
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/beers"), response, chain);
+
+        // then
+        assertThat(response.getHeader(SqlStatisticsFilter.STATEMENTS_HEADER)).isEqualTo("1");
+        assertThat(response.getHeader(SqlStatisticsFilter.TIME_HEADER)).isEqualTo("1.000");
+    }
+}
@@ -0,0 +1,205 @@
+package one.digitalinnovation.beerstock.storage;
+
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.mapper.BeerMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.entry;
+
+public class InMemoryBeerStoreTest {
+
+    private static final int THREADS = 8;
+    private static final int INCREMENTS_PER_THREAD = 10_000;
+
+    private final InMemoryBeerStore beerStore = new InMemoryBeerStore();
+
+    @Test
+    void whenBeerIsCreatedThenItShouldBeFoundByIdAndName() {
+        // given
+        Beer beer = newBeer("Brahma", 50, 10);
+
+        // when
+        Beer createdBeer = beerStore.create(beer);
+
+        // then
+        assertThat(createdBeer.getId()).isEqualTo(1L);
+        assertThat(beerStore.findById(createdBeer.getId())).contains(createdBeer);
+        assertThat(beerStore.findByName("Brahma")).contains(createdBeer);
+        assertThat(beerStore.findAll()).containsExactly(createdBeer);
+    }
+
+    @Test
+    void whenBeerWithSameNameIsCreatedThenExceptionShouldBeThrown() {
+        // given
+        beerStore.create(newBeer("Brahma", 50, 10));
+
+        // then
+        assertThatExceptionOfType(DataIntegrityViolationException.class)
+                .isThrownBy(() -> beerStore.create(newBeer("Brahma", 50, 10)));
+    }
+
+    @Test
+    void whenReturnedBeerIsChangedThenStoredBeerShouldNotChange() {
+        // given
+        Beer createdBeer = beerStore.create(newBeer("Brahma", 50, 10));
+
+        // when
+        createdBeer.setQuantity(40);
+
+        // then
+        assertThat(beerStore.findById(createdBeer.getId()).map(Beer::getQuantity)).contains(10);
+    }
+
+    @Test
+    void whenExpectedQuantityMatchesThenQuantityShouldBeSet() {
+        // given
+        Beer createdBeer = beerStore.create(newBeer("Brahma", 50, 10));
+
+        // then
+        assertThat(beerStore.compareAndSetStock(createdBeer.getId(), StockLocation.DEFAULT, 9, 10, 10)).isFalse();
+        assertThat(beerStore.compareAndSetStock(createdBeer.getId(), StockLocation.DEFAULT, 10, 9, 10)).isFalse();
+        assertThat(beerStore.compareAndSetStock(createdBeer.getId(), StockLocation.DEFAULT, 10, 10, 10)).isTrue();
+        assertThat(beerStore.findById(createdBeer.getId()).map(Beer::getQuantity)).contains(20);
+        assertThat(beerStore.findStock(createdBeer.getId())).containsExactly(entry(StockLocation.DEFAULT, 20));
+    }
+
+    @Test
+    void whenStockIsTransferredThenLocationsShouldChangeAndTotalsFollow() {
+        // given
+        Beer createdBeer = beerStore.create(newBeer("Brahma", 50, 10));
+        beerStore.createLocation("bar");
+
+        // when
+        boolean transferred = beerStore.compareAndTransferStock(createdBeer.getId(), StockLocation.DEFAULT, 10, "bar", 0, 4);
+
+        // then
+        assertThat(transferred).isTrue();
+        assertThat(beerStore.compareAndTransferStock(createdBeer.getId(), StockLocation.DEFAULT, 10, "bar", 0, 4)).isFalse();
+        assertThat(beerStore.findById(createdBeer.getId()).map(Beer::getQuantity)).contains(10);
+        assertThat(beerStore.findStock(createdBeer.getId())).containsExactly(entry("bar", 4), entry(StockLocation.DEFAULT, 6));
+        assertThat(beerStore.findAllLocations()).containsExactly(new StockLocation("bar", 4), new StockLocation(StockLocation.DEFAULT, 6));
+    }
+
+    @Test
+    void whenSavedQuantityIsLowerThenItShouldBeTakenFromDefaultFirstThenOtherLocations() {
+        // given
+        Beer createdBeer = beerStore.create(newBeer("Brahma", 50, 10));
+        beerStore.createLocation("bar");
+        beerStore.createLocation("cellar");
+        beerStore.compareAndTransferStock(createdBeer.getId(), StockLocation.DEFAULT, 10, "bar", 0, 4);
+        beerStore.compareAndTransferStock(createdBeer.getId(), StockLocation.DEFAULT, 6, "cellar", 0, 3);
+
+        // when
+        Beer changedBeer = beerStore.findById(createdBeer.getId()).get();
+        changedBeer.setQuantity(2);
+        beerStore.saveAll(Collections.singletonList(changedBeer));
+
+        // then
+        assertThat(beerStore.findById(createdBeer.getId()).map(Beer::getQuantity)).contains(2);
+        assertThat(beerStore.findStock(createdBeer.getId()))
+                .containsExactly(entry("bar", 0), entry("cellar", 2), entry(StockLocation.DEFAULT, 0));
+        assertThat(beerStore.findAllLocations()).containsExactly(new StockLocation("bar", 0),
+                new StockLocation("cellar", 2), new StockLocation(StockLocation.DEFAULT, 0));
+    }
+
+    @Test
+    void whenLocationIsRegisteredTwiceThenExceptionShouldBeThrown() {
+        // given
+        beerStore.createLocation("bar");
+
+        // then
+        assertThatExceptionOfType(DataIntegrityViolationException.class)
+                .isThrownBy(() -> beerStore.createLocation("bar"));
+        assertThat(beerStore.findLocation("cellar")).isEmpty();
+    }
+
+    @Test
+    void whenBeerIsDeletedThenItShouldNotBeFoundNorUpdated() {
+        // given
+        Beer createdBeer = beerStore.create(newBeer("Brahma", 50, 10));
+
+        // when
+        beerStore.deleteById(createdBeer.getId());
+
+        // then
+        assertThat(beerStore.findById(createdBeer.getId())).isEmpty();
+        assertThat(beerStore.findByName("Brahma")).isEmpty();
+        assertThat(beerStore.findAll()).isEmpty();
+        assertThat(beerStore.compareAndSetStock(createdBeer.getId(), StockLocation.DEFAULT, 10, 10, 10)).isFalse();
+        assertThat(beerStore.findLocation(StockLocation.DEFAULT).map(StockLocation::getQuantity)).contains(0L);
+        assertThat(beerStore.create(newBeer("Brahma", 50, 10)).getId()).isEqualTo(2L);
+    }
+
+    @Test
+    void whenDeletedBeerIsSavedThenItShouldBeStoredUnderANewId() {
+        // given
+        Beer createdBeer = beerStore.create(newBeer("Brahma", 50, 10));
+        beerStore.deleteById(createdBeer.getId());
+        createdBeer.setQuantity(20);
+
+        // when
+        List<Beer> savedBeers = beerStore.saveAll(List.of(createdBeer));
+
+        // then
+        assertThat(savedBeers).extracting(Beer::getId).containsExactly(2L);
+        assertThat(beerStore.findById(createdBeer.getId())).isEmpty();
+        assertThat(beerStore.findByName("Brahma").map(Beer::getQuantity)).contains(20);
+        assertThat(beerStore.findLocation(StockLocation.DEFAULT).map(StockLocation::getQuantity)).contains(20L);
+    }
+
+    @Test
+    void whenManyThreadsIncrementConcurrentlyThenNoUpdateShouldBeLost() throws Exception {
+        // given
+        int max = THREADS * INCREMENTS_PER_THREAD;
+        Long id = beerStore.create(newBeer("Brahma", max, 0)).getId();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        Callable<Void> incrementer = () -> {
+            for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+                boolean updated;
+                do {
+                    int current = beerStore.findById(id).orElseThrow().getQuantity();
+                    int currentAtLocation = beerStore.findStock(id).getOrDefault(StockLocation.DEFAULT, 0);
+                    updated = beerStore.compareAndSetStock(id, StockLocation.DEFAULT, current, currentAtLocation, 1);
+                } while (!updated);
+            }
+            return null;
+        };
+
+        // when
+        List<Future<Void>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(incrementer));
+        }
+        for (Future<Void> result : results) {
+            result.get();
+        }
+        executor.shutdown();
+
+        // then
+        assertThat(beerStore.findById(id).map(Beer::getQuantity)).contains(max);
+        assertThat(beerStore.findStock(id)).containsExactly(entry(StockLocation.DEFAULT, max));
+    }
+
+    private static Beer newBeer(String name, int max, int quantity) {
+        return BeerMapper.INSTANCE.toModel(BeerDTOBuilder.builder()
+                .id(null)
+                .name(name)
+                .max(max)
+                .quantity(quantity)
+                .build()
+                .toBeerDTO());
+    }
+}
@@ -0,0 +1,45 @@
+package one.digitalinnovation.beerstock.storage;
+
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:beerstock-jpa;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "beerstock.ratelimit.enabled=false"
+})
+public class JpaBeerStoreTest {
+
+    @Autowired
+    JpaBeerStore store;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    void whenReturnedBeerIsChangedInsideATransactionThenTheStoredBeerShouldNotChange() {
+        // given
+        Beer beer = store.create(new Beer(null, "Jpa " + UUID.randomUUID(), "Brand", 100, 10, BeerType.LAGER));
+
+        // when
+        transactionTemplate.execute(status -> {
+            store.findById(beer.getId()).get().setQuantity(99);
+            store.findByName(beer.getName()).get().setName("Renamed " + UUID.randomUUID());
+            store.findAll().forEach(found -> found.setMax(1));
+            return null;
+        });
+
+        // then
+        Beer stored = store.findById(beer.getId()).get();
+        assertThat(stored.getName()).isEqualTo(beer.getName());
+        assertThat(stored.getQuantity()).isEqualTo(10);
+        assertThat(stored.getMax()).isEqualTo(100);
+    }
+}
@@ -0,0 +1,136 @@
+package one.digitalinnovation.beerstock.storage;
+
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.BeerStockRepository;
+import one.digitalinnovation.beerstock.repository.StockLocationRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.entry;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:beerstock-mapped;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "beerstock.ratelimit.enabled=false"
+})
+public class MappedBeerStoreTest {
+
+    private static final int CAPACITY = 4096;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    BeerStockRepository beerStockRepository;
+
+    @Autowired
+    StockLocationRepository stockLocationRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void whenProcessDiesBeforeAFlushThenTheTableShouldCatchTheDatabaseUpOnStartup() throws Exception {
+        // given
+        Path file = tempDir.resolve("stock.dat");
+        MappedBeerStore crashedRun = newStore(file, CAPACITY);
+        Beer beer = crashedRun.create(newBeer(10));
+        assertThat(crashedRun.compareAndSetStock(beer.getId(), StockLocation.DEFAULT, 10, 10, -3)).isTrue();
+        assertThat(databaseQuantityOf(beer)).isEqualTo(10);
+
+        // when
+        MappedBeerStore secondRun = newStore(file, CAPACITY);
+
+        // then
+        assertThat(databaseQuantityOf(beer)).isEqualTo(7);
+        assertThat(beerStockRepository.findByBeerId(beer.getId()))
+                .extracting(stock -> entry(stock.getLocation(), stock.getQuantity()))
+                .containsExactly(entry(StockLocation.DEFAULT, 7));
+        assertThat(secondRun.findById(beer.getId()).get().getQuantity()).isEqualTo(7);
+        assertThat(secondRun.compareAndSetStock(beer.getId(), StockLocation.DEFAULT, 7, 7, 1)).isTrue();
+        secondRun.close();
+        assertThat(databaseQuantityOf(beer)).isEqualTo(8);
+    }
+
+    @Test
+    void whenStockChangeWouldExceedMaxThenTheTableShouldRefuseIt() throws Exception {
+        // given
+        MappedBeerStore store = newStore(tempDir.resolve("stock.dat"), CAPACITY);
+        Beer beer = store.create(newBeer(90));
+
+        // when
+        boolean exceeded = store.compareAndSetStock(beer.getId(), StockLocation.DEFAULT, 90, 90, 11);
+        boolean filled = store.compareAndSetStock(beer.getId(), StockLocation.DEFAULT, 90, 90, 10);
+
+        // then
+        assertThat(exceeded).isFalse();
+        assertThat(filled).isTrue();
+        assertThat(store.findById(beer.getId())).map(Beer::getQuantity).contains(100);
+        assertThat(store.findStock(beer.getId())).containsExactly(entry(StockLocation.DEFAULT, 100));
+        store.close();
+    }
+
+    @Test
+    void whenBeerIsRenamedThenItShouldOnlyBeFoundByItsNewName() throws Exception {
+        // given
+        MappedBeerStore store = newStore(tempDir.resolve("stock.dat"), CAPACITY);
+        Beer beer = store.create(newBeer(10));
+        String oldName = beer.getName();
+
+        // when
+        Beer renamed = store.findById(beer.getId()).get();
+        renamed.setName("Mapped " + UUID.randomUUID());
+        store.saveAll(Collections.singletonList(renamed));
+
+        // then
+        assertThat(store.findByName(oldName)).isEmpty();
+        assertThat(store.findByName(renamed.getName())).map(Beer::getId).contains(beer.getId());
+        assertThat(store.findAllByNameIn(Collections.singletonList(renamed.getName()))).extracting(Beer::getQuantity).containsExactly(10);
+        store.close();
+    }
+
+    @Test
+    void whenCapacityChangesThenTheStoreShouldNotOpen() throws Exception {
+        // given
+        Path file = tempDir.resolve("stock.dat");
+        newStore(file, CAPACITY).close();
+
+        // then
+        assertThatIllegalStateException().isThrownBy(() -> newStore(file, CAPACITY * 2));
+    }
+
+    private MappedBeerStore newStore(Path file, int capacity) throws IOException {
+        MappedBeerStore store = new MappedBeerStore(beerRepository, beerStockRepository, stockLocationRepository,
+                transactionTemplate, dataSource, file.toString(), capacity, 3600000);
+        store.open();
+        return store;
+    }
+
+    private int databaseQuantityOf(Beer beer) {
+        return new JdbcTemplate(dataSource).queryForObject("select quantity from beer where id = ?", Integer.class, beer.getId());
+    }
+
+    private static Beer newBeer(int quantity) {
+        return new Beer(null, "Mapped " + UUID.randomUUID(), "Brand", 100, quantity, BeerType.LAGER);
+    }
+}
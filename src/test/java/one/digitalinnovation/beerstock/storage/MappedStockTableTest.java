@@ -0,0 +1,120 @@
+package one.digitalinnovation.beerstock.storage;
+
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+public class MappedStockTableTest {
+
+    private static final int CAPACITY = 1024;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void whenTableIsReopenedThenStockShouldSurvive() throws IOException {
+        // given
+        Path file = tempDir.resolve("stock.dat");
+        try (MappedStockTable table = MappedStockTable.open(file, CAPACITY)) {
+            table.put(1L, 50, 10);
+            assertThat(table.compareAndSetQuantity(1L, 10, 35)).isTrue();
+        }
+
+        // when
+        try (MappedStockTable reopened = MappedStockTable.open(file, CAPACITY)) {
+            MappedStockTable.RecoveryReport report = reopened.recover(Map.of(1L, beer(1L, 50, 10)));
+
+            // then
+            assertThat(report.isFormatted()).isFalse();
+            assertThat(report.getVerified()).isEqualTo(1);
+            assertThat(reopened.quantityOf(1L)).isEqualTo(35);
+            assertThat(reopened.maxOf(1L)).isEqualTo(50);
+        }
+    }
+
+    @Test
+    void whenNewQuantityLeavesZeroToMaxThenQuantityShouldNotChange() throws IOException {
+        try (MappedStockTable table = MappedStockTable.open(tempDir.resolve("stock.dat"), CAPACITY)) {
+            // given
+            table.put(5L, 50, 10);
+
+            // then
+            assertThat(table.compareAndSetQuantity(5L, 10, 51)).isFalse();
+            assertThat(table.compareAndSetQuantity(5L, 10, -1)).isFalse();
+            assertThat(table.compareAndSetQuantity(5L, 10, 50)).isTrue();
+            assertThat(table.quantityOf(5L)).isEqualTo(50);
+        }
+    }
+
+    @Test
+    void whenExpectedQuantityDoesNotMatchThenQuantityShouldNotChange() throws IOException {
+        try (MappedStockTable table = MappedStockTable.open(tempDir.resolve("stock.dat"), CAPACITY)) {
+            // given
+            table.put(3L, 50, 10);
+
+            // then
+            assertThat(table.compareAndSetQuantity(3L, 11, 20)).isFalse();
+            assertThat(table.compareAndSetQuantity(4L, 0, 20)).isFalse();
+            assertThat(table.quantityOf(3L)).isEqualTo(10);
+        }
+    }
+
+    @Test
+    void whenRecoveringThenMissingInvalidAndOrphanRecordsShouldBeReconciledWithCatalog() throws IOException {
+        // given
+        Path file = tempDir.resolve("stock.dat");
+        try (MappedStockTable table = MappedStockTable.open(file, CAPACITY)) {
+            table.put(1L, 50, 10);
+            table.put(2L, 50, 80);
+            table.put(3L, 50, 5);
+        }
+
+        // when
+        try (MappedStockTable reopened = MappedStockTable.open(file, CAPACITY)) {
+            MappedStockTable.RecoveryReport report = reopened.recover(Map.of(
+                    1L, beer(1L, 50, 0),
+                    2L, beer(2L, 50, 20),
+                    4L, beer(4L, 60, 30)));
+
+            // then
+            assertThat(report.getVerified()).isEqualTo(1);
+            assertThat(report.getRepaired()).isEqualTo(1);
+            assertThat(report.getSeeded()).isEqualTo(1);
+            assertThat(report.getCleared()).isEqualTo(1);
+            assertThat(reopened.quantityOf(1L)).isEqualTo(10);
+            assertThat(reopened.quantityOf(2L)).isEqualTo(20);
+            assertThat(reopened.contains(3L)).isFalse();
+            assertThat(reopened.quantityOf(4L)).isEqualTo(30);
+            assertThat(reopened.maxOf(4L)).isEqualTo(60);
+        }
+    }
+
+    @Test
+    void whenCapacityChangesThenTableShouldNotBeOpened() throws IOException {
+        // given
+        Path file = tempDir.resolve("stock.dat");
+        try (MappedStockTable table = MappedStockTable.open(file, CAPACITY)) {
+            table.put(1L, 50, 10);
+        }
+
+        // then
+        assertThatIllegalStateException().isThrownBy(() -> MappedStockTable.open(file, CAPACITY * 2))
+                .withMessageContaining("capacity " + CAPACITY);
+        try (MappedStockTable reopened = MappedStockTable.open(file, CAPACITY)) {
+            assertThat(reopened.recover(Map.of(1L, beer(1L, 50, 40))).isFormatted()).isFalse();
+            assertThat(reopened.quantityOf(1L)).isEqualTo(10);
+        }
+    }
+
+    private static Beer beer(Long id, int max, int quantity) {
+        return new Beer(id, "Beer " + id, "Ambev", max, quantity, BeerType.LAGER);
+    }
+}
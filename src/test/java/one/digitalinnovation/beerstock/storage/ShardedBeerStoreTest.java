@@ -0,0 +1,153 @@
+package one.digitalinnovation.beerstock.storage;
+
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.entry;
+
+public class ShardedBeerStoreTest {
+
+    private static final int SHARDS = 3;
+
+    private final ShardedBeerStore beerStore = new ShardedBeerStore(shardDataSources());
+
+    @AfterEach
+    void tearDown() throws IOException {
+        beerStore.close();
+    }
+
+    @Test
+    void whenBeersAreCreatedThenTheyShouldBeSpreadAcrossShardsAndFoundByIdAndName() {
+        // given
+        List<Beer> createdBeers = IntStream.range(0, 30)
+                .mapToObj(i -> beerStore.create(newBeer("Beer " + i, 10)))
+                .collect(Collectors.toList());
+
+        // then
+        assertThat(createdBeers.stream().map(beer -> beer.getId() % SHARDS).distinct()).hasSize(SHARDS);
+        for (Beer createdBeer : createdBeers) {
+            assertThat(beerStore.findById(createdBeer.getId())).contains(createdBeer);
+            assertThat(beerStore.findByName(createdBeer.getName())).contains(createdBeer);
+        }
+        assertThat(beerStore.findAll()).containsExactlyInAnyOrderElementsOf(createdBeers)
+                .isSortedAccordingTo((first, second) -> Long.compare(first.getId(), second.getId()));
+    }
+
+    @Test
+    void whenBeerWithSameNameIsCreatedThenExceptionShouldBeThrown() {
+        // given
+        beerStore.create(newBeer("Brahma", 10));
+
+        // then
+        assertThatExceptionOfType(DataIntegrityViolationException.class)
+                .isThrownBy(() -> beerStore.create(newBeer("Brahma", 10)));
+    }
+
+    @Test
+    void whenNamesAreLookedUpThenEachShardShouldBeQueried() {
+        // given
+        IntStream.range(0, 12).forEach(i -> beerStore.create(newBeer("Beer " + i, i)));
+
+        // when
+        List<Beer> foundBeers = beerStore.findAllByNameIn(Arrays.asList("Beer 1", "Beer 5", "Beer 9", "Unknown"));
+
+        // then
+        assertThat(foundBeers).extracting(Beer::getName).containsExactlyInAnyOrder("Beer 1", "Beer 5", "Beer 9");
+    }
+
+    @Test
+    void whenIdsAreLookedUpThenEachOwningShardShouldBeQueried() {
+        // given
+        List<Long> ids = new ArrayList<>();
+        IntStream.range(0, 12).forEach(i -> ids.add(beerStore.create(newBeer("Beer " + i, i)).getId()));
+
+        // when
+        List<Beer> foundBeers = beerStore.findAllById(Arrays.asList(ids.get(2), ids.get(7), ids.get(11), 999_999L, -1L));
+
+        // then
+        assertThat(foundBeers).extracting(Beer::getName).containsExactlyInAnyOrder("Beer 2", "Beer 7", "Beer 11");
+    }
+
+    @Test
+    void whenBeersAreSavedThenNewOnesShouldBeInsertedAndExistingOnesUpdatedInOrder() {
+        // given
+        Beer existingBeer = beerStore.create(newBeer("Existing", 10));
+        existingBeer.setQuantity(42);
+        List<Beer> beersToSave = new ArrayList<>();
+        beersToSave.add(newBeer("New 1", 1));
+        beersToSave.add(existingBeer);
+        beersToSave.add(newBeer("New 2", 2));
+
+        // when
+        List<Beer> savedBeers = beerStore.saveAll(beersToSave);
+
+        // then
+        assertThat(savedBeers).extracting(Beer::getName).containsExactly("New 1", "Existing", "New 2");
+        assertThat(savedBeers).allMatch(beer -> beer.getId() != null);
+        assertThat(beerStore.findById(existingBeer.getId()).map(Beer::getQuantity)).contains(42);
+        assertThat(beerStore.findAll()).hasSize(3);
+    }
+
+    @Test
+    void whenQuantityIsComparedAndSetThenOnlyTheExpectedQuantityShouldBeReplaced() {
+        // given
+        Beer createdBeer = beerStore.create(newBeer("Brahma", 10));
+
+        // then
+        assertThat(beerStore.compareAndSetStock(createdBeer.getId(), StockLocation.DEFAULT, 9, 10, 10)).isFalse();
+        assertThat(beerStore.compareAndSetStock(createdBeer.getId(), StockLocation.DEFAULT, 10, 10, 10)).isTrue();
+        assertThat(beerStore.findById(createdBeer.getId()).map(Beer::getQuantity)).contains(20);
+
+        beerStore.deleteById(createdBeer.getId());
+        assertThat(beerStore.findById(createdBeer.getId())).isEmpty();
+        assertThat(beerStore.compareAndSetStock(createdBeer.getId(), StockLocation.DEFAULT, 20, 20, 10)).isFalse();
+    }
+
+    @Test
+    void whenStockIsTransferredThenLocationTotalsShouldBeSummedAcrossShards() {
+        // given
+        beerStore.createLocation("bar");
+        List<Beer> createdBeers = IntStream.range(0, SHARDS)
+                .mapToObj(i -> beerStore.create(newBeer("Beer " + i, 10)))
+                .collect(Collectors.toList());
+
+        // when
+        for (Beer createdBeer : createdBeers) {
+            assertThat(beerStore.compareAndTransferStock(createdBeer.getId(), StockLocation.DEFAULT, 10, "bar", 0, 3)).isTrue();
+        }
+
+        // then
+        assertThat(beerStore.findStock(createdBeers.get(0).getId())).containsExactly(entry("bar", 3), entry(StockLocation.DEFAULT, 7));
+        assertThat(beerStore.findAllLocations()).containsExactly(new StockLocation("bar", 9), new StockLocation(StockLocation.DEFAULT, 21));
+        assertThat(beerStore.findLocation("bar").map(StockLocation::getQuantity)).contains(9L);
+        assertThatExceptionOfType(DataIntegrityViolationException.class)
+                .isThrownBy(() -> beerStore.createLocation("bar"));
+    }
+
+    private static List<DataSource> shardDataSources() {
+        String database = UUID.randomUUID().toString();
+        return IntStream.range(0, SHARDS)
+                .mapToObj(i -> new DriverManagerDataSource("jdbc:h2:mem:" + database + "-" + i + ";DB_CLOSE_DELAY=-1", "sa", ""))
+                .collect(Collectors.toList());
+    }
+
+    private static Beer newBeer(String name, int quantity) {
+        return new Beer(null, name, "Brand", 50, quantity, BeerType.LAGER);
+    }
+}
@@ -0,0 +1,154 @@
+package one.digitalinnovation.beerstock.storage;
+
+import one.digitalinnovation.beerstock.entity.Beer;
+import one.digitalinnovation.beerstock.entity.StockLocation;
+import one.digitalinnovation.beerstock.enums.BeerType;
+import one.digitalinnovation.beerstock.repository.BeerRepository;
+import one.digitalinnovation.beerstock.repository.BeerStockRepository;
+import one.digitalinnovation.beerstock.repository.StockLocationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+@SpringBootTest(properties = {
+        "beerstock.storage.type=write-behind",
+        "beerstock.storage.write-behind.max-staleness-millis=3600000",
+        "spring.datasource.url=jdbc:h2:mem:beerstock-write-behind;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+        "beerstock.ratelimit.enabled=false"
+})
+public class WriteBehindBeerStoreTest {
+
+    @Autowired
+    WriteBehindBeerStore beerStore;
+
+    @Autowired
+    BeerRepository beerRepository;
+
+    @Autowired
+    BeerStockRepository beerStockRepository;
+
+    @Autowired
+    StockLocationRepository stockLocationRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Test
+    void whenStockChangesThenItShouldBeVisibleAtOnceAndReachTheDatabaseOnFlush() {
+        // given
+        Beer beer = beerStore.create(newBeer(10));
+        beerStore.createLocation("write-behind-bar-" + beer.getId());
+        String bar = "write-behind-bar-" + beer.getId();
+        long defaultTotal = beerStore.findLocation(StockLocation.DEFAULT).get().getQuantity();
+
+        // when
+        assertThat(beerStore.compareAndSetStock(beer.getId(), StockLocation.DEFAULT, 10, 10, 5)).isTrue();
+        assertThat(beerStore.compareAndTransferStock(beer.getId(), StockLocation.DEFAULT, 15, bar, 0, 4)).isTrue();
+        assertThat(beerStore.compareAndSetStock(beer.getId(), StockLocation.DEFAULT, 10, 10, 5)).isFalse();
+
+        // then
+        assertThat(beerStore.findById(beer.getId()).get().getQuantity()).isEqualTo(15);
+        assertThat(beerStore.findStock(beer.getId())).containsOnly(entry(StockLocation.DEFAULT, 11), entry(bar, 4));
+        assertThat(databaseQuantityOf(beer)).isEqualTo(10);
+        assertThat(beerStore.pendingBeers()).isGreaterThanOrEqualTo(1);
+
+        beerStore.flush();
+        assertThat(beerStore.pendingBeers()).isZero();
+        assertThat(databaseQuantityOf(beer)).isEqualTo(15);
+        assertThat(beerStockRepository.findByBeerId(beer.getId()))
+                .extracting(stock -> entry(stock.getLocation(), stock.getQuantity()))
+                .containsExactlyInAnyOrder(entry(StockLocation.DEFAULT, 11), entry(bar, 4));
+        assertThat(stockLocationRepository.findTotalByName(bar).get().getQuantity()).isEqualTo(4);
+        assertThat(beerStore.findLocation(StockLocation.DEFAULT).get().getQuantity()).isEqualTo(defaultTotal + 1);
+    }
+
+    @Test
+    void whenStoreIsClosedThenPendingChangesShouldBeFlushedAndReloadedOnStartup() throws Exception {
+        // given
+        WriteBehindBeerStore firstRun = newStore(3600000);
+        Beer beer = firstRun.create(newBeer(10));
+        firstRun.compareAndSetStock(beer.getId(), StockLocation.DEFAULT, 10, 10, -3);
+
+        // when
+        firstRun.close();
+        WriteBehindBeerStore secondRun = newStore(3600000);
+
+        // then
+        assertThat(databaseQuantityOf(beer)).isEqualTo(7);
+        assertThat(secondRun.findById(beer.getId()).get().getQuantity()).isEqualTo(7);
+        assertThat(secondRun.findStock(beer.getId())).containsOnly(entry(StockLocation.DEFAULT, 7));
+        assertThat(secondRun.compareAndSetStock(beer.getId(), StockLocation.DEFAULT, 7, 7, 1)).isTrue();
+        secondRun.close();
+    }
+
+    @Test
+    void whenMaxStalenessPassesThenChangesShouldBeFlushedInTheBackground() throws Exception {
+        // given
+        WriteBehindBeerStore store = newStore(20);
+        Beer beer = store.create(newBeer(10));
+
+        // when
+        store.compareAndSetStock(beer.getId(), StockLocation.DEFAULT, 10, 10, 2);
+
+        // then
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (databaseQuantityOf(beer) != 12 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(databaseQuantityOf(beer)).isEqualTo(12);
+        store.close();
+    }
+
+    @Test
+    void whenBeerWithPendingChangesIsReplacedOrDeletedThenStockShouldStayConsistent() {
+        // given
+        Beer replaced = beerStore.create(newBeer(10));
+        Beer deleted = beerStore.create(newBeer(10));
+        beerStore.compareAndSetStock(replaced.getId(), StockLocation.DEFAULT, 10, 10, 5);
+        beerStore.compareAndSetStock(deleted.getId(), StockLocation.DEFAULT, 10, 10, 5);
+        long defaultTotal = beerStore.findLocation(StockLocation.DEFAULT).get().getQuantity();
+
+        // when
+        Beer replacement = beerStore.findById(replaced.getId()).get();
+        replacement.setQuantity(20);
+        beerStore.saveAll(Collections.singletonList(replacement));
+        beerStore.deleteById(deleted.getId());
+
+        // then
+        assertThat(beerStore.findById(replaced.getId()).get().getQuantity()).isEqualTo(20);
+        assertThat(beerStore.findStock(replaced.getId())).containsOnly(entry(StockLocation.DEFAULT, 20));
+        assertThat(beerStore.findStock(deleted.getId())).isEmpty();
+        assertThat(beerStore.compareAndSetStock(deleted.getId(), StockLocation.DEFAULT, 15, 15, 1)).isFalse();
+        assertThat(beerStore.findLocation(StockLocation.DEFAULT).get().getQuantity()).isEqualTo(defaultTotal + 5 - 15);
+        beerStore.flush();
+        assertThat(stockLocationRepository.findTotalByName(StockLocation.DEFAULT).get().getQuantity()).isEqualTo(defaultTotal - 10);
+    }
+
+    private WriteBehindBeerStore newStore(long maxStalenessMillis) {
+        beerStore.flush();
+        WriteBehindBeerStore store = new WriteBehindBeerStore(beerRepository, beerStockRepository, stockLocationRepository,
+                transactionTemplate, dataSource, maxStalenessMillis);
+        store.open();
+        return store;
+    }
+
+    private int databaseQuantityOf(Beer beer) {
+        return new JdbcTemplate(dataSource).queryForObject("select quantity from beer where id = ?", Integer.class, beer.getId());
+    }
+
+    private static Beer newBeer(int quantity) {
+        return new Beer(null, "Write behind " + UUID.randomUUID(), "Brand", 100, quantity, BeerType.LAGER);
+    }
+}
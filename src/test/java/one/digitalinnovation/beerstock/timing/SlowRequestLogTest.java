@@ -0,0 +1,48 @@
+package one.digitalinnovation.beerstock.timing;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+public class SlowRequestLogTest {
+
+    @Test
+    void whenMoreSlowRequestsThanSlotsAreRecordedThenOnlyTheNewestShouldBeKeptNewestFirst() {
+        // given
+        SlowRequestLog slowRequestLog = new SlowRequestLog(4, 100);
+
+        // when
+        for (int i = 1; i <= 6; i++) {
+            slowRequestLog.record(slowRequest("/api/v1/beers/" + i));
+        }
+
+        // then
+        assertThat(slowRequestLog.recent()).extracting(SlowRequest::getUri)
+                .containsExactly("/api/v1/beers/6", "/api/v1/beers/5", "/api/v1/beers/4", "/api/v1/beers/3");
+    }
+
+    @Test
+    void whenRequestTakesLongerThanThresholdThenItShouldBeSlow() {
+        // given
+        SlowRequestLog slowRequestLog = new SlowRequestLog(4, 100);
+
+        // then
+        assertThat(slowRequestLog.isSlow(TimeUnit.MILLISECONDS.toNanos(99))).isFalse();
+        assertThat(slowRequestLog.isSlow(TimeUnit.MILLISECONDS.toNanos(100))).isTrue();
+        assertThat(new SlowRequestLog(4, 100).recent()).isEmpty();
+    }
+
+    @Test
+    void whenBufferSizeIsNotAPowerOfTwoThenItShouldBeRejected() {
+        assertThatIllegalArgumentException().isThrownBy(() -> new SlowRequestLog(100, 100));
+    }
+
+    private static SlowRequest slowRequest(String uri) {
+        return new SlowRequest(Instant.now(), "GET", uri, 200, 300, Collections.emptyMap(), 1);
+    }
+}
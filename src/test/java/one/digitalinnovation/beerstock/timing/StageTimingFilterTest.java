@@ -0,0 +1,97 @@
+package one.digitalinnovation.beerstock.timing;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import one.digitalinnovation.beerstock.builder.BeerDTOBuilder;
+import one.digitalinnovation.beerstock.dto.BeerDTO;
+import one.digitalinnovation.beerstock.utils.JsonConvertionUtils;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"beerstock.timing.slow-request-threshold-millis=0", "beerstock.timing.server-timing-header=true"})
+@AutoConfigureMockMvc
+public class StageTimingFilterTest {
+
+    private static final String BEER_API_URL_PATH = "/api/v1/beers";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    SlowRequestLog slowRequestLog;
+
+    @Test
+    void whenBeerIsCreatedThenEveryStageShouldBeTimed() throws Exception {
+        // given
+        BeerDTO beerDTO = BeerDTOBuilder.builder().id(null).name("Timed Lager").build().toBeerDTO();
+
+        // when
+        mockMvc.perform(post(BEER_API_URL_PATH)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(JsonConvertionUtils.asJsonString(beerDTO)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(StageTimingFilter.SERVER_TIMING_HEADER, containsString("validation;dur=")))
+                .andExpect(header().string(StageTimingFilter.SERVER_TIMING_HEADER, containsString("db;dur=")));
+
+        // then
+        for (Stage stage : Stage.values()) {
+            assertThat(meterRegistry.get("beerstock.http.stage")
+                    .tags("method", "POST", "uri", BEER_API_URL_PATH, "stage", stage.getMetricName())
+                    .timer().count()).isEqualTo(1);
+        }
+        SlowRequest slowRequest = slowRequestLog.recent().get(0);
+        assertThat(slowRequest.getUri()).isEqualTo(BEER_API_URL_PATH);
+        assertThat(slowRequest.getStatus()).isEqualTo(201);
+        assertThat(slowRequest.getSqlStatements()).isEqualTo(4);
+        assertThat(slowRequest.getStageMillis().get(Stage.VALIDATION)).isPositive();
+        assertThat(slowRequest.getStageMillis().get(Stage.DATABASE)).isPositive();
+        assertThat(slowRequest.getStageMillis().get(Stage.MAPPING)).isPositive();
+        assertThat(slowRequest.getStageMillis().get(Stage.SERIALIZATION)).isPositive();
+    }
+
+    @Test
+    void whenSlowRequestsAreReadFromActuatorThenNewestShouldComeFirst() throws Exception {
+        // given
+        mockMvc.perform(get(BEER_API_URL_PATH)).andExpect(status().isOk());
+
+        // then
+        mockMvc.perform(get("/actuator/slowrequests"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].method").value("GET"))
+                .andExpect(jsonPath("$[0].uri").value(BEER_API_URL_PATH));
+    }
+
+    @Test
+    void whenServerTimingHeaderIsOffThenStagesShouldStillBeRecordedButNotSent() throws Exception {
+        // given
+        SimpleMeterRegistry filterRegistry = new SimpleMeterRegistry();
+        StageTimingFilter filter = new StageTimingFilter(filterRegistry, new SlowRequestLog(16, 250), false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // when
+        filter.doFilter(new MockHttpServletRequest("GET", BEER_API_URL_PATH), response,
+                (request, chainResponse) -> chainResponse.getWriter().write("[]"));
+
+        // then
+        assertThat(response.getHeader(StageTimingFilter.SERVER_TIMING_HEADER)).isNull();
+        assertThat(filterRegistry.get("beerstock.http.stage").tags("stage", Stage.DATABASE.getMetricName())
+                .timer().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,40 @@
+package one.digitalinnovation.beerstock.utils;
+
+import one.digitalinnovation.beerstock.sql.SqlStatistics;
+import one.digitalinnovation.beerstock.sql.SqlStatisticsFilter;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Pins how many SQL statements a piece of code or an HTTP call may execute, so that an added
+ * lazy load or N+1 loop fails a test instead of showing up in production latency.
+ */
+public class SqlStatementAssertions {
+
+    /**
+     * Expects the response to report exactly {@code expected} statements.
+     */
+    public static ResultMatcher sqlStatements(long expected) {
+        return result -> assertThat(result.getResponse().getHeader(SqlStatisticsFilter.STATEMENTS_HEADER))
+                .as("SQL statements executed by %s %s", result.getRequest().getMethod(), result.getRequest().getRequestURI())
+                .isEqualTo(String.valueOf(expected));
+    }
+
+    /**
+     * Runs the action and returns the statements it executed on the current thread.
+     */
+    public static long countSqlStatements(ThrowingRunnable action) throws Exception {
+        SqlStatistics statistics = new SqlStatistics();
+        try (SqlStatistics.Scope ignored = SqlStatistics.bind(statistics)) {
+            action.run();
+        }
+        return statistics.getStatements();
+    }
+
+    @FunctionalInterface
+    public interface ThrowingRunnable {
+
+        void run() throws Exception;
+    }
+}
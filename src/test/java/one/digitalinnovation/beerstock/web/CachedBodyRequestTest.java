@@ -0,0 +1,52 @@
+package one.digitalinnovation.beerstock.web;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CachedBodyRequestTest {
+
+    @Test
+    void whenBodyIsReadAsynchronouslyThenTheListenerShouldGetTheWholeBodyRightAway() {
+        // given
+        byte[] body = "{\"quantity\":5}".getBytes(StandardCharsets.UTF_8);
+        ServletInputStream input = new CachedBodyRequest(new MockHttpServletRequest(), body).getInputStream();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        List<String> calls = new ArrayList<>();
+
+        // when
+        input.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                calls.add("onDataAvailable");
+                byte[] buffer = new byte[4];
+                while (input.isReady() && !input.isFinished()) {
+                    read.write(buffer, 0, input.read(buffer));
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                calls.add("onAllDataRead");
+            }
+
+            @Override
+            public void onError(Throwable failure) {
+                calls.add("onError");
+            }
+        });
+
+        // then
+        assertThat(calls).containsExactly("onDataAvailable", "onAllDataRead");
+        assertThat(read.toByteArray()).isEqualTo(body);
+    }
+}